@@ -2,6 +2,11 @@ import java.util.List;
 import java.util.Set;
 import java.util.HashSet;
 import java.util.ArrayList;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
 
 public class ArduinoGenerator {
 
@@ -36,22 +41,22 @@ public class ArduinoGenerator {
         for (TACInstruction inst : instructions) {
             // Skip instructions that don't produce a variable result or use result for
             // labels
-            if (inst.result == null || inst.op.equals("LABEL") || inst.op.equals("GOTO") ||
-                    inst.op.equals("IF_FALSE") || inst.op.equals("param") || inst.op.equals("ret")
-                    || inst.op.equals("return")) {
+            if (inst.result == null || !inst.result.isStorage()) {
                 continue;
             }
 
-            // Asignaciones directas STRING: s = "hola"
-            if (inst.op.equals("=") && inst.arg1 != null && inst.arg1.startsWith("\"")) {
-                stringVars.add(inst.result);
-                declaredVars.add(inst.result);
+            // Asignaciones directas STRING: s = "hola" o s = f"hola {nombre}"
+            String name = inst.result.text;
+            if (inst.op == Opcode.ASSIGN && inst.arg1 != null
+                    && (inst.arg1.kind == Operand.Kind.STRING || isFormattedString(inst.arg1))) {
+                stringVars.add(name);
+                declaredVars.add(name);
             } else {
                 // Cualquier otro resultado (números, booleanos de comparaciones, math, calls)
                 // Se asume double (que maneja int/bool/float en C++)
-                if (!declaredVars.contains(inst.result)) {
-                    doubleVars.add(inst.result);
-                    declaredVars.add(inst.result);
+                if (!declaredVars.contains(name)) {
+                    doubleVars.add(name);
+                    declaredVars.add(name);
                 }
             }
         }
@@ -63,12 +68,10 @@ public class ArduinoGenerator {
             cpp.append("double ");
             boolean first = true;
             for (String var : doubleVars) {
-                if (!isLabel(var)) {
-                    if (!first)
-                        cpp.append(", ");
-                    cpp.append(var);
-                    first = false;
-                }
+                if (!first)
+                    cpp.append(", ");
+                cpp.append(var);
+                first = false;
             }
             cpp.append(";\n");
         }
@@ -95,61 +98,80 @@ public class ArduinoGenerator {
 
         cpp.append("void loop() {\n");
 
-        for (TACInstruction inst : instructions) {
-            if (inst.op.equals("LABEL")) {
+        Map<Integer, Integer> doLoops = findDoWhileLoops(instructions);
+        Set<Integer> loopEnds = new HashSet<>(doLoops.values());
+
+        for (int index = 0; index < instructions.size(); index++) {
+            TACInstruction inst = instructions.get(index);
+            if (inst.op == Opcode.LABEL) {
                 cpp.append(inst.result).append(":\n");
+                if (doLoops.containsKey(index)) {
+                    cpp.append("  do {\n");
+                }
+                continue;
+            }
+            if (loopEnds.contains(index)) {
+                if (instructions.get(index - 1).op == Opcode.LABEL) {
+                    cpp.append("  ;\n"); // Una etiqueta necesita una sentencia antes de '}'
+                }
+                cpp.append("  } while (").append(inst.arg1).append(");\n");
+                continue;
+            }
+
+            if (inst.op == Opcode.PARAM && feedsPrint(instructions, index)) {
+                // Los argumentos de print se imprimen directo en la llamada
                 continue;
             }
 
             cpp.append("  ");
 
             // Manejo especial PRINT
-            if (inst.op.equals("param")) {
+            if (inst.op == Opcode.PARAM) {
                 // El argumento puede ser numero, string literal o variable
                 // C++ Variant constructor handles overloads
                 cpp.append("_stack.push_back(Variant(").append(inst.arg1).append("));\n");
                 continue;
             }
-            if (inst.op.equals("call")) {
-                if (inst.arg1.equals("print") || inst.arg1.equals("println")) {
-                    int numArgs = Integer.parseInt(inst.arg2);
-                    boolean isLn = inst.arg1.equals("println");
-
-                    cpp.append("for(int i=0; i<").append(numArgs).append("; i++) {\n");
-                    cpp.append("    Variant v = _stack[_stack.size() - ").append(numArgs).append(" + i];\n");
-                    cpp.append("    if(v.type == 1) Serial.print(v.strVal);\n");
-                    cpp.append("    else Serial.print(v.numVal);\n");
+            if (inst.op == Opcode.CALL) {
+                if (isPrint(inst)) {
+                    // Una llamada a Serial.print por argumento (o por tramo de un
+                    // f-string), sin pasar por la pila ni concatenar Strings
+                    int numArgs = (int) inst.arg2.value;
+                    boolean isLn = inst.arg1.text.equals("println");
+                    cpp.append("// ").append(inst.arg1).append("\n");
 
-                    cpp.append("    if(i < ").append(numArgs - 1).append(") Serial.print(\" \");\n");
-                    cpp.append("  }\n");
+                    for (int i = 0; i < numArgs; i++) {
+                        if (i > 0) {
+                            cpp.append("  Serial.print(\" \");\n");
+                        }
+                        serialPrint(cpp, instructions.get(index - numArgs + i).arg1);
+                    }
                     if (isLn)
                         cpp.append("  Serial.println();\n");
-
-                    cpp.append("  _stack.erase(_stack.end() - ").append(numArgs).append(", _stack.end());\n");
                 }
                 // ✅ SOPORTE PARA FUNCIONES DE ARDUINO (Adaptado a Variant)
-                else if (inst.arg1.equals("pinMode")) {
+                else if (inst.arg1.text.equals("pinMode")) {
                     cpp.append("  {\n");
                     cpp.append("    int mode = (int)_stack.back().numVal; _stack.pop_back();\n");
                     cpp.append("    int pin = (int)_stack.back().numVal; _stack.pop_back();\n");
                     cpp.append("    pinMode(pin, mode);\n");
                     cpp.append("  }\n");
-                } else if (inst.arg1.equals("digitalWrite")) {
+                } else if (inst.arg1.text.equals("digitalWrite")) {
                     cpp.append("  {\n");
                     cpp.append("    int val = (int)_stack.back().numVal; _stack.pop_back();\n");
                     cpp.append("    int pin = (int)_stack.back().numVal; _stack.pop_back();\n");
                     cpp.append("    digitalWrite(pin, val);\n");
                     cpp.append("  }\n");
-                } else if (inst.arg1.equals("delay")) {
+                } else if (inst.arg1.text.equals("delay")) {
                     cpp.append("  {\n");
                     cpp.append("    int ms = (int)_stack.back().numVal; _stack.pop_back();\n");
                     cpp.append("    delay(ms);\n");
                     cpp.append("  }\n");
-                } else if (inst.arg1.equals("digitalRead")) {
+                } else if (inst.arg1.text.equals("digitalRead")) {
                     cpp.append("  {\n");
                     cpp.append("    int pin = (int)_stack.back().numVal; _stack.pop_back();\n");
                     cpp.append("    double val = (double)digitalRead(pin);\n");
-                    if (inst.result != null && !inst.result.isEmpty()) {
+                    if (inst.result != null) {
                         cpp.append("    ").append(inst.result).append(" = val;\n");
                     }
                     cpp.append("  }\n");
@@ -158,71 +180,78 @@ public class ArduinoGenerator {
                 continue;
             }
 
-            switch (inst.op)
-
-            {
-                case "=":
-                    cpp.append(inst.result).append(" = ").append(inst.arg1).append(";\n");
+            switch (inst.op) {
+                case ASSIGN:
+                    String value = isFormattedString(inst.arg1) ? concatenation(FormatTemplate.parse(inst.arg1.text))
+                            : inst.arg1.text;
+                    cpp.append(inst.result).append(" = ").append(value).append(";\n");
                     break;
-                case "+":
+                case ADD:
                     cpp.append(inst.result).append(" = ").append(inst.arg1).append(" + ").append(inst.arg2)
                             .append(";\n");
                     break;
-                case "-":
+                case SUB:
                     cpp.append(inst.result).append(" = ").append(inst.arg1).append(" - ").append(inst.arg2)
                             .append(";\n");
                     break;
-                case "*":
+                case MUL:
                     cpp.append(inst.result).append(" = ").append(inst.arg1).append(" * ").append(inst.arg2)
                             .append(";\n");
                     break;
-                case "/":
+                case DIV:
                     cpp.append(inst.result).append(" = ").append(inst.arg1).append(" / ").append(inst.arg2)
                             .append(";\n");
                     break;
-                case "%":
+                case MOD:
                     cpp.append(inst.result).append(" = (int)").append(inst.arg1).append(" % (int)").append(inst.arg2)
                             .append(";\n");
                     break;
-                case "==":
+                case EQ:
                     cpp.append(inst.result).append(" = (").append(inst.arg1).append(" == ").append(inst.arg2)
                             .append(");\n");
                     break;
-                case "!=":
+                case NE:
                     cpp.append(inst.result).append(" = (").append(inst.arg1).append(" != ").append(inst.arg2)
                             .append(");\n");
                     break;
-                case "<":
+                case LT:
                     cpp.append(inst.result).append(" = (").append(inst.arg1).append(" < ").append(inst.arg2)
                             .append(");\n");
                     break;
-                case ">":
+                case GT:
                     cpp.append(inst.result).append(" = (").append(inst.arg1).append(" > ").append(inst.arg2)
                             .append(");\n");
                     break;
-                case "<=":
+                case LE:
                     cpp.append(inst.result).append(" = (").append(inst.arg1).append(" <= ").append(inst.arg2)
                             .append(");\n");
                     break;
-                case ">=":
+                case GE:
                     cpp.append(inst.result).append(" = (").append(inst.arg1).append(" >= ").append(inst.arg2)
                             .append(");\n");
                     break;
-                case "AND":
+                case AND:
                     cpp.append(inst.result).append(" = (").append(inst.arg1).append(" && ").append(inst.arg2)
                             .append(");\n");
                     break;
-                case "OR":
+                case OR:
                     cpp.append(inst.result).append(" = (").append(inst.arg1).append(" || ").append(inst.arg2)
                             .append(");\n");
                     break;
-                case "GOTO":
+                case GOTO:
                     cpp.append("goto ").append(inst.result).append(";\n");
                     break;
-                case "IF_FALSE":
+                case IF_FALSE:
                     cpp.append("if (!").append(inst.arg1).append(") goto ").append(inst.result).append(";\n");
                     break;
-                case "MINUS":
+                case IF_TRUE:
+                    cpp.append("if (").append(inst.arg1).append(") goto ").append(inst.result).append(";\n");
+                    break;
+                case SWITCH:
+                case JUMPTABLE:
+                    nativeSwitch(cpp, inst);
+                    break;
+                case MINUS:
                     cpp.append(inst.result).append(" = -").append(inst.arg1).append(";\n");
                     break;
             }
@@ -235,11 +264,114 @@ public class ArduinoGenerator {
 
     }
 
-    private boolean isLabel(String s) {
-        return s.startsWith("L") && s.matches("L\\d+");
+    // switch nativo de C++: el compilador lo baja a tabla de saltos o a
+    // búsqueda binaria. Solo entra si el valor es entero (2.5 va al default).
+    private void nativeSwitch(StringBuilder cpp, TACInstruction inst) {
+        cpp.append("if (").append(inst.arg1).append(" == (long)").append(inst.arg1).append(") {\n");
+        cpp.append("    switch ((long)").append(inst.arg1).append(") {\n");
+        for (int i = 0; i < inst.targets.length; i++) {
+            if (!inst.targets[i].equals(inst.result)) {
+                cpp.append("      case ").append(inst.caseValue(i)).append(": goto ").append(inst.targets[i])
+                        .append(";\n");
+            }
+        }
+        cpp.append("    }\n");
+        cpp.append("  }\n");
+        cpp.append("  goto ").append(inst.result).append(";\n");
+    }
+
+    /**
+     * Bucles do-while: un IF_TRUE que salta hacia atrás a una etiqueta. Se
+     * emiten como do { } while nativo si están bien anidados con los demás;
+     * devuelve índice de la etiqueta -> índice del IF_TRUE.
+     */
+    private Map<Integer, Integer> findDoWhileLoops(List<TACInstruction> instructions) {
+        Map<Operand, Integer> labels = new HashMap<>();
+        TreeMap<Integer, Integer> candidates = new TreeMap<>();
+        for (int i = 0; i < instructions.size(); i++) {
+            TACInstruction inst = instructions.get(i);
+            if (inst.op == Opcode.LABEL) {
+                labels.put(inst.result, i);
+            } else if (inst.op == Opcode.IF_TRUE) {
+                Integer start = labels.get(inst.result);
+                if (start != null && !candidates.containsKey(start)) {
+                    candidates.put(start, i);
+                }
+            }
+        }
+
+        Map<Integer, Integer> loops = new HashMap<>();
+        Deque<Integer> open = new ArrayDeque<>(); // Fines de los bucles que contienen al actual
+        for (Map.Entry<Integer, Integer> loop : candidates.entrySet()) {
+            while (!open.isEmpty() && open.peek() < loop.getKey()) {
+                open.pop();
+            }
+            if (!open.isEmpty() && loop.getValue() > open.peek()) {
+                continue; // Se cruza con otro bucle: queda como salto
+            }
+            open.push(loop.getValue());
+            loops.put(loop.getKey(), loop.getValue());
+        }
+        return loops;
+    }
+
+    // ¿Este param es argumento de un print/println? (los param de una llamada
+    // van seguidos, justo antes del call)
+    private boolean feedsPrint(List<TACInstruction> instructions, int index) {
+        int call = index;
+        while (call < instructions.size() && instructions.get(call).op == Opcode.PARAM) {
+            call++;
+        }
+        if (call >= instructions.size() || instructions.get(call).op != Opcode.CALL) {
+            return false;
+        }
+        return isPrint(instructions.get(call));
+    }
+
+    private boolean isPrint(TACInstruction call) {
+        return call.arg1.text.equals("print") || call.arg1.text.equals("println");
+    }
+
+    private void serialPrint(StringBuilder cpp, Operand arg) {
+        if (!isFormattedString(arg)) {
+            cpp.append("  Serial.print(").append(arg).append(");\n");
+            return;
+        }
+        // f-string: el template se arma al compilar, cada tramo es un print
+        FormatTemplate template = FormatTemplate.parse(arg.text);
+        if (template.error != null) {
+            cpp.append("  // ").append(template.error).append(": ").append(arg).append("\n");
+            return;
+        }
+        for (int i = 0; i < template.literals.length; i++) {
+            if (!template.literals[i].isEmpty()) {
+                cpp.append("  Serial.print(\"").append(template.literals[i]).append("\");\n");
+            }
+            if (i < template.variables.length) {
+                cpp.append("  Serial.print(").append(template.variables[i]).append(");\n");
+            }
+        }
+    }
+
+    // f-string fuera de un print (asignación): se arma un String
+    private String concatenation(FormatTemplate template) {
+        if (template.error != null) {
+            return "String() /* " + template.error + " */";
+        }
+        StringBuilder sb = new StringBuilder();
+        if (!template.literals[0].isEmpty()) {
+            sb.append("String(\"").append(template.literals[0]).append("\") + ");
+        }
+        for (int i = 0; i < template.variables.length; i++) {
+            sb.append(i > 0 ? " + String(" : "String(").append(template.variables[i]).append(")");
+            if (!template.literals[i + 1].isEmpty()) {
+                sb.append(" + \"").append(template.literals[i + 1]).append("\"");
+            }
+        }
+        return sb.toString();
     }
 
-    private boolean isMathOp(String op) {
-        return op.equals("+") || op.equals("-") || op.equals("*") || op.equals("/") || op.equals("%");
+    private boolean isFormattedString(Operand operand) {
+        return operand != null && operand.kind == Operand.Kind.FORMATTED;
     }
 }
@@ -1,8 +1,11 @@
 import java.util.*;
 
 public class AssemblerGenerator {
+    private int switchCount; // Etiquetas internas de las tablas y búsquedas de SWITCH
+
     public String generate(List<TACInstruction> instructions) {
         StringBuilder sb = new StringBuilder();
+        switchCount = 0;
         sb.append("; Código Ensamblador Generado\n");
         sb.append(".data\n");
         sb.append("    ; Variables declaradas aquí implícitamente\n");
@@ -26,47 +29,77 @@ public class AssemblerGenerator {
         // Comment showing original code
         sb.append("    ; ").append(inst.toString()).append("\n");
 
-        String op = inst.op;
-        String r = inst.result;
-        String a1 = inst.arg1;
-        String a2 = inst.arg2;
+        Opcode op = inst.op;
+        Operand r = inst.result;
+        Operand a1 = inst.arg1;
+        Operand a2 = inst.arg2;
 
-        if (op.equals("LABEL")) {
+        if (op == Opcode.LABEL) {
             return r + ":\n";
         }
 
-        if (op.equals("GOTO")) {
+        if (op == Opcode.GOTO) {
             return "    JMP " + r + "\n";
         }
 
-        if (op.equals("IF_FALSE")) {
+        if (op == Opcode.IF_FALSE) {
             sb.append("    MOV EAX, ").append(resolve(a1)).append("\n");
             sb.append("    CMP EAX, 0\n"); // 0 is false
             sb.append("    JE ").append(r).append("\n");
             return sb.toString();
         }
 
-        if (op.equals("=")) {
+        if (op == Opcode.JUMPTABLE) {
+            // Índice = valor - mínimo; fuera de rango (sin signo) va al default
+            String table = "JT" + (switchCount++);
+            sb.append("    MOV EAX, ").append(resolve(a1)).append("\n");
+            sb.append("    SUB EAX, ").append(a2).append("\n");
+            sb.append("    CMP EAX, ").append(inst.targets.length - 1).append("\n");
+            sb.append("    JA ").append(r).append("\n");
+            sb.append("    JMP [").append(table).append(" + EAX*4]\n");
+            sb.append(table).append(":\n");
+            sb.append("    DD ");
+            for (int i = 0; i < inst.targets.length; i++) {
+                sb.append(i > 0 ? ", " : "").append(inst.targets[i]);
+            }
+            sb.append("\n");
+            return sb.toString();
+        }
+
+        if (op == Opcode.SWITCH) {
+            sb.append("    MOV EAX, ").append(resolve(a1)).append("\n");
+            binarySearch(sb, inst, 0, inst.targets.length - 1);
+            return sb.toString();
+        }
+
+        if (op == Opcode.IF_TRUE) {
+            sb.append("    MOV EAX, ").append(resolve(a1)).append("\n");
+            sb.append("    CMP EAX, 0\n");
+            sb.append("    JNE ").append(r).append("\n");
+            return sb.toString();
+        }
+
+        if (op == Opcode.ASSIGN) {
             sb.append("    MOV EAX, ").append(resolve(a1)).append("\n");
             sb.append("    MOV ").append(r).append(", EAX\n");
             return sb.toString();
         }
 
-        if (op.equals("+")) {
+        if (op == Opcode.ADD) {
             sb.append("    MOV EAX, ").append(resolve(a1)).append("\n");
             sb.append("    ADD EAX, ").append(resolve(a2)).append("\n");
             sb.append("    MOV ").append(r).append(", EAX\n");
             return sb.toString();
         }
 
-        if (op.equals("-")) {
+        if (op == Opcode.SUB) {
             sb.append("    MOV EAX, ").append(resolve(a1)).append("\n");
             sb.append("    SUB EAX, ").append(resolve(a2)).append("\n");
             sb.append("    MOV ").append(r).append(", EAX\n");
             return sb.toString();
         }
 
-        if (op.equals("*")) {
+        if (op == Opcode.MUL) {
             sb.append("    MOV EAX, ").append(resolve(a1)).append("\n");
             sb.append("    MOV EBX, ").append(resolve(a2)).append("\n");
             sb.append("    MUL EBX\n");
@@ -74,7 +107,7 @@ public class AssemblerGenerator {
             return sb.toString();
         }
 
-        if (op.equals("/")) {
+        if (op == Opcode.DIV) {
             sb.append("    MOV EAX, ").append(resolve(a1)).append("\n");
             sb.append("    MOV EBX, ").append(resolve(a2)).append("\n");
             sb.append("    DIV EBX\n");
@@ -82,21 +115,18 @@ public class AssemblerGenerator {
             return sb.toString();
         }
 
-        if (op.equals("param")) {
+        if (op == Opcode.PARAM) {
             sb.append("    PUSH ").append(resolve(a1)).append("\n");
             return sb.toString();
         }
 
-        if (op.equals("call")) {
+        if (op == Opcode.CALL) {
             sb.append("    CALL ").append(a1).append("\n");
             // Clean up stack? ADD ESP, 4*num_params
-            if (a2 != null) {
-                try {
-                    int n = Integer.parseInt(a2);
-                    if (n > 0)
-                        sb.append("    ADD ESP, ").append(n * 4).append("\n");
-                } catch (Exception e) {
-                }
+            if (a2 != null && a2.kind == Operand.Kind.INT) {
+                int n = (int) a2.value;
+                if (n > 0)
+                    sb.append("    ADD ESP, ").append(n * 4).append("\n");
             }
             if (r != null) {
                 sb.append("    MOV ").append(r).append(", EAX\n");
@@ -104,7 +134,7 @@ public class AssemblerGenerator {
             return sb.toString();
         }
 
-        if (op.equals("ret")) {
+        if (op == Opcode.RET) {
             if (a1 != null) {
                 sb.append("    MOV EAX, ").append(resolve(a1)).append("\n");
             }
@@ -113,7 +143,7 @@ public class AssemblerGenerator {
         }
 
         // Logic
-        if (op.equals("==") || op.equals("!=") || op.equals("<") || op.equals(">")) {
+        if (op == Opcode.EQ || op == Opcode.NE || op == Opcode.LT || op == Opcode.GT) {
             sb.append("    MOV EAX, ").append(resolve(a1)).append("\n");
             sb.append("    CMP EAX, ").append(resolve(a2)).append("\n");
             // Set condition logic is complex in simple conversion, using jump helper or
@@ -126,14 +156,33 @@ public class AssemblerGenerator {
         return sb.toString();
     }
 
+    // Árbol de decisión sobre los valores ordenados de un SWITCH (valor en EAX)
+    private void binarySearch(StringBuilder sb, TACInstruction inst, int low, int high) {
+        if (high - low < 3) {
+            for (int i = low; i <= high; i++) {
+                sb.append("    CMP EAX, ").append(inst.caseValues[i]).append("\n");
+                sb.append("    JE ").append(inst.targets[i]).append("\n");
+            }
+            sb.append("    JMP ").append(inst.result).append("\n");
+            return;
+        }
+        int mid = (low + high) >>> 1;
+        String left = "BS" + (switchCount++);
+        sb.append("    CMP EAX, ").append(inst.caseValues[mid]).append("\n");
+        sb.append("    JE ").append(inst.targets[mid]).append("\n");
+        sb.append("    JL ").append(left).append("\n");
+        binarySearch(sb, inst, mid + 1, high);
+        sb.append(left).append(":\n");
+        binarySearch(sb, inst, low, mid - 1);
+    }
+
     // Determine if operand is variable or immediate
-    private String resolve(String arg) {
-        if (Character.isDigit(arg.charAt(0)) || arg.equals("true") || arg.equals("false")) {
-            if (arg.equals("true"))
-                return "1";
-            if (arg.equals("false"))
-                return "0";
-            return arg; // Immediate
+    private String resolve(Operand arg) {
+        if (arg.kind == Operand.Kind.BOOL) {
+            return arg.value != 0 ? "1" : "0";
+        }
+        if (arg.isNumber()) {
+            return arg.text; // Immediate
         }
         return "[" + arg + "]"; // Memory access
     }
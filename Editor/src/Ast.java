@@ -0,0 +1,446 @@
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Árbol de sintaxis abstracta (AST) de Noddk.
+ *
+ * AstBuilder lo construye una sola vez por compilación a partir de los tokens
+ * y todas las fases siguientes (optimizador, análisis semántico, intérprete y
+ * generador de TAC) trabajan sobre él en lugar de volver a recorrer tokens.
+ * Cada nodo tiene un {@link Kind} para despachar con switch y un {@link Span}
+ * con su ubicación en el código fuente.
+ */
+public final class Ast {
+
+    private Ast() {
+    }
+
+    public enum Kind {
+        // Sentencias
+        ASSIGN, INCREMENT, PRINT, IF, WHILE, DO_WHILE, FOR, SWITCH, BREAK, RETURN, FUNCTION, EXPRESSION,
+        // Expresiones
+        NUMBER, STRING, FORMATTED_STRING, BOOLEAN, VARIABLE, BINARY, UNARY, CALL
+    }
+
+    /**
+     * Ubicación en el código fuente: offsets [start, end) y línea/columna del
+     * primer carácter. Los nodos creados por el optimizador heredan la
+     * ubicación del nodo que reemplazan (start/end pueden ser -1).
+     */
+    public static final class Span {
+        public final int start;
+        public final int end;
+        public final int line;
+        public final int column;
+
+        public Span(int start, int end, int line, int column) {
+            this.start = start;
+            this.end = end;
+            this.line = line;
+            this.column = column;
+        }
+
+        public static Span of(TokenBuffer tokens, int index) {
+            return new Span(tokens.start(index), tokens.end(index), tokens.line(index), tokens.column(index));
+        }
+
+        // Desde el inicio de este span hasta el final de otro
+        public Span to(Span other) {
+            return new Span(start, other.end, line, column);
+        }
+
+        @Override
+        public String toString() {
+            return line + ":" + column;
+        }
+    }
+
+    public abstract static class Node {
+        public final Kind kind;
+        public final Span span;
+
+        protected Node(Kind kind, Span span) {
+            this.kind = kind;
+            this.span = span;
+        }
+
+        public int line() {
+            return span.line;
+        }
+    }
+
+    // ==================== PROGRAMA ====================
+
+    public static final class Program {
+        public final List<Stmt> statements;
+
+        public Program(List<Stmt> statements) {
+            this.statements = statements;
+        }
+    }
+
+    // ==================== SENTENCIAS ====================
+
+    public abstract static class Stmt extends Node {
+        protected Stmt(Kind kind, Span span) {
+            super(kind, span);
+        }
+    }
+
+    /** nombre = valor */
+    public static final class Assign extends Stmt {
+        public final String name;
+        public final Expr value;
+
+        public Assign(String name, Expr value, Span span) {
+            super(Kind.ASSIGN, span);
+            this.name = name;
+            this.value = value;
+        }
+    }
+
+    /** nombre++ / nombre-- (solo en el incremento de un for) */
+    public static final class Increment extends Stmt {
+        public final String name;
+        public final boolean increment;
+
+        public Increment(String name, boolean increment, Span span) {
+            super(Kind.INCREMENT, span);
+            this.name = name;
+            this.increment = increment;
+        }
+    }
+
+    /** print(...) / println(...) */
+    public static final class Print extends Stmt {
+        public final boolean newline;
+        public final List<Expr> arguments;
+
+        public Print(boolean newline, List<Expr> arguments, Span span) {
+            super(Kind.PRINT, span);
+            this.newline = newline;
+            this.arguments = arguments;
+        }
+    }
+
+    /** Una rama condicional: la del if o la de un else if. */
+    public static final class Branch {
+        public final Expr condition;
+        public final List<Stmt> body;
+
+        public Branch(Expr condition, List<Stmt> body) {
+            this.condition = condition;
+            this.body = body;
+        }
+    }
+
+    /** if / else if ... / else; elseBody es null si no hay else. */
+    public static final class If extends Stmt {
+        public final List<Branch> branches;
+        public final List<Stmt> elseBody;
+
+        public If(List<Branch> branches, List<Stmt> elseBody, Span span) {
+            super(Kind.IF, span);
+            this.branches = branches;
+            this.elseBody = elseBody;
+        }
+    }
+
+    public static final class While extends Stmt {
+        public final Expr condition;
+        public final List<Stmt> body;
+
+        public While(Expr condition, List<Stmt> body, Span span) {
+            super(Kind.WHILE, span);
+            this.condition = condition;
+            this.body = body;
+        }
+    }
+
+    public static final class DoWhile extends Stmt {
+        public final List<Stmt> body;
+        public final Expr condition;
+
+        public DoWhile(List<Stmt> body, Expr condition, Span span) {
+            super(Kind.DO_WHILE, span);
+            this.body = body;
+            this.condition = condition;
+        }
+    }
+
+    /** for (init; condición; incremento); cualquiera de las tres partes puede ser null. */
+    public static final class For extends Stmt {
+        public final Stmt init;
+        public final Expr condition;
+        public final Stmt update;
+        public final List<Stmt> body;
+
+        public For(Stmt init, Expr condition, Stmt update, List<Stmt> body, Span span) {
+            super(Kind.FOR, span);
+            this.init = init;
+            this.condition = condition;
+            this.update = update;
+            this.body = body;
+        }
+    }
+
+    /** case valor: ... (label es null para default) */
+    public static final class Case {
+        public final Expr label;
+        public final List<Stmt> body;
+        public final Span span;
+
+        public Case(Expr label, List<Stmt> body, Span span) {
+            this.label = label;
+            this.body = body;
+            this.span = span;
+        }
+
+        public boolean isDefault() {
+            return label == null;
+        }
+    }
+
+    public static final class Switch extends Stmt {
+        public final Expr subject;
+        public final List<Case> cases;
+
+        // Desde cuántos casos conviene una tabla de saltos en lugar de comparar uno a uno
+        public static final int MIN_TABLE_CASES = 3;
+
+        public Switch(Expr subject, List<Case> cases, Span span) {
+            super(Kind.SWITCH, span);
+            this.subject = subject;
+            this.cases = cases;
+        }
+
+        /**
+         * Etiquetas de los casos (sin el default, en orden) si todas son
+         * literales enteros distintos y el default, si hay, es el último caso;
+         * si no, null. Un default intermedio se ejecuta antes de probar los
+         * casos que lo siguen, así que no se puede saltar directo a ellos.
+         */
+        public int[] integerLabels() {
+            int[] labels = new int[cases.size()];
+            int count = 0;
+            for (int c = 0; c < cases.size(); c++) {
+                Case switchCase = cases.get(c);
+                if (switchCase.isDefault()) {
+                    if (c + 1 < cases.size()) {
+                        return null;
+                    }
+                    continue;
+                }
+                if (!(switchCase.label instanceof NumberLiteral) || !((NumberLiteral) switchCase.label).isInteger()) {
+                    return null;
+                }
+                try {
+                    labels[count] = Integer.parseInt(((NumberLiteral) switchCase.label).text);
+                } catch (NumberFormatException e) {
+                    return null;
+                }
+                for (int i = 0; i < count; i++) {
+                    if (labels[i] == labels[count]) {
+                        return null;
+                    }
+                }
+                count++;
+            }
+            return Arrays.copyOf(labels, count);
+        }
+
+        /**
+         * Tabla densa (índice directo) si al menos la mitad del rango
+         * [min, max] tiene caso; si no, búsqueda binaria sobre los valores.
+         */
+        public static boolean isDense(long min, long max, int count) {
+            return max - min + 1 <= 2L * count;
+        }
+    }
+
+    public static final class Break extends Stmt {
+        public Break(Span span) {
+            super(Kind.BREAK, span);
+        }
+    }
+
+    /** return [valor]; value es null en un return vacío. */
+    public static final class Return extends Stmt {
+        public final Expr value;
+
+        public Return(Expr value, Span span) {
+            super(Kind.RETURN, span);
+            this.value = value;
+        }
+    }
+
+    public static final class Function extends Stmt {
+        public final String name;
+        public final List<String> parameters;
+        public final List<Stmt> body;
+
+        public Function(String name, List<String> parameters, List<Stmt> body, Span span) {
+            super(Kind.FUNCTION, span);
+            this.name = name;
+            this.parameters = parameters;
+            this.body = body;
+        }
+    }
+
+    /** Expresión usada como sentencia (por ejemplo una llamada a función). */
+    public static final class ExpressionStmt extends Stmt {
+        public final Expr expression;
+
+        public ExpressionStmt(Expr expression, Span span) {
+            super(Kind.EXPRESSION, span);
+            this.expression = expression;
+        }
+    }
+
+    // ==================== EXPRESIONES ====================
+
+    public abstract static class Expr extends Node {
+        // true si en el código estaba entre paréntesis
+        public boolean parenthesized;
+
+        protected Expr(Kind kind, Span span) {
+            super(kind, span);
+        }
+    }
+
+    /** Literal numérico; se guarda el texto tal cual ("5", "3.14"). */
+    public static final class NumberLiteral extends Expr {
+        public final String text;
+
+        public NumberLiteral(String text, Span span) {
+            super(Kind.NUMBER, span);
+            this.text = text;
+        }
+
+        public boolean isInteger() {
+            return !text.contains(".");
+        }
+
+        // Mismo valor que producía Parser.primary(): Integer o Double
+        public Object value() {
+            return isInteger() ? (Object) Integer.parseInt(text) : (Object) Double.parseDouble(text);
+        }
+    }
+
+    /** Literal de texto; raw conserva las comillas. */
+    public static final class StringLiteral extends Expr {
+        public final String raw;
+
+        public StringLiteral(String raw, Span span) {
+            super(Kind.STRING, span);
+            this.raw = raw;
+        }
+
+        public String value() {
+            return raw.substring(1, raw.length() - 1);
+        }
+    }
+
+    /** String formateado; template se analiza una sola vez al construirlo. */
+    public static final class FormattedString extends Expr {
+        public final String raw;
+        public final FormatTemplate template;
+
+        public FormattedString(String raw, Span span) {
+            super(Kind.FORMATTED_STRING, span);
+            this.raw = raw;
+            this.template = FormatTemplate.parse(raw);
+        }
+    }
+
+    public static final class BooleanLiteral extends Expr {
+        public final boolean value;
+
+        public BooleanLiteral(boolean value, Span span) {
+            super(Kind.BOOLEAN, span);
+            this.value = value;
+        }
+    }
+
+    public static final class Variable extends Expr {
+        public final String name;
+
+        public Variable(String name, Span span) {
+            super(Kind.VARIABLE, span);
+            this.name = name;
+        }
+    }
+
+    public static final class Binary extends Expr {
+        public final TokenType operator;
+        public final Expr left;
+        public final Expr right;
+
+        public Binary(TokenType operator, Expr left, Expr right, Span span) {
+            super(Kind.BINARY, span);
+            this.operator = operator;
+            this.left = left;
+            this.right = right;
+        }
+    }
+
+    public static final class Unary extends Expr {
+        public final TokenType operator;
+        public final Expr operand;
+
+        public Unary(TokenType operator, Expr operand, Span span) {
+            super(Kind.UNARY, span);
+            this.operator = operator;
+            this.operand = operand;
+        }
+    }
+
+    public static final class Call extends Expr {
+        public final String name;
+        public final List<Expr> arguments;
+
+        public Call(String name, List<Expr> arguments, Span span) {
+            super(Kind.CALL, span);
+            this.name = name;
+            this.arguments = arguments;
+        }
+    }
+
+    // ==================== UTILIDADES ====================
+
+    /** Símbolo del operador tal como se escribe en Noddk y en el TAC. */
+    public static String symbol(TokenType operator) {
+        switch (operator) {
+            case PLUS:
+                return "+";
+            case MINUS:
+                return "-";
+            case MULTIPLY:
+                return "*";
+            case DIVIDE:
+                return "/";
+            case MODULO:
+                return "%";
+            case EQUALS:
+                return "==";
+            case NOT_EQUALS:
+                return "!=";
+            case LESS:
+                return "<";
+            case GREATER:
+                return ">";
+            case LESS_EQUAL:
+                return "<=";
+            case GREATER_EQUAL:
+                return ">=";
+            case AND:
+                return "&&";
+            case OR:
+                return "||";
+            case NOT:
+                return "!";
+            default:
+                return operator.toString();
+        }
+    }
+}
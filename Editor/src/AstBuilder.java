@@ -0,0 +1,667 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Front end de Noddk: analizador descendente recursivo que recorre los tokens
+ * una sola vez y construye el {@link Ast}.
+ *
+ * Acepta el mismo lenguaje que aceptaba el intérprete y reporta los errores
+ * sintácticos con los mismos mensajes, sin lanzar excepciones. Al primer error
+ * de una sentencia entra en modo pánico: no reporta más errores ni consume
+ * tokens inesperados hasta terminar esa sentencia, la descarta y se sincroniza
+ * en el siguiente ';', '}' o palabra clave de sentencia. Así un archivo con
+ * varios errores los reporta todos en una sola pasada. build() devuelve las
+ * sentencias correctas y getFailure() describe el primer error.
+ *
+ * Precedencia (de menor a mayor): || , && , == != , < > <= >= , + - , * / % ,
+ * unarios + - ! , primarios.
+ */
+public class AstBuilder {
+    private final TokenBuffer tokens;
+    private final ErrorManager errorManager;
+    private int position = 0;
+    private String failure;
+    private boolean panicking; // Hubo un error en la sentencia actual
+
+    public AstBuilder(TokenBuffer tokens, ErrorManager errorManager) {
+        this.tokens = tokens;
+        this.errorManager = errorManager;
+    }
+
+    public Ast.Program build() {
+        List<Ast.Stmt> statements = new ArrayList<>();
+        position = 0;
+        failure = null;
+        panicking = false;
+
+        while (position < tokens.size() && currentType() != TokenType.EOF) {
+            Ast.Stmt statement = recoverableStatement();
+            if (statement != null) {
+                statements.add(statement);
+            }
+            skipSemicolon();
+        }
+
+        return new Ast.Program(statements);
+    }
+
+    public boolean failed() {
+        return failure != null;
+    }
+
+    public String getFailure() {
+        return failure;
+    }
+
+    // ==================== UTILIDADES ====================
+
+    private TokenType currentType() {
+        return tokens.type(position);
+    }
+
+    private boolean check(TokenType type) {
+        return tokens.is(position, type);
+    }
+
+    private boolean atBlockEnd() {
+        return position >= tokens.size() || check(TokenType.RBRACE) || check(TokenType.EOF);
+    }
+
+    private Ast.Span span() {
+        int index = Math.min(position, tokens.size() - 1);
+        return index >= 0 ? Ast.Span.of(tokens, index) : new Ast.Span(-1, -1, 1, 1);
+    }
+
+    // Span desde 'start' hasta el último token consumido
+    private Ast.Span spanFrom(Ast.Span start) {
+        return position > 0 ? start.to(Ast.Span.of(tokens, position - 1)) : start;
+    }
+
+    private void skipSemicolon() {
+        if (check(TokenType.SEMICOLON)) {
+            position++;
+        }
+    }
+
+    private String eatValue(TokenType expected) {
+        String value = position < tokens.size() ? tokens.value(position) : null;
+        eat(expected);
+        return value;
+    }
+
+    private void eat(TokenType expected) {
+        if (tokens.is(position, expected)) {
+            position++;
+            return;
+        }
+        if (panicking) {
+            return;
+        }
+
+        String mensajeError;
+        String detalles;
+        boolean atEnd = position >= tokens.size();
+
+        if (atEnd) {
+            mensajeError = "Se esperaba " + expected + " pero se alcanzó el final del archivo";
+            detalles = "Fin de archivo inesperado";
+        } else {
+            mensajeError = "Se esperaba " + expected + ", se encontró " + currentType();
+            detalles = String.format("Token inesperado: '%s'", tokens.value(position));
+        }
+        detalles += unclosedDetail(expected);
+
+        syntaxError("Error sintáctico: " + mensajeError, mensajeError, detalles);
+    }
+
+    /**
+     * Registra un error en la posición actual y entra en modo pánico. Los
+     * errores siguientes de la misma sentencia suelen ser consecuencia del
+     * primero, así que no se reportan.
+     */
+    private void syntaxError(String failureMessage, String mensaje, String detalles) {
+        if (panicking) {
+            return;
+        }
+        panicking = true;
+        boolean atEnd = position >= tokens.size();
+        errorManager.addSyntacticError(mensaje,
+                !atEnd ? tokens.line(position) : 1,
+                !atEnd ? tokens.column(position) : 1,
+                detalles);
+        if (failure == null) {
+            failure = failureMessage;
+        }
+    }
+
+    // ==================== RECUPERACIÓN ====================
+
+    /**
+     * Analiza una sentencia; si tuvo un error la descarta (devuelve null) y
+     * deja la posición al comienzo de la siguiente.
+     */
+    private Ast.Stmt recoverableStatement() {
+        int start = position;
+        Ast.Stmt statement = statement();
+        if (!panicking) {
+            return statement;
+        }
+        synchronize(start);
+        panicking = false;
+        return null;
+    }
+
+    private void synchronize(int start) {
+        // 1. Saltar los paréntesis y llaves que la sentencia abrió y no cerró
+        int end = position;
+        for (int i = start; i < Math.max(position, start + 1) && i < tokens.size(); i++) {
+            if (tokens.is(i, TokenType.LPAREN) || tokens.is(i, TokenType.LBRACE)) {
+                int partner = tokens.matching(i);
+                if (partner >= position) {
+                    end = Math.max(end, partner + 1);
+                }
+            }
+        }
+        // Avanzar siempre al menos un token para no repetir el mismo error
+        position = Math.max(end, start + 1);
+
+        // 2. Avanzar hasta el límite de la siguiente sentencia
+        while (position < tokens.size()) {
+            switch (currentType()) {
+                case SEMICOLON:
+                    position++;
+                    return;
+                case LBRACE:
+                    // Un bloque suelto cierra la sentencia rota
+                    int partner = tokens.matching(position);
+                    position = partner >= 0 ? partner + 1 : position + 1;
+                    return;
+                case RBRACE:
+                case EOF:
+                case IF:
+                case WHILE:
+                case FOR:
+                case DO:
+                case SWITCH:
+                case CASE:
+                case DEFAULT:
+                case BREAK:
+                case RETURN:
+                case FUNCTION:
+                case PRINT:
+                case PRINTLN:
+                    return;
+                default:
+                    position++;
+            }
+        }
+    }
+
+    /**
+     * Si falta un cierre al llegar al final del archivo, indica dónde quedó
+     * abierto el bloque o paréntesis (tabla de parejas del TokenBuffer).
+     */
+    private String unclosedDetail(TokenType expected) {
+        boolean atEnd = position >= tokens.size() || check(TokenType.EOF);
+        if (!atEnd || (expected != TokenType.RBRACE && expected != TokenType.RPAREN)) {
+            return "";
+        }
+        TokenType open = expected == TokenType.RBRACE ? TokenType.LBRACE : TokenType.LPAREN;
+        int unclosed = tokens.lastUnclosed(open);
+        if (unclosed < 0) {
+            return "";
+        }
+        return String.format(" (el '%s' de la línea %d, columna %d no tiene cierre)",
+                open == TokenType.LBRACE ? "{" : "(", tokens.line(unclosed), tokens.column(unclosed));
+    }
+
+    /**
+     * Consume una llave reportando un mensaje propio de la construcción
+     * (por ejemplo "Se esperaba '{' después de la condición del if").
+     */
+    private void expectBrace(TokenType brace, String mensaje, String detalles) {
+        if (position >= tokens.size() || currentType() != brace) {
+            syntaxError(mensaje, mensaje, detalles + unclosedDetail(brace));
+            return;
+        }
+        position++;
+    }
+
+    // ==================== SENTENCIAS ====================
+
+    private Ast.Stmt statement() {
+        Ast.Span start = span();
+
+        switch (currentType()) {
+            case IDENTIFIER:
+                // Llamada a función o asignación
+                if (tokens.is(position + 1, TokenType.LPAREN)) {
+                    Ast.Expr call = call();
+                    return new Ast.ExpressionStmt(call, call.span);
+                }
+                return assignment();
+
+            case PRINT:
+            case PRINTLN:
+                return print();
+
+            case IF:
+                return conditional();
+
+            case WHILE:
+                return whileLoop();
+
+            case FOR:
+                return forLoop();
+
+            case DO:
+                return doWhileLoop();
+
+            case SWITCH:
+                return switchStatement();
+
+            case BREAK:
+                eat(TokenType.BREAK);
+                return new Ast.Break(start);
+
+            case RETURN:
+                eat(TokenType.RETURN);
+                Ast.Expr value = null;
+                if (!check(TokenType.SEMICOLON) && !atBlockEnd()) {
+                    value = expression();
+                }
+                return new Ast.Return(value, spanFrom(start));
+
+            case FUNCTION:
+                return function();
+
+            default:
+                Ast.Expr expression = expression();
+                return new Ast.ExpressionStmt(expression, expression.span);
+        }
+    }
+
+    private Ast.Assign assignment() {
+        Ast.Span start = span();
+        String name = eatValue(TokenType.IDENTIFIER);
+        eat(TokenType.ASSIGN);
+        Ast.Expr value = expression();
+        return new Ast.Assign(name, value, spanFrom(start));
+    }
+
+    // Instrucciones hasta la llave de cierre (sin consumirla)
+    private List<Ast.Stmt> block() {
+        List<Ast.Stmt> body = new ArrayList<>();
+        while (!atBlockEnd() && !panicking) {
+            statements(body);
+        }
+        return body;
+    }
+
+    // Agrega la siguiente sentencia del bloque si no tuvo errores
+    private void statements(List<Ast.Stmt> body) {
+        Ast.Stmt statement = recoverableStatement();
+        if (statement != null) {
+            body.add(statement);
+        }
+        skipSemicolon();
+    }
+
+    private Ast.Print print() {
+        Ast.Span start = span();
+        boolean newline = currentType() == TokenType.PRINTLN;
+        position++;
+        eat(TokenType.LPAREN);
+        List<Ast.Expr> arguments = arguments();
+        eat(TokenType.RPAREN);
+        return new Ast.Print(newline, arguments, spanFrom(start));
+    }
+
+    private List<Ast.Expr> arguments() {
+        List<Ast.Expr> arguments = new ArrayList<>();
+        if (!check(TokenType.RPAREN)) {
+            arguments.add(expression());
+            while (check(TokenType.COMMA)) {
+                eat(TokenType.COMMA);
+                arguments.add(expression());
+            }
+        }
+        return arguments;
+    }
+
+    private Ast.If conditional() {
+        Ast.Span start = span();
+        List<Ast.Branch> branches = new ArrayList<>();
+        List<Ast.Stmt> elseBody = null;
+
+        eat(TokenType.IF);
+        eat(TokenType.LPAREN);
+        Ast.Expr condition = expression();
+        eat(TokenType.RPAREN);
+        expectBrace(TokenType.LBRACE, "Se esperaba '{' después de la condición del if",
+                "Falta llave de apertura para el bloque if");
+        List<Ast.Stmt> body = block();
+        expectBrace(TokenType.RBRACE, "Se esperaba '}' para cerrar el bloque if",
+                "Falta llave de cierre para el bloque if");
+        branches.add(new Ast.Branch(condition, body));
+
+        while (check(TokenType.ELSE)) {
+            eat(TokenType.ELSE);
+
+            if (check(TokenType.IF)) {
+                eat(TokenType.IF);
+                eat(TokenType.LPAREN);
+                Ast.Expr elseIfCondition = expression();
+                eat(TokenType.RPAREN);
+                expectBrace(TokenType.LBRACE, "Se esperaba '{' después de la condición del else if",
+                        "Falta llave de apertura para el bloque else if");
+                List<Ast.Stmt> elseIfBody = block();
+                expectBrace(TokenType.RBRACE, "Se esperaba '}' para cerrar el bloque else if",
+                        "Falta llave de cierre para el bloque else if");
+                branches.add(new Ast.Branch(elseIfCondition, elseIfBody));
+            } else {
+                expectBrace(TokenType.LBRACE, "Se esperaba '{' después del else",
+                        "Falta llave de apertura para el bloque else");
+                elseBody = block();
+                expectBrace(TokenType.RBRACE, "Se esperaba '}' para cerrar el bloque else",
+                        "Falta llave de cierre para el bloque else");
+                break;
+            }
+        }
+
+        return new Ast.If(branches, elseBody, spanFrom(start));
+    }
+
+    private Ast.While whileLoop() {
+        Ast.Span start = span();
+        eat(TokenType.WHILE);
+        eat(TokenType.LPAREN);
+        Ast.Expr condition = expression();
+        eat(TokenType.RPAREN);
+        eat(TokenType.LBRACE);
+        List<Ast.Stmt> body = block();
+        eat(TokenType.RBRACE);
+        return new Ast.While(condition, body, spanFrom(start));
+    }
+
+    private Ast.For forLoop() {
+        Ast.Span start = span();
+        eat(TokenType.FOR);
+        eat(TokenType.LPAREN);
+
+        // 1. Inicialización
+        Ast.Stmt init = null;
+        if (!check(TokenType.SEMICOLON)) {
+            init = forClause(false);
+        }
+        eat(TokenType.SEMICOLON);
+
+        // 2. Condición (sin condición = siempre verdadera)
+        Ast.Expr condition = null;
+        if (!check(TokenType.SEMICOLON)) {
+            condition = expression();
+        }
+        eat(TokenType.SEMICOLON);
+
+        // 3. Incremento
+        Ast.Stmt update = null;
+        if (!check(TokenType.RPAREN)) {
+            update = forClause(true);
+        }
+        eat(TokenType.RPAREN);
+        eat(TokenType.LBRACE);
+        List<Ast.Stmt> body = block();
+        eat(TokenType.RBRACE);
+
+        return new Ast.For(init, condition, update, body, spanFrom(start));
+    }
+
+    // Asignación, i++ / i-- (solo en el incremento) o expresión
+    private Ast.Stmt forClause(boolean allowIncrement) {
+        if (check(TokenType.IDENTIFIER)) {
+            TokenType next = tokens.type(position + 1);
+            if (next == TokenType.ASSIGN) {
+                return assignment();
+            }
+            if (allowIncrement && (next == TokenType.INCREMENT || next == TokenType.DECREMENT)) {
+                Ast.Span start = span();
+                String name = eatValue(TokenType.IDENTIFIER);
+                position++;
+                return new Ast.Increment(name, next == TokenType.INCREMENT, spanFrom(start));
+            }
+        }
+        Ast.Expr expression = expression();
+        return new Ast.ExpressionStmt(expression, expression.span);
+    }
+
+    private Ast.DoWhile doWhileLoop() {
+        Ast.Span start = span();
+        eat(TokenType.DO);
+        eat(TokenType.LBRACE);
+        List<Ast.Stmt> body = block();
+        eat(TokenType.RBRACE);
+
+        if (!check(TokenType.WHILE)) {
+            syntaxError("❌ Error: Se esperaba 'while' después de 'do'", "Se esperaba 'while' después de 'do'",
+                    position < tokens.size() ? String.format("Token inesperado: '%s'", tokens.value(position))
+                            : "Fin de archivo inesperado");
+        }
+        eat(TokenType.WHILE);
+        eat(TokenType.LPAREN);
+        Ast.Expr condition = expression();
+        eat(TokenType.RPAREN);
+        Ast.Span span = spanFrom(start);
+        skipSemicolon();
+
+        return new Ast.DoWhile(body, condition, span);
+    }
+
+    private Ast.Switch switchStatement() {
+        Ast.Span start = span();
+        eat(TokenType.SWITCH);
+        eat(TokenType.LPAREN);
+        Ast.Expr subject = expression();
+        eat(TokenType.RPAREN);
+        eat(TokenType.LBRACE);
+
+        List<Ast.Case> cases = new ArrayList<>();
+        while (!atBlockEnd() && !panicking) {
+            Ast.Span caseStart = span();
+            Ast.Expr label = null;
+
+            if (check(TokenType.CASE)) {
+                eat(TokenType.CASE);
+                label = expression();
+                eat(TokenType.COLON);
+            } else if (check(TokenType.DEFAULT)) {
+                eat(TokenType.DEFAULT);
+                eat(TokenType.COLON);
+            } else {
+                // Instrucciones antes del primer case: nunca se ejecutan
+                statements(new ArrayList<>());
+                continue;
+            }
+
+            List<Ast.Stmt> body = new ArrayList<>();
+            while (!atBlockEnd() && !panicking && !check(TokenType.CASE) && !check(TokenType.DEFAULT)) {
+                statements(body);
+            }
+            cases.add(new Ast.Case(label, body, caseStart));
+        }
+        eat(TokenType.RBRACE);
+
+        return new Ast.Switch(subject, cases, spanFrom(start));
+    }
+
+    private Ast.Function function() {
+        Ast.Span start = span();
+        eat(TokenType.FUNCTION);
+        String name = eatValue(TokenType.IDENTIFIER);
+        eat(TokenType.LPAREN);
+
+        List<String> parameters = new ArrayList<>();
+        if (!check(TokenType.RPAREN)) {
+            parameters.add(eatValue(TokenType.IDENTIFIER));
+            while (check(TokenType.COMMA)) {
+                eat(TokenType.COMMA);
+                parameters.add(eatValue(TokenType.IDENTIFIER));
+            }
+        }
+        eat(TokenType.RPAREN);
+        eat(TokenType.LBRACE);
+        List<Ast.Stmt> body = block();
+        eat(TokenType.RBRACE);
+
+        return new Ast.Function(name, parameters, body, spanFrom(start));
+    }
+
+    // ==================== EXPRESIONES ====================
+
+    private Ast.Expr expression() {
+        return logicalOr();
+    }
+
+    private Ast.Expr logicalOr() {
+        Ast.Expr left = logicalAnd();
+        while (check(TokenType.OR)) {
+            position++;
+            Ast.Expr right = logicalAnd();
+            left = new Ast.Binary(TokenType.OR, left, right, left.span.to(right.span));
+        }
+        return left;
+    }
+
+    private Ast.Expr logicalAnd() {
+        Ast.Expr left = equality();
+        while (check(TokenType.AND)) {
+            position++;
+            Ast.Expr right = equality();
+            left = new Ast.Binary(TokenType.AND, left, right, left.span.to(right.span));
+        }
+        return left;
+    }
+
+    private Ast.Expr equality() {
+        Ast.Expr left = relational();
+        while (check(TokenType.EQUALS) || check(TokenType.NOT_EQUALS)) {
+            TokenType operator = currentType();
+            position++;
+            Ast.Expr right = relational();
+            left = new Ast.Binary(operator, left, right, left.span.to(right.span));
+        }
+        return left;
+    }
+
+    private Ast.Expr relational() {
+        Ast.Expr left = additive();
+        while (check(TokenType.LESS) || check(TokenType.GREATER)
+                || check(TokenType.LESS_EQUAL) || check(TokenType.GREATER_EQUAL)) {
+            TokenType operator = currentType();
+            position++;
+            Ast.Expr right = additive();
+            left = new Ast.Binary(operator, left, right, left.span.to(right.span));
+        }
+        return left;
+    }
+
+    private Ast.Expr additive() {
+        Ast.Expr left = multiplicative();
+        while (check(TokenType.PLUS) || check(TokenType.MINUS)) {
+            TokenType operator = currentType();
+            position++;
+            Ast.Expr right = multiplicative();
+            left = new Ast.Binary(operator, left, right, left.span.to(right.span));
+        }
+        return left;
+    }
+
+    private Ast.Expr multiplicative() {
+        Ast.Expr left = unary();
+        while (check(TokenType.MULTIPLY) || check(TokenType.DIVIDE) || check(TokenType.MODULO)) {
+            TokenType operator = currentType();
+            position++;
+            Ast.Expr right = unary();
+            left = new Ast.Binary(operator, left, right, left.span.to(right.span));
+        }
+        return left;
+    }
+
+    private Ast.Expr unary() {
+        if (check(TokenType.PLUS) || check(TokenType.MINUS) || check(TokenType.NOT)) {
+            Ast.Span start = span();
+            TokenType operator = currentType();
+            position++;
+            Ast.Expr operand = unary();
+            return new Ast.Unary(operator, operand, start.to(operand.span));
+        }
+        return primary();
+    }
+
+    private Ast.Expr primary() {
+        int index = position;
+        TokenType type = currentType();
+        Ast.Span span = span();
+        if (panicking) {
+            return missing(span);
+        }
+        if (type == null) {
+            syntaxError("Error sintáctico: Se esperaba una expresión pero se alcanzó el final del archivo",
+                    "Se esperaba una expresión pero se alcanzó el final del archivo", "Fin de archivo inesperado");
+            return missing(span);
+        }
+
+        switch (type) {
+            case IDENTIFIER:
+                if (tokens.is(position + 1, TokenType.LPAREN)) {
+                    return call();
+                }
+                position++;
+                return new Ast.Variable(tokens.value(index), span);
+
+            case NUMBER:
+                position++;
+                return new Ast.NumberLiteral(tokens.value(index), span);
+
+            case STRING:
+                position++;
+                return new Ast.StringLiteral(tokens.value(index), span);
+
+            case FORMATTED_STRING:
+                position++;
+                return new Ast.FormattedString(tokens.value(index), span);
+
+            case TRUE:
+            case FALSE:
+                position++;
+                return new Ast.BooleanLiteral(type == TokenType.TRUE, span);
+
+            case LPAREN:
+                eat(TokenType.LPAREN);
+                Ast.Expr inner = expression();
+                eat(TokenType.RPAREN);
+                inner.parenthesized = true;
+                return inner;
+
+            default:
+                syntaxError("❌ Error en línea " + tokens.line(index) + ": Expresión inválida: " + tokens.describe(index),
+                        "Expresión inválida: " + tokens.describe(index),
+                        String.format("Token inesperado: '%s'", tokens.value(index)));
+                return missing(span);
+        }
+    }
+
+    // Marcador en lugar de la expresión que falta; la sentencia que lo
+    // contiene se descarta al recuperarse del error
+    private Ast.Expr missing(Ast.Span span) {
+        return new Ast.NumberLiteral("0", span);
+    }
+
+    private Ast.Call call() {
+        Ast.Span start = span();
+        String name = eatValue(TokenType.IDENTIFIER);
+        eat(TokenType.LPAREN);
+        List<Ast.Expr> arguments = arguments();
+        eat(TokenType.RPAREN);
+        return new Ast.Call(name, arguments, spanFrom(start));
+    }
+}
@@ -0,0 +1,127 @@
+import java.util.*;
+
+/**
+ * Expresiones disponibles: las que ya se calcularon en todos los caminos que
+ * llegan a un punto, sin que después cambie ninguno de sus operandos. Análisis
+ * hacia adelante (must) sobre el {@link ControlFlowGraph}.
+ */
+public class AvailableExpressions {
+    private final TACBuffer code;
+    private final TACVariables variables;
+    private final List<TACExpression> expressions = new ArrayList<>();
+    private final int[] expressionAt; // Instrucción -> expresión que calcula; -1 si ninguna
+    private final BitSet[] usersOf; // Variable -> expresiones que la leen
+    private final Dataflow flow;
+
+    public AvailableExpressions(TACBuffer code, ControlFlowGraph cfg, TACVariables variables) {
+        this.code = code;
+        this.variables = variables;
+
+        Map<TACExpression, Integer> indices = new HashMap<>();
+        usersOf = new BitSet[variables.count()];
+        for (int v = 0; v < usersOf.length; v++) {
+            usersOf[v] = new BitSet();
+        }
+        expressionAt = new int[code.size()];
+        Arrays.fill(expressionAt, -1);
+        for (int i = 0; i < code.size(); i++) {
+            TACExpression expr = code.isDead(i) || code.result(i) == null ? null : TACExpression.of(code, i);
+            if (expr == null) {
+                continue;
+            }
+            Integer index = indices.get(expr);
+            if (index == null) {
+                index = expressions.size();
+                indices.put(expr, index);
+                expressions.add(expr);
+                markUser(expr.left, index);
+                markUser(expr.right, index);
+            }
+            expressionAt[i] = index;
+        }
+
+        int blocks = cfg.blocks().size();
+        BitSet[] gen = new BitSet[blocks];
+        BitSet[] kill = new BitSet[blocks];
+        for (ControlFlowGraph.Block block : cfg.blocks()) {
+            BitSet generated = new BitSet();
+            BitSet killed = new BitSet();
+            for (int i = block.start; i < block.end; i++) {
+                if (code.isDead(i)) {
+                    continue;
+                }
+                if (expressionAt[i] >= 0) {
+                    generated.set(expressionAt[i]);
+                }
+                BitSet invalidated = invalidatedBy(i);
+                if (invalidated != null) {
+                    generated.andNot(invalidated);
+                    killed.or(invalidated);
+                }
+            }
+            gen[block.id] = generated;
+            kill[block.id] = killed;
+        }
+
+        BitSet all = new BitSet();
+        all.set(0, expressions.size());
+        flow = new Dataflow(cfg, Dataflow.Direction.FORWARD, true, gen, kill, new BitSet(), all);
+    }
+
+    private void markUser(Operand operand, int expression) {
+        int v = variables.indexOf(operand);
+        if (v >= 0) {
+            usersOf[v].set(expression);
+        }
+    }
+
+    // Expresiones que deja de tener disponibles la instrucción i; null si ninguna
+    private BitSet invalidatedBy(int i) {
+        BitSet invalidated = null;
+        if (variables.callsUserFunction(code, i)) {
+            invalidated = new BitSet();
+            BitSet globals = variables.globals();
+            for (int g = globals.nextSetBit(0); g >= 0; g = globals.nextSetBit(g + 1)) {
+                invalidated.or(usersOf[g]);
+            }
+        }
+        int def = variables.definition(code, i);
+        if (def >= 0 && !usersOf[def].isEmpty()) {
+            if (invalidated == null) {
+                invalidated = (BitSet) usersOf[def].clone();
+            } else {
+                invalidated.or(usersOf[def]);
+            }
+        }
+        return invalidated;
+    }
+
+    public int count() {
+        return expressions.size();
+    }
+
+    public TACExpression expression(int index) {
+        return expressions.get(index);
+    }
+
+    // Expresión que calculaba la instrucción i al hacer el análisis; -1 si ninguna
+    public int expressionAt(int i) {
+        return expressionAt[i];
+    }
+
+    // Disponibles al entrar al bloque (copia)
+    public BitSet availableIn(ControlFlowGraph.Block block) {
+        return (BitSet) flow.in(block).clone();
+    }
+
+    // Pasa avail de "antes de i" a "después de i"
+    public void step(int i, BitSet avail) {
+        if (expressionAt[i] >= 0) {
+            avail.set(expressionAt[i]);
+        }
+        BitSet invalidated = invalidatedBy(i);
+        if (invalidated != null) {
+            avail.andNot(invalidated);
+        }
+    }
+}
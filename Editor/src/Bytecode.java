@@ -0,0 +1,255 @@
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Programa compilado para la {@link VirtualMachine}.
+ *
+ * Las instrucciones van en un int[]: cada una es un opcode seguido de sus
+ * operandos (índices de constantes, slots de variables o destinos de salto).
+ * Las variables se resuelven a un número de slot al compilar, así que la VM
+ * nunca busca nombres en tiempo de ejecución.
+ */
+public final class Bytecode {
+
+    // ==================== OPCODES ====================
+    // (entre paréntesis los operandos)
+
+    public static final int CONST = 0; // (k) apila constants[k]
+    public static final int LOAD = 1; // (slot) apila la variable
+    public static final int STORE = 2; // (slot, modo) desapila y guarda
+    public static final int INCREMENT = 3; // (slot, delta) i++ / i--
+    public static final int POP = 4; // descarta el tope
+
+    public static final int ADD = 5;
+    public static final int SUB = 6;
+    public static final int MUL = 7;
+    public static final int DIV = 8;
+    public static final int MOD = 9;
+    public static final int EQ = 10;
+    public static final int NE = 11;
+    public static final int LT = 12;
+    public static final int GT = 13;
+    public static final int LE = 14;
+    public static final int GE = 15;
+    public static final int AND = 16;
+    public static final int OR = 17;
+    public static final int NEG = 18;
+    public static final int POS = 19;
+    public static final int NOT = 20;
+
+    public static final int FORMAT = 21; // (k) arma el f-string constants[k] (un Bytecode.Format)
+    public static final int JUMP = 22; // (destino)
+    public static final int JUMP_IF_FALSE = 23; // (destino) desapila la condición
+    public static final int PRINT = 24; // (n, salto de línea) desapila n valores
+    public static final int CALL = 25; // (slot, n) desapila n argumentos y llama a la función del slot
+    public static final int DEFINE = 26; // (slot, k) registra la función constants[k]
+    public static final int RETURN = 27; // (modo) vuelve al llamador con el valor de retorno
+    public static final int EXPRESSION = 28; // desapila y muestra el valor de una expresión suelta
+    public static final int TRACE = 29; // (k, nivel) agrega constants[k] a la traza
+    public static final int TRACE_VALUE = 30; // (k, nivel) agrega constants[k] + tope (sin desapilar)
+    public static final int CASE = 31; // desapila etiqueta y valor del switch; apila si coinciden
+    public static final int LOAD_LOCAL = 32; // (slot) variable del marco de la función actual
+    public static final int STORE_LOCAL = 33; // (slot, modo)
+    public static final int INCREMENT_LOCAL = 34; // (slot, delta)
+    public static final int SWITCH = 35; // (k) desapila el valor y salta con la tabla constants[k]
+    public static final int JUMP_IF_TRUE = 36; // (destino) desapila la condición (fin de un do-while)
+    public static final int HALT = 37;
+
+    // Modos de STORE / STORE_LOCAL
+    public static final int STORE_DECLARE = 0; // "Declarando" / "Asignando"
+    public static final int STORE_INCREMENT = 1; // "Incremento" del for
+    public static final int STORE_SILENT = 2; // variables internas del compilador
+
+    // Modos de RETURN
+    public static final int RETURN_VALUE = 0; // return expr
+    public static final int RETURN_EMPTY = 1; // return sin valor
+    public static final int RETURN_END = 2; // fin del cuerpo sin return
+
+    private static final String[] NAMES = {
+            "CONST", "LOAD", "STORE", "INCREMENT", "POP", "ADD", "SUB", "MUL", "DIV", "MOD",
+            "EQ", "NE", "LT", "GT", "LE", "GE", "AND", "OR", "NEG", "POS", "NOT",
+            "FORMAT", "JUMP", "JUMP_IF_FALSE", "PRINT", "CALL", "DEFINE", "RETURN", "EXPRESSION",
+            "TRACE", "TRACE_VALUE", "CASE", "LOAD_LOCAL", "STORE_LOCAL", "INCREMENT_LOCAL", "SWITCH",
+            "JUMP_IF_TRUE", "HALT"
+    };
+
+    private static final int[] OPERANDS = {
+            1, 1, 2, 2, 0, 0, 0, 0, 0, 0,
+            0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
+            1, 1, 1, 2, 2, 2, 1, 0,
+            2, 2, 0, 1, 2, 2, 1, 1, 0
+    };
+
+    /**
+     * Función declarada por el usuario (o intrínseca, con entry = -1). Sus
+     * parámetros ocupan los primeros slots del marco; el resto son las
+     * variables locales que asigna el cuerpo.
+     */
+    public static final class Function {
+        public final String name;
+        public final List<String> parameters;
+        public int entry = -1; // Primera instrucción del cuerpo
+        public String[] localNames = new String[0]; // Nombres de los slots del marco
+
+        public Function(String name, List<String> parameters) {
+            this.name = name;
+            this.parameters = parameters;
+        }
+
+        public boolean isIntrinsic() {
+            return entry < 0;
+        }
+
+        public int frameSize() {
+            return localNames.length;
+        }
+
+        public int localIndex(String name) {
+            for (int i = 0; i < localNames.length; i++) {
+                if (localNames[i].equals(name)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+
+    /**
+     * String formateado con sus variables ya resueltas: para cada una, el
+     * slot global y el índice en el marco de la función (-1 si no es local).
+     */
+    public static final class Format {
+        public final FormatTemplate template;
+        public final int[] globalSlots;
+        public final int[] localSlots;
+
+        public Format(FormatTemplate template, int[] globalSlots, int[] localSlots) {
+            this.template = template;
+            this.globalSlots = globalSlots;
+            this.localSlots = localSlots;
+        }
+
+        @Override
+        public String toString() {
+            return template.raw;
+        }
+    }
+
+    /**
+     * Destinos de un switch cuyos casos son todos enteros literales. Si los
+     * valores son densos se indexa un arreglo (O(1)); si no, búsqueda binaria
+     * sobre los valores ordenados. Solo un Integer coincide (2.0 no es 2).
+     */
+    public static final class SwitchTable {
+        public final int[] values; // En el orden de los casos
+        public final int[] targets; // Se completan al compilar cada caso
+        public int defaultTarget = -1;
+
+        private int min;
+        private int[] dense; // dense[v - min]: destino o defaultTarget
+        private int[] sortedValues;
+        private int[] sortedTargets;
+
+        public SwitchTable(int[] values) {
+            this.values = values;
+            this.targets = new int[values.length];
+        }
+
+        // Arma la tabla de búsqueda una vez conocidos todos los destinos
+        void seal() {
+            int max = Integer.MIN_VALUE;
+            min = Integer.MAX_VALUE;
+            for (int value : values) {
+                min = Math.min(min, value);
+                max = Math.max(max, value);
+            }
+            if (Ast.Switch.isDense(min, max, values.length)) {
+                dense = new int[max - min + 1];
+                Arrays.fill(dense, defaultTarget);
+                for (int i = 0; i < values.length; i++) {
+                    dense[values[i] - min] = targets[i];
+                }
+                return;
+            }
+            long[] pairs = new long[values.length];
+            for (int i = 0; i < values.length; i++) {
+                pairs[i] = ((long) values[i] << 32) | (targets[i] & 0xFFFFFFFFL);
+            }
+            Arrays.sort(pairs);
+            sortedValues = new int[pairs.length];
+            sortedTargets = new int[pairs.length];
+            for (int i = 0; i < pairs.length; i++) {
+                sortedValues[i] = (int) (pairs[i] >> 32);
+                sortedTargets[i] = (int) pairs[i];
+            }
+        }
+
+        public int target(long value) {
+            if (dense != null) {
+                long index = value - min;
+                return index >= 0 && index < dense.length ? dense[(int) index] : defaultTarget;
+            }
+            if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+                return defaultTarget;
+            }
+            int found = Arrays.binarySearch(sortedValues, (int) value);
+            return found >= 0 ? sortedTargets[found] : defaultTarget;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder(dense != null ? "tabla [" : "búsqueda [");
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) {
+                    sb.append(", ");
+                }
+                sb.append(values[i]).append(" @").append(targets[i]);
+            }
+            return sb.append("] default @").append(defaultTarget).toString();
+        }
+    }
+
+    public final int[] code;
+    public final int[] lines; // Línea del código fuente de cada instrucción
+    public final Object[] constants;
+    public final String[] slotNames;
+
+    public Bytecode(int[] code, int[] lines, Object[] constants, String[] slotNames) {
+        this.code = code;
+        this.lines = lines;
+        this.constants = constants;
+        this.slotNames = slotNames;
+    }
+
+    public static int operandCount(int opcode) {
+        return OPERANDS[opcode];
+    }
+
+    public static String name(int opcode) {
+        return NAMES[opcode];
+    }
+
+    /**
+     * Listado legible de las instrucciones (depuración).
+     */
+    public String disassemble() {
+        StringBuilder sb = new StringBuilder();
+        for (int pc = 0; pc < code.length; pc += 1 + operandCount(code[pc])) {
+            int op = code[pc];
+            sb.append(String.format("%4d  %-14s", pc, name(op)));
+            for (int i = 1; i <= operandCount(op); i++) {
+                sb.append(' ').append(code[pc + i]);
+            }
+            if (op == CONST || op == TRACE || op == TRACE_VALUE || op == FORMAT || op == SWITCH) {
+                sb.append("    ; ").append(constants[code[pc + 1]]);
+            } else if (op == LOAD || op == STORE || op == INCREMENT || op == CALL) {
+                sb.append("    ; ").append(slotNames[code[pc + 1]]);
+            } else if (op == DEFINE) {
+                sb.append("    ; ").append(slotNames[code[pc + 1]])
+                        .append(" @").append(((Function) constants[code[pc + 2]]).entry);
+            }
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+}
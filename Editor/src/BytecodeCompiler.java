@@ -0,0 +1,703 @@
+import java.util.*;
+
+/**
+ * Traduce el AST a {@link Bytecode}.
+ *
+ * Cada nombre de variable o función recibe un slot fijo al compilar. Los
+ * bucles se compilan a saltos: la condición se evalúa con las mismas
+ * instrucciones en cada iteración en lugar de volver a recorrer los tokens.
+ * Los mensajes que muestra el análisis sintáctico se emiten con TRACE.
+ *
+ * Los cuerpos de las funciones se compilan después del programa principal.
+ * Dentro de una función, los parámetros y las variables que solo asigna el
+ * cuerpo viven en el marco de la llamada (LOAD_LOCAL / STORE_LOCAL); las que
+ * también asigna el programa principal siguen siendo globales.
+ */
+public class BytecodeCompiler {
+    private int[] code = new int[256];
+    private int[] lines = new int[256];
+    private int size = 0;
+    private int currentLine = 1;
+
+    private final List<Object> constants = new ArrayList<>();
+    private final Map<Object, Integer> constantIndex = new HashMap<>();
+    private final List<String> slotNames = new ArrayList<>();
+    private final Map<String, Integer> slots = new HashMap<>();
+    private int hiddenSlots = 0;
+
+    // Nombres que asigna el programa principal (globales)
+    private final Set<String> globals = new HashSet<>();
+    private final Deque<FunctionScope> pendingFunctions = new ArrayDeque<>();
+    private FunctionScope current; // null en el programa principal
+
+    private static final class FunctionScope {
+        final Ast.Function declaration;
+        final Bytecode.Function target;
+        final Map<String, Integer> locals = new HashMap<>();
+        final List<String> localNames = new ArrayList<>();
+
+        FunctionScope(Ast.Function declaration, Bytecode.Function target) {
+            this.declaration = declaration;
+            this.target = target;
+        }
+
+        int local(String name) {
+            Integer index = locals.get(name);
+            if (index == null) {
+                index = localNames.size();
+                localNames.add(name);
+                locals.put(name, index);
+            }
+            return index;
+        }
+    }
+
+    // Saltos pendientes de los break del bucle o switch más interno
+    private final Deque<Breakable> breakables = new ArrayDeque<>();
+
+    private static final int NO_SLOT = Integer.MIN_VALUE; // Las referencias locales son negativas
+
+    private static final class Breakable {
+        final boolean isSwitch;
+        final int matchedSlot; // Solo switch por comparaciones (referencia de variable)
+        final List<Integer> jumps = new ArrayList<>();
+
+        Breakable(boolean isSwitch, int matchedSlot) {
+            this.isSwitch = isSwitch;
+            this.matchedSlot = matchedSlot;
+        }
+    }
+
+    public Bytecode compile(Ast.Program program) {
+        collectAssigned(program.statements, globals);
+        statements(program.statements);
+        emit(Bytecode.HALT);
+
+        while (!pendingFunctions.isEmpty()) {
+            functionBody(pendingFunctions.poll());
+        }
+
+        return new Bytecode(Arrays.copyOf(code, size), Arrays.copyOf(lines, size),
+                constants.toArray(), slotNames.toArray(new String[0]));
+    }
+
+    // ==================== EMISIÓN ====================
+
+    private void emit(int opcode, int... operands) {
+        ensureCapacity(size + 1 + operands.length);
+        lines[size] = currentLine;
+        code[size++] = opcode;
+        for (int operand : operands) {
+            lines[size] = currentLine;
+            code[size++] = operand;
+        }
+    }
+
+    private void ensureCapacity(int required) {
+        if (required > code.length) {
+            int capacity = Math.max(required, code.length * 2);
+            code = Arrays.copyOf(code, capacity);
+            lines = Arrays.copyOf(lines, capacity);
+        }
+    }
+
+    // Emite un salto con destino pendiente; devuelve la posición del operando
+    private int emitJump(int opcode, int... leadingOperands) {
+        emit(opcode, append(leadingOperands, -1));
+        return size - 1;
+    }
+
+    private static int[] append(int[] values, int last) {
+        int[] result = Arrays.copyOf(values, values.length + 1);
+        result[values.length] = last;
+        return result;
+    }
+
+    private void patch(int operandPosition) {
+        code[operandPosition] = size;
+    }
+
+    private int constant(Object value) {
+        Integer index = constantIndex.get(value);
+        if (index == null) {
+            index = constants.size();
+            constants.add(value);
+            if (!(value instanceof Bytecode.Function)) {
+                constantIndex.put(value, index);
+            }
+        }
+        return index;
+    }
+
+    // Las variables del f-string se resuelven aquí y no en cada ejecución
+    private Bytecode.Format format(FormatTemplate template) {
+        int count = template.variables.length;
+        int[] globalSlots = new int[count];
+        int[] localSlots = new int[count];
+        for (int i = 0; i < count; i++) {
+            String name = template.variables[i];
+            Integer local = current != null ? current.locals.get(name) : null;
+            localSlots[i] = local != null ? local : -1;
+            globalSlots[i] = slot(name);
+        }
+        return new Bytecode.Format(template, globalSlots, localSlots);
+    }
+
+    private int slot(String name) {
+        Integer index = slots.get(name);
+        if (index == null) {
+            index = slotNames.size();
+            slotNames.add(name);
+            slots.put(name, index);
+        }
+        return index;
+    }
+
+    /**
+     * Referencia a una variable: el slot global (>= 0) o, dentro de una
+     * función, -(índice local + 1).
+     */
+    private int resolve(String name) {
+        if (current != null) {
+            Integer index = current.locals.get(name);
+            if (index != null) {
+                return -(index + 1);
+            }
+        }
+        return slot(name);
+    }
+
+    // Variable interna (valor del switch) que no choca con ningún nombre
+    private int hiddenSlot(String purpose) {
+        String name = "$" + purpose + (hiddenSlots++);
+        if (current != null) {
+            return -(current.local(name) + 1);
+        }
+        int index = slotNames.size();
+        slotNames.add(name);
+        return index;
+    }
+
+    private void emitLoad(int ref) {
+        if (ref >= 0) {
+            emit(Bytecode.LOAD, ref);
+        } else {
+            emit(Bytecode.LOAD_LOCAL, -ref - 1);
+        }
+    }
+
+    private void emitStore(int ref, int mode) {
+        if (ref >= 0) {
+            emit(Bytecode.STORE, ref, mode);
+        } else {
+            emit(Bytecode.STORE_LOCAL, -ref - 1, mode);
+        }
+    }
+
+    private void emitIncrement(int ref, int delta) {
+        if (ref >= 0) {
+            emit(Bytecode.INCREMENT, ref, delta);
+        } else {
+            emit(Bytecode.INCREMENT_LOCAL, -ref - 1, delta);
+        }
+    }
+
+    private void trace(TraceLevel level, String message) {
+        emit(Bytecode.TRACE, constant(message), level.ordinal());
+    }
+
+    // Traza con el valor del tope de la pila (una condición, el valor del switch)
+    private void traceValue(TraceLevel level, String prefix) {
+        emit(Bytecode.TRACE_VALUE, constant(prefix), level.ordinal());
+    }
+
+    // ==================== SENTENCIAS ====================
+
+    private void statements(List<Ast.Stmt> statements) {
+        for (Ast.Stmt statement : statements) {
+            statement(statement);
+        }
+    }
+
+    private void statement(Ast.Stmt statement) {
+        currentLine = statement.line();
+
+        switch (statement.kind) {
+            case ASSIGN:
+                Ast.Assign assign = (Ast.Assign) statement;
+                expression(assign.value);
+                emitStore(resolve(assign.name), Bytecode.STORE_DECLARE);
+                break;
+
+            case INCREMENT:
+                Ast.Increment increment = (Ast.Increment) statement;
+                emitIncrement(resolve(increment.name), increment.increment ? 1 : -1);
+                break;
+
+            case PRINT:
+                Ast.Print print = (Ast.Print) statement;
+                for (Ast.Expr argument : print.arguments) {
+                    expression(argument);
+                }
+                emit(Bytecode.PRINT, print.arguments.size(), print.newline ? 1 : 0);
+                break;
+
+            case IF:
+                conditional((Ast.If) statement);
+                break;
+
+            case WHILE:
+                whileLoop((Ast.While) statement);
+                break;
+
+            case FOR:
+                forLoop((Ast.For) statement);
+                break;
+
+            case DO_WHILE:
+                doWhileLoop((Ast.DoWhile) statement);
+                break;
+
+            case SWITCH:
+                switchStatement((Ast.Switch) statement);
+                break;
+
+            case BREAK:
+                breakStatement();
+                break;
+
+            case RETURN:
+                Ast.Return ret = (Ast.Return) statement;
+                if (ret.value != null) {
+                    expression(ret.value);
+                    emit(Bytecode.RETURN, Bytecode.RETURN_VALUE);
+                } else {
+                    emit(Bytecode.RETURN, Bytecode.RETURN_EMPTY);
+                }
+                break;
+
+            case FUNCTION:
+                Ast.Function function = (Ast.Function) statement;
+                trace(TraceLevel.STATEMENTS, "📋 Declarando función: " + function.name);
+                trace(TraceLevel.FULL, "   Parámetros: " + function.parameters);
+                Bytecode.Function target = new Bytecode.Function(function.name, function.parameters);
+                pendingFunctions.add(new FunctionScope(function, target));
+                emit(Bytecode.DEFINE, slot(function.name), constant(target));
+                trace(TraceLevel.FULL, "   Cuerpo de función registrado");
+                break;
+
+            case EXPRESSION:
+                Ast.Expr expression = ((Ast.ExpressionStmt) statement).expression;
+                expression(expression);
+                // Las llamadas sueltas (foo(1)) ya describen su ejecución
+                boolean call = expression.kind == Ast.Kind.CALL && !expression.parenthesized;
+                emit(call ? Bytecode.POP : Bytecode.EXPRESSION);
+                break;
+
+            default:
+                break;
+        }
+    }
+
+    private void conditional(Ast.If conditional) {
+        List<Integer> exits = new ArrayList<>();
+
+        for (int i = 0; i < conditional.branches.size(); i++) {
+            Ast.Branch branch = conditional.branches.get(i);
+            currentLine = branch.condition.line();
+            expression(branch.condition);
+            traceValue(TraceLevel.STATEMENTS, i == 0 ? "🔍 Condición IF: " : "🔍 Condición ELSE IF: ");
+            int next = emitJump(Bytecode.JUMP_IF_FALSE);
+            statements(branch.body);
+            exits.add(emitJump(Bytecode.JUMP));
+            patch(next);
+        }
+
+        if (conditional.elseBody != null) {
+            trace(TraceLevel.STATEMENTS, "🔍 Bloque ELSE");
+            statements(conditional.elseBody);
+        }
+
+        for (int exit : exits) {
+            patch(exit);
+        }
+    }
+
+    private void whileLoop(Ast.While loop) {
+        expression(loop.condition);
+        traceValue(TraceLevel.STATEMENTS, "🔄 Iniciando bucle WHILE: ");
+
+        int top = size;
+        int exit = emitJump(Bytecode.JUMP_IF_FALSE);
+        Breakable breakable = enterBreakable(false, NO_SLOT);
+        statements(loop.body);
+        breakables.pop();
+
+        currentLine = loop.line();
+        expression(loop.condition);
+        emit(Bytecode.JUMP, top);
+
+        patch(exit);
+        trace(TraceLevel.STATEMENTS, "🔄 Bucle WHILE terminado (condición falsa)");
+        patchBreaks(breakable);
+    }
+
+    private void forLoop(Ast.For loop) {
+        trace(TraceLevel.STATEMENTS, "🔄 Iniciando bucle FOR");
+
+        // 1. INICIALIZACIÓN
+        if (loop.init != null) {
+            statement(loop.init);
+        }
+
+        // 2. CONDICIÓN (sin condición = siempre verdadera)
+        int top = size;
+        currentLine = loop.line();
+        if (loop.condition != null) {
+            expression(loop.condition);
+        } else {
+            emit(Bytecode.CONST, constant(Boolean.TRUE));
+        }
+        traceValue(TraceLevel.FULL, "🔍 Condición FOR: ");
+        int exit = emitJump(Bytecode.JUMP_IF_FALSE);
+
+        Breakable breakable = enterBreakable(false, NO_SLOT);
+        statements(loop.body);
+        breakables.pop();
+
+        // 3. INCREMENTO
+        if (loop.update != null) {
+            if (loop.update.kind == Ast.Kind.ASSIGN) {
+                Ast.Assign update = (Ast.Assign) loop.update;
+                currentLine = update.line();
+                expression(update.value);
+                emitStore(resolve(update.name), Bytecode.STORE_INCREMENT);
+            } else if (loop.update.kind == Ast.Kind.INCREMENT) {
+                statement(loop.update);
+            } else {
+                currentLine = loop.update.line();
+                expression(((Ast.ExpressionStmt) loop.update).expression);
+                emit(Bytecode.POP);
+            }
+        }
+        emit(Bytecode.JUMP, top);
+
+        patch(exit);
+        patchBreaks(breakable);
+    }
+
+    private void doWhileLoop(Ast.DoWhile loop) {
+        trace(TraceLevel.STATEMENTS, "🔄 Iniciando bucle DO-WHILE");
+
+        // EJECUTAR BLOQUE (siempre se ejecuta al menos una vez)
+        int top = size;
+        Breakable breakable = enterBreakable(false, NO_SLOT);
+        statements(loop.body);
+        breakables.pop();
+
+        currentLine = loop.condition.line();
+        expression(loop.condition);
+        traceValue(TraceLevel.FULL, "🔍 Condición DO-WHILE: ");
+        // Un solo salto por iteración: vuelve arriba mientras la condición sea verdadera
+        emit(Bytecode.JUMP_IF_TRUE, top);
+
+        trace(TraceLevel.STATEMENTS, "🔄 DO-WHILE: La condición es falsa - bucle terminado");
+        patchBreaks(breakable);
+    }
+
+    /**
+     * Se evalúan todas las etiquetas en orden; solo se ejecuta el primer caso
+     * que coincide (o el default si ninguno coincidió antes) y un break salta
+     * a la prueba del siguiente caso.
+     */
+    private void switchStatement(Ast.Switch switchStmt) {
+        int[] values = switchStmt.integerLabels();
+        if (values != null && values.length >= Ast.Switch.MIN_TABLE_CASES) {
+            switchTable(switchStmt, values);
+            return;
+        }
+
+        int subject = hiddenSlot("switch");
+        int matched = hiddenSlot("coincidio");
+
+        expression(switchStmt.subject);
+        traceValue(TraceLevel.STATEMENTS, "🔀 Iniciando SWITCH: ");
+        emitStore(subject, Bytecode.STORE_SILENT);
+        emit(Bytecode.CONST, constant(Boolean.FALSE));
+        emitStore(matched, Bytecode.STORE_SILENT);
+
+        for (Ast.Case switchCase : switchStmt.cases) {
+            currentLine = switchCase.span.line;
+            int next;
+            if (switchCase.isDefault()) {
+                trace(TraceLevel.FULL, "   🔍 Caso DEFAULT");
+                emitLoad(matched);
+                emit(Bytecode.NOT);
+                next = emitJump(Bytecode.JUMP_IF_FALSE);
+                trace(TraceLevel.FULL, "   🚀 Ejecutando DEFAULT...");
+            } else {
+                emitLoad(subject);
+                expression(switchCase.label);
+                emit(Bytecode.CASE);
+                emitLoad(matched);
+                emit(Bytecode.NOT);
+                emit(Bytecode.AND);
+                next = emitJump(Bytecode.JUMP_IF_FALSE);
+                trace(TraceLevel.FULL, "   🚀 Ejecutando caso...");
+                emit(Bytecode.CONST, constant(Boolean.TRUE));
+                emitStore(matched, Bytecode.STORE_SILENT);
+            }
+
+            Breakable breakable = enterBreakable(true, matched);
+            statements(switchCase.body);
+            breakables.pop();
+
+            patch(next);
+            patchBreaks(breakable);
+        }
+
+        trace(TraceLevel.STATEMENTS, "🔀 SWITCH terminado");
+    }
+
+    /**
+     * Casos enteros: una sola instrucción SWITCH salta directo al caso que
+     * coincide (o al default) sin probar las etiquetas una por una. La traza
+     * solo muestra el caso elegido.
+     */
+    private void switchTable(Ast.Switch switchStmt, int[] values) {
+        Bytecode.SwitchTable table = new Bytecode.SwitchTable(values);
+
+        expression(switchStmt.subject);
+        traceValue(TraceLevel.STATEMENTS, "🔀 Iniciando SWITCH: ");
+        emit(Bytecode.SWITCH, constant(table));
+
+        Breakable breakable = enterBreakable(true, NO_SLOT);
+        List<Integer> ends = new ArrayList<>();
+        int valueIndex = 0;
+        for (int i = 0; i < switchStmt.cases.size(); i++) {
+            Ast.Case switchCase = switchStmt.cases.get(i);
+            currentLine = switchCase.span.line;
+            if (switchCase.isDefault()) {
+                table.defaultTarget = size;
+                trace(TraceLevel.STATEMENTS, "   🔍 Caso DEFAULT");
+                trace(TraceLevel.FULL, "   🚀 Ejecutando DEFAULT...");
+            } else {
+                table.targets[valueIndex] = size;
+                trace(TraceLevel.STATEMENTS, "   🔍 Caso: " + values[valueIndex++] + " -> ✅ COINCIDE");
+                trace(TraceLevel.FULL, "   🚀 Ejecutando caso...");
+            }
+
+            statements(switchCase.body);
+            if (i + 1 < switchStmt.cases.size()) {
+                ends.add(emitJump(Bytecode.JUMP));
+            }
+        }
+        breakables.pop();
+
+        if (table.defaultTarget < 0) {
+            table.defaultTarget = size;
+        }
+        table.seal();
+        for (int end : ends) {
+            patch(end);
+        }
+        patchBreaks(breakable);
+        trace(TraceLevel.STATEMENTS, "🔀 SWITCH terminado");
+    }
+
+    // ==================== FUNCIONES ====================
+
+    private void functionBody(FunctionScope scope) {
+        current = scope;
+        Ast.Function function = scope.declaration;
+
+        // Parámetros primero: la llamada los copia a los primeros slots del marco
+        for (String parameter : function.parameters) {
+            scope.local(parameter);
+        }
+        Set<String> assigned = new LinkedHashSet<>();
+        collectAssigned(function.body, assigned);
+        for (String name : assigned) {
+            if (!globals.contains(name)) {
+                scope.local(name);
+            }
+        }
+
+        currentLine = function.line();
+        scope.target.entry = size;
+        statements(function.body);
+        emit(Bytecode.RETURN, Bytecode.RETURN_END);
+
+        scope.target.localNames = scope.localNames.toArray(new String[0]);
+        current = null;
+    }
+
+    // Nombres asignados en un bloque (sin entrar a funciones anidadas)
+    private static void collectAssigned(List<Ast.Stmt> statements, Set<String> out) {
+        for (Ast.Stmt statement : statements) {
+            collectAssigned(statement, out);
+        }
+    }
+
+    private static void collectAssigned(Ast.Stmt statement, Set<String> out) {
+        if (statement == null)
+            return;
+
+        switch (statement.kind) {
+            case ASSIGN:
+                out.add(((Ast.Assign) statement).name);
+                break;
+            case INCREMENT:
+                out.add(((Ast.Increment) statement).name);
+                break;
+            case IF:
+                Ast.If conditional = (Ast.If) statement;
+                for (Ast.Branch branch : conditional.branches) {
+                    collectAssigned(branch.body, out);
+                }
+                if (conditional.elseBody != null) {
+                    collectAssigned(conditional.elseBody, out);
+                }
+                break;
+            case WHILE:
+                collectAssigned(((Ast.While) statement).body, out);
+                break;
+            case DO_WHILE:
+                collectAssigned(((Ast.DoWhile) statement).body, out);
+                break;
+            case FOR:
+                Ast.For loop = (Ast.For) statement;
+                collectAssigned(loop.init, out);
+                collectAssigned(loop.update, out);
+                collectAssigned(loop.body, out);
+                break;
+            case SWITCH:
+                for (Ast.Case switchCase : ((Ast.Switch) statement).cases) {
+                    collectAssigned(switchCase.body, out);
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    private Breakable enterBreakable(boolean isSwitch, int matchedSlot) {
+        Breakable breakable = new Breakable(isSwitch, matchedSlot);
+        breakables.push(breakable);
+        return breakable;
+    }
+
+    private void patchBreaks(Breakable breakable) {
+        for (int jump : breakable.jumps) {
+            patch(jump);
+        }
+    }
+
+    private void breakStatement() {
+        Breakable target = breakables.peek();
+        if (target == null) {
+            // Fuera de un bucle o switch no hay a dónde saltar
+            trace(TraceLevel.FULL, "⏹️  Break ejecutado");
+            return;
+        }
+
+        if (target.isSwitch) {
+            trace(TraceLevel.FULL, "   ⏹️  Break en SWITCH - saliendo del switch");
+            if (target.matchedSlot != NO_SLOT) {
+                emit(Bytecode.CONST, constant(Boolean.TRUE));
+                emitStore(target.matchedSlot, Bytecode.STORE_SILENT); // Prevenir que otros casos se ejecuten
+            }
+        } else {
+            trace(TraceLevel.FULL, "⏹️  Break ejecutado");
+        }
+        target.jumps.add(emitJump(Bytecode.JUMP));
+    }
+
+    // ==================== EXPRESIONES ====================
+
+    private void expression(Ast.Expr expression) {
+        switch (expression.kind) {
+            case NUMBER:
+                emit(Bytecode.CONST, constant(((Ast.NumberLiteral) expression).value()));
+                break;
+
+            case STRING:
+                emit(Bytecode.CONST, constant(((Ast.StringLiteral) expression).value()));
+                break;
+
+            case FORMATTED_STRING:
+                emit(Bytecode.FORMAT, constant(format(((Ast.FormattedString) expression).template)));
+                break;
+
+            case BOOLEAN:
+                emit(Bytecode.CONST, constant(((Ast.BooleanLiteral) expression).value));
+                break;
+
+            case VARIABLE:
+                int line = currentLine;
+                currentLine = expression.line();
+                emitLoad(resolve(((Ast.Variable) expression).name));
+                currentLine = line;
+                break;
+
+            case BINARY:
+                Ast.Binary binary = (Ast.Binary) expression;
+                expression(binary.left);
+                expression(binary.right);
+                emit(binaryOpcode(binary.operator));
+                break;
+
+            case UNARY:
+                Ast.Unary unary = (Ast.Unary) expression;
+                expression(unary.operand);
+                emit(unary.operator == TokenType.MINUS ? Bytecode.NEG
+                        : unary.operator == TokenType.NOT ? Bytecode.NOT : Bytecode.POS);
+                break;
+
+            case CALL:
+                Ast.Call call = (Ast.Call) expression;
+                trace(TraceLevel.STATEMENTS, "🔹 Llamando función: " + call.name);
+                for (Ast.Expr argument : call.arguments) {
+                    expression(argument);
+                }
+                emit(Bytecode.CALL, slot(call.name), call.arguments.size());
+                break;
+
+            default:
+                break;
+        }
+    }
+
+    private int binaryOpcode(TokenType operator) {
+        switch (operator) {
+            case PLUS:
+                return Bytecode.ADD;
+            case MINUS:
+                return Bytecode.SUB;
+            case MULTIPLY:
+                return Bytecode.MUL;
+            case DIVIDE:
+                return Bytecode.DIV;
+            case MODULO:
+                return Bytecode.MOD;
+            case EQUALS:
+                return Bytecode.EQ;
+            case NOT_EQUALS:
+                return Bytecode.NE;
+            case LESS:
+                return Bytecode.LT;
+            case GREATER:
+                return Bytecode.GT;
+            case LESS_EQUAL:
+                return Bytecode.LE;
+            case GREATER_EQUAL:
+                return Bytecode.GE;
+            case AND:
+                return Bytecode.AND;
+            case OR:
+                return Bytecode.OR;
+            default:
+                throw new IllegalArgumentException("Operador inválido: " + operator);
+        }
+    }
+}
@@ -27,6 +27,7 @@ public class CodeEditor {
     private File rootDir = new File(System.getProperty("user.home") + File.separator + "code-workspace");
     private final FileSystemView fileSystemView = FileSystemView.getFileSystemView();
     private Map<File, JTextPane> openFiles = new HashMap<>();
+    private Map<JTextPane, Lexer> lexers = new HashMap<>(); // Tokens de cada pestaña, al día con cada edición
     private SemanticAnalyzer semanticAnalyzer;
 
     private final Color COLOR_FONDO = new Color(135, 206, 250);
@@ -48,6 +49,7 @@ public class CodeEditor {
             e.printStackTrace();
         }
         this.compilationManager = new CompilationManager();
+        this.compilationManager.setTraceLevel(TraceLevel.FULL); // La consola muestra la traza completa
         JFrame frame = new JFrame("Professional Code Editor");
         frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
         frame.setSize(1200, 800);
@@ -113,7 +115,9 @@ public class CodeEditor {
 
                     try {
                         // ✅ USAR COMPILATION MANAGER PARA OBTENER TODO EL ANÁLISIS
-                        CompilationManager.CompilationResult result = compilationManager.compile(codigo);
+                        Lexer lexer = lexers.get(currentPane);
+                        CompilationManager.CompilationResult result = compilationManager.compile(codigo,
+                                lexer != null ? lexer.getTokens() : null);
 
                         if (consoleTextPane == null) {
                             consoleTextPane = new JTextPane();
@@ -836,12 +840,19 @@ public class CodeEditor {
         scrollPane.setRowHeaderView(lineNumbers);
         scrollPane.setBorder(BorderFactory.createEmptyBorder());
 
+        Lexer lexer = new Lexer("");
+        lexer.tokenizeToBuffer();
+        lexers.put(textPane, lexer);
+
         textPane.getDocument().addDocumentListener(new DocumentListener() {
             public void insertUpdate(DocumentEvent e) {
+                // ✅ Re-escanear solo la zona editada
+                lexer.relex(textoDocumento(textPane), e.getOffset(), 0, e.getLength());
                 actualizarUI(textPane, lineNumbers);
             }
 
             public void removeUpdate(DocumentEvent e) {
+                lexer.relex(textoDocumento(textPane), e.getOffset(), e.getLength(), 0);
                 actualizarUI(textPane, lineNumbers);
             }
 
@@ -893,6 +904,7 @@ public class CodeEditor {
 
         closeBtn.addActionListener(e -> {
             openFiles.remove(file);
+            lexers.remove(textPane);
             tabbedPane.remove(tabPanel);
         });
 
@@ -908,6 +920,15 @@ public class CodeEditor {
         actualizarUI(textPane, lineNumbers);
     }
 
+    // Texto del documento tal cual (los offsets de DocumentEvent se refieren a él)
+    private String textoDocumento(JTextPane editor) {
+        try {
+            return editor.getDocument().getText(0, editor.getDocument().getLength());
+        } catch (javax.swing.text.BadLocationException ex) {
+            return editor.getText();
+        }
+    }
+
     private void actualizarUI(JTextPane editor, JTextPane lineNumbers) {
         String content = editor.getText();
         if (eastTextPane != null) {
@@ -4,15 +4,45 @@ import java.util.*;
  * Coordinador principal de todo el proceso de compilación
  */
 public class CompilationManager {
+    private static final int PARALLEL_LEXING_THRESHOLD = 2 * 1024 * 1024;
+
     private ErrorManager errorManager;
     private SemanticAnalyzer semanticAnalyzer;
+    private ExecutionBudget executionBudget = ExecutionBudget.DEFAULT;
+    private TraceLevel traceLevel = TraceLevel.OFF;
 
     public CompilationManager() {
         this.errorManager = new ErrorManager();
         this.semanticAnalyzer = new SemanticAnalyzer(errorManager);
     }
 
+    /**
+     * Límites (instrucciones, tiempo, memoria) con los que se simula el programa
+     * durante el análisis sintáctico.
+     */
+    public void setExecutionBudget(ExecutionBudget executionBudget) {
+        this.executionBudget = executionBudget;
+    }
+
+    /**
+     * Detalle de la traza de ejecución que se devuelve como salida del análisis
+     * sintáctico. Con OFF (por defecto) el programa se ejecuta sin armar traza;
+     * lo que imprime el programa se devuelve con cualquier nivel.
+     */
+    public void setTraceLevel(TraceLevel traceLevel) {
+        this.traceLevel = traceLevel;
+    }
+
     public CompilationResult compile(String sourceCode) {
+        return compile(sourceCode, null);
+    }
+
+    /**
+     * Igual que compile(sourceCode), pero reutiliza los tokens que el editor ya
+     * mantiene al día con el re-escaneo incremental si corresponden al mismo
+     * texto.
+     */
+    public CompilationResult compile(String sourceCode, TokenBuffer preLexedTokens) {
         errorManager.clearErrors();
         semanticAnalyzer.clear();
 
@@ -22,10 +52,17 @@ public class CompilationManager {
         // 1️⃣ ANÁLISIS LÉXICO
         System.out.println("1️⃣  ANALIZANDO LÉXICO...");
         Lexer lexer = new Lexer(sourceCode, errorManager);
-        List<Token> tokens = null;
+        TokenBuffer tokens = null;
 
         try {
-            tokens = lexer.tokenize();
+            if (preLexedTokens != null && preLexedTokens.getSource().equals(sourceCode)) {
+                tokens = preLexedTokens;
+            } else if (sourceCode.length() >= PARALLEL_LEXING_THRESHOLD) {
+                // Programas generados muy grandes: escanear por trozos en paralelo
+                tokens = lexer.tokenizeParallel();
+            } else {
+                tokens = lexer.tokenizeToBuffer();
+            }
             System.out.println("   ✅ Tokens generados: " + tokens.size());
         } catch (Exception e) {
             System.out.println("   ❌ Error en análisis léxico: " + e.getMessage());
@@ -35,32 +72,46 @@ public class CompilationManager {
             System.out.println("   ⚠️  Errores léxicos encontrados: " + errorManager.getLexicalErrors().size());
         }
 
-        // 🚀 OPTIMIZACIÓN DE CÓDIGO (TOKENS)
-        // Nota: Mantenemos la optimización de tokens existente si se desea,
-        // pero la optimización principal pedida suele ser sobre el código intermedio.
-        if (tokens != null && !errorManager.hasLexicalErrors()) {
-            Optimizer optimizer = new Optimizer();
-            tokens = optimizer.optimize(tokens);
-        }
-
-        // 2️⃣ ANÁLISIS SINTÁCTICO
+        // 2️⃣ ANÁLISIS SINTÁCTICO: el AST se construye una sola vez y lo usan todas
+        // las fases siguientes
         String syntacticOutput = "";
+        VirtualMachine.Result execution = null;
+        Ast.Program program = null;
         if (tokens != null && !errorManager.hasLexicalErrors()) {
             System.out.println("2️⃣  ANALIZANDO SINTÁCTICO...");
-            Parser parser = new Parser(tokens, semanticAnalyzer, errorManager);
-
-            try {
-                syntacticOutput = parser.parse();
-                if (!errorManager.hasSyntacticErrors()) {
-                    System.out.println("   ✅ Análisis sintáctico completado exitosamente");
-                } else {
-                    System.out.println("   ⚠️  Análisis sintáctico completado con errores: "
-                            + errorManager.getSyntacticErrors().size());
+            AstBuilder builder = new AstBuilder(tokens, errorManager);
+            program = builder.build();
+
+            if (builder.failed()) {
+                System.out.println("   ❌ Error en análisis sintáctico: " + builder.getFailure());
+                syntacticOutput = "❌ Error durante el análisis sintáctico: " + builder.getFailure();
+            } else {
+                // 🚀 OPTIMIZACIÓN DEL AST (plegado de constantes, código muerto)
+                Optimizer optimizer = new Optimizer();
+                program = optimizer.optimize(program);
+
+                Parser parser = new Parser(program, semanticAnalyzer, errorManager);
+                parser.setExecutionBudget(executionBudget);
+                if (traceLevel != TraceLevel.OFF) {
+                    parser.setTraceSink(new RingTraceSink(traceLevel));
                 }
-            } catch (Exception e) {
-                System.out.println("   ❌ Error en análisis sintáctico: " + e.getMessage());
-                if (!errorManager.hasSyntacticErrors()) {
-                    errorManager.addSyntacticError("Error durante el análisis sintáctico", 1, 1, e.getMessage());
+                try {
+                    syntacticOutput = parser.parse();
+                    execution = parser.getExecutionResult();
+                    if (execution != null && execution.isBudgetExhausted()) {
+                        System.out.println("   ⚠️  Ejecución detenida: " + execution.describe());
+                    }
+                    if (!errorManager.hasSyntacticErrors()) {
+                        System.out.println("   ✅ Análisis sintáctico completado exitosamente");
+                    } else {
+                        System.out.println("   ⚠️  Análisis sintáctico completado con errores: "
+                                + errorManager.getSyntacticErrors().size());
+                    }
+                } catch (Exception e) {
+                    System.out.println("   ❌ Error en análisis sintáctico: " + e.getMessage());
+                    if (!errorManager.hasSyntacticErrors()) {
+                        errorManager.addSyntacticError("Error durante el análisis sintáctico", 1, 1, e.getMessage());
+                    }
                 }
             }
         } else {
@@ -69,12 +120,12 @@ public class CompilationManager {
 
         // 3️⃣ ANÁLISIS SEMÁNTICO
         String semanticOutput = "";
-        if (tokens != null && !errorManager.hasLexicalErrors()) {
+        if (program != null) {
             System.out.println("3️⃣  ANALIZANDO SEMÁNTICO...");
 
             try {
                 // ✅ LLAMAR AL MÉTODO LOCAL EN VEZ DEL DE CodeEditor
-                boolean semanticValid = performSemanticAnalysis(tokens, semanticAnalyzer);
+                boolean semanticValid = performSemanticAnalysis(program, semanticAnalyzer);
 
                 if (semanticValid && !errorManager.hasSemanticErrors()) {
                     System.out.println("   ✅ Análisis semántico completado exitosamente");
@@ -102,11 +153,11 @@ public class CompilationManager {
         List<TACInstruction> tacInstructions = new ArrayList<>();
         List<TACInstruction> optimizedInstructions = new ArrayList<>();
 
-        if (tokens != null && !errorManager.hasErrors()) {
+        if (program != null && !errorManager.hasErrors()) {
             System.out.println("4️⃣  GENERANDO CÓDIGO DE TRES DIRECCIONES...");
             try {
                 // Generar TAC
-                TACGenerator tacGenerator = new TACGenerator(tokens);
+                TACGenerator tacGenerator = new TACGenerator(program);
                 tacInstructions = tacGenerator.generate();
 
                 tacOutput.append("=== CÓDIGO DE TRES DIRECCIONES ===\n");
@@ -149,266 +200,408 @@ public class CompilationManager {
 
         return new CompilationResult(tokens, syntacticOutput, semanticOutput,
                 tacOutput.toString(), optimizedTacOutput.toString(), assemblyOutput.toString(),
-                errorManager, tacInstructions, optimizedInstructions);
+                errorManager, tacInstructions, optimizedInstructions, execution);
     }
 
     /**
-     * ✅ MÉTODO COPIADO DE CodeEditor - Realiza el análisis semántico
+     * ✅ Realiza el análisis semántico recorriendo el AST.
+     *
+     * Conserva las reglas que antes se aplicaban sobre tokens vecinos: el valor
+     * de una asignación se infiere de su primer operando y cada operador
+     * compara los operandos que tiene justo a su izquierda y a su derecha.
      */
-    private boolean performSemanticAnalysis(List<Token> tokens, SemanticAnalyzer semanticAnalyzer) {
+    private boolean performSemanticAnalysis(Ast.Program program, SemanticAnalyzer semanticAnalyzer) {
         try {
-            boolean inFunction = false;
-            String currentFunction = null;
-            List<String> functionParams = new ArrayList<>();
-
             // ✅ PRIMERA PASADA: Declarar todas las variables (SOLO la primera asignación)
-            for (int i = 0; i < tokens.size(); i++) {
-                Token token = tokens.get(i);
-
-                if (token.type == TokenType.FUNCTION) {
-                    inFunction = true;
-                    if (i + 1 < tokens.size() && tokens.get(i + 1).type == TokenType.IDENTIFIER) {
-                        currentFunction = tokens.get(i + 1).value;
-                        i++;
+            List<Ast.Node> globals = new ArrayList<>();
+            sourceOrder(program.statements, false, globals);
+
+            for (Ast.Node node : globals) {
+                if (node.kind == Ast.Kind.FUNCTION) {
+                    Ast.Function function = (Ast.Function) node;
+                    for (String paramName : function.parameters) {
+                        semanticAnalyzer.declareVariable(paramName, "unknown", function.line());
                     }
-                    continue;
-                }
-
-                if (token.type == TokenType.RBRACE && inFunction) {
-                    inFunction = false;
-                    currentFunction = null;
-                    functionParams.clear();
+                    semanticAnalyzer.enterScope("func_" + function.name);
                     semanticAnalyzer.exitScope();
                     continue;
                 }
 
-                if (inFunction && currentFunction != null && token.type == TokenType.LPAREN) {
-                    int j = i + 1;
-                    while (j < tokens.size() && tokens.get(j).type != TokenType.RPAREN) {
-                        if (tokens.get(j).type == TokenType.IDENTIFIER) {
-                            String paramName = tokens.get(j).value;
-                            functionParams.add(paramName);
-                            if (!semanticAnalyzer.isReservedWord(paramName)) {
-                                semanticAnalyzer.declareVariable(paramName, "unknown", tokens.get(j).line);
-                            }
+                // ✅ DECLARACIÓN DE VARIABLES - SOLO si no estamos en una función
+                if (node.kind == Ast.Kind.ASSIGN) {
+                    Ast.Assign assign = (Ast.Assign) node;
+
+                    // ✅ VERIFICAR si la variable YA EXISTE (es reasignación, no declaración)
+                    if (!semanticAnalyzer.variableExists(assign.name)) {
+                        Object value = extractValue(firstOperand(assign.value));
+
+                        if (value != null) {
+                            // ✅ SOLO declarar si no existe
+                            semanticAnalyzer.checkDeclaration(assign.name, value, assign.line());
+                        } else {
+                            semanticAnalyzer.declareVariable(assign.name, "unknown", assign.line());
                         }
-                        j++;
                     }
-                    continue;
                 }
+            }
 
-                // ✅ DECLARACIÓN DE VARIABLES - SOLO si no estamos en una función
-                if (!inFunction && token.type == TokenType.IDENTIFIER && i + 2 < tokens.size()) {
-                    Token next = tokens.get(i + 1);
-                    Token nextNext = tokens.get(i + 2);
-
-                    if (next.type == TokenType.ASSIGN) {
-                        String identifier = token.value;
-
-                        if (!semanticAnalyzer.isReservedWord(identifier)) {
-                            // ✅ VERIFICAR si la variable YA EXISTE (es reasignación, no declaración)
-                            if (!semanticAnalyzer.variableExists(identifier)) {
-                                Object value = extractValueFromToken(nextNext);
-
-                                if (value != null) {
-                                    // ✅ SOLO declarar si no existe
-                                    semanticAnalyzer.checkDeclaration(identifier, value, token.line);
-                                } else {
-                                    semanticAnalyzer.declareVariable(identifier, "unknown", token.line);
-                                }
-                            }
-                            // Si ya existe, no hacemos nada aquí (se manejará en reasignaciones)
+            // ✅ SEGUNDA PASADA: Manejar REASIGNACIONES y operaciones
+            List<Ast.Node> nodes = new ArrayList<>();
+            sourceOrder(program.statements, true, nodes);
+
+            for (Ast.Node node : nodes) {
+                if (node.kind == Ast.Kind.ASSIGN) {
+                    Ast.Assign assign = (Ast.Assign) node;
+                    Object value = extractValue(firstOperand(assign.value));
+
+                    if (value != null) {
+                        if (semanticAnalyzer.variableExists(assign.name)) {
+                            // ✅ ES UNA REASIGNACIÓN
+                            semanticAnalyzer.checkAssignment(assign.name, value, assign.line());
+                        } else {
+                            // ✅ ES UNA DECLARACIÓN TARDÍA (no se detectó en primera pasada)
+                            semanticAnalyzer.checkDeclaration(assign.name, value, assign.line());
                         }
                     }
+                } else if (node instanceof Ast.Expr) {
+                    checkOperations((Ast.Expr) node, semanticAnalyzer);
                 }
+            }
 
-                if (token.type == TokenType.LBRACE && currentFunction != null) {
-                    semanticAnalyzer.enterScope("func_" + currentFunction);
+            // ✅ TERCERA PASADA: Verificar uso de variables no inicializadas
+            Ast.Assign lastAssign = null;
+            for (Ast.Node node : nodes) {
+                switch (node.kind) {
+                    case ASSIGN:
+                        lastAssign = (Ast.Assign) node;
+                        checkInitialized(lastAssign.name, node.line(), semanticAnalyzer);
+                        break;
+                    case INCREMENT:
+                        checkInitialized(((Ast.Increment) node).name, node.line(), semanticAnalyzer);
+                        break;
+                    case FUNCTION:
+                        Ast.Function function = (Ast.Function) node;
+                        checkInitialized(function.name, function.line(), semanticAnalyzer);
+                        for (String paramName : function.parameters) {
+                            checkInitialized(paramName, function.line(), semanticAnalyzer);
+                        }
+                        break;
+                    default:
+                        // Lo que sigue a '=' no se verifica (igual que antes con los tokens)
+                        Ast.Expr skip = lastAssign != null && lastAssign.value == node
+                                ? firstOperand(lastAssign.value)
+                                : null;
+                        checkUses((Ast.Expr) node, skip, semanticAnalyzer);
                 }
             }
 
-            // ✅ SEGUNDA PASADA: Manejar REASIGNACIONES y operaciones
-            for (int i = 0; i < tokens.size() - 2; i++) {
-                Token token = tokens.get(i);
-
-                // ✅ DETECTAR REASIGNACIONES de variables existentes
-                if (token.type == TokenType.IDENTIFIER && i + 2 < tokens.size()) {
-                    Token next = tokens.get(i + 1);
-                    Token nextNext = tokens.get(i + 2);
-
-                    if (next.type == TokenType.ASSIGN) {
-                        String identifier = token.value;
-
-                        if (!semanticAnalyzer.isReservedWord(identifier)) {
-                            Object value = extractValueFromToken(nextNext);
-
-                            if (value != null) {
-                                if (semanticAnalyzer.variableExists(identifier)) {
-                                    // ✅ ES UNA REASIGNACIÓN
-                                    semanticAnalyzer.checkAssignment(identifier, value, token.line);
-                                } else {
-                                    // ✅ ES UNA DECLARACIÓN TARDÍA (no se detectó en primera pasada)
-                                    semanticAnalyzer.checkDeclaration(identifier, value, token.line);
-                                }
-                            }
+            return !semanticAnalyzer.hasErrors();
+
+        } catch (Exception e) {
+            System.err.println("Error en análisis semántico: " + e.getMessage());
+            e.printStackTrace();
+            semanticAnalyzer.addError("Error durante el análisis semántico: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Aplana el programa en el orden del código fuente: asignaciones,
+     * incrementos, funciones y las expresiones raíz de cada sentencia. El
+     * valor de una asignación va justo después de la asignación.
+     */
+    private void sourceOrder(List<Ast.Stmt> statements, boolean intoFunctions, List<Ast.Node> out) {
+        for (Ast.Stmt statement : statements) {
+            switch (statement.kind) {
+                case ASSIGN:
+                    out.add(statement);
+                    out.add(((Ast.Assign) statement).value);
+                    break;
+                case INCREMENT:
+                    out.add(statement);
+                    break;
+                case PRINT:
+                    out.addAll(((Ast.Print) statement).arguments);
+                    break;
+                case IF:
+                    Ast.If conditional = (Ast.If) statement;
+                    for (Ast.Branch branch : conditional.branches) {
+                        out.add(branch.condition);
+                        sourceOrder(branch.body, intoFunctions, out);
+                    }
+                    if (conditional.elseBody != null) {
+                        sourceOrder(conditional.elseBody, intoFunctions, out);
+                    }
+                    break;
+                case WHILE:
+                    out.add(((Ast.While) statement).condition);
+                    sourceOrder(((Ast.While) statement).body, intoFunctions, out);
+                    break;
+                case DO_WHILE:
+                    sourceOrder(((Ast.DoWhile) statement).body, intoFunctions, out);
+                    out.add(((Ast.DoWhile) statement).condition);
+                    break;
+                case FOR:
+                    Ast.For loop = (Ast.For) statement;
+                    if (loop.init != null) {
+                        sourceOrder(Collections.singletonList(loop.init), intoFunctions, out);
+                    }
+                    if (loop.condition != null) {
+                        out.add(loop.condition);
+                    }
+                    if (loop.update != null) {
+                        sourceOrder(Collections.singletonList(loop.update), intoFunctions, out);
+                    }
+                    sourceOrder(loop.body, intoFunctions, out);
+                    break;
+                case SWITCH:
+                    Ast.Switch switchStmt = (Ast.Switch) statement;
+                    out.add(switchStmt.subject);
+                    for (Ast.Case switchCase : switchStmt.cases) {
+                        if (switchCase.label != null) {
+                            out.add(switchCase.label);
                         }
+                        sourceOrder(switchCase.body, intoFunctions, out);
+                    }
+                    break;
+                case RETURN:
+                    if (((Ast.Return) statement).value != null) {
+                        out.add(((Ast.Return) statement).value);
                     }
+                    break;
+                case FUNCTION:
+                    out.add(statement);
+                    if (intoFunctions) {
+                        sourceOrder(((Ast.Function) statement).body, true, out);
+                    }
+                    break;
+                case EXPRESSION:
+                    out.add(((Ast.ExpressionStmt) statement).expression);
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    // ✅ DETECTAR OPERACIONES CON TIPOS INCOMPATIBLES (en el orden del código)
+    private void checkOperations(Ast.Expr expression, SemanticAnalyzer semanticAnalyzer) {
+        switch (expression.kind) {
+            case BINARY:
+                Ast.Binary binary = (Ast.Binary) expression;
+                checkOperations(binary.left, semanticAnalyzer);
+                checkOperation(lastOperand(binary.left), Ast.symbol(binary.operator), firstOperand(binary.right),
+                        semanticAnalyzer);
+                checkOperations(binary.right, semanticAnalyzer);
+                break;
+            case UNARY:
+                checkOperations(((Ast.Unary) expression).operand, semanticAnalyzer);
+                break;
+            case CALL:
+                for (Ast.Expr argument : ((Ast.Call) expression).arguments) {
+                    checkOperations(argument, semanticAnalyzer);
                 }
+                break;
+            default:
+                break;
+        }
+    }
 
-                // ✅ DETECTAR OPERACIONES CON TIPOS INCOMPATIBLES
-                if (i > 0 && i < tokens.size() - 1 && isOperator(token.type) && !inFunction) {
-                    Token prev = tokens.get(i - 1);
-                    Token next = tokens.get(i + 1);
-
-                    String operator = getOperatorSymbol(token.type);
-
-                    // ✅ CASO 1: Ambos son identificadores (variables)
-                    if (prev.type == TokenType.IDENTIFIER && next.type == TokenType.IDENTIFIER) {
-                        String leftVar = prev.value;
-                        String rightVar = next.value;
-
-                        if (!semanticAnalyzer.isReservedWord(leftVar) &&
-                                !semanticAnalyzer.isReservedWord(rightVar) &&
-                                semanticAnalyzer.variableExists(leftVar) &&
-                                semanticAnalyzer.variableExists(rightVar)) {
-
-                            SemanticAnalyzer.VariableInfo leftInfo = semanticAnalyzer.getVariableInfo(leftVar);
-                            SemanticAnalyzer.VariableInfo rightInfo = semanticAnalyzer.getVariableInfo(rightVar);
-
-                            // ✅ VERIFICAR TIPOS ESTRICTAMENTE
-                            if (!leftInfo.type.equals(rightInfo.type)) {
-                                semanticAnalyzer.addError("Línea " + token.line +
-                                        ": No se puede operar " + leftInfo.type + " '" + leftVar +
-                                        "' con " + rightInfo.type + " '" + rightVar + "'");
-                            } else {
-                                semanticAnalyzer.checkBinaryOperationTypes(
-                                        leftInfo.value, rightInfo.value, operator, token.line);
-                            }
-                        }
-                    }
+    private void checkOperation(Ast.Expr prev, String operator, Ast.Expr next, SemanticAnalyzer semanticAnalyzer) {
+        if (prev == null || next == null)
+            return;
 
-                    // ✅ CASO 2: Izquierda es variable, derecha es literal
-                    else if (prev.type == TokenType.IDENTIFIER &&
-                            (next.type == TokenType.NUMBER || next.type == TokenType.STRING ||
-                                    next.type == TokenType.TRUE || next.type == TokenType.FALSE)) {
-
-                        String leftVar = prev.value;
-
-                        if (!semanticAnalyzer.isReservedWord(leftVar) && semanticAnalyzer.variableExists(leftVar)) {
-                            SemanticAnalyzer.VariableInfo leftInfo = semanticAnalyzer.getVariableInfo(leftVar);
-                            Object rightValue = extractValueFromToken(next);
-                            String rightType = semanticAnalyzer.inferTypeFromValue(rightValue, next.line);
-
-                            if (!leftInfo.type.equals(rightType)) {
-                                semanticAnalyzer.addError("Línea " + token.line +
-                                        ": No se puede operar " + leftInfo.type + " '" + leftVar +
-                                        "' con " + rightType + " '" + next.value + "'");
-                            } else {
-                                semanticAnalyzer.checkBinaryOperationTypes(
-                                        leftInfo.value, rightValue, operator, token.line);
-                            }
-                        }
-                    }
+        int line = prev.line();
 
-                    // ✅ CASO 3: Izquierda es literal, derecha es variable
-                    else if ((prev.type == TokenType.NUMBER || prev.type == TokenType.STRING ||
-                            prev.type == TokenType.TRUE || prev.type == TokenType.FALSE) &&
-                            next.type == TokenType.IDENTIFIER) {
-
-                        String rightVar = next.value;
-
-                        if (!semanticAnalyzer.isReservedWord(rightVar) && semanticAnalyzer.variableExists(rightVar)) {
-                            Object leftValue = extractValueFromToken(prev);
-                            String leftType = semanticAnalyzer.inferTypeFromValue(leftValue, prev.line);
-                            SemanticAnalyzer.VariableInfo rightInfo = semanticAnalyzer.getVariableInfo(rightVar);
-
-                            if (!leftType.equals(rightInfo.type)) {
-                                semanticAnalyzer.addError("Línea " + token.line +
-                                        ": No se puede operar " + leftType + " '" + prev.value +
-                                        "' con " + rightInfo.type + " '" + rightVar + "'");
-                            } else {
-                                semanticAnalyzer.checkBinaryOperationTypes(
-                                        leftValue, rightInfo.value, operator, token.line);
-                            }
-                        }
-                    }
+        // ✅ CASO 1: Ambos son identificadores (variables)
+        if (isIdentifier(prev) && isIdentifier(next)) {
+            String leftVar = operandText(prev);
+            String rightVar = operandText(next);
 
-                    // ✅ CASO 4: Ambos son literales
-                    else if ((prev.type == TokenType.NUMBER || prev.type == TokenType.STRING ||
-                            prev.type == TokenType.TRUE || prev.type == TokenType.FALSE) &&
-                            (next.type == TokenType.NUMBER || next.type == TokenType.STRING ||
-                                    next.type == TokenType.TRUE || next.type == TokenType.FALSE)) {
+            if (semanticAnalyzer.variableExists(leftVar) && semanticAnalyzer.variableExists(rightVar)) {
+                SemanticAnalyzer.VariableInfo leftInfo = semanticAnalyzer.getVariableInfo(leftVar);
+                SemanticAnalyzer.VariableInfo rightInfo = semanticAnalyzer.getVariableInfo(rightVar);
 
-                        Object leftValue = extractValueFromToken(prev);
-                        Object rightValue = extractValueFromToken(next);
+                // ✅ VERIFICAR TIPOS ESTRICTAMENTE
+                if (!leftInfo.type.equals(rightInfo.type)) {
+                    semanticAnalyzer.addError("Línea " + line +
+                            ": No se puede operar " + leftInfo.type + " '" + leftVar +
+                            "' con " + rightInfo.type + " '" + rightVar + "'");
+                } else {
+                    semanticAnalyzer.checkBinaryOperationTypes(leftInfo.value, rightInfo.value, operator, line);
+                }
+            }
+        }
 
-                        if (leftValue != null && rightValue != null) {
-                            semanticAnalyzer.checkBinaryOperationTypes(
-                                    leftValue, rightValue, operator, token.line);
-                        }
-                    }
+        // ✅ CASO 2: Izquierda es variable, derecha es literal
+        else if (isIdentifier(prev) && isLiteral(next)) {
+            String leftVar = operandText(prev);
+
+            if (semanticAnalyzer.variableExists(leftVar)) {
+                SemanticAnalyzer.VariableInfo leftInfo = semanticAnalyzer.getVariableInfo(leftVar);
+                Object rightValue = extractValue(next);
+                String rightType = semanticAnalyzer.inferTypeFromValue(rightValue, next.line());
+
+                if (!leftInfo.type.equals(rightType)) {
+                    semanticAnalyzer.addError("Línea " + line +
+                            ": No se puede operar " + leftInfo.type + " '" + leftVar +
+                            "' con " + rightType + " '" + operandText(next) + "'");
+                } else {
+                    semanticAnalyzer.checkBinaryOperationTypes(leftInfo.value, rightValue, operator, line);
                 }
             }
+        }
 
-            // ✅ TERCERA PASADA: Verificar uso de variables no inicializadas
-            for (int i = 0; i < tokens.size(); i++) {
-                Token token = tokens.get(i);
-
-                if (token.type == TokenType.IDENTIFIER &&
-                        !semanticAnalyzer.isReservedWord(token.value) &&
-                        semanticAnalyzer.variableExists(token.value)) {
-
-                    // Verificar que la variable esté inicializada cuando se usa (no en
-                    // asignaciones)
-                    if (i > 0) {
-                        Token prev = tokens.get(i - 1);
-                        // Si no es una asignación, verificar inicialización
-                        if (prev.type != TokenType.ASSIGN) {
-                            semanticAnalyzer.checkVariableInitialized(token.value, token.line);
-                        }
-                    } else if (i == 0) {
-                        // Si es el primer token y no es asignación, verificar inicialización
-                        semanticAnalyzer.checkVariableInitialized(token.value, token.line);
-                    }
+        // ✅ CASO 3: Izquierda es literal, derecha es variable
+        else if (isLiteral(prev) && isIdentifier(next)) {
+            String rightVar = operandText(next);
+
+            if (semanticAnalyzer.variableExists(rightVar)) {
+                Object leftValue = extractValue(prev);
+                String leftType = semanticAnalyzer.inferTypeFromValue(leftValue, prev.line());
+                SemanticAnalyzer.VariableInfo rightInfo = semanticAnalyzer.getVariableInfo(rightVar);
+
+                if (!leftType.equals(rightInfo.type)) {
+                    semanticAnalyzer.addError("Línea " + line +
+                            ": No se puede operar " + leftType + " '" + operandText(prev) +
+                            "' con " + rightInfo.type + " '" + rightVar + "'");
+                } else {
+                    semanticAnalyzer.checkBinaryOperationTypes(leftValue, rightInfo.value, operator, line);
                 }
             }
+        }
 
-            return !semanticAnalyzer.hasErrors();
+        // ✅ CASO 4: Ambos son literales
+        else if (isLiteral(prev) && isLiteral(next)) {
+            Object leftValue = extractValue(prev);
+            Object rightValue = extractValue(next);
 
-        } catch (Exception e) {
-            System.err.println("Error en análisis semántico: " + e.getMessage());
-            e.printStackTrace();
-            semanticAnalyzer.addError("Error durante el análisis semántico: " + e.getMessage());
-            return false;
+            if (leftValue != null && rightValue != null) {
+                semanticAnalyzer.checkBinaryOperationTypes(leftValue, rightValue, operator, line);
+            }
+        }
+    }
+
+    // Identificadores usados en una expresión; 'skip' es el primer operando del
+    // valor de una asignación, que no se verifica
+    private void checkUses(Ast.Expr expression, Ast.Expr skip, SemanticAnalyzer semanticAnalyzer) {
+        switch (expression.kind) {
+            case VARIABLE:
+                if (expression != skip) {
+                    checkInitialized(((Ast.Variable) expression).name, expression.line(), semanticAnalyzer);
+                }
+                break;
+            case CALL:
+                Ast.Call call = (Ast.Call) expression;
+                if (expression != skip) {
+                    checkInitialized(call.name, call.line(), semanticAnalyzer);
+                }
+                for (Ast.Expr argument : call.arguments) {
+                    checkUses(argument, skip, semanticAnalyzer);
+                }
+                break;
+            case BINARY:
+                checkUses(((Ast.Binary) expression).left, skip, semanticAnalyzer);
+                checkUses(((Ast.Binary) expression).right, skip, semanticAnalyzer);
+                break;
+            case UNARY:
+                checkUses(((Ast.Unary) expression).operand, skip, semanticAnalyzer);
+                break;
+            default:
+                break;
         }
     }
 
-    // ✅ MÉTODOS AUXILIARES COPIADOS DE CodeEditor
+    private void checkInitialized(String name, int line, SemanticAnalyzer semanticAnalyzer) {
+        if (semanticAnalyzer.variableExists(name)) {
+            semanticAnalyzer.checkVariableInitialized(name, line);
+        }
+    }
 
-    private Object extractValueFromToken(Token token) {
-        if (token == null)
+    // ✅ MÉTODOS AUXILIARES
+
+    // Primer operando de una expresión (null si empieza con '(' o un operador unario)
+    private Ast.Expr firstOperand(Ast.Expr expression) {
+        if (expression.parenthesized)
+            return null;
+        switch (expression.kind) {
+            case BINARY:
+                return firstOperand(((Ast.Binary) expression).left);
+            case UNARY:
+                return null;
+            default:
+                return expression;
+        }
+    }
+
+    // Último operando de una expresión (null si termina con ')')
+    private Ast.Expr lastOperand(Ast.Expr expression) {
+        if (expression.parenthesized)
+            return null;
+        switch (expression.kind) {
+            case BINARY:
+                return lastOperand(((Ast.Binary) expression).right);
+            case UNARY:
+                return lastOperand(((Ast.Unary) expression).operand);
+            case CALL:
+                return null;
+            default:
+                return expression;
+        }
+    }
+
+    private boolean isIdentifier(Ast.Expr operand) {
+        return operand.kind == Ast.Kind.VARIABLE || operand.kind == Ast.Kind.CALL;
+    }
+
+    private boolean isLiteral(Ast.Expr operand) {
+        return operand.kind == Ast.Kind.NUMBER || operand.kind == Ast.Kind.STRING
+                || operand.kind == Ast.Kind.BOOLEAN;
+    }
+
+    // Texto del operando tal como aparece en el código
+    private String operandText(Ast.Expr operand) {
+        switch (operand.kind) {
+            case VARIABLE:
+                return ((Ast.Variable) operand).name;
+            case CALL:
+                return ((Ast.Call) operand).name;
+            case NUMBER:
+                return ((Ast.NumberLiteral) operand).text;
+            case STRING:
+                return ((Ast.StringLiteral) operand).raw;
+            case BOOLEAN:
+                return String.valueOf(((Ast.BooleanLiteral) operand).value);
+            default:
+                return "";
+        }
+    }
+
+    private Object extractValue(Ast.Expr operand) {
+        if (operand == null)
             return null;
 
         try {
-            switch (token.type) {
+            switch (operand.kind) {
                 case NUMBER:
-                    if (token.value.contains(".")) {
-                        return Float.parseFloat(token.value);
+                    String number = ((Ast.NumberLiteral) operand).text;
+                    if (number.contains(".")) {
+                        return Float.parseFloat(number);
                     } else {
-                        return Integer.parseInt(token.value);
+                        return Integer.parseInt(number);
                     }
                 case STRING:
-                    return token.value.substring(1, token.value.length() - 1);
-                case TRUE:
-                    return true;
-                case FALSE:
-                    return false;
-                case IDENTIFIER:
-                    if (semanticAnalyzer.variableExists(token.value)) {
-                        SemanticAnalyzer.VariableInfo info = semanticAnalyzer.getVariableInfo(token.value);
+                    return ((Ast.StringLiteral) operand).value();
+                case BOOLEAN:
+                    return ((Ast.BooleanLiteral) operand).value;
+                case VARIABLE:
+                case CALL:
+                    String name = operandText(operand);
+                    if (semanticAnalyzer.variableExists(name)) {
+                        SemanticAnalyzer.VariableInfo info = semanticAnalyzer.getVariableInfo(name);
                         return info.value;
                     }
-                    if (token.value.matches(".*[0-9].*")) {
+                    if (name.matches(".*[0-9].*")) {
                         return 0;
                     } else {
                         return "";
@@ -417,56 +610,13 @@ public class CompilationManager {
                     return null;
             }
         } catch (NumberFormatException e) {
-            System.err.println("Error parseando valor: " + token.value);
+            System.err.println("Error parseando valor: " + operandText(operand));
             return null;
         }
     }
 
-    private boolean isOperator(TokenType type) {
-        return type == TokenType.PLUS || type == TokenType.MINUS ||
-                type == TokenType.MULTIPLY || type == TokenType.DIVIDE ||
-                type == TokenType.MODULO || type == TokenType.EQUALS ||
-                type == TokenType.NOT_EQUALS || type == TokenType.LESS ||
-                type == TokenType.GREATER || type == TokenType.LESS_EQUAL ||
-                type == TokenType.GREATER_EQUAL || type == TokenType.AND ||
-                type == TokenType.OR;
-    }
-
-    private String getOperatorSymbol(TokenType type) {
-        switch (type) {
-            case PLUS:
-                return "+";
-            case MINUS:
-                return "-";
-            case MULTIPLY:
-                return "*";
-            case DIVIDE:
-                return "/";
-            case MODULO:
-                return "%";
-            case EQUALS:
-                return "==";
-            case NOT_EQUALS:
-                return "!=";
-            case LESS:
-                return "<";
-            case GREATER:
-                return ">";
-            case LESS_EQUAL:
-                return "<=";
-            case GREATER_EQUAL:
-                return ">=";
-            case AND:
-                return "&&";
-            case OR:
-                return "||";
-            default:
-                return "";
-        }
-    }
-
     public static class CompilationResult {
-        public final List<Token> tokens;
+        public final TokenBuffer tokens;
         public final String syntacticOutput;
         public final String semanticOutput;
         public final String tacOutput;
@@ -478,11 +628,15 @@ public class CompilationManager {
         public final List<TACInstruction> tacInstructions;
         public final List<TACInstruction> optimizedTacInstructions;
 
-        public CompilationResult(List<Token> tokens, String syntacticOutput,
+        // Resultado de la simulación (null si no llegó a ejecutarse)
+        public final VirtualMachine.Result execution;
+
+        public CompilationResult(TokenBuffer tokens, String syntacticOutput,
                 String semanticOutput, String tacOutput, String optimizedTacOutput, String assemblyOutput,
                 ErrorManager errorManager,
                 List<TACInstruction> tacInstructions,
-                List<TACInstruction> optimizedTacInstructions) {
+                List<TACInstruction> optimizedTacInstructions,
+                VirtualMachine.Result execution) {
             this.tokens = tokens;
             this.syntacticOutput = syntacticOutput;
             this.semanticOutput = semanticOutput;
@@ -492,6 +646,7 @@ public class CompilationManager {
             this.errorManager = errorManager;
             this.tacInstructions = tacInstructions;
             this.optimizedTacInstructions = optimizedTacInstructions;
+            this.execution = execution;
         }
 
         public boolean hasErrors() {
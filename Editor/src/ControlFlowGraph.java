@@ -0,0 +1,338 @@
+import java.util.*;
+
+/**
+ * Grafo de flujo de control de un {@link TACBuffer}.
+ *
+ * Cada bloque básico es un rango [start, end) del buffer: una etiqueta inicia
+ * un bloque y un salto (GOTO, IF_*, SWITCH, ret) lo termina. Los bloques
+ * guardan sus sucesores y predecesores; hay un bloque de entrada y uno de
+ * salida virtuales (sin instrucciones). Las etiquetas de función (func_x) se
+ * pueden alcanzar con un call desde cualquier parte y el código que sigue a
+ * un ret es la continuación del programa principal, así que también cuelgan
+ * de la entrada.
+ *
+ * Además calcula el orden postorden inverso, el árbol de dominadores
+ * (algoritmo iterativo de Cooper, Harvey y Kennedy) y, cuando se piden, las
+ * fronteras de dominancia.
+ */
+public class ControlFlowGraph {
+
+    public static final class Block {
+        public final int id; // Orden en el código; entrada y salida al final
+        public final int start;
+        public final int end;
+        public final List<Block> successors = new ArrayList<>(2);
+        public final List<Block> predecessors = new ArrayList<>(2);
+
+        Block idom; // Dominador inmediato; null en la entrada y en bloques inalcanzables
+        final List<Block> dominated = new ArrayList<>(); // Hijos en el árbol de dominadores
+        int rpo = -1; // Posición en postorden inverso; -1 si es inalcanzable
+        int domPre; // Numeración del árbol de dominadores para dominates() en O(1)
+        int domPost;
+        List<Block> frontier; // Frontera de dominancia; se calcula al pedirla
+
+        Block(int id, int start, int end) {
+            this.id = id;
+            this.start = start;
+            this.end = end;
+        }
+
+        public Block idom() {
+            return idom;
+        }
+
+        public List<Block> dominated() {
+            return dominated;
+        }
+
+        public boolean isReachable() {
+            return rpo >= 0;
+        }
+
+        @Override
+        public String toString() {
+            return "B" + id + "[" + start + ", " + end + ")";
+        }
+    }
+
+    private final TACBuffer code;
+    private final List<Block> blocks = new ArrayList<>();
+    private final Block entry;
+    private final Block exit;
+    private final List<Block> reversePostorder = new ArrayList<>();
+    private final Map<Operand, Block> labels = new HashMap<>();
+    private int[] blockOf; // Instrucción -> id de su bloque
+
+    public ControlFlowGraph(TACBuffer code) {
+        this.code = code;
+        split();
+        entry = new Block(blocks.size(), 0, 0);
+        exit = new Block(blocks.size() + 1, code.size(), code.size());
+        connect();
+        order();
+        dominators();
+    }
+
+    // ==================== CONSULTAS ====================
+
+    // Bloques reales en el orden del código (sin entrada ni salida)
+    public List<Block> blocks() {
+        return blocks;
+    }
+
+    public Block entry() {
+        return entry;
+    }
+
+    public Block exit() {
+        return exit;
+    }
+
+    // Bloques alcanzables en postorden inverso, empezando por la entrada
+    public List<Block> reversePostorder() {
+        return reversePostorder;
+    }
+
+    public Block blockOf(int instruction) {
+        return blocks.get(blockOf[instruction]);
+    }
+
+    // Bloque que empieza con la etiqueta; la salida si no existe
+    public Block blockOfLabel(Operand label) {
+        return labels.getOrDefault(label, exit);
+    }
+
+    // Bloque que sigue en el código (caída de un salto condicional); la salida al final
+    public Block next(Block block) {
+        return block.id + 1 < blocks.size() ? blocks.get(block.id + 1) : exit;
+    }
+
+    /**
+     * Frontera de dominancia: bloques donde termina el dominio de block, los
+     * primeros a los que se llega también por un camino que no pasa por él.
+     * Ahí se juntan valores distintos de una variable (funciones phi).
+     */
+    public List<Block> dominanceFrontier(Block block) {
+        if (block.frontier == null) {
+            frontiers();
+        }
+        return block.frontier;
+    }
+
+    // ¿Todo camino desde la entrada hasta b pasa por a? (a domina a a)
+    public boolean dominates(Block a, Block b) {
+        if (!a.isReachable() || !b.isReachable()) {
+            return false;
+        }
+        return a.domPre <= b.domPre && b.domPost <= a.domPost;
+    }
+
+    // Arista hacia atrás de un bucle: el destino domina al origen
+    public boolean isBackEdge(Block from, Block to) {
+        return dominates(to, from);
+    }
+
+    // ==================== CONSTRUCCIÓN ====================
+
+    private void split() {
+        blockOf = new int[code.size()];
+        int start = 0;
+        for (int i = 0; i < code.size(); i++) {
+            if (code.op(i) == Opcode.LABEL && i > start) {
+                addBlock(start, i);
+                start = i;
+            }
+            if (code.op(i).endsBlock()) {
+                addBlock(start, i + 1);
+                start = i + 1;
+            }
+        }
+        if (start < code.size()) {
+            addBlock(start, code.size());
+        }
+    }
+
+    private void addBlock(int start, int end) {
+        Block block = new Block(blocks.size(), start, end);
+        Arrays.fill(blockOf, start, end, block.id);
+        blocks.add(block);
+    }
+
+    private void connect() {
+        for (Block block : blocks) {
+            if (code.op(block.start) == Opcode.LABEL) {
+                labels.put(code.result(block.start), block);
+            }
+        }
+
+        link(entry, blocks.isEmpty() ? exit : blocks.get(0));
+        for (Block block : blocks) {
+            Operand label = code.op(block.start) == Opcode.LABEL ? code.result(block.start) : null;
+            if (label != null && label.kind == Operand.Kind.FUNCTION && block.id > 0) {
+                link(entry, block);
+            }
+            // Las funciones van en línea: el programa principal sigue después del ret
+            if (block.id > 0 && code.op(blocks.get(block.id - 1).end - 1) == Opcode.RET) {
+                link(entry, block);
+            }
+
+            int last = block.end - 1;
+            Block next = next(block);
+            switch (code.op(last)) {
+                case GOTO:
+                    link(block, blockOfLabel(code.result(last)));
+                    break;
+                case IF_FALSE:
+                case IF_TRUE:
+                    link(block, blockOfLabel(code.result(last)));
+                    link(block, next);
+                    break;
+                case SWITCH:
+                case JUMPTABLE:
+                    for (Operand target : code.targets(last)) {
+                        link(block, blockOfLabel(target));
+                    }
+                    link(block, blockOfLabel(code.result(last)));
+                    break;
+                case RET:
+                    link(block, exit);
+                    break;
+                default:
+                    link(block, next);
+                    break;
+            }
+        }
+    }
+
+    // Sin aristas repetidas (un SWITCH puede saltar varias veces al mismo bloque)
+    private void link(Block from, Block to) {
+        if (!from.successors.contains(to)) {
+            from.successors.add(to);
+            to.predecessors.add(from);
+        }
+    }
+
+    // Postorden con una pila explícita: el código puede tener miles de bloques
+    private void order() {
+        List<Block> postorder = new ArrayList<>();
+        Deque<Block> stack = new ArrayDeque<>();
+        Deque<Integer> nextChild = new ArrayDeque<>();
+        boolean[] visited = new boolean[blocks.size() + 2];
+
+        visited[entry.id] = true;
+        stack.push(entry);
+        nextChild.push(0);
+        while (!stack.isEmpty()) {
+            Block block = stack.peek();
+            int child = nextChild.pop();
+            if (child < block.successors.size()) {
+                nextChild.push(child + 1);
+                Block successor = block.successors.get(child);
+                if (!visited[successor.id]) {
+                    visited[successor.id] = true;
+                    stack.push(successor);
+                    nextChild.push(0);
+                }
+            } else {
+                stack.pop();
+                postorder.add(block);
+            }
+        }
+
+        for (int i = postorder.size() - 1; i >= 0; i--) {
+            Block block = postorder.get(i);
+            block.rpo = reversePostorder.size();
+            reversePostorder.add(block);
+        }
+    }
+
+    private void dominators() {
+        entry.idom = entry;
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (Block block : reversePostorder) {
+                if (block == entry) {
+                    continue;
+                }
+                Block idom = null;
+                for (Block predecessor : block.predecessors) {
+                    if (predecessor.idom != null) {
+                        idom = idom == null ? predecessor : intersect(predecessor, idom);
+                    }
+                }
+                if (idom != block.idom) {
+                    block.idom = idom;
+                    changed = true;
+                }
+            }
+        }
+        entry.idom = null;
+
+        for (Block block : reversePostorder) {
+            if (block.idom != null) {
+                block.idom.dominated.add(block);
+            }
+        }
+        numberDominatorTree();
+    }
+
+    private Block intersect(Block a, Block b) {
+        while (a != b) {
+            while (a.rpo > b.rpo) {
+                a = a.idom;
+            }
+            while (b.rpo > a.rpo) {
+                b = b.idom;
+            }
+        }
+        return a;
+    }
+
+    private void numberDominatorTree() {
+        int counter = 0;
+        Deque<Block> stack = new ArrayDeque<>();
+        Deque<Integer> nextChild = new ArrayDeque<>();
+        entry.domPre = counter++;
+        stack.push(entry);
+        nextChild.push(0);
+        while (!stack.isEmpty()) {
+            Block block = stack.peek();
+            int child = nextChild.pop();
+            if (child < block.dominated.size()) {
+                nextChild.push(child + 1);
+                Block dominated = block.dominated.get(child);
+                dominated.domPre = counter++;
+                stack.push(dominated);
+                nextChild.push(0);
+            } else {
+                stack.pop();
+                block.domPost = counter++;
+            }
+        }
+    }
+
+    // Cooper, Harvey y Kennedy: desde cada predecesor de una unión se sube por
+    // el árbol de dominadores hasta el dominador inmediato de la unión
+    private void frontiers() {
+        entry.frontier = new ArrayList<>();
+        exit.frontier = new ArrayList<>();
+        for (Block block : blocks) {
+            block.frontier = new ArrayList<>();
+        }
+        for (Block block : reversePostorder) {
+            if (block.predecessors.size() < 2) {
+                continue;
+            }
+            for (Block predecessor : block.predecessors) {
+                Block runner = predecessor;
+                while (runner != null && runner.isReachable() && runner != block.idom) {
+                    if (runner.frontier.isEmpty() || runner.frontier.get(runner.frontier.size() - 1) != block) {
+                        runner.frontier.add(block);
+                    }
+                    runner = runner.idom;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,154 @@
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Resolvedor iterativo de análisis de flujo de datos sobre un
+ * {@link ControlFlowGraph}, con conjuntos de bits.
+ *
+ * Cada bloque tiene sus conjuntos gen y kill; la transferencia es
+ * salida = gen ∪ (entrada − kill) y la unión de caminos es la unión (may) o
+ * la intersección (must). La lista de trabajo sigue el postorden inverso (o
+ * al revés si el análisis va hacia atrás) y solo vuelve a marcar los vecinos
+ * de un bloque cuyo resultado cambió; cada bloque se visita del orden de la
+ * profundidad de anidamiento de sus bucles, no de la cantidad de bucles.
+ *
+ * Los arreglos se indexan con el id del bloque; la entrada y la salida
+ * virtuales no tienen instrucciones (gen y kill vacíos).
+ */
+public class Dataflow {
+
+    public enum Direction {
+        FORWARD,
+        BACKWARD
+    }
+
+    private final ControlFlowGraph cfg;
+    private final Direction direction;
+    private final boolean intersection;
+    private final BitSet[] gen;
+    private final BitSet[] kill;
+    private final BitSet boundary;
+    private final BitSet universe;
+    private final BitSet[] in;
+    private final BitSet[] out;
+
+    /**
+     * @param intersection true si un hecho vale solo cuando vale en todos los
+     *                     caminos (must); false si basta uno (may)
+     * @param boundary     valor en la entrada del programa (FORWARD) o en la
+     *                     salida (BACKWARD)
+     * @param universe     todos los hechos; valor inicial de los análisis must
+     */
+    public Dataflow(ControlFlowGraph cfg, Direction direction, boolean intersection, BitSet[] gen, BitSet[] kill,
+            BitSet boundary, BitSet universe) {
+        this.cfg = cfg;
+        this.direction = direction;
+        this.intersection = intersection;
+        this.gen = gen;
+        this.kill = kill;
+        this.boundary = boundary;
+        this.universe = universe;
+        int blocks = cfg.blocks().size() + 2;
+        this.in = new BitSet[blocks];
+        this.out = new BitSet[blocks];
+        solve();
+    }
+
+    // Hechos al entrar al bloque (en orden del código, también si es BACKWARD)
+    public BitSet in(ControlFlowGraph.Block block) {
+        return in[block.id];
+    }
+
+    // Hechos al salir del bloque
+    public BitSet out(ControlFlowGraph.Block block) {
+        return out[block.id];
+    }
+
+    private void solve() {
+        boolean forward = direction == Direction.FORWARD;
+        ControlFlowGraph.Block start = forward ? cfg.entry() : cfg.exit();
+        // "Antes" y "después" en el sentido del análisis
+        BitSet[] before = forward ? in : out;
+        BitSet[] after = forward ? out : in;
+
+        for (int id = 0; id < in.length; id++) {
+            before[id] = new BitSet();
+            after[id] = intersection ? (BitSet) universe.clone() : new BitSet();
+        }
+        before[start.id] = (BitSet) boundary.clone();
+        after[start.id] = (BitSet) boundary.clone();
+
+        // Orden de visita: postorden inverso (al revés si es BACKWARD) y al final
+        // los bloques inalcanzables. La lista de trabajo siempre toma el pendiente
+        // con la posición más baja, así un bucle se estabiliza antes de seguir
+        // con el código que viene después.
+        List<ControlFlowGraph.Block> order = new ArrayList<>(in.length);
+        List<ControlFlowGraph.Block> rpo = cfg.reversePostorder();
+        for (int i = 0; i < rpo.size(); i++) {
+            order.add(rpo.get(forward ? i : rpo.size() - 1 - i));
+        }
+        for (ControlFlowGraph.Block block : cfg.blocks()) {
+            if (!block.isReachable()) {
+                order.add(block);
+            }
+        }
+        if (!cfg.exit().isReachable()) {
+            order.add(cfg.exit()); // Un bucle infinito nunca llega a la salida
+        }
+        int[] position = new int[in.length];
+        for (int i = 0; i < order.size(); i++) {
+            position[order.get(i).id] = i;
+        }
+
+        BitSet pending = new BitSet(order.size());
+        pending.set(0, order.size());
+        pending.clear(position[start.id]);
+
+        BitSet meet = new BitSet();
+        for (int next = pending.nextSetBit(0); next >= 0; next = pending.nextSetBit(0)) {
+            pending.clear(next);
+            ControlFlowGraph.Block block = order.get(next);
+
+            List<ControlFlowGraph.Block> sources = forward ? block.predecessors : block.successors;
+            meet.clear();
+            boolean first = true;
+            for (ControlFlowGraph.Block source : sources) {
+                if (first) {
+                    meet.or(after[source.id]);
+                    first = false;
+                } else if (intersection) {
+                    meet.and(after[source.id]);
+                } else {
+                    meet.or(after[source.id]);
+                }
+            }
+            before[block.id].clear();
+            before[block.id].or(meet);
+
+            meet.andNot(kill(block));
+            meet.or(gen(block));
+            if (!meet.equals(after[block.id])) {
+                after[block.id].clear();
+                after[block.id].or(meet);
+                for (ControlFlowGraph.Block target : forward ? block.successors : block.predecessors) {
+                    if (target != start) {
+                        pending.set(position[target.id]);
+                    }
+                }
+            }
+        }
+    }
+
+    private BitSet gen(ControlFlowGraph.Block block) {
+        BitSet set = block.id < gen.length ? gen[block.id] : null;
+        return set != null ? set : EMPTY;
+    }
+
+    private BitSet kill(ControlFlowGraph.Block block) {
+        BitSet set = block.id < kill.length ? kill[block.id] : null;
+        return set != null ? set : EMPTY;
+    }
+
+    private static final BitSet EMPTY = new BitSet();
+}
@@ -0,0 +1,50 @@
+/**
+ * Límites de ejecución de la {@link VirtualMachine}.
+ *
+ * Reemplaza el antiguo tope de 1000 iteraciones por bucle: un programa puede
+ * iterar millones de veces mientras no agote alguno de estos límites:
+ * - combustible: instrucciones de bytecode ejecutadas
+ * - tiempo: milisegundos de reloj desde que empieza la ejecución
+ * - memoria: bytes aproximados de la pila y las variables
+ * - profundidad: llamadas a funciones anidadas (recursión)
+ *
+ * Un valor <= 0 desactiva el límite correspondiente.
+ */
+public final class ExecutionBudget {
+    public static final ExecutionBudget DEFAULT = new ExecutionBudget(50_000_000L, 5_000L, 64L * 1024 * 1024, 1_000);
+    public static final ExecutionBudget UNLIMITED = new ExecutionBudget(0, 0, 0, 0);
+
+    public final long maxInstructions;
+    public final long maxMillis;
+    public final long maxMemoryBytes;
+    public final int maxCallDepth;
+
+    public ExecutionBudget(long maxInstructions, long maxMillis, long maxMemoryBytes, int maxCallDepth) {
+        this.maxInstructions = maxInstructions;
+        this.maxMillis = maxMillis;
+        this.maxMemoryBytes = maxMemoryBytes;
+        this.maxCallDepth = maxCallDepth;
+    }
+
+    public ExecutionBudget withMaxInstructions(long maxInstructions) {
+        return new ExecutionBudget(maxInstructions, maxMillis, maxMemoryBytes, maxCallDepth);
+    }
+
+    public ExecutionBudget withMaxMillis(long maxMillis) {
+        return new ExecutionBudget(maxInstructions, maxMillis, maxMemoryBytes, maxCallDepth);
+    }
+
+    public ExecutionBudget withMaxMemoryBytes(long maxMemoryBytes) {
+        return new ExecutionBudget(maxInstructions, maxMillis, maxMemoryBytes, maxCallDepth);
+    }
+
+    public ExecutionBudget withMaxCallDepth(int maxCallDepth) {
+        return new ExecutionBudget(maxInstructions, maxMillis, maxMemoryBytes, maxCallDepth);
+    }
+
+    @Override
+    public String toString() {
+        return "ExecutionBudget{instrucciones=" + maxInstructions + ", ms=" + maxMillis
+                + ", bytes=" + maxMemoryBytes + ", llamadas=" + maxCallDepth + "}";
+    }
+}
@@ -0,0 +1,63 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * String formateado (f"Hola {nombre}") analizado una sola vez al compilar:
+ * los tramos de texto literal y, entre ellos, los nombres de las variables.
+ *
+ * literals siempre tiene un elemento más que variables: el texto va en el
+ * orden literals[0], variables[0], literals[1], ..., literals[n]. Si el string
+ * está mal formado, error describe el problema; se informa recién al
+ * ejecutarlo, después de las variables que sí se pudieron leer, igual que
+ * antes.
+ */
+public final class FormatTemplate {
+    public final String raw; // Token original, con la f y las comillas
+    public final String[] literals;
+    public final String[] variables;
+    public final String error;
+
+    private FormatTemplate(String raw, String[] literals, String[] variables, String error) {
+        this.raw = raw;
+        this.literals = literals;
+        this.variables = variables;
+        this.error = error;
+    }
+
+    public static FormatTemplate parse(String raw) {
+        String content = raw.length() >= 3 ? raw.substring(2, raw.length() - 1) : "";
+        List<String> literals = new ArrayList<>();
+        List<String> variables = new ArrayList<>();
+        StringBuilder literal = new StringBuilder();
+        String error = null;
+
+        int i = 0;
+        while (i < content.length()) {
+            if (content.charAt(i) == '{' && i + 1 < content.length()) {
+                int end = content.indexOf('}', i + 1);
+                if (end == -1) {
+                    error = "Llave de cierre '}' faltante en string formateado";
+                    break;
+                }
+                literals.add(literal.toString());
+                literal.setLength(0);
+                variables.add(content.substring(i + 1, end).trim());
+                i = end + 1;
+                continue;
+            }
+            literal.append(content.charAt(i));
+            i++;
+        }
+        literals.add(literal.toString());
+
+        if (error == null && variables.isEmpty()) {
+            error = "String formateado debe contener al menos una variable entre llaves { }";
+        }
+        return new FormatTemplate(raw, literals.toArray(new String[0]), variables.toArray(new String[0]), error);
+    }
+
+    @Override
+    public String toString() {
+        return raw;
+    }
+}
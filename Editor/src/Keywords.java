@@ -0,0 +1,82 @@
+/**
+ * Tabla de palabras reservadas de Noddk con hash perfecto.
+ *
+ * La función hash (2 * primer carácter + 3 * último carácter + longitud) & 31
+ * no produce colisiones para las 16 palabras reservadas, así que cada búsqueda
+ * es un cálculo aritmético más una sola comparación, sin crear objetos.
+ * Compartida por el Lexer, el TokenStream y el SemanticAnalyzer.
+ */
+public final class Keywords {
+    private static final int TABLE_SIZE = 32;
+    private static final int MIN_LENGTH = 2;
+    private static final int MAX_LENGTH = 8;
+
+    private static final String[] WORDS = new String[TABLE_SIZE];
+    private static final TokenType[] TYPES = new TokenType[TABLE_SIZE];
+
+    static {
+        register("print", TokenType.PRINT);
+        register("println", TokenType.PRINTLN);
+        register("input", TokenType.INPUT);
+        register("if", TokenType.IF);
+        register("else", TokenType.ELSE);
+        register("while", TokenType.WHILE);
+        register("for", TokenType.FOR);
+        register("do", TokenType.DO);
+        register("break", TokenType.BREAK);
+        register("return", TokenType.RETURN);
+        register("function", TokenType.FUNCTION);
+        register("true", TokenType.TRUE);
+        register("false", TokenType.FALSE);
+        register("switch", TokenType.SWITCH);
+        register("case", TokenType.CASE);
+        register("default", TokenType.DEFAULT);
+    }
+
+    private Keywords() {
+    }
+
+    private static void register(String word, TokenType type) {
+        int slot = hash(word, 0, word.length());
+        if (WORDS[slot] != null) {
+            // Si se agrega una palabra reservada que colisiona, hay que ajustar hash()
+            throw new IllegalStateException("Colisión en la tabla de palabras reservadas: '"
+                    + word + "' y '" + WORDS[slot] + "'");
+        }
+        WORDS[slot] = word;
+        TYPES[slot] = type;
+    }
+
+    private static int hash(CharSequence text, int start, int end) {
+        return (2 * text.charAt(start) + 3 * text.charAt(end - 1) + (end - start)) & (TABLE_SIZE - 1);
+    }
+
+    /**
+     * Devuelve el tipo de la palabra reservada que ocupa [start, end) en el
+     * texto, o null si esa palabra no es reservada.
+     */
+    public static TokenType lookup(CharSequence text, int start, int end) {
+        int length = end - start;
+        if (length < MIN_LENGTH || length > MAX_LENGTH)
+            return null;
+
+        int slot = hash(text, start, end);
+        String word = WORDS[slot];
+        if (word == null || word.length() != length)
+            return null;
+
+        for (int i = 0; i < length; i++) {
+            if (word.charAt(i) != text.charAt(start + i))
+                return null;
+        }
+        return TYPES[slot];
+    }
+
+    public static TokenType lookup(String word) {
+        return word == null ? null : lookup(word, 0, word.length());
+    }
+
+    public static boolean isReserved(String word) {
+        return lookup(word) != null;
+    }
+}
@@ -1,14 +1,40 @@
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 import java.util.regex.*;
 
-public class Lexer {
-    private final String sourceCode;
+public class Lexer implements Iterable<Token> {
+    private String sourceCode;
     private int position = 0;
     private int line = 1;
     private int column = 1;
-    private final List<Token> tokens = new ArrayList<>();
+    private TokenBuffer tokens;
     private final List<String> errors = new ArrayList<>();
+    private final List<int[]> errorPositions = new ArrayList<>(); // {offset, línea, columna} de cada error
     private ErrorManager errorManager;
+    private boolean useRegexEngine = false;
+
+    // Para el re-escaneo incremental: reach[i] es el límite (exclusivo) de todo
+    // lo que el autómata examinó hasta emitir el token i. El fin del texto
+    // cuenta como el carácter en la posición length.
+    private int[] reach = new int[16];
+    private int furthest = 0;
+
+    // Solo en modo streaming (Reader, CharBuffer o archivo mapeado): no hay sourceCode
+    private TokenStream stream;
+
+    // Tamaño de cada trozo en tokenizeParallel()
+    public static final int DEFAULT_PARALLEL_CHUNK = 256 * 1024;
 
     private static final Pattern[] PATTERNS = {
             Pattern.compile("^f\"[^\"]*\""), // FORMATTED_STRING - f"..."
@@ -108,16 +134,688 @@ public class Lexer {
             TokenType.COMMA
     };
 
+    // -------------------------------------------------------------------------
+    // AUTÓMATA FINITO DETERMINISTA
+    // Reconoce exactamente el mismo lenguaje que PATTERNS, pero recorriendo el
+    // código carácter por carácter sin crear subcadenas ni Matchers.
+    // -------------------------------------------------------------------------
+
+    // Clases de caracteres (columnas de la tabla de transiciones)
+    private static final int C_OTHER = 0;
+    private static final int C_LETTER = 1; // a-z, A-Z, _ (excepto 'f')
+    private static final int C_F = 2; // 'f' puede iniciar un string formateado
+    private static final int C_DIGIT = 3;
+    private static final int C_DQUOTE = 4;
+    private static final int C_SQUOTE = 5;
+    private static final int C_DOT = 6;
+    private static final int C_PLUS = 7;
+    private static final int C_MINUS = 8;
+    private static final int C_LESS = 9;
+    private static final int C_GREATER = 10;
+    private static final int C_EQUAL = 11;
+    private static final int C_BANG = 12;
+    private static final int C_AMP = 13;
+    private static final int C_PIPE = 14;
+    private static final int C_STAR = 15;
+    private static final int C_SLASH = 16;
+    private static final int C_PERCENT = 17;
+    private static final int C_LPAREN = 18;
+    private static final int C_RPAREN = 19;
+    private static final int C_LBRACE = 20;
+    private static final int C_RBRACE = 21;
+    private static final int C_SEMICOLON = 22;
+    private static final int C_COMMA = 23;
+    private static final int C_COLON = 24;
+    private static final int CLASS_COUNT = 25;
+
+    // Estados
+    private static final int S_ERROR = -1;
+    private static final int S_START = 0;
+    private static final int S_IDENT = 1;
+    private static final int S_F = 2;
+    private static final int S_FSTRING = 3;
+    private static final int S_FSTRING_END = 4;
+    private static final int S_STRING = 5;
+    private static final int S_STRING_END = 6;
+    private static final int S_CHAR = 7;
+    private static final int S_CHAR_END = 8;
+    private static final int S_INT = 9;
+    private static final int S_INT_DOT = 10;
+    private static final int S_FLOAT = 11;
+    private static final int S_PLUS = 12;
+    private static final int S_INCREMENT = 13;
+    private static final int S_MINUS = 14;
+    private static final int S_DECREMENT = 15;
+    private static final int S_LESS = 16;
+    private static final int S_LESS_EQUAL = 17;
+    private static final int S_GREATER = 18;
+    private static final int S_GREATER_EQUAL = 19;
+    private static final int S_ASSIGN = 20;
+    private static final int S_EQUALS = 21;
+    private static final int S_NOT = 22;
+    private static final int S_NOT_EQUALS = 23;
+    private static final int S_AMP = 24;
+    private static final int S_AND = 25;
+    private static final int S_PIPE = 26;
+    private static final int S_OR = 27;
+    private static final int S_MULTIPLY = 28;
+    private static final int S_DIVIDE = 29;
+    private static final int S_MODULO = 30;
+    private static final int S_LPAREN = 31;
+    private static final int S_RPAREN = 32;
+    private static final int S_LBRACE = 33;
+    private static final int S_RBRACE = 34;
+    private static final int S_SEMICOLON = 35;
+    private static final int S_COMMA = 36;
+    private static final int S_COLON = 37;
+    private static final int STATE_COUNT = 38;
+
+    private static final byte[] ASCII_CLASSES = new byte[128];
+    private static final int[][] TRANSITIONS = new int[STATE_COUNT][CLASS_COUNT];
+    private static final TokenType[] ACCEPTS = new TokenType[STATE_COUNT];
+
+    static {
+        for (char c = 'a'; c <= 'z'; c++)
+            ASCII_CLASSES[c] = C_LETTER;
+        for (char c = 'A'; c <= 'Z'; c++)
+            ASCII_CLASSES[c] = C_LETTER;
+        ASCII_CLASSES['_'] = C_LETTER;
+        ASCII_CLASSES['f'] = C_F;
+        for (char c = '0'; c <= '9'; c++)
+            ASCII_CLASSES[c] = C_DIGIT;
+        ASCII_CLASSES['"'] = C_DQUOTE;
+        ASCII_CLASSES['\''] = C_SQUOTE;
+        ASCII_CLASSES['.'] = C_DOT;
+        ASCII_CLASSES['+'] = C_PLUS;
+        ASCII_CLASSES['-'] = C_MINUS;
+        ASCII_CLASSES['<'] = C_LESS;
+        ASCII_CLASSES['>'] = C_GREATER;
+        ASCII_CLASSES['='] = C_EQUAL;
+        ASCII_CLASSES['!'] = C_BANG;
+        ASCII_CLASSES['&'] = C_AMP;
+        ASCII_CLASSES['|'] = C_PIPE;
+        ASCII_CLASSES['*'] = C_STAR;
+        ASCII_CLASSES['/'] = C_SLASH;
+        ASCII_CLASSES['%'] = C_PERCENT;
+        ASCII_CLASSES['('] = C_LPAREN;
+        ASCII_CLASSES[')'] = C_RPAREN;
+        ASCII_CLASSES['{'] = C_LBRACE;
+        ASCII_CLASSES['}'] = C_RBRACE;
+        ASCII_CLASSES[';'] = C_SEMICOLON;
+        ASCII_CLASSES[','] = C_COMMA;
+        ASCII_CLASSES[':'] = C_COLON;
+
+        for (int[] row : TRANSITIONS)
+            Arrays.fill(row, S_ERROR);
+
+        // Inicio
+        TRANSITIONS[S_START][C_LETTER] = S_IDENT;
+        TRANSITIONS[S_START][C_F] = S_F;
+        TRANSITIONS[S_START][C_DIGIT] = S_INT;
+        TRANSITIONS[S_START][C_DQUOTE] = S_STRING;
+        TRANSITIONS[S_START][C_SQUOTE] = S_CHAR;
+        TRANSITIONS[S_START][C_PLUS] = S_PLUS;
+        TRANSITIONS[S_START][C_MINUS] = S_MINUS;
+        TRANSITIONS[S_START][C_LESS] = S_LESS;
+        TRANSITIONS[S_START][C_GREATER] = S_GREATER;
+        TRANSITIONS[S_START][C_EQUAL] = S_ASSIGN;
+        TRANSITIONS[S_START][C_BANG] = S_NOT;
+        TRANSITIONS[S_START][C_AMP] = S_AMP;
+        TRANSITIONS[S_START][C_PIPE] = S_PIPE;
+        TRANSITIONS[S_START][C_STAR] = S_MULTIPLY;
+        TRANSITIONS[S_START][C_SLASH] = S_DIVIDE;
+        TRANSITIONS[S_START][C_PERCENT] = S_MODULO;
+        TRANSITIONS[S_START][C_LPAREN] = S_LPAREN;
+        TRANSITIONS[S_START][C_RPAREN] = S_RPAREN;
+        TRANSITIONS[S_START][C_LBRACE] = S_LBRACE;
+        TRANSITIONS[S_START][C_RBRACE] = S_RBRACE;
+        TRANSITIONS[S_START][C_SEMICOLON] = S_SEMICOLON;
+        TRANSITIONS[S_START][C_COMMA] = S_COMMA;
+        TRANSITIONS[S_START][C_COLON] = S_COLON;
+
+        // Identificadores (y la 'f' que puede abrir un f"...")
+        for (int state : new int[] { S_IDENT, S_F }) {
+            TRANSITIONS[state][C_LETTER] = S_IDENT;
+            TRANSITIONS[state][C_F] = S_IDENT;
+            TRANSITIONS[state][C_DIGIT] = S_IDENT;
+        }
+        TRANSITIONS[S_F][C_DQUOTE] = S_FSTRING;
+
+        // Strings, f-strings y chars: cualquier carácter hasta la comilla de cierre
+        Arrays.fill(TRANSITIONS[S_FSTRING], S_FSTRING);
+        TRANSITIONS[S_FSTRING][C_DQUOTE] = S_FSTRING_END;
+        Arrays.fill(TRANSITIONS[S_STRING], S_STRING);
+        TRANSITIONS[S_STRING][C_DQUOTE] = S_STRING_END;
+        Arrays.fill(TRANSITIONS[S_CHAR], S_CHAR);
+        TRANSITIONS[S_CHAR][C_SQUOTE] = S_CHAR_END;
+
+        // Números: \d+ o \d+\.\d+
+        TRANSITIONS[S_INT][C_DIGIT] = S_INT;
+        TRANSITIONS[S_INT][C_DOT] = S_INT_DOT;
+        TRANSITIONS[S_INT_DOT][C_DIGIT] = S_FLOAT;
+        TRANSITIONS[S_FLOAT][C_DIGIT] = S_FLOAT;
+
+        // Operadores de dos caracteres
+        TRANSITIONS[S_PLUS][C_PLUS] = S_INCREMENT;
+        TRANSITIONS[S_MINUS][C_MINUS] = S_DECREMENT;
+        TRANSITIONS[S_LESS][C_EQUAL] = S_LESS_EQUAL;
+        TRANSITIONS[S_GREATER][C_EQUAL] = S_GREATER_EQUAL;
+        TRANSITIONS[S_ASSIGN][C_EQUAL] = S_EQUALS;
+        TRANSITIONS[S_NOT][C_EQUAL] = S_NOT_EQUALS;
+        TRANSITIONS[S_AMP][C_AMP] = S_AND;
+        TRANSITIONS[S_PIPE][C_PIPE] = S_OR;
+
+        ACCEPTS[S_IDENT] = TokenType.IDENTIFIER;
+        ACCEPTS[S_F] = TokenType.IDENTIFIER;
+        ACCEPTS[S_FSTRING_END] = TokenType.FORMATTED_STRING;
+        ACCEPTS[S_STRING_END] = TokenType.STRING;
+        ACCEPTS[S_CHAR_END] = TokenType.CHAR;
+        ACCEPTS[S_INT] = TokenType.NUMBER;
+        ACCEPTS[S_FLOAT] = TokenType.NUMBER;
+        ACCEPTS[S_PLUS] = TokenType.PLUS;
+        ACCEPTS[S_INCREMENT] = TokenType.INCREMENT;
+        ACCEPTS[S_MINUS] = TokenType.MINUS;
+        ACCEPTS[S_DECREMENT] = TokenType.DECREMENT;
+        ACCEPTS[S_LESS] = TokenType.LESS;
+        ACCEPTS[S_LESS_EQUAL] = TokenType.LESS_EQUAL;
+        ACCEPTS[S_GREATER] = TokenType.GREATER;
+        ACCEPTS[S_GREATER_EQUAL] = TokenType.GREATER_EQUAL;
+        ACCEPTS[S_ASSIGN] = TokenType.ASSIGN;
+        ACCEPTS[S_EQUALS] = TokenType.EQUALS;
+        ACCEPTS[S_NOT] = TokenType.NOT;
+        ACCEPTS[S_NOT_EQUALS] = TokenType.NOT_EQUALS;
+        ACCEPTS[S_AND] = TokenType.AND;
+        ACCEPTS[S_OR] = TokenType.OR;
+        ACCEPTS[S_MULTIPLY] = TokenType.MULTIPLY;
+        ACCEPTS[S_DIVIDE] = TokenType.DIVIDE;
+        ACCEPTS[S_MODULO] = TokenType.MODULO;
+        ACCEPTS[S_LPAREN] = TokenType.LPAREN;
+        ACCEPTS[S_RPAREN] = TokenType.RPAREN;
+        ACCEPTS[S_LBRACE] = TokenType.LBRACE;
+        ACCEPTS[S_RBRACE] = TokenType.RBRACE;
+        ACCEPTS[S_SEMICOLON] = TokenType.SEMICOLON;
+        ACCEPTS[S_COMMA] = TokenType.COMMA;
+        ACCEPTS[S_COLON] = TokenType.COLON;
+    }
+
+    private static int charClass(char c) {
+        return c < 128 ? ASCII_CLASSES[c] : C_OTHER;
+    }
+
+    // ==================== AUTÓMATA COMPARTIDO CON TokenStream ====================
+    static final int DFA_START = S_START;
+    static final int DFA_ERROR = S_ERROR;
+
+    static int transition(int state, char c) {
+        return TRANSITIONS[state][charClass(c)];
+    }
+
+    static TokenType acceptedType(int state) {
+        return state == S_ERROR ? null : ACCEPTS[state];
+    }
+
+    // Igual que \b en el motor regex: el code point siguiente continúa la palabra
+    static boolean continuesWord(int codePoint) {
+        return Character.isLetterOrDigit(codePoint) || Character.getType(codePoint) == Character.NON_SPACING_MARK;
+    }
+
     public Lexer(String sourceCode) {
+        this(sourceCode, Math.max(16, sourceCode.length() / 4));
+    }
+
+    private Lexer(String sourceCode, int capacity) {
         this.sourceCode = sourceCode;
+        this.tokens = new TokenBuffer(sourceCode, capacity);
     }
 
     public Lexer(String sourceCode, ErrorManager errorManager) {
-        this.sourceCode = sourceCode;
+        this(sourceCode);
         this.errorManager = errorManager;
     }
 
+    /**
+     * Lexer en modo streaming sobre un Reader: los tokens se producen bajo
+     * demanda con iterator() sin cargar todo el texto en memoria.
+     */
+    public Lexer(Reader reader) {
+        this.stream = new TokenStream(reader, errors);
+    }
+
+    /**
+     * Lexer en modo streaming sobre un CharBuffer (por ejemplo la vista de un
+     * archivo mapeado en memoria); se lee directamente sin copiarlo.
+     */
+    public Lexer(CharBuffer chars) {
+        this.stream = new TokenStream(chars, errors);
+    }
+
+    private Lexer(ByteBuffer bytes, Charset charset) {
+        this.stream = new TokenStream(bytes, charset, errors);
+    }
+
+    /**
+     * Lexer en modo streaming sobre un archivo mapeado en memoria con
+     * FileChannel; los bytes se decodifican a medida que se piden tokens.
+     */
+    public static Lexer mapFile(Path path, Charset charset) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Archivo demasiado grande para mapearse: " + path);
+            }
+            // El mapeo sigue siendo válido después de cerrar el canal
+            return new Lexer(channel.map(FileChannel.MapMode.READ_ONLY, 0, size), charset);
+        }
+    }
+
+    /**
+     * Selecciona el motor de escaneo: el autómata (DFA) por defecto o el motor
+     * de expresiones regulares original, útil para comparar salidas.
+     */
+    public void setUseRegexEngine(boolean useRegexEngine) {
+        this.useRegexEngine = useRegexEngine;
+    }
+
+    /**
+     * Versión de compatibilidad: devuelve los tokens como objetos Token.
+     */
     public List<Token> tokenize() {
+        return tokenizeToBuffer().toList();
+    }
+
+    /**
+     * Tokens bajo demanda (pull). En modo streaming es la forma natural de
+     * consumir el lexer y solo puede recorrerse una vez; con un String escanea
+     * el texto de nuevo. El último token es siempre EOF.
+     */
+    @Override
+    public Iterator<Token> iterator() {
+        if (stream != null) {
+            return stream;
+        }
+        return new TokenStream(sourceCode, errors);
+    }
+
+    public TokenBuffer tokenizeToBuffer() {
+        if (stream != null) {
+            return drainStream();
+        }
+        if (useRegexEngine) {
+            return tokenizeWithRegex();
+        }
+
+        while (position < sourceCode.length()) {
+            scanNext();
+        }
+
+        addToken(TokenType.EOF, position, position);
+        return tokens;
+    }
+
+    /**
+     * En modo streaming no hay un String con el código fuente: cada token
+     * guarda su propio texto (sin espacios ni comentarios).
+     */
+    private TokenBuffer drainStream() {
+        tokens = new TokenBuffer(null, 1024);
+        while (stream.hasNext()) {
+            Token token = stream.next();
+            tokens.addSynthetic(token.type, token.value, token.line, token.column);
+        }
+        return tokens;
+    }
+
+    public TokenBuffer tokenizeParallel() {
+        return tokenizeParallel(ForkJoinPool.commonPool(), DEFAULT_PARALLEL_CHUNK);
+    }
+
+    /**
+     * Escaneo en paralelo para fuentes de varios megabytes. El texto se corta
+     * justo después de un salto de línea cada ~chunkSize caracteres y cada
+     * trozo se escanea en el ForkJoinPool como si empezara ahí.
+     *
+     * Un corte solo es seguro si el escaneo secuencial también pasa por él
+     * (no cae dentro de un string, f-string o char de varias líneas). Por eso,
+     * al unir los resultados, cada trozo se usa a partir del primer límite de
+     * token que coincide con la posición a la que llegó el trozo anterior; si
+     * no hay coincidencia se sigue escaneando secuencialmente. Los tokens y la
+     * lista de errores son idénticos a los de tokenizeToBuffer().
+     */
+    public TokenBuffer tokenizeParallel(ForkJoinPool pool, int chunkSize) {
+        if (stream != null || useRegexEngine || sourceCode.length() < 2 * chunkSize
+                || pool.getParallelism() < 2) {
+            return tokenizeToBuffer();
+        }
+
+        // 1️⃣ Cortes justo después de un '\n' (la columna ahí siempre es 1)
+        List<Callable<Chunk>> tasks = new ArrayList<>();
+        int start = 0;
+        while (start < sourceCode.length()) {
+            int newline = sourceCode.indexOf('\n', Math.min(start + chunkSize, sourceCode.length()));
+            int end = newline < 0 ? sourceCode.length() : newline + 1;
+            final int chunkStart = start;
+            final int chunkEnd = end;
+            tasks.add(() -> scanChunk(chunkStart, chunkEnd));
+            start = end;
+        }
+
+        List<Chunk> chunks = new ArrayList<>(tasks.size());
+        try {
+            for (Future<Chunk> future : pool.invokeAll(tasks)) {
+                chunks.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Escaneo en paralelo interrumpido", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Error en el escaneo en paralelo", e.getCause());
+        }
+
+        // 2️⃣ Unir en orden, sincronizando cada trozo con el anterior
+        reset(sourceCode, Math.max(16, sourceCode.length() / 4));
+        for (Chunk chunk : chunks) {
+            int boundary = chunk.boundaryAt(position);
+            while (boundary < 0 && position < chunk.lastBoundary()) {
+                scanNext();
+                boundary = chunk.boundaryAt(position);
+            }
+            if (boundary >= 0) {
+                appendChunk(chunk, boundary);
+            }
+        }
+        while (position < sourceCode.length()) {
+            scanNext();
+        }
+
+        addToken(TokenType.EOF, position, position);
+        return tokens;
+    }
+
+    private Chunk scanChunk(int start, int end) {
+        Lexer lexer = new Lexer(sourceCode, Math.max(16, (end - start) / 4));
+        lexer.position = start;
+        Chunk chunk = new Chunk(lexer);
+        chunk.addBoundary();
+        while (lexer.position < end) {
+            lexer.scanNext();
+            chunk.addBoundary();
+        }
+        return chunk;
+    }
+
+    // Copia los tokens y errores del trozo desde su límite 'boundary', corrigiendo las líneas
+    private void appendChunk(Chunk chunk, int boundary) {
+        Lexer scanned = chunk.lexer;
+        int lineDelta = line - chunk.lines[boundary];
+
+        int first = tokens.size();
+        tokens.copyShifted(scanned.tokens, chunk.tokenCounts[boundary], scanned.tokens.size(), 0, lineDelta, 0, 0);
+        ensureReachCapacity(tokens.size());
+        for (int i = first, j = chunk.tokenCounts[boundary]; i < tokens.size(); i++, j++) {
+            furthest = Math.max(furthest, scanned.reach[j]);
+            reach[i] = furthest;
+        }
+
+        for (int e = chunk.errorCounts[boundary]; e < scanned.errorPositions.size(); e++) {
+            int[] error = scanned.errorPositions.get(e);
+            recordUnrecognized(error[0], error[1] + lineDelta, error[2]);
+        }
+
+        position = scanned.position;
+        line = scanned.line + lineDelta;
+        column = scanned.column;
+        furthest = Math.max(furthest, scanned.furthest);
+    }
+
+    /**
+     * Resultado de escanear un trozo: sus tokens y, para cada límite de token
+     * por el que pasó (posición creciente), cuántos tokens y errores llevaba.
+     */
+    private static final class Chunk {
+        final Lexer lexer;
+        int[] positions = new int[64];
+        int[] tokenCounts = new int[64];
+        int[] errorCounts = new int[64];
+        int[] lines = new int[64];
+        int count;
+
+        Chunk(Lexer lexer) {
+            this.lexer = lexer;
+        }
+
+        void addBoundary() {
+            if (count > 0 && positions[count - 1] == lexer.position)
+                return;
+            if (count == positions.length) {
+                positions = Arrays.copyOf(positions, count * 2);
+                tokenCounts = Arrays.copyOf(tokenCounts, count * 2);
+                errorCounts = Arrays.copyOf(errorCounts, count * 2);
+                lines = Arrays.copyOf(lines, count * 2);
+            }
+            positions[count] = lexer.position;
+            tokenCounts[count] = lexer.tokens.size();
+            errorCounts[count] = lexer.errors.size();
+            lines[count] = lexer.line;
+            count++;
+        }
+
+        int boundaryAt(int position) {
+            int index = Arrays.binarySearch(positions, 0, count, position);
+            return index >= 0 ? index : -1;
+        }
+
+        int lastBoundary() {
+            return positions[count - 1];
+        }
+    }
+
+    /**
+     * Re-escaneo incremental después de editar el documento (por ejemplo desde
+     * un DocumentEvent): en [offset, offset + removedLength) del texto anterior
+     * ahora hay insertedLength caracteres nuevos.
+     *
+     * Se conservan los tokens que no examinaron nada de la zona editada, se
+     * re-escanea desde el último de ellos y, en cuanto el autómata vuelve a
+     * quedar en un límite de token que ya existía en el texto anterior, el
+     * resto de los tokens y errores se copian desplazados en lugar de volver
+     * a escanearse. El resultado es idéntico al de un escaneo completo.
+     */
+    public TokenBuffer relex(String newSource, int offset, int removedLength, int insertedLength) {
+        TokenBuffer old = tokens;
+        int oldLast = old == null || stream != null ? -1 : old.size() - 1; // índice del EOF
+
+        if (useRegexEngine || oldLast < 0) {
+            reset(newSource, Math.max(16, newSource.length() / 4));
+            return tokenizeToBuffer();
+        }
+
+        int[] oldReach = reach;
+        List<String> oldErrors = new ArrayList<>(errors);
+        List<int[]> oldErrorPositions = new ArrayList<>(errorPositions);
+        int delta = insertedLength - removedLength;
+
+        // 1️⃣ reach es creciente: buscar el primer token que examinó la zona editada
+        int keep = 0;
+        int high = oldLast;
+        while (keep < high) {
+            int mid = (keep + high) >>> 1;
+            if (oldReach[mid] <= offset) {
+                keep = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+
+        reset(newSource, old.size() + Math.max(16, delta / 4));
+        if (keep > 0) {
+            // El texto anterior a offset no cambió: se reanuda justo después del token keep - 1
+            tokens.copyRange(old, 0, keep);
+            ensureReachCapacity(keep);
+            System.arraycopy(oldReach, 0, reach, 0, keep);
+
+            int[] resume = lineColumnAfter(old, keep - 1);
+            position = old.end(keep - 1);
+            line = resume[0];
+            column = resume[1];
+            furthest = oldReach[keep - 1];
+        }
+        for (int e = 0; e < oldErrorPositions.size() && oldErrorPositions.get(e)[0] < position; e++) {
+            errors.add(oldErrors.get(e));
+            errorPositions.add(oldErrorPositions.get(e));
+        }
+
+        // 2️⃣ Re-escanear hasta sincronizar con un límite de token del texto anterior
+        int damageEnd = offset + insertedLength;
+        int oldIndex = keep;
+        while (position < sourceCode.length()) {
+            int before = tokens.size();
+            scanNext();
+            if (tokens.size() == before || position < damageEnd)
+                continue;
+
+            int oldPosition = position - delta;
+            while (oldIndex < oldLast && old.end(oldIndex) < oldPosition) {
+                oldIndex++;
+            }
+            if (oldIndex < oldLast && old.end(oldIndex) == oldPosition && oldReach[oldIndex] + delta == furthest) {
+                appendShifted(old, oldReach, oldIndex, oldErrors, oldErrorPositions, delta);
+                return tokens;
+            }
+        }
+
+        addToken(TokenType.EOF, position, position);
+        return tokens;
+    }
+
+    /**
+     * Copia los tokens y errores del texto anterior que siguen al token
+     * {@code boundary}, desplazando offsets, líneas y columnas.
+     */
+    private void appendShifted(TokenBuffer old, int[] oldReach, int boundary, List<String> oldErrors,
+            List<int[]> oldErrorPositions, int delta) {
+        int[] oldEnd = lineColumnAfter(old, boundary);
+        int oldLine = oldEnd[0];
+        int lineDelta = line - oldLine;
+        int columnDelta = column - oldEnd[1];
+
+        int first = tokens.size();
+        tokens.copyShifted(old, boundary + 1, old.size(), delta, lineDelta, oldLine, columnDelta);
+        ensureReachCapacity(tokens.size());
+        for (int i = first, j = boundary + 1; i < tokens.size(); i++, j++) {
+            reach[i] = oldReach[j] + delta;
+        }
+
+        int oldPosition = position - delta;
+        for (int e = 0; e < oldErrorPositions.size(); e++) {
+            int[] error = oldErrorPositions.get(e);
+            if (error[0] < oldPosition)
+                continue;
+            recordUnrecognized(error[0] + delta, error[1] + lineDelta,
+                    error[2] + (error[1] == oldLine ? columnDelta : 0));
+        }
+
+        // Dejar el estado igual que al terminar un escaneo completo
+        int eof = tokens.size() - 1;
+        position = tokens.start(eof);
+        line = tokens.line(eof);
+        column = tokens.column(eof);
+        furthest = reach[eof];
+    }
+
+    private void reset(String newSource, int capacity) {
+        stream = null;
+        sourceCode = newSource;
+        tokens = new TokenBuffer(newSource, capacity);
+        reach = new int[Math.max(16, capacity)];
+        errors.clear();
+        errorPositions.clear();
+        position = 0;
+        line = 1;
+        column = 1;
+        furthest = 0;
+    }
+
+    // Línea y columna justo después del token index, en el texto de su buffer
+    private static int[] lineColumnAfter(TokenBuffer buffer, int index) {
+        String text = buffer.getSource();
+        int tokenLine = buffer.line(index);
+        int tokenColumn = buffer.column(index);
+        for (int i = buffer.start(index); i < buffer.end(index); i++) {
+            if (text.charAt(i) == '\n') {
+                tokenLine++;
+                tokenColumn = 1;
+            } else {
+                tokenColumn++;
+            }
+        }
+        return new int[] { tokenLine, tokenColumn };
+    }
+
+    /**
+     * Avanza un paso del autómata: salta espacios y comentarios y luego agrega
+     * un token o reporta un carácter no reconocido.
+     */
+    private void scanNext() {
+        final int length = sourceCode.length();
+        skipWhitespace();
+        // skipWhitespace examina hasta dos caracteres en el punto donde se detiene ("//")
+        furthest = Math.max(furthest, Math.min(position + 2, length + 1));
+        if (position >= length)
+            return;
+
+        // Recorrer el autómata desde la posición actual, recordando el último
+        // estado de aceptación (maximal munch con retroceso)
+        int state = S_START;
+        int i = position;
+        int acceptEnd = -1;
+        int acceptState = S_ERROR;
+        while (i < length) {
+            int next = TRANSITIONS[state][charClass(sourceCode.charAt(i))];
+            if (next == S_ERROR)
+                break;
+            state = next;
+            i++;
+            if (ACCEPTS[state] != null) {
+                acceptState = state;
+                acceptEnd = i;
+            }
+        }
+        furthest = Math.max(furthest, i + 1);
+
+        if (acceptEnd < 0) {
+            reportUnrecognized();
+            return;
+        }
+
+        TokenType type = ACCEPTS[acceptState];
+        if (type == TokenType.IDENTIFIER) {
+            type = classifyWord(position, acceptEnd);
+            // classifyWord mira el code point siguiente (hasta dos chars)
+            furthest = Math.max(furthest, Math.min(acceptEnd + 2, length + 1));
+        }
+
+        addToken(type, position, acceptEnd);
+        updatePosition(acceptEnd);
+    }
+
+    private void addToken(TokenType type, int start, int end) {
+        tokens.add(type, start, end, line, column);
+        int index = tokens.size() - 1;
+        ensureReachCapacity(index + 1);
+        reach[index] = type == TokenType.EOF ? sourceCode.length() + 1 : furthest;
+    }
+
+    private void ensureReachCapacity(int required) {
+        if (required > reach.length) {
+            reach = Arrays.copyOf(reach, Math.max(required, reach.length * 2));
+        }
+    }
+
+    /**
+     * Motor original basado en expresiones regulares. Se conserva como
+     * referencia para verificar que el autómata produce la misma salida.
+     */
+    private TokenBuffer tokenizeWithRegex() {
         while (position < sourceCode.length()) {
             skipWhitespace();
             if (position >= sourceCode.length())
@@ -127,35 +825,64 @@ public class Lexer {
             for (int i = 0; i < PATTERNS.length; i++) {
                 Matcher matcher = PATTERNS[i].matcher(sourceCode.substring(position));
                 if (matcher.find()) {
-                    String value = matcher.group();
-                    Token token = new Token(TOKEN_TYPES[i], value, line, column);
-                    tokens.add(token);
+                    int end = position + matcher.group().length();
+                    tokens.add(TOKEN_TYPES[i], position, end, line, column);
 
-                    updatePosition(value);
+                    updatePosition(end);
                     matched = true;
                     break;
                 }
             }
 
             if (!matched) {
-                // ✅ CORREGIDO: En lugar de lanzar excepción, agregar error y continuar
-                char problematicChar = sourceCode.charAt(position);
-                String errorMsg = "Carácter no reconocido: '" + problematicChar +
-                        "' en línea " + line + ", columna " + column;
-                errors.add(errorMsg);
-
-                // Avanzar una posición para continuar
-                if (problematicChar == '\n') {
-                    line++;
-                    column = 1;
-                } else {
-                    column++;
-                }
-                position++;
+                reportUnrecognized();
             }
         }
 
-        tokens.add(new Token(TokenType.EOF, "", line, column));
+        tokens.add(TokenType.EOF, position, position, line, column);
+        return tokens;
+    }
+
+    private void reportUnrecognized() {
+        // ✅ CORREGIDO: En lugar de lanzar excepción, agregar error y continuar
+        char problematicChar = sourceCode.charAt(position);
+        recordUnrecognized(position, line, column);
+
+        // Avanzar una posición para continuar
+        if (problematicChar == '\n') {
+            line++;
+            column = 1;
+        } else {
+            column++;
+        }
+        position++;
+    }
+
+    private void recordUnrecognized(int offset, int errorLine, int errorColumn) {
+        String errorMsg = "Carácter no reconocido: '" + sourceCode.charAt(offset) +
+                "' en línea " + errorLine + ", columna " + errorColumn;
+        errors.add(errorMsg);
+        errorPositions.add(new int[] { offset, errorLine, errorColumn });
+    }
+
+    /**
+     * Decide si la palabra [start, end) es una palabra reservada. Igual que
+     * {@code ^palabra\b} en el motor regex: solo cuenta como palabra reservada
+     * si el siguiente carácter no es parte de una palabra.
+     */
+    private TokenType classifyWord(int start, int end) {
+        TokenType keyword = Keywords.lookup(sourceCode, start, end);
+        if (keyword == null)
+            return TokenType.IDENTIFIER;
+        if (end < sourceCode.length()) {
+            if (continuesWord(sourceCode.codePointAt(end)))
+                return TokenType.IDENTIFIER;
+        }
+        return keyword;
+    }
+
+    // Tokens del último escaneo (completo o incremental)
+    public TokenBuffer getTokens() {
         return tokens;
     }
 
@@ -208,23 +935,20 @@ public class Lexer {
         }
     }
 
-    private void updatePosition(String value) {
-        int newlines = countNewlines(value);
-        if (newlines > 0) {
-            line += newlines;
-            column = value.length() - value.lastIndexOf('\n');
-        } else {
-            column += value.length();
+    // Avanza hasta 'end' actualizando línea y columna según el texto consumido
+    private void updatePosition(int end) {
+        int lastNewline = -1;
+        for (int i = position; i < end; i++) {
+            if (sourceCode.charAt(i) == '\n') {
+                line++;
+                lastNewline = i;
+            }
         }
-        position += value.length();
-    }
-
-    private int countNewlines(String str) {
-        int count = 0;
-        for (char c : str.toCharArray()) {
-            if (c == '\n')
-                count++;
+        if (lastNewline >= 0) {
+            column = end - lastNewline;
+        } else {
+            column += end - position;
         }
-        return count;
+        position = end;
     }
 }
\ No newline at end of file
@@ -0,0 +1,67 @@
+import java.util.BitSet;
+
+/**
+ * Variables vivas: las que se pueden leer más adelante antes de volver a
+ * escribirse. Análisis hacia atrás (may) sobre el {@link ControlFlowGraph}.
+ *
+ * Al final del programa (y al volver de una función) las variables del
+ * usuario siguen vivas; los temporales no.
+ */
+public class Liveness {
+    private final TACBuffer code;
+    private final TACVariables variables;
+    private final Dataflow flow;
+
+    public Liveness(TACBuffer code, ControlFlowGraph cfg, TACVariables variables) {
+        this.code = code;
+        this.variables = variables;
+
+        int blocks = cfg.blocks().size();
+        BitSet[] gen = new BitSet[blocks];
+        BitSet[] kill = new BitSet[blocks];
+        for (ControlFlowGraph.Block block : cfg.blocks()) {
+            BitSet used = new BitSet();
+            BitSet defined = new BitSet();
+            for (int i = block.end - 1; i >= block.start; i--) {
+                if (code.isDead(i)) {
+                    continue;
+                }
+                int def = variables.definition(code, i);
+                if (def >= 0) {
+                    defined.set(def);
+                    used.clear(def);
+                }
+                variables.addUses(code, i, used);
+            }
+            gen[block.id] = used;
+            kill[block.id] = defined;
+        }
+
+        BitSet all = new BitSet();
+        all.set(0, variables.count());
+        flow = new Dataflow(cfg, Dataflow.Direction.BACKWARD, false, gen, kill, variables.globals(), all);
+    }
+
+    // Vivas al salir del bloque (copia)
+    public BitSet liveOut(ControlFlowGraph.Block block) {
+        return (BitSet) flow.out(block).clone();
+    }
+
+    public BitSet liveIn(ControlFlowGraph.Block block) {
+        return (BitSet) flow.in(block).clone();
+    }
+
+    // Pasa live de "después de i" a "antes de i"
+    public void step(int i, BitSet live) {
+        int def = variables.definition(code, i);
+        if (def >= 0) {
+            live.clear(def);
+        }
+        variables.addUses(code, i, live);
+    }
+
+    public boolean isLive(BitSet live, Operand operand) {
+        int index = variables.indexOf(operand);
+        return index >= 0 && live.get(index);
+    }
+}
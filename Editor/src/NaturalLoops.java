@@ -0,0 +1,117 @@
+import java.util.*;
+
+/**
+ * Bucles naturales de un {@link ControlFlowGraph}.
+ *
+ * Una arista hacia atrás (el destino domina al origen) define un bucle: su
+ * cabecera es el destino, que empieza con la etiqueta a la que salta el
+ * goto o el ifTrue del final, y el cuerpo son los bloques desde los que se
+ * llega al origen sin pasar por la cabecera. Las aristas hacia atrás a la
+ * misma cabecera forman un solo bucle (un continue agrega otra).
+ *
+ * Los bucles quedan ordenados de los más internos a los más externos.
+ */
+public class NaturalLoops {
+
+    public static final class Loop {
+        public final ControlFlowGraph.Block header;
+        public final List<ControlFlowGraph.Block> latches = new ArrayList<>(1); // Orígenes de las aristas hacia atrás
+        final BitSet body = new BitSet(); // Ids de los bloques, con la cabecera
+
+        Loop(ControlFlowGraph.Block header) {
+            this.header = header;
+        }
+
+        public boolean contains(ControlFlowGraph.Block block) {
+            return body.get(block.id);
+        }
+
+        public boolean contains(Loop other) {
+            return body.get(other.header.id);
+        }
+
+        // Bloques del cuerpo en el orden del código
+        public List<ControlFlowGraph.Block> blocks(ControlFlowGraph cfg) {
+            List<ControlFlowGraph.Block> blocks = new ArrayList<>(body.cardinality());
+            for (int id = body.nextSetBit(0); id >= 0; id = body.nextSetBit(id + 1)) {
+                blocks.add(cfg.blocks().get(id));
+            }
+            return blocks;
+        }
+
+        // Predecesores de la cabecera que están fuera del bucle (por donde se entra)
+        public List<ControlFlowGraph.Block> entries() {
+            List<ControlFlowGraph.Block> entries = new ArrayList<>(1);
+            for (ControlFlowGraph.Block predecessor : header.predecessors) {
+                if (!contains(predecessor)) {
+                    entries.add(predecessor);
+                }
+            }
+            return entries;
+        }
+
+        // Bloques fuera del bucle a los que se sale desde adentro
+        public List<ControlFlowGraph.Block> exits(ControlFlowGraph cfg) {
+            List<ControlFlowGraph.Block> exits = new ArrayList<>(1);
+            for (ControlFlowGraph.Block block : blocks(cfg)) {
+                for (ControlFlowGraph.Block successor : block.successors) {
+                    if (!contains(successor) && !exits.contains(successor)) {
+                        exits.add(successor);
+                    }
+                }
+            }
+            return exits;
+        }
+
+        @Override
+        public String toString() {
+            return "Loop" + header + body;
+        }
+    }
+
+    private final List<Loop> loops = new ArrayList<>();
+
+    public NaturalLoops(TACBuffer code, ControlFlowGraph cfg) {
+        Map<ControlFlowGraph.Block, Loop> byHeader = new HashMap<>();
+        for (ControlFlowGraph.Block block : cfg.reversePostorder()) {
+            for (ControlFlowGraph.Block successor : block.successors) {
+                if (successor == cfg.exit() || !cfg.isBackEdge(block, successor)
+                        || code.op(successor.start) != Opcode.LABEL) {
+                    continue;
+                }
+                Loop loop = byHeader.get(successor);
+                if (loop == null) {
+                    loop = new Loop(successor);
+                    loop.body.set(successor.id);
+                    byHeader.put(successor, loop);
+                    loops.add(loop);
+                }
+                loop.latches.add(block);
+                collectBody(loop, block);
+            }
+        }
+        loops.sort(Comparator.comparingInt(loop -> loop.body.cardinality()));
+    }
+
+    // Sube por los predecesores desde el origen de la arista hasta la cabecera
+    private void collectBody(Loop loop, ControlFlowGraph.Block latch) {
+        Deque<ControlFlowGraph.Block> work = new ArrayDeque<>();
+        if (!loop.body.get(latch.id)) {
+            loop.body.set(latch.id);
+            work.push(latch);
+        }
+        while (!work.isEmpty()) {
+            for (ControlFlowGraph.Block predecessor : work.pop().predecessors) {
+                if (predecessor.isReachable() && !loop.body.get(predecessor.id)) {
+                    loop.body.set(predecessor.id);
+                    work.push(predecessor);
+                }
+            }
+        }
+    }
+
+    // De los más internos a los más externos
+    public List<Loop> loops() {
+        return loops;
+    }
+}
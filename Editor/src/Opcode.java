@@ -0,0 +1,96 @@
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Operaciones del código de tres direcciones ({@link TACInstruction}).
+ *
+ * El símbolo es el texto con el que se escribe la instrucción; el optimizador
+ * y los generadores trabajan con la constante y no comparan strings.
+ */
+public enum Opcode {
+    ASSIGN("="),
+    ADD("+"),
+    SUB("-"),
+    MUL("*"),
+    DIV("/"),
+    MOD("%"),
+    EQ("=="),
+    NE("!="),
+    LT("<"),
+    GT(">"),
+    LE("<="),
+    GE(">="),
+    AND("AND"),
+    OR("OR"),
+    MINUS("MINUS"),
+    NOT("NOT"),
+    LABEL("LABEL"),
+    GOTO("GOTO"),
+    IF_FALSE("IF_FALSE"),
+    IF_TRUE("IF_TRUE"),
+    SWITCH("SWITCH"),
+    JUMPTABLE("JUMPTABLE"),
+    PARAM("param"),
+    CALL("call"),
+    POP("pop"),
+    RET("ret"),
+    PRINT("print"),
+    PRINTLN("println");
+
+    public final String symbol;
+
+    private static final Map<String, Opcode> BY_SYMBOL = new HashMap<>();
+
+    static {
+        for (Opcode opcode : values()) {
+            BY_SYMBOL.put(opcode.symbol, opcode);
+        }
+        BY_SYMBOL.put("return", RET);
+    }
+
+    Opcode(String symbol) {
+        this.symbol = symbol;
+    }
+
+    // Operación a partir de su símbolo ("+", "IF_FALSE", "param"...)
+    public static Opcode of(String symbol) {
+        Opcode opcode = BY_SYMBOL.get(symbol);
+        if (opcode == null) {
+            throw new IllegalArgumentException("Operación TAC desconocida: " + symbol);
+        }
+        return opcode;
+    }
+
+    public boolean isArithmetic() {
+        return this == ADD || this == SUB || this == MUL || this == DIV || this == MOD;
+    }
+
+    public boolean isRelational() {
+        return this == EQ || this == NE || this == LT || this == GT || this == LE || this == GE;
+    }
+
+    // Operaciones que se pueden evaluar en compilación con dos números
+    public boolean isArithmeticOrRelational() {
+        return isArithmetic() || isRelational();
+    }
+
+    // a op b == b op a
+    public boolean isCommutative() {
+        return this == ADD || this == MUL || this == EQ || this == NE;
+    }
+
+    public boolean isConditionalJump() {
+        return this == IF_FALSE || this == IF_TRUE;
+    }
+
+    // Termina un bloque básico: después de ella el flujo no sigue en orden
+    public boolean endsBlock() {
+        return this == GOTO || this == IF_FALSE || this == IF_TRUE || this == SWITCH || this == JUMPTABLE
+                || this == RET;
+    }
+
+    @Override
+    public String toString() {
+        return symbol;
+    }
+}
@@ -0,0 +1,177 @@
+/**
+ * Operando de una {@link TACInstruction}.
+ *
+ * Se clasifica una sola vez al crearlo: temporales (t3), variables del
+ * usuario, constantes enteras, decimales, booleanas y de texto, f-strings,
+ * etiquetas y nombres de función. Las constantes numéricas guardan su valor ya
+ * convertido y los temporales su número, así el optimizador compara enteros y
+ * dobles en lugar de volver a parsear el texto.
+ */
+public final class Operand {
+
+    public enum Kind {
+        TEMP,
+        VARIABLE,
+        INT,
+        FLOAT,
+        BOOL,
+        STRING,
+        FORMATTED,
+        LABEL,
+        FUNCTION
+    }
+
+    public final Kind kind;
+    public final String text; // Como se escribe en el TAC y en el código generado
+    public final double value; // INT, FLOAT y BOOL (1 / 0)
+    public final int temp; // Número del temporal; -1 si no es TEMP
+
+    private Operand(Kind kind, String text, double value, int temp) {
+        this.kind = kind;
+        this.text = text;
+        this.value = value;
+        this.temp = temp;
+    }
+
+    // ==================== CREACIÓN ====================
+
+    public static Operand temp(int number) {
+        return new Operand(Kind.TEMP, "t" + number, 0, number);
+    }
+
+    public static Operand variable(String name) {
+        return new Operand(Kind.VARIABLE, name, 0, -1);
+    }
+
+    public static Operand label(String name) {
+        return new Operand(Kind.LABEL, name, 0, -1);
+    }
+
+    public static Operand function(String name) {
+        return new Operand(Kind.FUNCTION, name, 0, -1);
+    }
+
+    // Literal numérico tal como viene del código fuente (3, 2.5)
+    public static Operand number(String text) {
+        boolean integer = text.indexOf('.') < 0 && text.indexOf('e') < 0 && text.indexOf('E') < 0
+                && !text.equals("Infinity") && !text.equals("-Infinity") && !text.equals("NaN");
+        return new Operand(integer ? Kind.INT : Kind.FLOAT, text, Double.parseDouble(text), -1);
+    }
+
+    // Resultado de plegar constantes: entero si no tiene parte decimal
+    public static Operand number(double value) {
+        if (value == (long) value) {
+            return new Operand(Kind.INT, String.format("%d", (long) value), value, -1);
+        }
+        return new Operand(Kind.FLOAT, String.valueOf(value), value, -1);
+    }
+
+    public static Operand integer(long value) {
+        return new Operand(Kind.INT, String.valueOf(value), value, -1);
+    }
+
+    public static Operand bool(boolean value) {
+        return new Operand(Kind.BOOL, String.valueOf(value), value ? 1 : 0, -1);
+    }
+
+    // Texto con comillas ("hola")
+    public static Operand string(String raw) {
+        return new Operand(Kind.STRING, raw, 0, -1);
+    }
+
+    // f-string con prefijo y comillas (f"hola {nombre}")
+    public static Operand formatted(String raw) {
+        return new Operand(Kind.FORMATTED, raw, 0, -1);
+    }
+
+    /**
+     * Clasifica un operando escrito a mano (pruebas): t0, 3, 2.5, true, "hola",
+     * f"..." o un nombre de variable. Las etiquetas y funciones no se pueden
+     * distinguir por el texto; {@link TACInstruction} las crea según la
+     * operación.
+     */
+    public static Operand parse(String text) {
+        if (text == null) {
+            return null;
+        }
+        if (isTempName(text)) {
+            return temp(Integer.parseInt(text.substring(1)));
+        }
+        if (text.equals("true") || text.equals("false")) {
+            return bool(text.equals("true"));
+        }
+        if (text.startsWith("\"")) {
+            return string(text);
+        }
+        if (text.startsWith("f\"") || text.startsWith("F\"")) {
+            return formatted(text);
+        }
+        try {
+            return number(text);
+        } catch (NumberFormatException e) {
+            return variable(text);
+        }
+    }
+
+    private static boolean isTempName(String text) {
+        if (text.length() < 2 || text.length() > 10 || text.charAt(0) != 't') {
+            return false;
+        }
+        for (int i = 1; i < text.length(); i++) {
+            if (!Character.isDigit(text.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // ==================== CONSULTAS ====================
+
+    public boolean isTemp() {
+        return kind == Kind.TEMP;
+    }
+
+    // Constante numérica (INT o FLOAT); los booleanos no se pliegan
+    public boolean isNumber() {
+        return kind == Kind.INT || kind == Kind.FLOAT;
+    }
+
+    // Cualquier constante que se puede usar como valor inmediato
+    public boolean isConstant() {
+        return isNumber() || kind == Kind.BOOL;
+    }
+
+    // Variable o temporal: se puede asignar y leer
+    public boolean isStorage() {
+        return kind == Kind.TEMP || kind == Kind.VARIABLE;
+    }
+
+    public boolean isNumber(double expected) {
+        return isNumber() && value == expected;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof Operand)) {
+            return false;
+        }
+        Operand operand = (Operand) other;
+        if (kind != operand.kind) {
+            return false;
+        }
+        return kind == Kind.TEMP ? temp == operand.temp : text.equals(operand.text);
+    }
+
+    @Override
+    public int hashCode() {
+        return kind == Kind.TEMP ? temp : text.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return text;
+    }
+}
@@ -1,194 +1,226 @@
 import java.util.*;
 
+/**
+ * Optimización sobre el AST, antes de interpretar y generar código:
+ * plegado de constantes y eliminación de bloques if(false).
+ *
+ * El árbol ya respeta la precedencia, así que solo se pliegan operaciones
+ * cuyos dos operandos son literales numéricos (a * 2 + 3 no se convierte en
+ * a * 5). Los nodos nuevos conservan la ubicación del nodo que reemplazan.
+ */
 public class Optimizer {
-    private boolean changed;
-
-    public List<Token> optimize(List<Token> tokens) {
-        List<Token> currentTokens = new ArrayList<>(tokens);
+    private int folded;
+    private int removed;
 
+    public Ast.Program optimize(Ast.Program program) {
         System.out.println("   ⚙️  Iniciando fase de optimización...");
-        int pass = 1;
-
-        do {
-            changed = false;
-            int initialSize = currentTokens.size();
+        folded = 0;
+        removed = 0;
 
-            // 1. Constant Folding (Plegado de constantes)
-            currentTokens = foldConstants(currentTokens);
+        Ast.Program result = new Ast.Program(statements(program.statements));
 
-            // 2. Dead Code Elimination (Eliminación de código muerto)
-            currentTokens = eliminateDeadCode(currentTokens);
+        if (folded > 0 || removed > 0) {
+            System.out.println("      Constantes plegadas: " + folded + ", bloques muertos eliminados: " + removed);
+        }
+        return result;
+    }
 
-            if (changed) {
-                System.out.println("      Pass " + pass + ": Reducción de " + initialSize + " a " + currentTokens.size()
-                        + " tokens");
-                pass++;
+    // -------------------------------------------------------------------------
+    // SENTENCIAS
+    // -------------------------------------------------------------------------
+    private List<Ast.Stmt> statements(List<Ast.Stmt> statements) {
+        List<Ast.Stmt> result = new ArrayList<>(statements.size());
+        for (Ast.Stmt statement : statements) {
+            if (statement.kind == Ast.Kind.IF) {
+                // Puede desaparecer o reducirse a su bloque else
+                result.addAll(conditional((Ast.If) statement));
+            } else {
+                result.add(statement(statement));
             }
-        } while (changed && pass < 10); // Límite de pasadas por seguridad
+        }
+        return result;
+    }
 
-        return currentTokens;
+    private Ast.Stmt statement(Ast.Stmt statement) {
+        if (statement == null)
+            return null;
+
+        switch (statement.kind) {
+            case ASSIGN:
+                Ast.Assign assign = (Ast.Assign) statement;
+                return new Ast.Assign(assign.name, fold(assign.value), assign.span);
+            case PRINT:
+                Ast.Print print = (Ast.Print) statement;
+                return new Ast.Print(print.newline, foldAll(print.arguments), print.span);
+            case WHILE:
+                Ast.While loop = (Ast.While) statement;
+                return new Ast.While(fold(loop.condition), statements(loop.body), loop.span);
+            case DO_WHILE:
+                Ast.DoWhile doWhile = (Ast.DoWhile) statement;
+                return new Ast.DoWhile(statements(doWhile.body), fold(doWhile.condition), doWhile.span);
+            case FOR:
+                Ast.For forLoop = (Ast.For) statement;
+                return new Ast.For(statement(forLoop.init), fold(forLoop.condition), statement(forLoop.update),
+                        statements(forLoop.body), forLoop.span);
+            case SWITCH:
+                Ast.Switch switchStmt = (Ast.Switch) statement;
+                List<Ast.Case> cases = new ArrayList<>();
+                for (Ast.Case switchCase : switchStmt.cases) {
+                    cases.add(new Ast.Case(fold(switchCase.label), statements(switchCase.body), switchCase.span));
+                }
+                return new Ast.Switch(fold(switchStmt.subject), cases, switchStmt.span);
+            case RETURN:
+                Ast.Return ret = (Ast.Return) statement;
+                return new Ast.Return(fold(ret.value), ret.span);
+            case FUNCTION:
+                Ast.Function function = (Ast.Function) statement;
+                return new Ast.Function(function.name, function.parameters, statements(function.body),
+                        function.span);
+            case EXPRESSION:
+                Ast.ExpressionStmt expression = (Ast.ExpressionStmt) statement;
+                return new Ast.ExpressionStmt(fold(expression.expression), expression.span);
+            default:
+                return statement;
+        }
     }
 
     // -------------------------------------------------------------------------
-    // CONSTANT FOLDING: Evalúa operaciones constantes estáticas (e.g. 2 + 3 -> 5)
+    // DEAD CODE ELIMINATION: Elimina ramas inalcanzables (if(false){...})
     // -------------------------------------------------------------------------
-    private List<Token> foldConstants(List<Token> tokens) {
-        // Prioridad 1: Multiplicación, División, Módulo
-        tokens = foldOperations(tokens, EnumSet.of(TokenType.MULTIPLY, TokenType.DIVIDE, TokenType.MODULO));
+    private List<Ast.Stmt> conditional(Ast.If conditional) {
+        List<Ast.Branch> branches = new ArrayList<>();
+        for (Ast.Branch branch : conditional.branches) {
+            Ast.Expr condition = fold(branch.condition);
+            if (isFalse(condition)) {
+                removed++;
+                continue;
+            }
+            branches.add(new Ast.Branch(condition, statements(branch.body)));
+        }
+        List<Ast.Stmt> elseBody = conditional.elseBody != null ? statements(conditional.elseBody) : null;
 
-        // Prioridad 2: Suma, Resta
-        tokens = foldOperations(tokens, EnumSet.of(TokenType.PLUS, TokenType.MINUS));
+        if (!branches.isEmpty()) {
+            return Collections.singletonList(new Ast.If(branches, elseBody, conditional.span));
+        }
+        // Todas las condiciones eran falsas: solo queda el else (si existe)
+        return elseBody != null ? elseBody : Collections.emptyList();
+    }
 
-        // Prioridad 3: Comparaciones (solo números por ahora)
-        tokens = foldOperations(tokens, EnumSet.of(
-                TokenType.EQUALS, TokenType.NOT_EQUALS,
-                TokenType.LESS, TokenType.GREATER,
-                TokenType.LESS_EQUAL, TokenType.GREATER_EQUAL));
+    private boolean isFalse(Ast.Expr expression) {
+        return expression.kind == Ast.Kind.BOOLEAN && !((Ast.BooleanLiteral) expression).value;
+    }
 
-        return tokens;
+    // -------------------------------------------------------------------------
+    // CONSTANT FOLDING: Evalúa operaciones constantes estáticas (e.g. 2 + 3 -> 5)
+    // -------------------------------------------------------------------------
+    private List<Ast.Expr> foldAll(List<Ast.Expr> expressions) {
+        List<Ast.Expr> result = new ArrayList<>(expressions.size());
+        for (Ast.Expr expression : expressions) {
+            result.add(fold(expression));
+        }
+        return result;
     }
 
-    private List<Token> foldOperations(List<Token> tokens, Set<TokenType> operators) {
-        List<Token> result = new ArrayList<>();
-
-        for (int i = 0; i < tokens.size(); i++) {
-            // Necesitamos al menos: NUMBER OP NUMBER
-            if (i < tokens.size() - 2) {
-                Token t1 = tokens.get(i);
-                Token op = tokens.get(i + 1);
-                Token t2 = tokens.get(i + 2);
-
-                if (t1.type == TokenType.NUMBER && operators.contains(op.type) && t2.type == TokenType.NUMBER) {
-                    try {
-                        Token folded = performOperation(t1, op, t2);
-                        result.add(folded);
-                        i += 2; // Saltar los 2 tokens siguientes (op y t2)
-                        changed = true;
-                        continue;
-                    } catch (Exception e) {
-                        // Si hay error (ej. división por cero), no optimizar
-                    }
+    private Ast.Expr fold(Ast.Expr expression) {
+        if (expression == null)
+            return null;
+
+        Ast.Expr result = expression;
+        switch (expression.kind) {
+            case BINARY:
+                Ast.Binary binary = (Ast.Binary) expression;
+                Ast.Expr left = fold(binary.left);
+                Ast.Expr right = fold(binary.right);
+                result = null;
+                if (left.kind == Ast.Kind.NUMBER && right.kind == Ast.Kind.NUMBER) {
+                    result = performOperation((Ast.NumberLiteral) left, binary.operator,
+                            (Ast.NumberLiteral) right, binary.span);
                 }
-            }
-            result.add(tokens.get(i));
+                if (result == null) {
+                    result = left == binary.left && right == binary.right ? binary
+                            : new Ast.Binary(binary.operator, left, right, binary.span);
+                } else {
+                    folded++;
+                }
+                break;
+            case UNARY:
+                Ast.Unary unary = (Ast.Unary) expression;
+                Ast.Expr operand = fold(unary.operand);
+                if (operand != unary.operand) {
+                    result = new Ast.Unary(unary.operator, operand, unary.span);
+                }
+                break;
+            case CALL:
+                Ast.Call call = (Ast.Call) expression;
+                result = new Ast.Call(call.name, foldAll(call.arguments), call.span);
+                break;
+            default:
+                break;
         }
+
+        result.parenthesized = expression.parenthesized;
         return result;
     }
 
-    private Token performOperation(Token t1, Token op, Token t2) {
-        double v1 = Double.parseDouble(t1.value);
-        double v2 = Double.parseDouble(t2.value);
-        Object res = null;
-        TokenType newType = TokenType.NUMBER;
+    // Evalúa left op right; devuelve null si no se puede plegar (ej. división por cero)
+    private Ast.Expr performOperation(Ast.NumberLiteral left, TokenType operator, Ast.NumberLiteral right,
+            Ast.Span span) {
+        double v1 = Double.parseDouble(left.text);
+        double v2 = Double.parseDouble(right.text);
+        Double number = null;
+        Boolean bool = null;
 
-        switch (op.type) {
+        switch (operator) {
             case PLUS:
-                res = v1 + v2;
+                number = v1 + v2;
                 break;
             case MINUS:
-                res = v1 - v2;
+                number = v1 - v2;
                 break;
             case MULTIPLY:
-                res = v1 * v2;
+                number = v1 * v2;
                 break;
             case DIVIDE:
                 if (v2 != 0)
-                    res = v1 / v2;
+                    number = v1 / v2;
                 break;
             case MODULO:
-                res = v1 % v2;
+                if (v2 != 0)
+                    number = v1 % v2;
                 break;
 
             case EQUALS:
-                res = (v1 == v2);
-                newType = res.equals(true) ? TokenType.TRUE : TokenType.FALSE;
+                bool = v1 == v2;
                 break;
             case NOT_EQUALS:
-                res = (v1 != v2);
-                newType = res.equals(true) ? TokenType.TRUE : TokenType.FALSE;
+                bool = v1 != v2;
                 break;
             case LESS:
-                res = (v1 < v2);
-                newType = res.equals(true) ? TokenType.TRUE : TokenType.FALSE;
+                bool = v1 < v2;
                 break;
             case GREATER:
-                res = (v1 > v2);
-                newType = res.equals(true) ? TokenType.TRUE : TokenType.FALSE;
+                bool = v1 > v2;
                 break;
             case LESS_EQUAL:
-                res = (v1 <= v2);
-                newType = res.equals(true) ? TokenType.TRUE : TokenType.FALSE;
+                bool = v1 <= v2;
                 break;
             case GREATER_EQUAL:
-                res = (v1 >= v2);
-                newType = res.equals(true) ? TokenType.TRUE : TokenType.FALSE;
+                bool = v1 >= v2;
+                break;
+            default:
                 break;
         }
 
-        if (res == null)
-            throw new ArithmeticException("Operación inválida");
-
-        String valStr;
-        if (newType == TokenType.NUMBER) {
-            double dVal = (Double) res;
-            // Si es entero (ej 5.0), guardarlo como "5"
-            if (dVal == (long) dVal) {
-                valStr = String.valueOf((long) dVal);
-            } else {
-                valStr = String.valueOf(dVal);
-            }
-        } else {
-            valStr = res.toString();
+        if (bool != null) {
+            return new Ast.BooleanLiteral(bool, span);
         }
-
-        // Conservar línea/columna del primer token
-        return new Token(newType, valStr, t1.line, t1.column);
-    }
-
-    // -------------------------------------------------------------------------
-    // DEAD CODE ELIMINATION: Elimina bloques inalcanzables (if(false){...})
-    // -------------------------------------------------------------------------
-    private List<Token> eliminateDeadCode(List<Token> tokens) {
-        List<Token> result = new ArrayList<>();
-
-        for (int i = 0; i < tokens.size(); i++) {
-            // Detectar: IF + LPAREN + FALSE + RPAREN + LBRACE
-            if (i < tokens.size() - 5) {
-                if (tokens.get(i).type == TokenType.IF &&
-                        tokens.get(i + 1).type == TokenType.LPAREN &&
-                        tokens.get(i + 2).type == TokenType.FALSE &&
-                        tokens.get(i + 3).type == TokenType.RPAREN &&
-                        tokens.get(i + 4).type == TokenType.LBRACE) {
-
-                    // Encontrado bloque muerto. Buscar el RBRACE de cierre correspondiente
-                    int depth = 1;
-                    int j = i + 5;
-                    boolean foundEnd = false;
-
-                    while (j < tokens.size()) {
-                        if (tokens.get(j).type == TokenType.LBRACE)
-                            depth++;
-                        if (tokens.get(j).type == TokenType.RBRACE) {
-                            depth--;
-                            if (depth == 0) {
-                                foundEnd = true;
-                                break;
-                            }
-                        }
-                        j++;
-                    }
-
-                    if (foundEnd) {
-                        // Saltar todo el bloque (desde i hasta j)
-                        // System.out.println(" 🗑️ Eliminado bloque de código muerto (if false)");
-                        i = j; // El bucle for hará i++ después, saltando también el RBRACE
-                        changed = true;
-                        continue;
-                    }
-                }
-            }
-            result.add(tokens.get(i));
+        if (number == null) {
+            return null;
         }
-        return result;
+
+        double dVal = number;
+        // Si es entero (ej 5.0), guardarlo como "5"
+        String valStr = dVal == (long) dVal ? String.valueOf((long) dVal) : String.valueOf(dVal);
+        return new Ast.NumberLiteral(valStr, span);
     }
 }
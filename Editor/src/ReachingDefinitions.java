@@ -0,0 +1,113 @@
+import java.util.*;
+
+/**
+ * Definiciones que alcanzan: qué asignaciones a variables del usuario pueden
+ * ser la última escritura al llegar a cada punto. Análisis hacia adelante
+ * (may) sobre el {@link ControlFlowGraph}.
+ *
+ * Los temporales no entran: se escriben una sola vez. Además de las
+ * asignaciones hay una definición "desconocida" por variable, que llega desde
+ * la entrada del programa y desde cada call a una función del usuario (que
+ * puede cambiar cualquier variable global).
+ */
+public class ReachingDefinitions {
+    private final TACVariables variables;
+    private final int unknownBase; // Primer bit de las definiciones desconocidas
+    private final int[] bitOf; // Instrucción -> bit de su definición; -1 si no define una variable
+    private final int[] instructionOf; // Bit -> instrucción; -1 en las desconocidas
+    private final int[] variableOf; // Bit -> índice de la variable
+    private final BitSet[] definitionsOf; // Variable -> todos sus bits
+    private final Dataflow flow;
+
+    public ReachingDefinitions(TACBuffer code, ControlFlowGraph cfg, TACVariables variables) {
+        this.variables = variables;
+
+        BitSet globals = variables.globals();
+        int unknownBase = 0;
+        bitOf = new int[code.size()];
+        Arrays.fill(bitOf, -1);
+        for (int i = 0; i < code.size(); i++) {
+            int def = code.isDead(i) ? -1 : variables.definition(code, i);
+            if (def >= 0 && globals.get(def)) {
+                bitOf[i] = unknownBase++;
+            }
+        }
+        int bits = unknownBase + variables.count();
+        instructionOf = new int[bits];
+        variableOf = new int[bits];
+        definitionsOf = new BitSet[variables.count()];
+        for (int v = 0; v < variables.count(); v++) {
+            definitionsOf[v] = new BitSet();
+            instructionOf[unknownBase + v] = -1;
+            variableOf[unknownBase + v] = v;
+            definitionsOf[v].set(unknownBase + v);
+        }
+        for (int i = 0; i < code.size(); i++) {
+            if (bitOf[i] >= 0) {
+                int def = variables.definition(code, i);
+                instructionOf[bitOf[i]] = i;
+                variableOf[bitOf[i]] = def;
+                definitionsOf[def].set(bitOf[i]);
+            }
+        }
+        this.unknownBase = unknownBase;
+
+        int blocks = cfg.blocks().size();
+        BitSet[] gen = new BitSet[blocks];
+        BitSet[] kill = new BitSet[blocks];
+        for (ControlFlowGraph.Block block : cfg.blocks()) {
+            BitSet generated = new BitSet();
+            BitSet killed = new BitSet();
+            for (int i = block.start; i < block.end; i++) {
+                if (code.isDead(i)) {
+                    continue;
+                }
+                if (variables.callsUserFunction(code, i)) {
+                    for (int g = globals.nextSetBit(0); g >= 0; g = globals.nextSetBit(g + 1)) {
+                        generated.andNot(definitionsOf[g]);
+                        generated.set(unknownBase + g);
+                        killed.or(definitionsOf[g]);
+                    }
+                }
+                if (bitOf[i] >= 0) {
+                    BitSet others = definitionsOf[variableOf[bitOf[i]]];
+                    generated.andNot(others);
+                    generated.set(bitOf[i]);
+                    killed.or(others);
+                }
+            }
+            gen[block.id] = generated;
+            kill[block.id] = killed;
+        }
+
+        BitSet unknown = new BitSet();
+        unknown.set(unknownBase, bits);
+        BitSet all = new BitSet();
+        all.set(0, bits);
+        flow = new Dataflow(cfg, Dataflow.Direction.FORWARD, false, gen, kill, unknown, all);
+    }
+
+    // Definiciones que llegan al inicio del bloque
+    public BitSet in(ControlFlowGraph.Block block) {
+        return flow.in(block);
+    }
+
+    // Bits de todas las definiciones de una variable; null si no es una variable del usuario
+    public BitSet definitionsOf(Operand operand) {
+        int v = variables.indexOf(operand);
+        return v >= 0 && variables.globals().get(v) ? definitionsOf[v] : null;
+    }
+
+    public Operand variable(int bit) {
+        return variables.operand(variableOf[bit]);
+    }
+
+    // Instrucción de la definición; -1 si es la desconocida
+    public int instruction(int bit) {
+        return instructionOf[bit];
+    }
+
+    public boolean isUnknown(int bit) {
+        return bit >= unknownBase;
+    }
+}
@@ -0,0 +1,79 @@
+/**
+ * Traza acotada: guarda solo las últimas N líneas en un buffer circular.
+ *
+ * Cada posición del buffer es un StringBuilder que se reutiliza al dar la
+ * vuelta, así que una ejecución larga no crea un objeto por línea ni hace
+ * crecer la traza sin límite. contents() avisa cuántas líneas se descartaron.
+ */
+public final class RingTraceSink implements TraceSink {
+    public static final int DEFAULT_CAPACITY = 10_000;
+
+    private final TraceLevel level;
+    private final StringBuilder[] lines;
+    private int start = 0; // Línea más antigua
+    private int count = 0;
+    private long dropped = 0;
+
+    public RingTraceSink(TraceLevel level) {
+        this(level, DEFAULT_CAPACITY);
+    }
+
+    public RingTraceSink(TraceLevel level, int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("La capacidad de la traza debe ser positiva: " + capacity);
+        }
+        this.level = level;
+        this.lines = new StringBuilder[capacity];
+    }
+
+    @Override
+    public TraceLevel level() {
+        return level;
+    }
+
+    @Override
+    public StringBuilder line(TraceLevel detail) {
+        if (!level.includes(detail)) {
+            return null;
+        }
+        int index;
+        if (count < lines.length) {
+            index = (start + count++) % lines.length;
+        } else {
+            // Buffer lleno: se pisa la línea más antigua
+            index = start;
+            start = (start + 1) % lines.length;
+            dropped++;
+        }
+        StringBuilder line = lines[index];
+        if (line == null) {
+            line = lines[index] = new StringBuilder();
+        } else {
+            line.setLength(0);
+        }
+        return line;
+    }
+
+    /** Líneas descartadas por falta de espacio. */
+    public long dropped() {
+        return dropped;
+    }
+
+    public void clear() {
+        start = 0;
+        count = 0;
+        dropped = 0;
+    }
+
+    @Override
+    public String contents() {
+        StringBuilder sb = new StringBuilder();
+        if (dropped > 0) {
+            sb.append("... (").append(dropped).append(" líneas anteriores omitidas)\n");
+        }
+        for (int i = 0; i < count; i++) {
+            sb.append(lines[(start + i) % lines.length]).append('\n');
+        }
+        return sb.toString();
+    }
+}
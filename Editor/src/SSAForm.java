@@ -0,0 +1,304 @@
+import java.util.*;
+
+/**
+ * Forma SSA (asignación única estática) de un {@link TACBuffer}.
+ *
+ * Cada escritura de una variable o temporal crea un valor nuevo y en los
+ * bloques donde se juntan valores distintos se pone una función phi (en la
+ * frontera de dominancia iterada de los bloques que la escriben, solo para
+ * las variables que se leen en otro bloque: SSA semi-podada). Después se
+ * renombra recorriendo el árbol de dominadores.
+ *
+ * Los valores viven al lado del buffer, no se escriben en él: para cada
+ * instrucción se guarda qué valor leen arg1 y arg2 y cuál define. Así salir
+ * de SSA es solo descartar esta estructura; las pasadas que la usan cambian
+ * usos por constantes y borran código, y eso nunca deja dos versiones de una
+ * variable vivas a la vez, que es lo único que obligaría a insertar copias.
+ *
+ * El valor {@link #UNKNOWN} es el que llega desde la entrada del programa y
+ * el que deja un call a una función del usuario en las variables globales.
+ */
+public class SSAForm {
+    public static final int UNKNOWN = 0;
+
+    public static final class Phi {
+        public final int index;
+        public final int variable;
+        public final ControlFlowGraph.Block block;
+        public final int value;
+        public final int[] arguments; // Valor que llega por cada predecesor del bloque (mismo índice)
+
+        Phi(int index, int variable, ControlFlowGraph.Block block, int value) {
+            this.index = index;
+            this.variable = variable;
+            this.block = block;
+            this.value = value;
+            this.arguments = new int[block.predecessors.size()];
+        }
+    }
+
+    private final TACBuffer code;
+    private final ControlFlowGraph cfg;
+    private final TACVariables variables;
+    private final int[] arg1Value; // Instrucción -> valor que lee; -1 si no lee una variable
+    private final int[] arg2Value;
+    private final int[] definedValue; // Instrucción -> valor que define; -1 si ninguno
+    private final List<List<Phi>> phis = new ArrayList<>(); // Por id de bloque
+    private final List<Phi> allPhis = new ArrayList<>();
+    private int valueCount = UNKNOWN + 1;
+    private int[] userStart; // Cadenas definición-uso: usuarios de v en users[userStart[v], userStart[v + 1])
+    private int[] users; // Instrucción i >= 0; phi k como -(k + 1)
+
+    public SSAForm(TACBuffer code, ControlFlowGraph cfg, TACVariables variables) {
+        this.code = code;
+        this.cfg = cfg;
+        this.variables = variables;
+        arg1Value = new int[code.size()];
+        arg2Value = new int[code.size()];
+        definedValue = new int[code.size()];
+        Arrays.fill(arg1Value, -1);
+        Arrays.fill(arg2Value, -1);
+        Arrays.fill(definedValue, -1);
+        for (int id = 0; id < cfg.blocks().size() + 2; id++) {
+            phis.add(new ArrayList<>());
+        }
+        placePhis();
+        rename();
+        linkUsers();
+    }
+
+    // ==================== CONSULTAS ====================
+
+    public int valueCount() {
+        return valueCount;
+    }
+
+    public int arg1Value(int i) {
+        return arg1Value[i];
+    }
+
+    public int arg2Value(int i) {
+        return arg2Value[i];
+    }
+
+    public int definedValue(int i) {
+        return definedValue[i];
+    }
+
+    public List<Phi> phis(ControlFlowGraph.Block block) {
+        return phis.get(block.id);
+    }
+
+    public Phi phi(int index) {
+        return allPhis.get(index);
+    }
+
+    // Instrucciones (>= 0) y phis (-(k + 1)) que leen el valor
+    public int[] users(int value) {
+        return Arrays.copyOfRange(users, userStart[value], userStart[value + 1]);
+    }
+
+    // ==================== CONSTRUCCIÓN ====================
+
+    private void placePhis() {
+        int n = variables.count();
+        BitSet globals = variables.globals();
+        BitSet nonLocal = new BitSet(n); // Se leen en un bloque antes de escribirse en él
+        List<List<ControlFlowGraph.Block>> definedIn = new ArrayList<>(n);
+        for (int v = 0; v < n; v++) {
+            definedIn.add(new ArrayList<>(2));
+        }
+        int[] lastBlock = new int[n];
+        Arrays.fill(lastBlock, -1);
+
+        BitSet written = new BitSet(n);
+        BitSet read = new BitSet(n);
+        for (ControlFlowGraph.Block block : cfg.blocks()) {
+            if (!block.isReachable()) {
+                continue;
+            }
+            written.clear();
+            for (int i = block.start; i < block.end; i++) {
+                if (code.isDead(i)) {
+                    continue;
+                }
+                read.clear();
+                variables.addUses(code, i, read);
+                read.andNot(written);
+                nonLocal.or(read);
+                if (variables.callsUserFunction(code, i)) {
+                    written.or(globals);
+                    for (int g = globals.nextSetBit(0); g >= 0; g = globals.nextSetBit(g + 1)) {
+                        addDefinition(definedIn, lastBlock, g, block);
+                    }
+                }
+                int def = variables.definition(code, i);
+                if (def >= 0) {
+                    written.set(def);
+                    addDefinition(definedIn, lastBlock, def, block);
+                }
+            }
+        }
+
+        // Frontera de dominancia iterada, con marcas por variable para no limpiar arreglos
+        int[] hasPhi = new int[cfg.blocks().size() + 2];
+        int[] queued = new int[cfg.blocks().size() + 2];
+        Arrays.fill(hasPhi, -1);
+        Arrays.fill(queued, -1);
+        Deque<ControlFlowGraph.Block> work = new ArrayDeque<>();
+        for (int v = nonLocal.nextSetBit(0); v >= 0; v = nonLocal.nextSetBit(v + 1)) {
+            for (ControlFlowGraph.Block block : definedIn.get(v)) {
+                queued[block.id] = v;
+                work.add(block);
+            }
+            while (!work.isEmpty()) {
+                for (ControlFlowGraph.Block join : cfg.dominanceFrontier(work.poll())) {
+                    if (join == cfg.exit() || hasPhi[join.id] == v) {
+                        continue;
+                    }
+                    hasPhi[join.id] = v;
+                    Phi phi = new Phi(allPhis.size(), v, join, valueCount++);
+                    allPhis.add(phi);
+                    phis.get(join.id).add(phi);
+                    if (queued[join.id] != v) {
+                        queued[join.id] = v;
+                        work.add(join);
+                    }
+                }
+            }
+        }
+    }
+
+    private void addDefinition(List<List<ControlFlowGraph.Block>> definedIn, int[] lastBlock, int v,
+            ControlFlowGraph.Block block) {
+        if (lastBlock[v] != block.id) {
+            lastBlock[v] = block.id;
+            definedIn.get(v).add(block);
+        }
+    }
+
+    /**
+     * Renombrado en preorden del árbol de dominadores, con una pila explícita.
+     * current[v] es el valor vigente de cada variable; al salir de un bloque
+     * se deshacen sus cambios con el registro (variable, valor anterior).
+     */
+    private void rename() {
+        BitSet globals = variables.globals();
+        int globalCount = globals.cardinality();
+        int[] current = new int[variables.count()]; // Todas empiezan en UNKNOWN
+        int[] undo = new int[16];
+        int undoSize = 0;
+
+        Deque<ControlFlowGraph.Block> stack = new ArrayDeque<>();
+        Deque<Integer> nextChild = new ArrayDeque<>();
+        Deque<Integer> undoMark = new ArrayDeque<>();
+        stack.push(cfg.entry());
+        nextChild.push(-1);
+        undoMark.push(0);
+        while (!stack.isEmpty()) {
+            ControlFlowGraph.Block block = stack.peek();
+            int child = nextChild.pop();
+            if (child < 0) {
+                // Primera visita: definir los valores del bloque
+                for (Phi phi : phis(block)) {
+                    if (undoSize + 2 > undo.length) {
+                        undo = Arrays.copyOf(undo, undo.length * 2);
+                    }
+                    undo[undoSize++] = phi.variable;
+                    undo[undoSize++] = current[phi.variable];
+                    current[phi.variable] = phi.value;
+                }
+                for (int i = block.start; i < block.end; i++) {
+                    if (code.isDead(i)) {
+                        continue;
+                    }
+                    arg1Value[i] = valueOf(code.arg1(i), current);
+                    arg2Value[i] = valueOf(code.arg2(i), current);
+                    int def = variables.definition(code, i);
+                    boolean clobbers = variables.callsUserFunction(code, i);
+                    int changes = (clobbers ? globalCount : 0) + (def >= 0 ? 1 : 0);
+                    if (undoSize + 2 * changes > undo.length) {
+                        undo = Arrays.copyOf(undo, Math.max(undo.length * 2, undoSize + 2 * changes));
+                    }
+                    if (clobbers) {
+                        for (int g = globals.nextSetBit(0); g >= 0; g = globals.nextSetBit(g + 1)) {
+                            undo[undoSize++] = g;
+                            undo[undoSize++] = current[g];
+                            current[g] = UNKNOWN;
+                        }
+                    }
+                    if (def >= 0) {
+                        definedValue[i] = valueCount++;
+                        undo[undoSize++] = def;
+                        undo[undoSize++] = current[def];
+                        current[def] = definedValue[i];
+                    }
+                }
+                for (ControlFlowGraph.Block successor : block.successors) {
+                    int edge = successor.predecessors.indexOf(block);
+                    for (Phi phi : phis(successor)) {
+                        phi.arguments[edge] = current[phi.variable];
+                    }
+                }
+                child = 0;
+            }
+            if (child < block.dominated().size()) {
+                nextChild.push(child + 1);
+                stack.push(block.dominated().get(child));
+                nextChild.push(-1);
+                undoMark.push(undoSize);
+            } else {
+                stack.pop();
+                int mark = undoMark.pop();
+                while (undoSize > mark) {
+                    int previous = undo[--undoSize];
+                    current[undo[--undoSize]] = previous;
+                }
+            }
+        }
+    }
+
+    private int valueOf(Operand operand, int[] current) {
+        int v = variables.indexOf(operand);
+        return v >= 0 ? current[v] : -1;
+    }
+
+    private void linkUsers() {
+        userStart = new int[valueCount + 1];
+        for (int i = 0; i < code.size(); i++) {
+            countUser(arg1Value[i]);
+            if (arg2Value[i] != arg1Value[i]) {
+                countUser(arg2Value[i]);
+            }
+        }
+        for (Phi phi : allPhis) {
+            for (int argument : phi.arguments) {
+                countUser(argument);
+            }
+        }
+        for (int v = 0; v < valueCount; v++) {
+            userStart[v + 1] += userStart[v];
+        }
+        users = new int[userStart[valueCount]];
+        int[] fill = Arrays.copyOf(userStart, valueCount);
+        for (int i = 0; i < code.size(); i++) {
+            if (arg1Value[i] >= 0) {
+                users[fill[arg1Value[i]]++] = i;
+            }
+            if (arg2Value[i] >= 0 && arg2Value[i] != arg1Value[i]) {
+                users[fill[arg2Value[i]]++] = i;
+            }
+        }
+        for (Phi phi : allPhis) {
+            for (int argument : phi.arguments) {
+                users[fill[argument]++] = -(phi.index + 1);
+            }
+        }
+    }
+
+    private void countUser(int value) {
+        if (value >= 0) {
+            userStart[value + 1]++;
+        }
+    }
+}
@@ -0,0 +1,258 @@
+import java.util.*;
+
+/**
+ * Propagación de constantes condicional y dispersa (SCCP, Wegman y Zadeck)
+ * sobre la {@link SSAForm}.
+ *
+ * Cada valor SSA empieza en TOP (todavía sin valor), baja a una constante y,
+ * si recibe dos constantes distintas, a BOTTOM (no es constante). A la vez se
+ * marca qué aristas del {@link ControlFlowGraph} se pueden ejecutar: un salto
+ * condicional con condición constante solo habilita uno de sus caminos, así
+ * que las phi ignoran los valores que llegan por caminos imposibles y los
+ * bloques a los que no llega ninguna arista ejecutable son código muerto.
+ *
+ * Hay dos listas de trabajo: aristas recién habilitadas y valores que
+ * cambiaron (se revisan sus usuarios con las cadenas definición-uso). Cada
+ * valor baja a lo sumo dos veces, así que el costo es lineal en el tamaño de
+ * la forma SSA.
+ */
+public class SparseConditionalConstants {
+    private static final Operand TOP = Operand.label("⊤");
+    private static final Operand BOTTOM = Operand.label("⊥");
+
+    private final TACBuffer code;
+    private final ControlFlowGraph cfg;
+    private final SSAForm ssa;
+    private final Operand[] lattice; // Valor SSA -> TOP, BOTTOM o la constante
+    private final boolean[] executable; // Por id de bloque
+    private final BitSet[] executableEdges; // Por id de bloque: índices de predecesores habilitados
+    private final Deque<ControlFlowGraph.Block[]> edgeWork = new ArrayDeque<>();
+    private final Deque<Integer> valueWork = new ArrayDeque<>();
+
+    public SparseConditionalConstants(TACBuffer code, ControlFlowGraph cfg, SSAForm ssa) {
+        this.code = code;
+        this.cfg = cfg;
+        this.ssa = ssa;
+        lattice = new Operand[ssa.valueCount()];
+        Arrays.fill(lattice, TOP);
+        lattice[SSAForm.UNKNOWN] = BOTTOM;
+        int blocks = cfg.blocks().size() + 2;
+        executable = new boolean[blocks];
+        executableEdges = new BitSet[blocks];
+        for (int id = 0; id < blocks; id++) {
+            executableEdges[id] = new BitSet();
+        }
+        solve();
+    }
+
+    // ==================== RESULTADOS ====================
+
+    public boolean isExecutable(ControlFlowGraph.Block block) {
+        return executable[block.id];
+    }
+
+    // Constante del valor SSA; null si no es constante (o no es un valor)
+    public Operand constant(int value) {
+        if (value < 0) {
+            return null;
+        }
+        Operand known = lattice[value];
+        return known == TOP || known == BOTTOM ? null : known;
+    }
+
+    // ==================== ALGORITMO ====================
+
+    private void solve() {
+        executable[cfg.entry().id] = true;
+        for (ControlFlowGraph.Block successor : cfg.entry().successors) {
+            edgeWork.add(new ControlFlowGraph.Block[] { cfg.entry(), successor });
+        }
+        while (!edgeWork.isEmpty() || !valueWork.isEmpty()) {
+            while (!edgeWork.isEmpty()) {
+                ControlFlowGraph.Block[] edge = edgeWork.poll();
+                visitEdge(edge[0], edge[1]);
+            }
+            while (!valueWork.isEmpty()) {
+                for (int user : ssa.users(valueWork.poll())) {
+                    if (user < 0) {
+                        SSAForm.Phi phi = ssa.phi(-user - 1);
+                        if (executable[phi.block.id]) {
+                            visitPhi(phi);
+                        }
+                    } else if (executable[cfg.blockOf(user).id]) {
+                        visitInstruction(user, cfg.blockOf(user));
+                    }
+                }
+            }
+        }
+    }
+
+    private void visitEdge(ControlFlowGraph.Block from, ControlFlowGraph.Block to) {
+        int edge = to.predecessors.indexOf(from);
+        if (executableEdges[to.id].get(edge)) {
+            return;
+        }
+        executableEdges[to.id].set(edge);
+        for (SSAForm.Phi phi : ssa.phis(to)) {
+            visitPhi(phi);
+        }
+        if (executable[to.id]) {
+            return;
+        }
+        executable[to.id] = true;
+        for (int i = to.start; i < to.end; i++) {
+            if (!code.isDead(i)) {
+                visitInstruction(i, to);
+            }
+        }
+        // Los saltos condicionales eligen sus caminos en visitInstruction
+        int last = to.end - 1;
+        if (last < to.start || code.isDead(last) || !isMultiway(code.op(last))) {
+            for (ControlFlowGraph.Block successor : to.successors) {
+                edgeWork.add(new ControlFlowGraph.Block[] { to, successor });
+            }
+        }
+    }
+
+    private void visitPhi(SSAForm.Phi phi) {
+        Operand merged = TOP;
+        BitSet edges = executableEdges[phi.block.id];
+        for (int edge = edges.nextSetBit(0); edge >= 0; edge = edges.nextSetBit(edge + 1)) {
+            merged = meet(merged, lattice[phi.arguments[edge]]);
+        }
+        lower(phi.value, merged);
+    }
+
+    private void visitInstruction(int i, ControlFlowGraph.Block block) {
+        Opcode op = code.op(i);
+        if (isMultiway(op)) {
+            if (i == block.end - 1) {
+                visitBranch(i, block);
+            }
+            return;
+        }
+        int value = ssa.definedValue(i);
+        if (value >= 0) {
+            lower(value, evaluate(i));
+        }
+    }
+
+    private void visitBranch(int i, ControlFlowGraph.Block block) {
+        Operand condition = operand(code.arg1(i), ssa.arg1Value(i));
+        if (condition == TOP) {
+            return;
+        }
+        if (condition == BOTTOM) {
+            for (ControlFlowGraph.Block successor : block.successors) {
+                edgeWork.add(new ControlFlowGraph.Block[] { block, successor });
+            }
+            return;
+        }
+        Operand target = branchTarget(code, i, condition);
+        ControlFlowGraph.Block successor = target != null ? cfg.blockOfLabel(target) : cfg.next(block);
+        edgeWork.add(new ControlFlowGraph.Block[] { block, successor });
+    }
+
+    /**
+     * Etiqueta a la que salta el salto i si su condición o selector vale
+     * constant; null si sigue con la instrucción siguiente.
+     */
+    public static Operand branchTarget(TACBuffer code, int i, Operand constant) {
+        switch (code.op(i)) {
+            case IF_FALSE:
+                return constant.value == 0 ? code.result(i) : null;
+            case IF_TRUE:
+                return constant.value != 0 ? code.result(i) : null;
+            default:
+                Operand[] targets = code.targets(i);
+                for (int k = 0; k < targets.length; k++) {
+                    long caseValue = code.op(i) == Opcode.JUMPTABLE ? (long) code.arg2(i).value + k
+                            : code.caseValues(i)[k];
+                    if ((long) constant.value == caseValue) { // Como el (long) de los generadores
+                        return targets[k];
+                    }
+                }
+                return code.result(i); // default
+        }
+    }
+
+    // Saltos que eligen entre varios caminos según un valor
+    public static boolean isMultiway(Opcode op) {
+        return op.isConditionalJump() || op == Opcode.SWITCH || op == Opcode.JUMPTABLE;
+    }
+
+    // ==================== EVALUACIÓN ====================
+
+    private Operand evaluate(int i) {
+        Opcode op = code.op(i);
+        Operand a = operand(code.arg1(i), ssa.arg1Value(i));
+        if (op == Opcode.ASSIGN) {
+            return a;
+        }
+        if (op == Opcode.NOT || op == Opcode.MINUS) {
+            if (a == TOP || a == BOTTOM) {
+                return a;
+            }
+            if (op == Opcode.NOT && a.kind == Operand.Kind.BOOL) {
+                return Operand.bool(a.value == 0);
+            }
+            return op == Opcode.MINUS && a.isNumber() ? Operand.number(-a.value) : BOTTOM;
+        }
+        if (!op.isArithmeticOrRelational() && op != Opcode.AND && op != Opcode.OR) {
+            return BOTTOM; // call, pop...
+        }
+        Operand b = operand(code.arg2(i), ssa.arg2Value(i));
+        if (a == BOTTOM || b == BOTTOM) {
+            return BOTTOM;
+        }
+        if (a == TOP || b == TOP) {
+            return TOP;
+        }
+        if (op == Opcode.AND || op == Opcode.OR) {
+            if (a.kind != Operand.Kind.BOOL || b.kind != Operand.Kind.BOOL) {
+                return BOTTOM;
+            }
+            return Operand.bool(op == Opcode.AND ? a.value != 0 && b.value != 0 : a.value != 0 || b.value != 0);
+        }
+        if (!a.isNumber() || !b.isNumber()) {
+            return BOTTOM;
+        }
+        if ((op == Opcode.DIV || op == Opcode.MOD) && b.value == 0) {
+            return BOTTOM; // El error de división por cero queda para la ejecución
+        }
+        return TACOptimizer.compute(op, a.value, b.value);
+    }
+
+    // Valor en el retículo de un operando: literal, valor SSA u otra cosa (BOTTOM)
+    private Operand operand(Operand operand, int value) {
+        if (operand == null) {
+            return BOTTOM;
+        }
+        if (value >= 0) {
+            return lattice[value];
+        }
+        return operand.isConstant() ? operand : BOTTOM;
+    }
+
+    private Operand meet(Operand a, Operand b) {
+        if (a == TOP) {
+            return b;
+        }
+        if (b == TOP) {
+            return a;
+        }
+        if (a == BOTTOM || b == BOTTOM || !a.equals(b)) {
+            return BOTTOM;
+        }
+        return a;
+    }
+
+    private void lower(int value, Operand computed) {
+        Operand old = lattice[value];
+        Operand merged = meet(old, computed);
+        if (merged != old) {
+            lattice[value] = merged;
+            valueWork.add(value);
+        }
+    }
+}
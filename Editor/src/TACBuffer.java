@@ -0,0 +1,290 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Código de tres direcciones en arreglos paralelos (structure of arrays), para
+ * el {@link TACOptimizer}.
+ *
+ * La operación se guarda como byte y los operandos en un arreglo por campo.
+ * Borrar una instrucción solo la marca como muerta (lápida): las pasadas la
+ * saltan y {@link #compact()} las quita todas juntas en O(n), en lugar de
+ * desplazar la lista en cada borrado. Las inserciones también quedan
+ * pendientes hasta compactar, así los índices no se mueven en medio de una
+ * pasada. Cada instrucción tiene un id estable que no cambia al compactar.
+ */
+public class TACBuffer {
+    private static final Opcode[] OPCODES = Opcode.values();
+
+    private byte[] ops;
+    private Operand[] arg1;
+    private Operand[] arg2;
+    private Operand[] result;
+    private long[][] caseValues; // Solo SWITCH
+    private Operand[][] targets; // SWITCH y JUMPTABLE
+    private int[] ids;
+    private boolean[] dead;
+    private int size;
+    private int deadCount;
+    private int nextId;
+    private final List<Insert> inserts = new ArrayList<>();
+
+    // Instrucción a insertar después de la posición after al compactar
+    private static final class Insert {
+        final int after;
+        final int id;
+        final TACInstruction inst;
+
+        Insert(int after, int id, TACInstruction inst) {
+            this.after = after;
+            this.id = id;
+            this.inst = inst;
+        }
+    }
+
+    public TACBuffer(int initialCapacity) {
+        int capacity = Math.max(1, initialCapacity);
+        ops = new byte[capacity];
+        arg1 = new Operand[capacity];
+        arg2 = new Operand[capacity];
+        result = new Operand[capacity];
+        caseValues = new long[capacity][];
+        targets = new Operand[capacity][];
+        ids = new int[capacity];
+        dead = new boolean[capacity];
+    }
+
+    public static TACBuffer of(List<TACInstruction> instructions) {
+        TACBuffer buffer = new TACBuffer(instructions.size());
+        for (TACInstruction inst : instructions) {
+            buffer.add(inst);
+        }
+        return buffer;
+    }
+
+    // ==================== CONSTRUCCIÓN ====================
+
+    public int add(Opcode op, Operand a1, Operand a2, Operand r) {
+        ensureCapacity(size + 1);
+        int index = size++;
+        ids[index] = nextId++;
+        dead[index] = false;
+        set(index, op, a1, a2, r);
+        caseValues[index] = null;
+        targets[index] = null;
+        return index;
+    }
+
+    public int add(TACInstruction inst) {
+        int index = add(inst.op, inst.arg1, inst.arg2, inst.result);
+        caseValues[index] = inst.caseValues;
+        targets[index] = inst.targets;
+        return index;
+    }
+
+    private void ensureCapacity(int required) {
+        if (required > ops.length) {
+            int capacity = Math.max(required, ops.length * 2);
+            ops = Arrays.copyOf(ops, capacity);
+            arg1 = Arrays.copyOf(arg1, capacity);
+            arg2 = Arrays.copyOf(arg2, capacity);
+            result = Arrays.copyOf(result, capacity);
+            caseValues = Arrays.copyOf(caseValues, capacity);
+            targets = Arrays.copyOf(targets, capacity);
+            ids = Arrays.copyOf(ids, capacity);
+            dead = Arrays.copyOf(dead, capacity);
+        }
+    }
+
+    // ==================== LECTURA ====================
+
+    // Posiciones ocupadas, incluidas las muertas que aún no se compactan
+    public int size() {
+        return size;
+    }
+
+    public int liveCount() {
+        return size - deadCount;
+    }
+
+    public Opcode op(int i) {
+        return OPCODES[ops[i]];
+    }
+
+    public Operand arg1(int i) {
+        return arg1[i];
+    }
+
+    public Operand arg2(int i) {
+        return arg2[i];
+    }
+
+    public Operand result(int i) {
+        return result[i];
+    }
+
+    public long[] caseValues(int i) {
+        return caseValues[i];
+    }
+
+    public Operand[] targets(int i) {
+        return targets[i];
+    }
+
+    // Id estable: no cambia al compactar
+    public int id(int i) {
+        return ids[i];
+    }
+
+    public boolean isDead(int i) {
+        return dead[i];
+    }
+
+    // ==================== MODIFICACIÓN ====================
+
+    public void set(int i, Opcode op, Operand a1, Operand a2, Operand r) {
+        ops[i] = (byte) op.ordinal();
+        arg1[i] = a1;
+        arg2[i] = a2;
+        result[i] = r;
+    }
+
+    public void setOp(int i, Opcode op) {
+        ops[i] = (byte) op.ordinal();
+    }
+
+    public void setArg1(int i, Operand operand) {
+        arg1[i] = operand;
+    }
+
+    public void setArg2(int i, Operand operand) {
+        arg2[i] = operand;
+    }
+
+    // Convierte la instrucción en una copia: result = value
+    public void setCopy(int i, Operand value) {
+        ops[i] = (byte) Opcode.ASSIGN.ordinal();
+        arg1[i] = value;
+        arg2[i] = null;
+    }
+
+    // Marca la instrucción como borrada; se quita en compact()
+    public void kill(int i) {
+        if (!dead[i]) {
+            dead[i] = true;
+            deadCount++;
+        }
+    }
+
+    /**
+     * Agrega una instrucción justo después de la posición index (-1: al
+     * principio). Se hace efectiva en el próximo compact(); varias inserciones
+     * en la misma posición quedan en el orden en que se pidieron.
+     */
+    public void insertAfter(int index, Opcode op, Operand a1, Operand a2, Operand r) {
+        insertAfter(index, new TACInstruction(op, a1, a2, r));
+    }
+
+    // Igual, con una instrucción completa (conserva los destinos de un switch)
+    public void insertAfter(int index, TACInstruction inst) {
+        inserts.add(new Insert(index, nextId++, inst));
+    }
+
+    public boolean hasPendingInserts() {
+        return !inserts.isEmpty();
+    }
+
+    /**
+     * Quita las instrucciones muertas y aplica las inserciones pendientes en
+     * una sola pasada, conservando el orden y los ids. Devuelve cuántas
+     * instrucciones se quitaron.
+     */
+    public int compact() {
+        if (!inserts.isEmpty()) {
+            return rebuild();
+        }
+        if (deadCount == 0) {
+            return 0;
+        }
+        int to = 0;
+        for (int from = 0; from < size; from++) {
+            if (dead[from]) {
+                continue;
+            }
+            if (to != from) {
+                ops[to] = ops[from];
+                arg1[to] = arg1[from];
+                arg2[to] = arg2[from];
+                result[to] = result[from];
+                caseValues[to] = caseValues[from];
+                targets[to] = targets[from];
+                ids[to] = ids[from];
+                dead[to] = false;
+            }
+            to++;
+        }
+        Arrays.fill(arg1, to, size, null);
+        Arrays.fill(arg2, to, size, null);
+        Arrays.fill(result, to, size, null);
+        Arrays.fill(caseValues, to, size, null);
+        Arrays.fill(targets, to, size, null);
+        int removed = size - to;
+        size = to;
+        deadCount = 0;
+        return removed;
+    }
+
+    // compact() con inserciones: se copia a arreglos nuevos
+    private int rebuild() {
+        inserts.sort((a, b) -> Integer.compare(a.after, b.after)); // Estable
+        TACBuffer rebuilt = new TACBuffer(liveCount() + inserts.size());
+        int next = 0;
+        for (int from = -1; from < size; from++) {
+            if (from >= 0 && !dead[from]) {
+                rebuilt.copy(this, from, ids[from]);
+            }
+            while (next < inserts.size() && inserts.get(next).after == from) {
+                Insert insert = inserts.get(next++);
+                rebuilt.add(insert.inst);
+                rebuilt.ids[rebuilt.size - 1] = insert.id;
+            }
+        }
+        int removed = deadCount;
+        ops = rebuilt.ops;
+        arg1 = rebuilt.arg1;
+        arg2 = rebuilt.arg2;
+        result = rebuilt.result;
+        caseValues = rebuilt.caseValues;
+        targets = rebuilt.targets;
+        ids = rebuilt.ids;
+        dead = rebuilt.dead;
+        size = rebuilt.size;
+        deadCount = 0;
+        inserts.clear();
+        return removed;
+    }
+
+    private void copy(TACBuffer other, int i, int id) {
+        int index = add(other.op(i), other.arg1[i], other.arg2[i], other.result[i]);
+        caseValues[index] = other.caseValues[i];
+        targets[index] = other.targets[i];
+        ids[index] = id;
+    }
+
+    // ==================== CONVERSIÓN ====================
+
+    public TACInstruction instruction(int i) {
+        return new TACInstruction(op(i), arg1[i], arg2[i], result[i], caseValues[i], targets[i]);
+    }
+
+    // Instrucciones vivas, en orden
+    public List<TACInstruction> toList() {
+        List<TACInstruction> list = new ArrayList<>(liveCount());
+        for (int i = 0; i < size; i++) {
+            if (!dead[i]) {
+                list.add(instruction(i));
+            }
+        }
+        return list;
+    }
+}
@@ -0,0 +1,52 @@
+/**
+ * Expresión de una instrucción TAC (op, arg1, arg2), como clave de CSE y de
+ * expresiones disponibles. En las operaciones conmutativas el orden de los
+ * operandos no importa: a + b es la misma expresión que b + a.
+ */
+public final class TACExpression {
+    public final Opcode op;
+    public final Operand left;
+    public final Operand right;
+
+    public TACExpression(Opcode op, Operand left, Operand right) {
+        this.op = op;
+        this.left = left;
+        this.right = right;
+    }
+
+    // Expresión que calcula la instrucción i; null si no es aritmética/relacional
+    public static TACExpression of(TACBuffer code, int i) {
+        if (!code.op(i).isArithmeticOrRelational() || code.arg1(i) == null || code.arg2(i) == null) {
+            return null;
+        }
+        return new TACExpression(code.op(i), code.arg1(i), code.arg2(i));
+    }
+
+    public boolean uses(Operand operand) {
+        return left.equals(operand) || right.equals(operand);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (!(other instanceof TACExpression)) {
+            return false;
+        }
+        TACExpression expr = (TACExpression) other;
+        if (op != expr.op) {
+            return false;
+        }
+        return (left.equals(expr.left) && right.equals(expr.right))
+                || (op.isCommutative() && left.equals(expr.right) && right.equals(expr.left));
+    }
+
+    @Override
+    public int hashCode() {
+        // Simétrico para que a+b y b+a caigan en el mismo lugar
+        return op.hashCode() * 31 + left.hashCode() + right.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return left + " " + op + " " + right;
+    }
+}
@@ -1,573 +1,369 @@
 import java.util.*;
 
 public class TACGenerator {
-    private List<Token> tokens;
-    private int position;
+    private final Ast.Program program;
     private List<TACInstruction> instructions;
     private int tempCount;
     private int labelCount;
 
-    public TACGenerator(List<Token> tokens) {
-        this.tokens = tokens;
+    // Destinos de break: fin del bucle o switch más interno
+    private final Deque<Operand> breakLabels = new ArrayDeque<>();
+
+    public TACGenerator(Ast.Program program) {
+        this.program = program;
         this.instructions = new ArrayList<>();
         this.tempCount = 0;
         this.labelCount = 0;
-        this.position = 0;
+    }
+
+    public TACGenerator(TokenBuffer tokens) {
+        this(new AstBuilder(tokens, new ErrorManager()).build());
     }
 
     public List<TACInstruction> generate() {
         instructions.clear();
+        breakLabels.clear();
         tempCount = 0;
         labelCount = 0;
-        position = 0;
 
-        while (currentToken() != null && currentToken().type != TokenType.EOF) {
-            instruction();
-            if (currentToken() != null && currentToken().type == TokenType.SEMICOLON) {
-                eat(TokenType.SEMICOLON);
-            }
-        }
+        statements(program.statements);
         return instructions;
     }
 
-    private Token currentToken() {
-        return position < tokens.size() ? tokens.get(position) : null;
+    private Operand newTemp() {
+        return Operand.temp(tempCount++);
     }
 
-    private void eat(TokenType expected) {
-        Token token = currentToken();
-        if (token != null && token.type == expected) {
-            position++;
-        }
+    private Operand newLabel() {
+        return Operand.label("L" + (labelCount++));
     }
 
-    private String newTemp() {
-        return "t" + (tempCount++);
-    }
-
-    private String newLabel() {
-        return "L" + (labelCount++);
-    }
-
-    private void emit(String op, String arg1, String arg2, String result) {
+    private void emit(Opcode op, Operand arg1, Operand arg2, Operand result) {
         instructions.add(new TACInstruction(op, arg1, arg2, result));
     }
 
-    private void instruction() {
-        Token token = currentToken();
-        if (token == null)
-            return;
+    private void statements(List<Ast.Stmt> statements) {
+        for (Ast.Stmt statement : statements) {
+            statement(statement);
+        }
+    }
 
-        switch (token.type) {
-            case IDENTIFIER:
-                declarationOrAssignment();
+    private void statement(Ast.Stmt statement) {
+        switch (statement.kind) {
+            case ASSIGN:
+                Ast.Assign assign = (Ast.Assign) statement;
+                emit(Opcode.ASSIGN, expression(assign.value), null, Operand.variable(assign.name));
+                break;
+            case INCREMENT:
+                Ast.Increment increment = (Ast.Increment) statement;
+                Operand counter = Operand.variable(increment.name);
+                Operand temp = newTemp();
+                emit(increment.increment ? Opcode.ADD : Opcode.SUB, counter, Operand.integer(1), temp);
+                emit(Opcode.ASSIGN, temp, null, counter);
                 break;
             case PRINT:
-            case PRINTLN:
-                inputOutput();
+                inputOutput((Ast.Print) statement);
                 break;
             case IF:
-                conditional();
+                Ast.If conditional = (Ast.If) statement;
+                conditional(conditional.branches, 0, conditional.elseBody);
                 break;
             case WHILE:
-                whileLoop();
+                whileLoop((Ast.While) statement);
                 break;
             case FOR:
-                forLoop();
+                forLoop((Ast.For) statement);
                 break;
-            case DO:
-                // doWhileLoop(); // Optional
+            case DO_WHILE:
+                doWhileLoop((Ast.DoWhile) statement);
                 break;
             case SWITCH:
-                switchStatement();
+                switchStatement((Ast.Switch) statement);
+                break;
+            case BREAK:
+                if (!breakLabels.isEmpty()) {
+                    emit(Opcode.GOTO, null, null, breakLabels.peek());
+                }
                 break;
             case FUNCTION:
-                function();
+                function((Ast.Function) statement);
                 break;
             case RETURN:
-                returnStatement();
+                Ast.Return ret = (Ast.Return) statement;
+                emit(Opcode.RET, ret.value != null ? expression(ret.value) : null, null, null);
+                break;
+            case EXPRESSION:
+                expression(((Ast.ExpressionStmt) statement).expression);
                 break;
             default:
-                expression(); // Consume expression if any
                 break;
         }
     }
 
-    private void switchStatement() {
-        eat(TokenType.SWITCH);
-        eat(TokenType.LPAREN);
-        String switchExpr = expression();
-        eat(TokenType.RPAREN);
-        eat(TokenType.LBRACE);
-
-        String labelEnd = newLabel();
-
-        while (currentToken() != null && currentToken().type != TokenType.RBRACE
-                && currentToken().type != TokenType.EOF) {
-            if (currentToken().type == TokenType.CASE) {
-                eat(TokenType.CASE);
-                String caseExpr = expression();
-                eat(TokenType.COLON);
-
-                String labelNext = newLabel();
-
-                // Check condition
-                String testTemp = newTemp();
-                emit("==", switchExpr, caseExpr, testTemp);
-                emit("IF_FALSE", testTemp, null, labelNext);
-
-                // Body
-                while (currentToken() != null && currentToken().type != TokenType.CASE &&
-                        currentToken().type != TokenType.DEFAULT && currentToken().type != TokenType.RBRACE) {
-
-                    if (currentToken().type == TokenType.BREAK) {
-                        eat(TokenType.BREAK);
-                        emit("GOTO", null, null, labelEnd);
-                        if (currentToken().type == TokenType.SEMICOLON)
-                            eat(TokenType.SEMICOLON);
-                    } else {
-                        instruction();
-                        if (currentToken() != null && currentToken().type == TokenType.SEMICOLON) {
-                            eat(TokenType.SEMICOLON);
-                        }
-                    }
-                }
+    private void switchStatement(Ast.Switch switchStmt) {
+        Operand switchExpr = expression(switchStmt.subject);
+        int[] values = switchStmt.integerLabels();
+        if (values != null && values.length >= Ast.Switch.MIN_TABLE_CASES) {
+            switchTable(switchStmt, switchExpr, values);
+            return;
+        }
 
-                emit("LABEL", null, null, labelNext);
-
-            } else if (currentToken().type == TokenType.DEFAULT) {
-                eat(TokenType.DEFAULT);
-                eat(TokenType.COLON);
-
-                while (currentToken() != null && currentToken().type != TokenType.RBRACE) {
-                    if (currentToken().type == TokenType.BREAK) {
-                        eat(TokenType.BREAK);
-                        emit("GOTO", null, null, labelEnd);
-                        if (currentToken().type == TokenType.SEMICOLON)
-                            eat(TokenType.SEMICOLON);
-                    } else {
-                        instruction();
-                        if (currentToken().type == TokenType.SEMICOLON) {
-                            eat(TokenType.SEMICOLON);
-                        }
-                    }
-                }
-            } else {
-                // Skip invalid token inside switch structure (e.g. semicolons) to avoid
-                // infinite loop
-                if (currentToken().type == TokenType.SEMICOLON) {
-                    eat(TokenType.SEMICOLON);
-                } else {
-                    // Should probably error, but just eat to progress
-                    position++;
-                }
+        Operand labelEnd = newLabel();
+        breakLabels.push(labelEnd);
+
+        for (Ast.Case switchCase : switchStmt.cases) {
+            if (switchCase.isDefault()) {
+                statements(switchCase.body);
+                continue;
             }
-        }
-        eat(TokenType.RBRACE);
-        emit("LABEL", null, null, labelEnd);
-    }
 
-    private void declarationOrAssignment() {
-        String identifier = currentToken().value;
-        // Check for function call
-        if (position + 1 < tokens.size() && tokens.get(position + 1).type == TokenType.LPAREN) {
-            functionCall();
-            return;
-        }
+            Operand caseExpr = expression(switchCase.label);
+            Operand labelNext = newLabel();
 
-        eat(TokenType.IDENTIFIER);
-        if (currentToken().type == TokenType.ASSIGN) {
-            eat(TokenType.ASSIGN);
-            String exprTemp = expression();
-            emit("=", exprTemp, null, identifier);
-        }
-    }
+            // Check condition
+            Operand testTemp = newTemp();
+            emit(Opcode.EQ, switchExpr, caseExpr, testTemp);
+            emit(Opcode.IF_FALSE, testTemp, null, labelNext);
 
-    private void inputOutput() {
-        Token token = currentToken(); // PRINT or PRINTLN
-        eat(token.type);
-        eat(TokenType.LPAREN);
-
-        List<String> args = new ArrayList<>();
-        if (currentToken().type != TokenType.RPAREN) {
-            do {
-                args.add(expression());
-                if (currentToken().type == TokenType.COMMA) {
-                    eat(TokenType.COMMA);
-                }
-            } while (currentToken().type != TokenType.RPAREN && currentToken().type != TokenType.EOF);
-        }
-        eat(TokenType.RPAREN);
+            statements(switchCase.body);
 
-        for (String arg : args) {
-            emit("param", arg, null, null);
+            emit(Opcode.LABEL, null, null, labelNext);
         }
-        emit("call", token.type == TokenType.PRINTLN ? "println" : "print", String.valueOf(args.size()),
-                "t" + tempCount++); // Dummy result
-    }
 
-    private void conditional() {
-        eat(TokenType.IF);
-        eat(TokenType.LPAREN);
-        String condTemp = expression();
-        eat(TokenType.RPAREN);
-        eat(TokenType.LBRACE);
+        breakLabels.pop();
+        emit(Opcode.LABEL, null, null, labelEnd);
+    }
 
-        String labelFalse = newLabel();
-        String labelEnd = newLabel();
+    // Casos enteros: un solo salto múltiple (JUMPTABLE si son densos, SWITCH
+    // con búsqueda binaria si no) y un bloque con etiqueta por caso
+    private void switchTable(Ast.Switch switchStmt, Operand switchExpr, int[] values) {
+        Operand labelEnd = newLabel();
+        Operand labelDefault = labelEnd;
+        Operand[] caseLabels = new Operand[switchStmt.cases.size()];
+        Operand[] valueLabels = new Operand[values.length];
+        int valueIndex = 0;
+        for (int i = 0; i < caseLabels.length; i++) {
+            caseLabels[i] = newLabel();
+            if (switchStmt.cases.get(i).isDefault()) {
+                labelDefault = caseLabels[i];
+            } else {
+                valueLabels[valueIndex++] = caseLabels[i];
+            }
+        }
 
-        emit("IF_FALSE", condTemp, null, labelFalse);
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        for (int value : values) {
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+        }
 
-        while (currentToken() != null && currentToken().type != TokenType.RBRACE
-                && currentToken().type != TokenType.EOF) {
-            instruction();
-            if (currentToken() != null && currentToken().type == TokenType.SEMICOLON) {
-                eat(TokenType.SEMICOLON);
+        if (Ast.Switch.isDense(min, max, values.length)) {
+            Operand[] targets = new Operand[(int) (max - min + 1)];
+            Arrays.fill(targets, labelDefault);
+            for (int i = 0; i < values.length; i++) {
+                targets[(int) (values[i] - min)] = valueLabels[i];
             }
-        }
-        eat(TokenType.RBRACE);
-
-        emit("GOTO", null, null, labelEnd);
-        emit("LABEL", null, null, labelFalse);
-
-        // Handle else if needed (not in basic parser but good to have)
-        if (currentToken() != null && currentToken().type == TokenType.ELSE) {
-            eat(TokenType.ELSE);
-            eat(TokenType.LBRACE);
-            while (currentToken() != null && currentToken().type != TokenType.RBRACE
-                    && currentToken().type != TokenType.EOF) {
-                instruction();
-                if (currentToken() != null && currentToken().type == TokenType.SEMICOLON) {
-                    eat(TokenType.SEMICOLON);
-                }
+            instructions.add(new TACInstruction(Opcode.JUMPTABLE, switchExpr, Operand.integer(min), labelDefault,
+                    null, targets));
+        } else {
+            Integer[] order = new Integer[values.length];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, Comparator.comparingInt(i -> values[i]));
+            long[] caseValues = new long[values.length];
+            Operand[] targets = new Operand[values.length];
+            for (int i = 0; i < order.length; i++) {
+                caseValues[i] = values[order[i]];
+                targets[i] = valueLabels[order[i]];
             }
-            eat(TokenType.RBRACE);
+            instructions.add(new TACInstruction(Opcode.SWITCH, switchExpr, null, labelDefault, caseValues, targets));
         }
 
-        emit("LABEL", null, null, labelEnd);
+        // Igual que en la VM, cada caso termina al final de su cuerpo
+        breakLabels.push(labelEnd);
+        for (int i = 0; i < caseLabels.length; i++) {
+            List<Ast.Stmt> body = switchStmt.cases.get(i).body;
+            emit(Opcode.LABEL, null, null, caseLabels[i]);
+            statements(body);
+            boolean endsInBreak = !body.isEmpty() && body.get(body.size() - 1).kind == Ast.Kind.BREAK;
+            if (i + 1 < caseLabels.length && !endsInBreak) {
+                emit(Opcode.GOTO, null, null, labelEnd);
+            }
+        }
+        breakLabels.pop();
+        emit(Opcode.LABEL, null, null, labelEnd);
     }
 
-    private void whileLoop() {
-        eat(TokenType.WHILE);
-        eat(TokenType.LPAREN);
+    private void inputOutput(Ast.Print print) {
+        List<Operand> args = new ArrayList<>();
+        for (Ast.Expr argument : print.arguments) {
+            args.add(expression(argument));
+        }
 
-        String labelStart = newLabel();
-        String labelEnd = newLabel();
+        for (Operand arg : args) {
+            emit(Opcode.PARAM, arg, null, null);
+        }
+        emit(Opcode.CALL, Operand.function(print.newline ? "println" : "print"), Operand.integer(args.size()),
+                newTemp()); // Dummy result
+    }
 
-        emit("LABEL", null, null, labelStart);
+    // Cada else if se genera como un if anidado en la rama falsa del anterior
+    private void conditional(List<Ast.Branch> branches, int index, List<Ast.Stmt> elseBody) {
+        Ast.Branch branch = branches.get(index);
+        Operand condTemp = expression(branch.condition);
 
-        String condTemp = expression();
-        eat(TokenType.RPAREN);
-        eat(TokenType.LBRACE);
+        Operand labelFalse = newLabel();
+        Operand labelEnd = newLabel();
 
-        emit("IF_FALSE", condTemp, null, labelEnd);
+        emit(Opcode.IF_FALSE, condTemp, null, labelFalse);
+        statements(branch.body);
+        emit(Opcode.GOTO, null, null, labelEnd);
+        emit(Opcode.LABEL, null, null, labelFalse);
 
-        while (currentToken() != null && currentToken().type != TokenType.RBRACE
-                && currentToken().type != TokenType.EOF) {
-            instruction();
-            if (currentToken() != null && currentToken().type == TokenType.SEMICOLON) {
-                eat(TokenType.SEMICOLON);
-            }
+        if (index + 1 < branches.size()) {
+            conditional(branches, index + 1, elseBody);
+        } else if (elseBody != null) {
+            statements(elseBody);
         }
-        eat(TokenType.RBRACE);
 
-        emit("GOTO", null, null, labelStart);
-        emit("LABEL", null, null, labelEnd);
+        emit(Opcode.LABEL, null, null, labelEnd);
     }
 
-    private void forLoop() {
-        eat(TokenType.FOR);
-        eat(TokenType.LPAREN);
+    private void whileLoop(Ast.While loop) {
+        Operand labelStart = newLabel();
+        Operand labelEnd = newLabel();
 
-        // Init
-        if (currentToken().type != TokenType.SEMICOLON) {
-            declarationOrAssignment(); // or expression
-        }
-        eat(TokenType.SEMICOLON);
+        emit(Opcode.LABEL, null, null, labelStart);
 
-        String labelStart = newLabel();
-        String labelEnd = newLabel();
-        emit("LABEL", null, null, labelStart);
+        Operand condTemp = expression(loop.condition);
+        emit(Opcode.IF_FALSE, condTemp, null, labelEnd);
 
-        // Condition
-        String condTemp = "true";
-        if (currentToken().type != TokenType.SEMICOLON) {
-            condTemp = expression();
-        }
-        emit("IF_FALSE", condTemp, null, labelEnd);
-        eat(TokenType.SEMICOLON);
-
-        // Increment (save tokens to process later or process now?)
-        // To do it correctly in single pass without AST is hard because increment comes
-        // after body.
-        // For simplicity in TAC Generator, we might just emit it at start of body or
-        // store it.
-        // Let's store tokens for increment.
-        List<Token> incrementTokens = new ArrayList<>();
-        while (currentToken().type != TokenType.RPAREN) {
-            incrementTokens.add(currentToken());
-            position++;
-        }
-        eat(TokenType.RPAREN);
-        eat(TokenType.LBRACE);
+        breakLabels.push(labelEnd);
+        statements(loop.body);
+        breakLabels.pop();
 
-        // Body
-        while (currentToken() != null && currentToken().type != TokenType.RBRACE
-                && currentToken().type != TokenType.EOF) {
-            instruction();
-            if (currentToken() != null && currentToken().type == TokenType.SEMICOLON) {
-                eat(TokenType.SEMICOLON);
-            }
-        }
-        eat(TokenType.RBRACE);
-
-        // Emit increment code here
-        if (!incrementTokens.isEmpty()) {
-            // Backup position, switch to increment tokens, generate, restore
-            List<Token> savedTokens = this.tokens;
-            int savedPos = this.position;
-
-            this.tokens = incrementTokens;
-            this.position = 0;
-            // Hacky: append EOF to avoid index out of bounds if loops depend on it
-            // But we just need to process expressions/assignments.
-            while (position < tokens.size()) {
-                // simplified handling for increment: assumming it's an assignment or expression
-                if (currentToken().type == TokenType.IDENTIFIER) {
-                    declarationOrAssignment();
-                } else {
-                    expression();
-                }
-                if (position < tokens.size() && currentToken().type == TokenType.SEMICOLON)
-                    position++;
-            }
+        emit(Opcode.GOTO, null, null, labelStart);
+        emit(Opcode.LABEL, null, null, labelEnd);
+    }
 
-            this.tokens = savedTokens;
-            this.position = savedPos;
+    private void forLoop(Ast.For loop) {
+        // Init
+        if (loop.init != null) {
+            statement(loop.init);
         }
 
-        emit("GOTO", null, null, labelStart);
-        emit("LABEL", null, null, labelEnd);
-    }
+        Operand labelStart = newLabel();
+        Operand labelEnd = newLabel();
+        emit(Opcode.LABEL, null, null, labelStart);
 
-    private void function() {
-        eat(TokenType.FUNCTION);
-        String name = currentToken().value;
-        eat(TokenType.IDENTIFIER);
-        eat(TokenType.LPAREN);
+        // Condition
+        Operand condTemp = loop.condition != null ? expression(loop.condition) : Operand.bool(true);
+        emit(Opcode.IF_FALSE, condTemp, null, labelEnd);
 
-        emit("LABEL", null, null, "func_" + name);
+        // Body
+        breakLabels.push(labelEnd);
+        statements(loop.body);
+        breakLabels.pop();
 
-        // Params
-        while (currentToken().type != TokenType.RPAREN) {
-            if (currentToken().type == TokenType.IDENTIFIER) {
-                emit("pop", null, null, currentToken().value);
-                eat(TokenType.IDENTIFIER);
-            }
-            if (currentToken().type == TokenType.COMMA)
-                eat(TokenType.COMMA);
-        }
-        eat(TokenType.RPAREN);
-        eat(TokenType.LBRACE);
-
-        while (currentToken() != null && currentToken().type != TokenType.RBRACE
-                && currentToken().type != TokenType.EOF) {
-            instruction();
-            if (currentToken() != null && currentToken().type == TokenType.SEMICOLON) {
-                eat(TokenType.SEMICOLON);
-            }
+        // El incremento va después del cuerpo
+        if (loop.update != null) {
+            statement(loop.update);
         }
-        eat(TokenType.RBRACE);
-        emit("ret", null, null, null);
-    }
 
-    private void returnStatement() {
-        eat(TokenType.RETURN);
-        String result = null;
-        if (currentToken().type != TokenType.SEMICOLON) {
-            result = expression();
-        }
-        emit("ret", result, null, null);
+        emit(Opcode.GOTO, null, null, labelStart);
+        emit(Opcode.LABEL, null, null, labelEnd);
     }
 
-    private String functionCall() {
-        String name = currentToken().value;
-        eat(TokenType.IDENTIFIER);
-        eat(TokenType.LPAREN);
-
-        List<String> args = new ArrayList<>();
-        if (currentToken().type != TokenType.RPAREN) {
-            do {
-                args.add(expression());
-                if (currentToken().type == TokenType.COMMA) {
-                    eat(TokenType.COMMA);
-                }
-            } while (currentToken().type != TokenType.RPAREN);
-        }
-        eat(TokenType.RPAREN);
+    private void doWhileLoop(Ast.DoWhile loop) {
+        Operand labelStart = newLabel();
+        Operand labelEnd = newLabel();
 
-        for (String arg : args) {
-            emit("param", arg, null, null);
-        }
+        emit(Opcode.LABEL, null, null, labelStart);
 
-        String result = newTemp();
-        emit("call", name, String.valueOf(args.size()), result);
-        return result;
-    }
+        breakLabels.push(labelEnd);
+        statements(loop.body);
+        breakLabels.pop();
 
-    // Expressions
-    private String expression() {
-        return logicalOr();
+        // Condición al final: un solo salto hacia atrás por iteración
+        Operand condTemp = expression(loop.condition);
+        emit(Opcode.IF_TRUE, condTemp, null, labelStart);
+        emit(Opcode.LABEL, null, null, labelEnd);
     }
 
-    // OR
-    private String logicalOr() {
-        String left = logicalAnd();
-        while (currentToken() != null && currentToken().type == TokenType.OR) {
-            eat(TokenType.OR);
-            String right = logicalAnd();
-            String temp = newTemp();
-            emit("OR", left, right, temp);
-            left = temp;
-        }
-        return left;
-    }
+    private void function(Ast.Function function) {
+        // Etiqueta de función: se puede llegar con un call desde cualquier parte
+        emit(Opcode.LABEL, null, null, Operand.function("func_" + function.name));
 
-    // AND
-    private String logicalAnd() {
-        String left = equality();
-        while (currentToken() != null && currentToken().type == TokenType.AND) {
-            eat(TokenType.AND);
-            String right = equality();
-            String temp = newTemp();
-            emit("AND", left, right, temp);
-            left = temp;
+        // Params
+        for (String parameter : function.parameters) {
+            emit(Opcode.POP, null, null, Operand.variable(parameter));
         }
-        return left;
-    }
 
-    // == !=
-    private String equality() {
-        String left = relational();
-        while (currentToken() != null
-                && (currentToken().type == TokenType.EQUALS || currentToken().type == TokenType.NOT_EQUALS)) {
-            String op = currentToken().type == TokenType.EQUALS ? "==" : "!=";
-            eat(currentToken().type);
-            String right = relational();
-            String temp = newTemp();
-            emit(op, left, right, temp);
-            left = temp;
-        }
-        return left;
+        statements(function.body);
+        emit(Opcode.RET, null, null, null);
     }
 
-    // < > <= >=
-    private String relational() {
-        String left = additive();
-        while (currentToken() != null && (currentToken().type == TokenType.LESS
-                || currentToken().type == TokenType.GREATER ||
-                currentToken().type == TokenType.LESS_EQUAL || currentToken().type == TokenType.GREATER_EQUAL)) {
-            String op = "";
-            switch (currentToken().type) {
-                case LESS:
-                    op = "<";
-                    break;
-                case GREATER:
-                    op = ">";
-                    break;
-                case LESS_EQUAL:
-                    op = "<=";
-                    break;
-                case GREATER_EQUAL:
-                    op = ">=";
-                    break;
-            }
-            eat(currentToken().type);
-            String right = additive();
-            String temp = newTemp();
-            emit(op, left, right, temp);
-            left = temp;
+    private Operand functionCall(Ast.Call call) {
+        List<Operand> args = new ArrayList<>();
+        for (Ast.Expr argument : call.arguments) {
+            args.add(expression(argument));
         }
-        return left;
-    }
 
-    private String additive() {
-        String left = multiplicative();
-        while (currentToken() != null
-                && (currentToken().type == TokenType.PLUS || currentToken().type == TokenType.MINUS)) {
-            String op = currentToken().type == TokenType.PLUS ? "+" : "-";
-            eat(currentToken().type);
-            String right = multiplicative();
-            String temp = newTemp();
-            emit(op, left, right, temp);
-            left = temp;
+        for (Operand arg : args) {
+            emit(Opcode.PARAM, arg, null, null);
         }
-        return left;
-    }
 
-    private String multiplicative() {
-        String left = unary();
-        while (currentToken() != null && (currentToken().type == TokenType.MULTIPLY
-                || currentToken().type == TokenType.DIVIDE || currentToken().type == TokenType.MODULO)) {
-            String op = "";
-            switch (currentToken().type) {
-                case MULTIPLY:
-                    op = "*";
-                    break;
-                case DIVIDE:
-                    op = "/";
-                    break;
-                case MODULO:
-                    op = "%";
-                    break;
-            }
-            eat(currentToken().type);
-            String right = unary();
-            String temp = newTemp();
-            emit(op, left, right, temp);
-            left = temp;
-        }
-        return left;
+        Operand result = newTemp();
+        emit(Opcode.CALL, Operand.function(call.name), Operand.integer(args.size()), result);
+        return result;
     }
 
-    private String unary() {
-        if (currentToken().type == TokenType.MINUS) {
-            eat(TokenType.MINUS);
-            String val = unary();
-            String temp = newTemp();
-            emit("MINUS", val, null, temp);
-            return temp;
+    // Expressions: devuelve el operando (literal, variable o temporal) con el valor
+    private Operand expression(Ast.Expr expression) {
+        switch (expression.kind) {
+            case NUMBER:
+                return Operand.number(((Ast.NumberLiteral) expression).text);
+            case STRING:
+                return Operand.string(((Ast.StringLiteral) expression).raw); // quoted string
+            case FORMATTED_STRING:
+                return Operand.formatted(((Ast.FormattedString) expression).raw);
+            case BOOLEAN:
+                return Operand.bool(((Ast.BooleanLiteral) expression).value);
+            case VARIABLE:
+                return Operand.variable(((Ast.Variable) expression).name);
+            case CALL:
+                return functionCall((Ast.Call) expression);
+            case BINARY:
+                Ast.Binary binary = (Ast.Binary) expression;
+                Operand left = expression(binary.left);
+                Operand right = expression(binary.right);
+                Operand temp = newTemp();
+                emit(binaryOp(binary.operator), left, right, temp);
+                return temp;
+            case UNARY:
+                Ast.Unary unary = (Ast.Unary) expression;
+                Operand operand = expression(unary.operand);
+                if (unary.operator == TokenType.PLUS) {
+                    return operand;
+                }
+                Operand result = newTemp();
+                emit(unary.operator == TokenType.MINUS ? Opcode.MINUS : Opcode.NOT, operand, null, result);
+                return result;
+            default:
+                return Operand.variable("");
         }
-        return primary();
     }
 
-    private String primary() {
-        Token token = currentToken();
-        if (token.type == TokenType.LPAREN) {
-            eat(TokenType.LPAREN);
-            String expr = expression();
-            eat(TokenType.RPAREN);
-            return expr;
-        } else if (token.type == TokenType.IDENTIFIER) {
-            // Check for call
-            if (position + 1 < tokens.size() && tokens.get(position + 1).type == TokenType.LPAREN) {
-                return functionCall();
-            }
-            eat(TokenType.IDENTIFIER);
-            return token.value;
-        } else if (token.type == TokenType.NUMBER) {
-            eat(TokenType.NUMBER);
-            return token.value;
-        } else if (token.type == TokenType.STRING) {
-            eat(TokenType.STRING);
-            return token.value; // quoted string
-        } else if (token.type == TokenType.TRUE) {
-            eat(TokenType.TRUE);
-            return "true";
-        } else if (token.type == TokenType.FALSE) {
-            eat(TokenType.FALSE);
-            return "false";
+    private Opcode binaryOp(TokenType operator) {
+        switch (operator) {
+            case AND:
+                return Opcode.AND;
+            case OR:
+                return Opcode.OR;
+            default:
+                return Opcode.of(Ast.symbol(operator));
         }
-        return "";
     }
 }
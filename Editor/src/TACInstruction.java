@@ -1,42 +1,85 @@
 public class TACInstruction {
-    public String op;
-    public String arg1;
-    public String arg2;
-    public String result;
+    public Opcode op;
+    public Operand arg1;
+    public Operand arg2;
+    public Operand result;
 
-    public TACInstruction(String op, String arg1, String arg2, String result) {
+    // Saltos múltiples (SWITCH / JUMPTABLE): valores de los casos y sus etiquetas.
+    // En SWITCH caseValues va ordenado; en JUMPTABLE targets[i] es el destino de
+    // arg2 + i y los huecos apuntan a result (default).
+    public long[] caseValues;
+    public Operand[] targets;
+
+    public TACInstruction(Opcode op, Operand arg1, Operand arg2, Operand result) {
         this.op = op;
         this.arg1 = arg1;
         this.arg2 = arg2;
         this.result = result;
     }
 
-    @Override
-    public String toString() {
-        if (op.equals("LABEL")) {
-            return result + ":";
-        }
-        if (op.equals("GOTO")) {
-            return "goto " + result;
-        }
-        if (op.equals("IF_FALSE")) {
-            return "ifFalse " + arg1 + " goto " + result;
-        }
-        if (op.equals("ret") || op.equals("return")) {
-            return "ret " + (arg1 != null ? arg1 : "");
-        }
-        if (op.equals("print") || op.equals("println")) {
-            return op + " " + (arg1 != null ? arg1 : "");
+    public TACInstruction(Opcode op, Operand arg1, Operand arg2, Operand result, long[] caseValues,
+            Operand[] targets) {
+        this(op, arg1, arg2, result);
+        this.caseValues = caseValues;
+        this.targets = targets;
+    }
+
+    /**
+     * Instrucción escrita como texto ("<", "contador", "3", "t5"). Los
+     * operandos se clasifican con {@link Operand#parse}; el destino de los
+     * saltos es una etiqueta y el primer argumento de call, una función.
+     */
+    public TACInstruction(String op, String arg1, String arg2, String result) {
+        this(Opcode.of(op), Operand.parse(arg1), Operand.parse(arg2), Operand.parse(result));
+        if (this.op == Opcode.LABEL || this.op == Opcode.GOTO || this.op.isConditionalJump()) {
+            this.result = Operand.label(result);
+        } else if (this.op == Opcode.CALL) {
+            this.arg1 = Operand.function(arg1);
+        } else if (this.op == Opcode.POP) {
+            this.result = Operand.variable(result);
         }
+    }
 
-        // Param handling
-        if (op.equals("param")) {
-            return "param " + (arg1 != null ? arg1 : "");
+    // Valor del caso que salta a targets[i]
+    public long caseValue(int i) {
+        return op == Opcode.JUMPTABLE ? (long) arg2.value + i : caseValues[i];
+    }
+
+    @Override
+    public String toString() {
+        switch (op) {
+            case LABEL:
+                return result + ":";
+            case GOTO:
+                return "goto " + result;
+            case IF_FALSE:
+                return "ifFalse " + arg1 + " goto " + result;
+            case IF_TRUE:
+                return "ifTrue " + arg1 + " goto " + result;
+            case SWITCH:
+            case JUMPTABLE:
+                StringBuilder sb = new StringBuilder(op == Opcode.SWITCH ? "switch " : "jumptable ").append(arg1)
+                        .append(" [");
+                for (int i = 0; i < targets.length; i++) {
+                    if (i > 0) {
+                        sb.append(", ");
+                    }
+                    sb.append(caseValue(i)).append(": ").append(targets[i]);
+                }
+                return sb.append("] default ").append(result).toString();
+            case RET:
+                return "ret " + (arg1 != null ? arg1 : "");
+            case PRINT:
+            case PRINTLN:
+            case PARAM:
+                return op + " " + (arg1 != null ? arg1 : "");
+            default:
+                break;
         }
 
         String resPart = (result != null) ? result + " = " : "";
 
-        if (op.equals("=")) {
+        if (op == Opcode.ASSIGN) {
             // Handle simple assignment: x = y
             return resPart + (arg1 != null ? arg1 : "");
         }
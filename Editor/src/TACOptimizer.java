@@ -1,10 +1,49 @@
-
 import java.util.*;
 
 public class TACOptimizer {
+    // Desenrollado de bucles: cada copia del cuerpo ocupa flash en el ESP32
+    public static final int DEFAULT_UNROLL_FACTOR = 4; // Copias del cuerpo por vuelta al desenrollar en parte
+    public static final int DEFAULT_UNROLL_BUDGET = 256; // Instrucciones TAC que puede agregar en todo el programa
+    public static final int MAX_FULL_UNROLL_TRIPS = 8; // Vueltas de un bucle que se desenrolla del todo
+
+    private final int unrollFactor;
+    private final int unrollBudget;
+    private int nextTemp; // Temporales nuevos (CSE global) después de los del generador
+    private int nextLabel; // Etiquetas nuevas (preencabezados de bucles)
+    private int unrollBudgetLeft;
+    private final Set<Operand> unrolledHeaders = new HashSet<>(); // No se vuelven a desenrollar
+
+    public TACOptimizer() {
+        this(DEFAULT_UNROLL_FACTOR, DEFAULT_UNROLL_BUDGET);
+    }
+
+    /**
+     * @param unrollFactor copias del cuerpo al desenrollar en parte (1: solo
+     *                     se desenrollan del todo los bucles cortos)
+     * @param unrollBudget instrucciones que el desenrollado puede agregar en
+     *                     todo el programa (0: no se desenrolla)
+     */
+    public TACOptimizer(int unrollFactor, int unrollBudget) {
+        this.unrollFactor = Math.max(1, unrollFactor);
+        this.unrollBudget = Math.max(0, unrollBudget);
+    }
 
     public List<TACInstruction> optimize(List<TACInstruction> instructions) {
-        List<TACInstruction> current = new ArrayList<>(instructions);
+        TACBuffer code = TACBuffer.of(instructions);
+        nextTemp = 0;
+        nextLabel = 0;
+        unrollBudgetLeft = unrollBudget;
+        unrolledHeaders.clear();
+        for (TACInstruction inst : instructions) {
+            for (Operand operand : new Operand[] { inst.arg1, inst.arg2, inst.result }) {
+                if (operand != null && operand.isTemp()) {
+                    nextTemp = Math.max(nextTemp, operand.temp + 1);
+                }
+            }
+            if (inst.op == Opcode.LABEL && inst.result.text.matches("L\\d+")) {
+                nextLabel = Math.max(nextLabel, Integer.parseInt(inst.result.text.substring(1)) + 1);
+            }
+        }
         boolean changed;
         int pass = 0;
 
@@ -14,206 +53,251 @@ public class TACOptimizer {
             changed = false;
             pass++;
 
+            // Un solo CFG para todas las pasadas de la vuelta: las pasadas solo
+            // quitan saltos, y con aristas de más los análisis siguen siendo válidos
+            ControlFlowGraph cfg = new ControlFlowGraph(code);
+
             // 1. Optimización por Bloques Básicos (Local)
-            if (performBlockOptimization(current)) {
+            if (performBlockOptimization(code, cfg)) {
+                changed = true;
+            }
+
+            // 1b. CSE global con expresiones disponibles. Las copias tH = tK que
+            // agrega son inserciones pendientes: se aplican ya, y el CFG se rehace,
+            // para que las pasadas siguientes vean esos usos de tK y no lo borren
+            if (performGlobalCSE(code, cfg)) {
                 changed = true;
+                code.compact();
+                cfg = new ControlFlowGraph(code);
             }
 
             // 2. Copy Propagation (Nuevo)
-            if (performCopyPropagation(current)) {
+            if (performCopyPropagation(code, cfg)) {
                 changed = true;
             }
 
             // 3. Constant Folding & Propagation (Global)
-            if (performConstantFolding(current)) {
+            if (performConstantFolding(code, cfg)) {
                 changed = true;
             }
 
             // 4. Algebraic Simplification (Nuevo)
-            if (performAlgebraicSimplification(current)) {
+            if (performAlgebraicSimplification(code)) {
                 changed = true;
             }
 
             // 5. Dead Code Elimination (Global)
-            if (performDeadCodeElimination(current)) {
+            if (performDeadCodeElimination(code, cfg)) {
+                changed = true;
+            }
+
+            // Las pasadas solo marcan lápidas e inserciones; se aplican todas juntas aquí
+            code.compact();
+
+            // 6. Loop-Invariant Code Motion (mueve código entre bloques: CFG propio)
+            if (performLoopInvariantCodeMotion(code)) {
+                changed = true;
+                code.compact();
+            }
+
+            // 7. Strength Reduction de variables de inducción (también con CFG propio)
+            if (performStrengthReduction(code)) {
                 changed = true;
+                code.compact();
+            }
+
+            // 8. Loop Unrolling; la vuelta siguiente pliega las constantes de las copias
+            if (performLoopUnrolling(code)) {
+                changed = true;
+                code.compact();
             }
 
         } while (changed && pass < 15); // Increased pass limit slightly
 
-        return current;
+        return code.toList();
     }
 
     // =========================================================================
     // 1. BLOCK OPTIMIZATION (Bloques Básicos)
     // =========================================================================
 
-    private boolean performBlockOptimization(List<TACInstruction> instructions) {
-        List<List<TACInstruction>> blocks = makeBasicBlocks(instructions);
+    private boolean performBlockOptimization(TACBuffer code, ControlFlowGraph cfg) {
         boolean anyChange = false;
-
-        List<TACInstruction> result = new ArrayList<>();
-
-        for (List<TACInstruction> block : blocks) {
-            boolean blockChanged = optimizeBasicBlock(block);
-            if (blockChanged)
-                anyChange = true;
-            result.addAll(block);
-        }
-
-        if (anyChange) {
-            instructions.clear();
-            instructions.addAll(result);
+        for (ControlFlowGraph.Block block : cfg.blocks()) {
+            anyChange |= optimizeBasicBlock(code, block.start, block.end);
         }
         return anyChange;
     }
 
-    private List<List<TACInstruction>> makeBasicBlocks(List<TACInstruction> instructions) {
-        List<List<TACInstruction>> blocks = new ArrayList<>();
-        if (instructions.isEmpty())
-            return blocks;
-
-        List<TACInstruction> currentBlock = new ArrayList<>();
-        blocks.add(currentBlock);
-
-        for (int i = 0; i < instructions.size(); i++) {
-            TACInstruction inst = instructions.get(i);
-
-            // REGLA 1: Una etiqueta (LABEL) inicia un nuevo bloque
-            if (inst.op.equals("LABEL")) {
-                if (!currentBlock.isEmpty()) {
-                    currentBlock = new ArrayList<>();
-                    blocks.add(currentBlock);
-                }
-            }
-
-            currentBlock.add(inst);
-
-            // REGLA 2: Una instrucción de salto termina el bloque actual
-            if (inst.op.equals("GOTO") || inst.op.equals("IF_FALSE") || inst.op.equals("ret")) {
-                // El siguiente frame inicia nuevo bloque (si hay más instrucciones)
-                if (i < instructions.size() - 1) {
-                    currentBlock = new ArrayList<>();
-                    blocks.add(currentBlock);
-                }
-            }
-        }
-        // Limpiar bloques vacíos
-        blocks.removeIf(List::isEmpty);
-        return blocks;
-    }
-
-    // Optimización Local: Common Subexpression Elimination (CSE)
-    private boolean optimizeBasicBlock(List<TACInstruction> block) {
+    // Optimización Local: Common Subexpression Elimination (CSE) en [start, end)
+    private boolean optimizeBasicBlock(TACBuffer code, int start, int end) {
         boolean changed = false;
-        // Mapa de expresiones disponibles: "op arg1 arg2" -> "temp_variable_result"
-        Map<String, String> availableExprs = new HashMap<>();
+        // Expresiones disponibles: (op, arg1, arg2) -> temporal o variable con el resultado
+        Map<TACExpression, Operand> availableExprs = new HashMap<>();
 
-        for (int i = 0; i < block.size(); i++) {
-            TACInstruction inst = block.get(i);
+        for (int i = start; i < end; i++) {
+            if (code.isDead(i))
+                continue;
+            Operand result = code.result(i);
 
             // Solo nos interesan expresiones aritméticas/relacionales: t0 = a + b
-            if (isArithmeticOrRelational(inst.op) && inst.arg2 != null && inst.result != null) {
-                // Crear firma única de la expresión
-                String expr = inst.op + " " + inst.arg1 + " " + inst.arg2;
-
-                // Conmutatividad para + y * (a+b es igual a b+a)
-                if (inst.op.equals("+") || inst.op.equals("*")) {
-                    if (inst.arg1.compareTo(inst.arg2) > 0) {
-                        expr = inst.op + " " + inst.arg2 + " " + inst.arg1;
-                    }
-                }
-
-                if (availableExprs.containsKey(expr)) {
+            TACExpression expr = result != null ? TACExpression.of(code, i) : null;
+            if (expr != null) {
+                Operand existingResult = availableExprs.get(expr);
+                if (existingResult != null) {
                     // ✅ CSE: ¡Encontramos subexpresión común!
-                    String existingResult = availableExprs.get(expr);
-                    inst.op = "=";
-                    inst.arg1 = existingResult;
-                    inst.arg2 = null;
+                    code.setCopy(i, existingResult);
                     changed = true;
                 } else {
                     // Nueva expresión disponible
-                    availableExprs.put(expr, inst.result);
+                    availableExprs.put(expr, result);
                 }
             }
 
             // INVALIDACIÓN
-            if (inst.result != null) {
-                String modifiedVar = inst.result;
-                availableExprs.entrySet().removeIf(entry -> {
-                    String key = entry.getKey(); // "op arg1 arg2"
-                    String[] parts = key.split(" ");
-                    if (parts.length >= 3) {
-                        return parts[1].equals(modifiedVar) || parts[2].equals(modifiedVar);
-                    }
-                    return false;
-                });
+            if (result != null && !availableExprs.isEmpty()) {
+                availableExprs.keySet().removeIf(e -> e.uses(result));
             }
         }
         return changed;
     }
 
-    // =========================================================================
-    // 2. CONSTANT FOLDING (Global)
-    // =========================================================================
-
-    private boolean performConstantFolding(List<TACInstruction> instructions) {
-        boolean changed = false;
-        Map<String, String> constants = new HashMap<>();
+    /**
+     * CSE global: si una expresión ya está disponible (se calculó en todos
+     * los caminos y sus operandos no cambiaron), no se vuelve a calcular. Cada
+     * cálculo de la expresión copia su valor a un temporal compartido y el
+     * cálculo redundante se vuelve una copia de ese temporal. Las copias que
+     * sobren las limpian la propagación de copias y la eliminación de código
+     * muerto.
+     */
+    private boolean performGlobalCSE(TACBuffer code, ControlFlowGraph cfg) {
+        TACVariables variables = new TACVariables(code);
+        AvailableExpressions available = new AvailableExpressions(code, cfg, variables);
+        if (available.count() == 0)
+            return false;
 
-        for (int i = 0; i < instructions.size(); i++) {
-            TACInstruction inst = instructions.get(i);
+        BitSet redundantSites = new BitSet();
+        Operand[] holders = new Operand[available.count()];
+        for (ControlFlowGraph.Block block : cfg.blocks()) {
+            BitSet avail = available.availableIn(block);
+            for (int i = block.start; i < block.end; i++) {
+                if (code.isDead(i))
+                    continue;
+                int expr = available.expressionAt(i);
+                if (expr >= 0 && avail.get(expr)) {
+                    redundantSites.set(i);
+                    if (holders[expr] == null) {
+                        holders[expr] = Operand.temp(nextTemp++);
+                    }
+                }
+                available.step(i, avail);
+            }
+        }
+        if (redundantSites.isEmpty())
+            return false;
 
-            // FIX: Reset knowledge at labels to handle loops/jumps correctly
-            if (inst.op.equals("LABEL")) {
-                constants.clear();
+        for (int i = 0; i < code.size(); i++) {
+            int expr = code.isDead(i) ? -1 : available.expressionAt(i);
+            if (expr < 0 || holders[expr] == null)
                 continue;
+            if (redundantSites.get(i)) {
+                code.setCopy(i, holders[expr]);
+            } else if (!available.expression(expr).uses(code.result(i))) {
+                // x = x + 1 no deja disponible x + 1: no hace falta guardarlo
+                code.insertAfter(i, Opcode.ASSIGN, code.result(i), null, holders[expr]);
             }
+        }
+        return true;
+    }
 
-            // Propagación: Reemplazar usos de variables que sabemos son constantes
-            String arg1 = constants.getOrDefault(inst.arg1, inst.arg1);
-            String arg2 = constants.getOrDefault(inst.arg2, inst.arg2);
+    // =========================================================================
+    // 2. CONSTANT FOLDING (Global)
+    // =========================================================================
 
-            if (!Objects.equals(arg1, inst.arg1)) {
-                // Check if we should propagate (optimize) this usage
-                if (canOptimizeUsage(inst, inst.arg1)) {
-                    inst.arg1 = arg1;
+    /**
+     * Propagación de constantes con SCCP sobre la forma SSA: las constantes
+     * atraviesan bucles y uniones de if/else (una phi es constante si todo lo
+     * que le llega por caminos posibles es la misma constante). Después se
+     * reescribe el TAC: los usos constantes se reemplazan, los cálculos
+     * constantes se vuelven copias, los saltos con condición constante se
+     * vuelven goto (o desaparecen) y se borran los bloques inalcanzables.
+     */
+    private boolean performConstantFolding(TACBuffer code, ControlFlowGraph cfg) {
+        SSAForm ssa = new SSAForm(code, cfg, new TACVariables(code));
+        SparseConditionalConstants constants = new SparseConditionalConstants(code, cfg, ssa);
+
+        boolean changed = false;
+        for (ControlFlowGraph.Block block : cfg.blocks()) {
+            for (int i = block.start; i < block.end; i++) {
+                if (code.isDead(i))
+                    continue;
+                if (!constants.isExecutable(block)) {
+                    code.kill(i);
                     changed = true;
+                } else if (code.op(i) != Opcode.LABEL) {
+                    changed |= foldConstants(code, i, ssa, constants);
                 }
             }
-            if (!Objects.equals(arg2, inst.arg2)) {
-                // Check if we should propagate (optimize) this usage
-                if (canOptimizeUsage(inst, inst.arg2)) {
-                    inst.arg2 = arg2;
+        }
+        return removeJumpsToNext(code) || changed;
+    }
+
+    // Un goto a la etiqueta que sigue (lo que queda al quitar un else) no hace nada
+    private boolean removeJumpsToNext(TACBuffer code) {
+        boolean changed = false;
+        for (int i = 0; i < code.size(); i++) {
+            if (code.isDead(i) || code.op(i) != Opcode.GOTO)
+                continue;
+            for (int j = i + 1; j < code.size(); j++) {
+                if (code.isDead(j))
+                    continue;
+                if (code.op(j) != Opcode.LABEL)
+                    break;
+                if (code.result(j).equals(code.result(i))) {
+                    code.kill(i);
                     changed = true;
+                    break;
                 }
             }
+        }
+        return changed;
+    }
 
-            // Folding: Evaluar operaciones estáticas
-            if (inst.result != null && isArithmeticOrRelational(inst.op)) {
-                if (isNumber(inst.arg1) && isNumber(inst.arg2)) {
-                    try {
-                        double v1 = Double.parseDouble(inst.arg1);
-                        double v2 = Double.parseDouble(inst.arg2);
-                        String res = compute(inst.op, v1, v2);
+    private boolean foldConstants(TACBuffer code, int i, SSAForm ssa, SparseConditionalConstants constants) {
+        boolean changed = false;
+        // Propagación: Reemplazar usos de variables que sabemos son constantes
+        Operand arg1 = code.arg1(i);
+        Operand constant1 = constants.constant(ssa.arg1Value(i));
+        Operand constant2 = constants.constant(ssa.arg2Value(i));
+        if (constant1 != null && canOptimizeUsage(code, i, arg1)) {
+            code.setArg1(i, arg1 = constant1);
+            changed = true;
+        }
+        if (constant2 != null && canOptimizeUsage(code, i, code.arg2(i))) {
+            code.setArg2(i, constant2);
+            changed = true;
+        }
 
-                        inst.op = "=";
-                        inst.arg1 = res;
-                        inst.arg2 = null;
-                        changed = true;
-                    } catch (Exception e) {
-                    }
+        // Saltos con condición constante: solo queda el camino que se toma
+        Opcode op = code.op(i);
+        if (SparseConditionalConstants.isMultiway(op)) {
+            if (arg1 != null && arg1.isConstant()) {
+                Operand target = SparseConditionalConstants.branchTarget(code, i, arg1);
+                if (target != null) {
+                    code.set(i, Opcode.GOTO, null, null, target);
+                } else {
+                    code.kill(i);
                 }
+                changed = true;
             }
+            return changed;
+        }
 
-            // Registrar nuevas constantes
-            if (inst.op.equals("=") && isNumber(inst.arg1) && inst.result != null) {
-                constants.put(inst.result, inst.arg1);
-            }
-            // Si la variable cambia a algo no constante, quitar del mapa
-            else if (inst.result != null) {
-                constants.remove(inst.result);
-            }
+        // Folding: el resultado es constante en todos los caminos
+        Operand value = constants.constant(ssa.definedValue(i));
+        if (value != null && !(op == Opcode.ASSIGN && value.equals(arg1))) {
+            code.setCopy(i, value);
+            changed = true;
         }
         return changed;
     }
@@ -222,221 +306,1078 @@ public class TACOptimizer {
     // 3. DEAD CODE ELIMINATION (Global)
     // =========================================================================
 
-    private boolean performDeadCodeElimination(List<TACInstruction> instructions) {
-        Map<String, Integer> usages = new HashMap<>();
+    // Borra cálculos sin efectos cuyo resultado no está vivo después: temporales
+    // sin uso y también asignaciones a variables que se sobrescriben antes de leerse
+    private boolean performDeadCodeElimination(TACBuffer code, ControlFlowGraph cfg) {
+        TACVariables variables = new TACVariables(code);
+        Liveness liveness = new Liveness(code, cfg, variables);
 
-        for (TACInstruction inst : instructions) {
-            if (inst.arg1 != null && (inst.arg1.startsWith("t") || !isNumber(inst.arg1))) {
-                usages.put(inst.arg1, usages.getOrDefault(inst.arg1, 0) + 1);
+        boolean changed = false;
+        for (ControlFlowGraph.Block block : cfg.blocks()) {
+            BitSet live = liveness.liveOut(block);
+            for (int i = block.end - 1; i >= block.start; i--) {
+                if (code.isDead(i))
+                    continue;
+                if (isPure(code.op(i)) && variables.definition(code, i) >= 0
+                        && !liveness.isLive(live, code.result(i))) {
+                    code.kill(i);
+                    changed = true;
+                    continue;
+                }
+                liveness.step(i, live);
             }
-            if (inst.arg2 != null && (inst.arg2.startsWith("t") || !isNumber(inst.arg2))) {
-                usages.put(inst.arg2, usages.getOrDefault(inst.arg2, 0) + 1);
+        }
+        return changed;
+    }
+
+    // Instrucciones que solo calculan un valor (sin llamadas ni saltos)
+    private boolean isPure(Opcode op) {
+        switch (op) {
+            case ASSIGN:
+            case AND:
+            case OR:
+            case NOT:
+            case MINUS:
+                return true;
+            default:
+                return op.isArithmeticOrRelational();
+        }
+    }
+
+    // =========================================================================
+    // 4. COPY PROPAGATION (Global)
+    // =========================================================================
+
+    private boolean performCopyPropagation(TACBuffer code, ControlFlowGraph cfg) {
+        boolean changed = false;
+        List<Map<Operand, Operand>> blockExits = new ArrayList<>(cfg.blocks().size());
+
+        for (ControlFlowGraph.Block block : cfg.blocks()) {
+            Map<Operand, Operand> copies = entryFacts(block, blockExits);
+            for (int i = block.start; i < block.end; i++) {
+                if (code.isDead(i) || code.op(i) == Opcode.LABEL)
+                    continue;
+                changed |= propagateCopies(code, i, copies);
             }
-            if (inst.op.equals("IF_FALSE") && inst.arg1 != null) {
-                usages.put(inst.arg1, usages.getOrDefault(inst.arg1, 0) + 1);
+            blockExits.add(copies);
+        }
+        return changed;
+    }
+
+    private boolean propagateCopies(TACBuffer code, int i, Map<Operand, Operand> copies) {
+        boolean changed = false;
+        // 1. Reemplazar usos
+        Operand arg1 = code.arg1(i);
+        Operand arg2 = code.arg2(i);
+        if (arg1 != null && copies.containsKey(arg1)) {
+            if (canOptimizeUsage(code, i, arg1)) {
+                code.setArg1(i, arg1 = copies.get(arg1));
+                changed = true;
             }
-            // Count usages in params to ensure variables passed to functions are not marked
-            // as dead
-            if (inst.op.equals("param") && inst.arg1 != null) {
-                usages.put(inst.arg1, usages.getOrDefault(inst.arg1, 0) + 1);
+        }
+        if (arg2 != null && copies.containsKey(arg2)) {
+            if (canOptimizeUsage(code, i, arg2)) {
+                code.setArg2(i, copies.get(arg2));
+                changed = true;
             }
         }
 
-        boolean changed = false;
-        Iterator<TACInstruction> it = instructions.iterator();
-        while (it.hasNext()) {
-            TACInstruction inst = it.next();
-            if ((inst.op.equals("=") || isArithmeticOrRelational(inst.op)) &&
-                    inst.result != null && inst.result.startsWith("t")) {
-
-                if (!usages.containsKey(inst.result)) {
-                    it.remove();
-                    changed = true;
-                }
+        // 2. Definir copias (t1 = y)
+        Operand result = code.result(i);
+        if (code.op(i) == Opcode.ASSIGN && result != null && arg1 != null) {
+            if (!result.equals(arg1)) {
+                copies.put(result, arg1);
             }
         }
+        // Si definimos via operación, invalida la copia anterior de 'result'
+        else if (result != null) {
+            copies.remove(result);
+        }
+
+        // 3. Invalidar dependencias
+        if (result != null && !copies.isEmpty()) {
+            copies.values().removeIf(result::equals);
+        }
         return changed;
     }
 
     // =========================================================================
-    // 4. COPY PROPAGATION (Global)
+    // 5. ALGEBRAIC SIMPLIFICATION (Global)
     // =========================================================================
 
-    private boolean performCopyPropagation(List<TACInstruction> instructions) {
+    private boolean performAlgebraicSimplification(TACBuffer code) {
         boolean changed = false;
-        Map<String, String> copies = new HashMap<>();
+        for (int i = 0; i < code.size(); i++) {
+            if (code.isDead(i) || code.result(i) == null)
+                continue;
+
+            Operand arg1 = code.arg1(i);
+            Operand arg2 = code.arg2(i);
+            switch (code.op(i)) {
+                case ADD:
+                    if (isNumber(arg2, 0)) {
+                        code.setCopy(i, arg1);
+                        changed = true;
+                    } else if (isNumber(arg1, 0)) {
+                        code.setCopy(i, arg2);
+                        changed = true;
+                    }
+                    break;
+                case MUL:
+                    if (isNumber(arg2, 1)) {
+                        code.setCopy(i, arg1);
+                        changed = true;
+                    } else if (isNumber(arg1, 1)) {
+                        code.setCopy(i, arg2);
+                        changed = true;
+                    } else if (isNumber(arg2, 0) || isNumber(arg1, 0)) {
+                        code.setCopy(i, Operand.integer(0));
+                        changed = true;
+                    }
+                    break;
+                case SUB:
+                    if (isNumber(arg2, 0)) {
+                        code.setCopy(i, arg1);
+                        changed = true;
+                    }
+                    break;
+                case DIV:
+                    if (isNumber(arg2, 1)) {
+                        code.setCopy(i, arg1);
+                        changed = true;
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+        return changed;
+    }
 
-        for (int i = 0; i < instructions.size(); i++) {
-            TACInstruction inst = instructions.get(i);
+    // =========================================================================
+    // 6. LOOP-INVARIANT CODE MOTION
+    // =========================================================================
 
-            // FIX: Reset knowledge at labels to handle loops/jumps correctly
-            if (inst.op.equals("LABEL")) {
-                copies.clear();
-                continue;
+    /**
+     * Saca de los bucles los cálculos que dan lo mismo en cada vuelta (sus
+     * operandos no se escriben dentro del bucle, o los escribe otro cálculo
+     * invariante) y los pone en un preencabezado antes de la etiqueta de la
+     * cabecera, que se ejecuta una sola vez al entrar. Si se entra al bucle con
+     * un salto, el preencabezado lleva una etiqueta nueva y los saltos de
+     * afuera van a ella; la arista hacia atrás sigue yendo a la cabecera.
+     *
+     * En una vuelta del optimizador solo se tocan bucles que no se contienen
+     * entre sí: lo que sale de un bucle interno llega al externo en la vuelta
+     * siguiente, con el CFG ya rehecho.
+     */
+    private boolean performLoopInvariantCodeMotion(TACBuffer code) {
+        ControlFlowGraph cfg = new ControlFlowGraph(code);
+        NaturalLoops loops = new NaturalLoops(code, cfg);
+        if (loops.loops().isEmpty())
+            return false;
+        TACVariables variables = new TACVariables(code);
+        Liveness liveness = new Liveness(code, cfg, variables);
+
+        LoopWrites writes = new LoopWrites(variables.count());
+        boolean changed = false;
+        List<NaturalLoops.Loop> moved = new ArrayList<>();
+        for (NaturalLoops.Loop loop : loops.loops()) {
+            if (!overlapsAny(loop, moved) && hoistInvariants(code, cfg, loop, variables, liveness, writes)) {
+                moved.add(loop);
+                changed = true;
             }
+        }
+        return changed;
+    }
 
-            // 1. Reemplazar usos
-            if (inst.arg1 != null && copies.containsKey(inst.arg1)) {
-                if (canOptimizeUsage(inst, inst.arg1)) {
-                    inst.arg1 = copies.get(inst.arg1);
-                    changed = true;
+    private boolean hoistInvariants(TACBuffer code, ControlFlowGraph cfg, NaturalLoops.Loop loop,
+            TACVariables variables, Liveness liveness, LoopWrites writes) {
+        ControlFlowGraph.Block header = loop.header;
+        List<Integer> entryJumps = preheaderEntries(code, cfg, loop);
+        if (entryJumps == null)
+            return false;
+
+        List<ControlFlowGraph.Block> blocks = loop.blocks(cfg);
+        writes.count(code, blocks, variables);
+
+        List<ControlFlowGraph.Block> exiting = new ArrayList<>();
+        for (ControlFlowGraph.Block block : blocks) {
+            for (ControlFlowGraph.Block successor : block.successors) {
+                if (!loop.contains(successor) && !exiting.contains(block)) {
+                    exiting.add(block);
                 }
             }
-            if (inst.arg2 != null && copies.containsKey(inst.arg2)) {
-                if (canOptimizeUsage(inst, inst.arg2)) {
-                    inst.arg2 = copies.get(inst.arg2);
-                    changed = true;
+        }
+        BitSet liveAtHeader = liveness.liveIn(header);
+        BitSet liveAtExits = new BitSet();
+        for (ControlFlowGraph.Block exit : loop.exits(cfg)) {
+            liveAtExits.or(exit == cfg.exit() ? variables.globals() : liveness.liveIn(exit));
+        }
+
+        // Punto fijo: un cálculo es invariante si sus operandos lo son
+        BitSet invariant = new BitSet();
+        List<Integer> hoisted = new ArrayList<>();
+        boolean found = true;
+        while (found) {
+            found = false;
+            for (ControlFlowGraph.Block block : blocks) {
+                for (int i = block.start; i < block.end; i++) {
+                    if (code.isDead(i) || invariant.get(i) || !canHoist(code, i))
+                        continue;
+                    int def = variables.definition(code, i);
+                    if (def < 0 || writes.count[def] != 1 || liveAtHeader.get(def))
+                        continue;
+                    if (!isInvariant(code.arg1(i), variables, writes, invariant)
+                            || !isInvariant(code.arg2(i), variables, writes, invariant))
+                        continue;
+                    // Si se lee después del bucle, tiene que calcularse en toda salida
+                    if (liveAtExits.get(def) && !dominatesAll(cfg, block, exiting))
+                        continue;
+                    invariant.set(i);
+                    hoisted.add(i);
+                    found = true;
                 }
             }
+        }
+        if (hoisted.isEmpty())
+            return false;
 
-            // 2. Definir copias (t1 = y)
-            if (inst.op.equals("=") && inst.result != null && inst.arg1 != null) {
-                if (!inst.result.equals(inst.arg1)) {
-                    copies.put(inst.result, inst.arg1);
-                }
+        // En orden de dominancia: cada cálculo queda después de los que usa
+        hoisted.sort(Comparator.comparingInt((Integer i) -> cfg.blockOf(i).rpo).thenComparingInt(i -> i));
+        int at = insertPreheader(code, loop, entryJumps);
+        for (int i : hoisted) {
+            code.insertAfter(at, code.op(i), code.arg1(i), code.arg2(i), code.result(i));
+            code.kill(i);
+        }
+        return true;
+    }
+
+    /**
+     * Saltos de afuera a la cabecera que hay que desviar al preencabezado;
+     * null si el bucle no admite uno: se entra desde la entrada del programa
+     * o con un switch, o el bloque anterior es del bucle y cae en la cabecera
+     * (el preencabezado se ejecutaría en cada vuelta).
+     */
+    private List<Integer> preheaderEntries(TACBuffer code, ControlFlowGraph cfg, NaturalLoops.Loop loop) {
+        ControlFlowGraph.Block header = loop.header;
+        List<ControlFlowGraph.Block> entries = loop.entries();
+        if (entries.isEmpty())
+            return null;
+        if (header.id > 0) {
+            ControlFlowGraph.Block previous = cfg.blocks().get(header.id - 1);
+            Opcode last = code.isDead(previous.end - 1) ? null : code.op(previous.end - 1);
+            if (loop.contains(previous) && last != Opcode.GOTO && last != Opcode.RET)
+                return null;
+        }
+        List<Integer> jumps = new ArrayList<>();
+        Operand label = code.result(header.start);
+        for (ControlFlowGraph.Block entry : entries) {
+            if (entry == cfg.entry())
+                return null;
+            int last = entry.end - 1;
+            if (code.isDead(last))
+                continue;
+            Opcode op = code.op(last);
+            if (op == Opcode.SWITCH || op == Opcode.JUMPTABLE)
+                return null;
+            if ((op == Opcode.GOTO || op.isConditionalJump()) && code.result(last).equals(label)) {
+                jumps.add(last);
             }
-            // Si definimos via operación, invalida la copia anterior de 'result'
-            else if (inst.result != null) {
-                copies.remove(inst.result);
+        }
+        return jumps;
+    }
+
+    /**
+     * Deja lista la posición del preencabezado (antes de la etiqueta de la
+     * cabecera) y devuelve el índice tras el cual insertar. Si se entra con
+     * saltos, agrega una etiqueta nueva y los desvía a ella.
+     */
+    private int insertPreheader(TACBuffer code, NaturalLoops.Loop loop, List<Integer> entryJumps) {
+        int at = loop.header.start - 1;
+        if (!entryJumps.isEmpty()) {
+            Operand preheader = Operand.label("L" + nextLabel++);
+            for (int jump : entryJumps) {
+                code.set(jump, code.op(jump), code.arg1(jump), code.arg2(jump), preheader);
             }
+            code.insertAfter(at, Opcode.LABEL, null, null, preheader);
+        }
+        return at;
+    }
 
-            // 3. Invalidar dependencias
-            if (inst.result != null) {
-                String definedVar = inst.result;
-                Iterator<Map.Entry<String, String>> it = copies.entrySet().iterator();
-                while (it.hasNext()) {
-                    Map.Entry<String, String> entry = it.next();
-                    if (entry.getValue().equals(definedVar)) {
-                        it.remove();
+    /**
+     * Cuántas veces se escribe cada variable dentro de un bucle y cuál es la
+     * última escritura. Los arreglos se reusan de un bucle al siguiente: solo
+     * se limpia lo que escribió el anterior.
+     */
+    private static final class LoopWrites {
+        final int[] count;
+        final int[] writer;
+        private int[] touched = new int[16];
+        private int touchedSize;
+
+        LoopWrites(int variables) {
+            count = new int[variables];
+            writer = new int[variables];
+        }
+
+        void count(TACBuffer code, List<ControlFlowGraph.Block> blocks, TACVariables variables) {
+            while (touchedSize > 0) {
+                count[touched[--touchedSize]] = 0;
+            }
+            BitSet globals = variables.globals();
+            for (ControlFlowGraph.Block block : blocks) {
+                for (int i = block.start; i < block.end; i++) {
+                    if (code.isDead(i))
+                        continue;
+                    if (variables.callsUserFunction(code, i)) {
+                        for (int g = globals.nextSetBit(0); g >= 0; g = globals.nextSetBit(g + 1)) {
+                            write(g, i, 2); // La función puede escribirla cualquier cantidad de veces
+                        }
+                    }
+                    int def = variables.definition(code, i);
+                    if (def >= 0) {
+                        write(def, i, 1);
                     }
                 }
             }
         }
-        return changed;
+
+        private void write(int v, int i, int times) {
+            if (count[v] == 0) {
+                if (touchedSize == touched.length) {
+                    touched = Arrays.copyOf(touched, touchedSize * 2);
+                }
+                touched[touchedSize++] = v;
+            }
+            count[v] += times;
+            writer[v] = i;
+        }
+    }
+
+    // ¿El bucle contiene a otro de la lista o está dentro de él?
+    private boolean overlapsAny(NaturalLoops.Loop loop, List<NaturalLoops.Loop> others) {
+        for (NaturalLoops.Loop other : others) {
+            if (loop.contains(other) || other.contains(loop))
+                return true;
+        }
+        return false;
+    }
+
+    // Cálculos sin efectos que no pueden fallar al ejecutarse de más (bucle de cero vueltas)
+    private boolean canHoist(TACBuffer code, int i) {
+        Opcode op = code.op(i);
+        if (op == Opcode.ASSIGN || !isPure(op))
+            return false;
+        if (op == Opcode.DIV || op == Opcode.MOD)
+            return code.arg2(i).isNumber() && code.arg2(i).value != 0;
+        return true;
+    }
+
+    private boolean isInvariant(Operand operand, TACVariables variables, LoopWrites writes, BitSet invariant) {
+        int v = variables.indexOf(operand);
+        if (v < 0)
+            return true; // Constante o nada
+        return writes.count[v] == 0 || (writes.count[v] == 1 && invariant.get(writes.writer[v]));
+    }
+
+    private boolean dominatesAll(ControlFlowGraph cfg, ControlFlowGraph.Block block,
+            List<ControlFlowGraph.Block> blocks) {
+        for (ControlFlowGraph.Block other : blocks) {
+            if (!cfg.dominates(block, other))
+                return false;
+        }
+        return true;
     }
 
     // =========================================================================
-    // 5. ALGEBRAIC SIMPLIFICATION (Global)
+    // 7. INDUCTION VARIABLES (Strength Reduction)
     // =========================================================================
 
-    private boolean performAlgebraicSimplification(List<TACInstruction> instructions) {
+    /**
+     * Una variable de inducción básica i se escribe una sola vez por vuelta,
+     * con i = i + c (o t = i + c; i = t) y c entero; i * k, con k entero, es
+     * una derivada. Cada i * k del bucle pasa a leer un temporal s que vale
+     * i * k desde el preencabezado y al que se le suma k * c justo después del
+     * incremento de i: una suma por vuelta en lugar de una multiplicación.
+     *
+     * Solo se aplica si i entra al bucle con un entero: así todos los valores
+     * son enteros y las sumas dan exactamente lo mismo que las
+     * multiplicaciones, también en double. Las comparaciones de i con una
+     * constante entera pasan a s (i < n es s < n * k, al revés si k es
+     * negativo); si después i solo se usa para incrementarse y nadie lo lee al
+     * salir del bucle, el incremento se borra.
+     */
+    private boolean performStrengthReduction(TACBuffer code) {
+        ControlFlowGraph cfg = new ControlFlowGraph(code);
+        NaturalLoops loops = new NaturalLoops(code, cfg);
+        boolean candidates = false;
+        for (NaturalLoops.Loop loop : loops.loops()) {
+            for (ControlFlowGraph.Block block : loop.blocks(cfg)) {
+                for (int i = block.start; i < block.end && !candidates; i++) {
+                    candidates = !code.isDead(i) && multipliedVariable(code, i) != null;
+                }
+            }
+        }
+        if (!candidates)
+            return false;
+        TACVariables variables = new TACVariables(code);
+        ReachingDefinitions reaching = new ReachingDefinitions(code, cfg, variables);
+        Liveness liveness = new Liveness(code, cfg, variables);
+
+        LoopWrites writes = new LoopWrites(variables.count());
         boolean changed = false;
-        for (TACInstruction inst : instructions) {
-            if (inst.result == null)
-                continue;
+        List<NaturalLoops.Loop> reduced = new ArrayList<>();
+        for (NaturalLoops.Loop loop : loops.loops()) {
+            if (!overlapsAny(loop, reduced)
+                    && reduceInductionVariables(code, cfg, loop, variables, reaching, liveness, writes)) {
+                reduced.add(loop);
+                changed = true;
+            }
+        }
+        return changed;
+    }
 
-            if (inst.op.equals("+")) {
-                if (inst.arg2 != null && (inst.arg2.equals("0") || inst.arg2.equals("0.0"))) {
-                    inst.op = "=";
-                    inst.arg2 = null;
-                    changed = true;
-                } else if (inst.arg1 != null && (inst.arg1.equals("0") || inst.arg1.equals("0.0"))) {
-                    inst.op = "=";
-                    inst.arg1 = inst.arg2;
-                    inst.arg2 = null;
-                    changed = true;
+    private boolean reduceInductionVariables(TACBuffer code, ControlFlowGraph cfg, NaturalLoops.Loop loop,
+            TACVariables variables, ReachingDefinitions reaching, Liveness liveness, LoopWrites writes) {
+        List<Integer> entryJumps = preheaderEntries(code, cfg, loop);
+        if (entryJumps == null)
+            return false;
+        List<ControlFlowGraph.Block> blocks = loop.blocks(cfg);
+        writes.count(code, blocks, variables);
+
+        // Multiplicaciones i * k agrupadas por variable básica y factor
+        Map<Operand, Map<Operand, List<Integer>>> products = new LinkedHashMap<>();
+        Map<Operand, Integer> increments = new HashMap<>();
+        for (ControlFlowGraph.Block block : blocks) {
+            for (int i = block.start; i < block.end; i++) {
+                Operand variable = code.isDead(i) ? null : multipliedVariable(code, i);
+                if (variable == null)
+                    continue;
+                Integer increment = increments.get(variable);
+                if (increment == null && !increments.containsKey(variable)) {
+                    increment = inductionIncrement(code, cfg, loop, variable, variables, writes, reaching);
+                    increments.put(variable, increment);
                 }
-            } else if (inst.op.equals("*")) {
-                if (inst.arg2 != null && (inst.arg2.equals("1") || inst.arg2.equals("1.0"))) {
-                    inst.op = "=";
-                    inst.arg2 = null;
-                    changed = true;
-                } else if (inst.arg1 != null && (inst.arg1.equals("1") || inst.arg1.equals("1.0"))) {
-                    inst.op = "=";
-                    inst.arg1 = inst.arg2;
-                    inst.arg2 = null;
-                    changed = true;
-                } else if ((inst.arg2 != null && (inst.arg2.equals("0") || inst.arg2.equals("0.0"))) ||
-                        (inst.arg1 != null && (inst.arg1.equals("0") || inst.arg1.equals("0.0")))) {
-                    inst.op = "=";
-                    inst.arg1 = "0";
-                    inst.arg2 = null;
-                    changed = true;
+                if (increment == null)
+                    continue;
+                Operand factor = variable.equals(code.arg1(i)) ? code.arg2(i) : code.arg1(i);
+                products.computeIfAbsent(variable, v -> new LinkedHashMap<>())
+                        .computeIfAbsent(factor, f -> new ArrayList<>()).add(i);
+            }
+        }
+        if (products.isEmpty())
+            return false;
+
+        int at = insertPreheader(code, loop, entryJumps);
+        for (Map.Entry<Operand, Map<Operand, List<Integer>>> entry : products.entrySet()) {
+            Operand variable = entry.getKey();
+            int update = writes.writer[variables.indexOf(variable)]; // i = t o i = i + c
+            int increment = increments.get(variable); // t = i + c
+            double step = inductionStep(code, increment, variable);
+
+            Operand exitValue = null; // s de la primera k: ahí van las comparaciones
+            double exitFactor = 0;
+            for (Map.Entry<Operand, List<Integer>> product : entry.getValue().entrySet()) {
+                Operand factor = product.getKey();
+                Operand reduced = Operand.temp(nextTemp++);
+                code.insertAfter(at, Opcode.MUL, variable, factor, reduced);
+                double delta = factor.value * step;
+                code.insertAfter(update, delta < 0 ? Opcode.SUB : Opcode.ADD, reduced, Operand.number(Math.abs(delta)),
+                        reduced);
+                for (int site : product.getValue()) {
+                    code.setCopy(site, reduced);
                 }
-            } else if (inst.op.equals("-")) {
-                if (inst.arg2 != null && (inst.arg2.equals("0") || inst.arg2.equals("0.0"))) {
-                    inst.op = "=";
-                    inst.arg2 = null;
-                    changed = true;
+                if (exitValue == null && factor.value != 0) {
+                    exitValue = reduced;
+                    exitFactor = factor.value;
                 }
-            } else if (inst.op.equals("/")) {
-                if (inst.arg2 != null && (inst.arg2.equals("1") || inst.arg2.equals("1.0"))) {
-                    inst.op = "=";
-                    inst.arg2 = null;
-                    changed = true;
+            }
+            if (exitValue != null) {
+                replaceExitTests(code, blocks, variable, exitValue, exitFactor, increment);
+                removeDeadIncrement(code, cfg, loop, blocks, variable, variables, liveness, update, increment);
+            }
+        }
+        return true;
+    }
+
+    // Variable del usuario multiplicada por una constante entera en la instrucción i; null si no
+    private Operand multipliedVariable(TACBuffer code, int i) {
+        if (code.op(i) != Opcode.MUL || code.result(i) == null)
+            return null;
+        Operand arg1 = code.arg1(i);
+        Operand arg2 = code.arg2(i);
+        if (arg1.kind == Operand.Kind.VARIABLE && arg2.kind == Operand.Kind.INT)
+            return arg1;
+        if (arg2.kind == Operand.Kind.VARIABLE && arg1.kind == Operand.Kind.INT)
+            return arg2;
+        return null;
+    }
+
+    /**
+     * Instrucción t = i + c (o i = i + c) con la que la variable básica avanza
+     * en cada vuelta; null si la variable no es de inducción básica o no entra
+     * al bucle con un entero.
+     */
+    private Integer inductionIncrement(TACBuffer code, ControlFlowGraph cfg, NaturalLoops.Loop loop,
+            Operand variable, TACVariables variables, LoopWrites writes, ReachingDefinitions reaching) {
+        Integer increment = basicIncrement(code, cfg, variable, variables, writes);
+        if (increment == null)
+            return null;
+
+        // Con qué valores entra al bucle: todos tienen que ser enteros
+        BitSet in = reaching.in(loop.header);
+        BitSet definitions = reaching.definitionsOf(variable);
+        for (int bit = definitions.nextSetBit(0); bit >= 0; bit = definitions.nextSetBit(bit + 1)) {
+            if (!in.get(bit))
+                continue;
+            if (reaching.isUnknown(bit))
+                return null;
+            int def = reaching.instruction(bit);
+            if (loop.contains(cfg.blockOf(def)))
+                continue;
+            if (code.op(def) != Opcode.ASSIGN || code.arg1(def).kind != Operand.Kind.INT)
+                return null;
+        }
+        return increment;
+    }
+
+    // Igual, sin mirar con qué entra: solo la forma de la única escritura en el bucle
+    private Integer basicIncrement(TACBuffer code, ControlFlowGraph cfg, Operand variable, TACVariables variables,
+            LoopWrites writes) {
+        int v = variables.indexOf(variable);
+        if (v < 0 || writes.count[v] != 1)
+            return null;
+        int update = writes.writer[v];
+        int increment = update;
+        if (code.op(update) == Opcode.ASSIGN) {
+            int t = variables.indexOf(code.arg1(update));
+            if (t < 0 || !code.arg1(update).isTemp() || writes.count[t] != 1)
+                return null;
+            increment = writes.writer[t];
+            if (increment > update || cfg.blockOf(increment) != cfg.blockOf(update))
+                return null;
+        }
+        return Double.isNaN(inductionStep(code, increment, variable)) ? null : increment;
+    }
+
+    // c de t = i + c, t = c + i o t = i - c; NaN si la instrucción no tiene esa forma
+    private double inductionStep(TACBuffer code, int increment, Operand variable) {
+        Operand arg1 = code.arg1(increment);
+        Operand arg2 = code.arg2(increment);
+        double step = Double.NaN;
+        if (code.op(increment) == Opcode.ADD) {
+            if (variable.equals(arg1) && arg2.kind == Operand.Kind.INT) {
+                step = arg2.value;
+            } else if (variable.equals(arg2) && arg1.kind == Operand.Kind.INT) {
+                step = arg1.value;
+            }
+        } else if (code.op(increment) == Opcode.SUB && variable.equals(arg1) && arg2.kind == Operand.Kind.INT) {
+            step = -arg2.value;
+        }
+        return step == 0 ? Double.NaN : step;
+    }
+
+    // i REL n (n entero) pasa a s REL n * k, con la relación al revés si k < 0
+    private void replaceExitTests(TACBuffer code, List<ControlFlowGraph.Block> blocks, Operand variable,
+            Operand reduced, double factor, int increment) {
+        for (ControlFlowGraph.Block block : blocks) {
+            for (int i = block.start; i < block.end; i++) {
+                if (code.isDead(i) || i == increment || !code.op(i).isRelational())
+                    continue;
+                Operand arg1 = code.arg1(i);
+                Operand arg2 = code.arg2(i);
+                Opcode op = factor > 0 ? code.op(i) : mirror(code.op(i));
+                if (variable.equals(arg1) && arg2.kind == Operand.Kind.INT) {
+                    code.set(i, op, reduced, Operand.number(arg2.value * factor), code.result(i));
+                } else if (variable.equals(arg2) && arg1.kind == Operand.Kind.INT) {
+                    code.set(i, op, Operand.number(arg1.value * factor), reduced, code.result(i));
+                }
+            }
+        }
+    }
+
+    // Relación equivalente al multiplicar ambos lados por un negativo
+    private Opcode mirror(Opcode op) {
+        switch (op) {
+            case LT:
+                return Opcode.GT;
+            case GT:
+                return Opcode.LT;
+            case LE:
+                return Opcode.GE;
+            case GE:
+                return Opcode.LE;
+            default:
+                return op;
+        }
+    }
+
+    // Si i ya solo se lee en su propio incremento y no sigue viva al salir, sobra
+    private void removeDeadIncrement(TACBuffer code, ControlFlowGraph cfg, NaturalLoops.Loop loop,
+            List<ControlFlowGraph.Block> blocks, Operand variable, TACVariables variables, Liveness liveness,
+            int update, int increment) {
+        Operand temp = update != increment ? code.result(increment) : null;
+        for (ControlFlowGraph.Block block : blocks) {
+            for (int i = block.start; i < block.end; i++) {
+                if (code.isDead(i) || i == increment)
+                    continue;
+                if (variables.reads(code, i, variable)
+                        || (i != update && temp != null && variables.reads(code, i, temp)))
+                    return;
+            }
+        }
+        for (ControlFlowGraph.Block exit : loop.exits(cfg)) {
+            BitSet live = exit == cfg.exit() ? variables.globals() : liveness.liveIn(exit);
+            if (liveness.isLive(live, variable) || (temp != null && liveness.isLive(live, temp)))
+                return;
+        }
+        code.kill(update);
+        code.kill(increment);
+    }
+
+    // =========================================================================
+    // 8. LOOP UNROLLING
+    // =========================================================================
+
+    /**
+     * Bucle contado: el más interno, en código contiguo desde la etiqueta de
+     * la cabecera hasta el salto hacia atrás, con una sola salida que decide
+     * t = i REL n. i es una variable de inducción básica (un solo i = i + c
+     * por vuelta) y n una constante o una variable que el bucle no escribe.
+     *
+     * Arriba (while, for): la cabecera sale con ifFalse/ifTrue y el final es
+     * goto cabecera. Abajo (do-while): el final es ifTrue/ifFalse cabecera.
+     */
+    private static final class CountedLoop {
+        NaturalLoops.Loop loop;
+        boolean topTested;
+        int start; // Etiqueta de la cabecera
+        int end; // Salto hacia atrás
+        int test; // t = i REL n
+        int branch; // Salto que lee t: sale del bucle (arriba) o vuelve a la cabecera (abajo)
+        Operand variable;
+        Operand bound;
+        boolean variableFirst; // i REL n o n REL i
+        double step;
+        boolean updateBeforeTest; // La comparación ve el valor ya incrementado (solo abajo)
+    }
+
+    /**
+     * Desenrolla los bucles contados. Si las vueltas se saben al compilar y
+     * son pocas, el bucle se cambia por una copia del cuerpo por vuelta: las
+     * comparaciones quedan con i constante y la propagación de constantes de
+     * la vuelta siguiente las pliega. Si no, se pone antes un bucle con
+     * unrollFactor copias del cuerpo que solo entra si i llega a la última
+     * copia sin salirse (suma c a i unrollFactor - 1 veces, igual que el
+     * bucle, así compara exactamente los mismos valores); las vueltas que
+     * faltan las hace el bucle original, que queda como resto.
+     *
+     * Todo se cobra de unrollBudget (instrucciones agregadas en el programa)
+     * para que el código no crezca sin límite en la flash del ESP32.
+     */
+    private boolean performLoopUnrolling(TACBuffer code) {
+        if (unrollBudgetLeft <= 0)
+            return false;
+        ControlFlowGraph cfg = new ControlFlowGraph(code);
+        NaturalLoops loops = new NaturalLoops(code, cfg);
+        if (loops.loops().isEmpty())
+            return false;
+        BitSet headers = new BitSet();
+        for (NaturalLoops.Loop loop : loops.loops()) {
+            headers.set(loop.header.id);
+        }
+        TACVariables variables = new TACVariables(code);
+        LoopWrites writes = new LoopWrites(variables.count());
+        List<CountedLoop> candidates = new ArrayList<>();
+        for (NaturalLoops.Loop loop : loops.loops()) {
+            if (unrolledHeaders.contains(code.result(loop.header.start)))
+                continue;
+            CountedLoop counted = countedLoop(code, cfg, headers, loop, variables, writes);
+            // Una segunda copia del cuerpo ya tiene que entrar en lo que queda
+            if (counted != null && counted.end - counted.start - 1 <= unrollBudgetLeft) {
+                candidates.add(counted);
+            }
+        }
+        if (candidates.isEmpty())
+            return false;
+
+        // En orden del código: las inserciones en la misma posición quedan en orden
+        candidates.sort(Comparator.comparingInt(counted -> counted.start));
+        SSAForm ssa = null;
+        SparseConditionalConstants constants = null;
+        boolean changed = false;
+        for (CountedLoop counted : candidates) {
+            int trips = -1;
+            if (counted.bound.isNumber()) {
+                if (ssa == null) {
+                    ssa = new SSAForm(code, cfg, variables);
+                    constants = new SparseConditionalConstants(code, cfg, ssa);
                 }
+                Operand initial = entryValue(counted, variables, ssa, constants);
+                if (initial != null) {
+                    trips = tripCount(code, counted, initial.value);
+                }
+            }
+            if (trips >= 0) {
+                changed |= unrollFully(code, counted, trips);
+            } else if (counted.topTested) {
+                changed |= unrollPartially(code, cfg, counted);
             }
         }
         return changed;
     }
 
+    private CountedLoop countedLoop(TACBuffer code, ControlFlowGraph cfg, BitSet headers, NaturalLoops.Loop loop,
+            TACVariables variables, LoopWrites writes) {
+        if (loop.latches.size() != 1)
+            return null;
+        ControlFlowGraph.Block header = loop.header;
+        ControlFlowGraph.Block latch = loop.latches.get(0);
+        List<ControlFlowGraph.Block> blocks = loop.blocks(cfg);
+        if (blocks.get(0) != header || blocks.get(blocks.size() - 1) != latch
+                || latch.id - header.id + 1 != blocks.size())
+            return null;
+        for (ControlFlowGraph.Block block : blocks) {
+            if (block == header)
+                continue;
+            if (headers.get(block.id))
+                return null; // Solo los más internos: así no se cruzan entre sí
+            for (ControlFlowGraph.Block predecessor : block.predecessors) {
+                if (!loop.contains(predecessor))
+                    return null;
+            }
+        }
+
+        CountedLoop counted = new CountedLoop();
+        counted.loop = loop;
+        counted.start = header.start;
+        counted.end = latch.end - 1;
+        Opcode last = code.op(counted.end);
+        if (!code.result(header.start).equals(code.result(counted.end)))
+            return null;
+        if (last == Opcode.GOTO && header != latch) {
+            counted.topTested = true;
+            counted.branch = header.end - 1;
+            if (!code.op(counted.branch).isConditionalJump()
+                    || loop.contains(cfg.blockOfLabel(code.result(counted.branch))))
+                return null;
+        } else if (last.isConditionalJump()) {
+            counted.branch = counted.end;
+        } else {
+            return null;
+        }
+        ControlFlowGraph.Block exiting = counted.topTested ? header : latch;
+        for (ControlFlowGraph.Block block : blocks) {
+            for (ControlFlowGraph.Block successor : block.successors) {
+                if (!loop.contains(successor) && block != exiting)
+                    return null; // break, return
+            }
+        }
+
+        // La comparación que decide la salida
+        writes.count(code, blocks, variables);
+        int condition = variables.indexOf(code.arg1(counted.branch));
+        if (condition < 0 || writes.count[condition] != 1)
+            return null;
+        counted.test = writes.writer[condition];
+        if (counted.test > counted.branch || cfg.blockOf(counted.test) != exiting
+                || !code.op(counted.test).isRelational())
+            return null;
+        Operand arg1 = code.arg1(counted.test);
+        Operand arg2 = code.arg2(counted.test);
+        counted.variableFirst = isWrittenOnce(arg1, variables, writes);
+        counted.variable = counted.variableFirst ? arg1 : arg2;
+        counted.bound = counted.variableFirst ? arg2 : arg1;
+        int bound = variables.indexOf(counted.bound);
+        if (!counted.bound.isNumber() && (bound < 0 || writes.count[bound] != 0))
+            return null;
+
+        // La variable avanza c exactamente una vez por vuelta
+        Integer increment = basicIncrement(code, cfg, counted.variable, variables, writes);
+        boolean testsIncrement = false;
+        if (increment == null && !counted.topTested) {
+            // Abajo la comparación puede leer el temporal del incremento: t = i - c; i = t; t > 0
+            Operand incremented = incrementedVariable(code, cfg, counted.variable, variables, writes);
+            if (incremented != null) {
+                increment = writes.writer[variables.indexOf(counted.variable)];
+                counted.variable = incremented;
+                testsIncrement = true;
+            }
+        }
+        if (increment == null)
+            return null;
+        counted.step = inductionStep(code, increment, counted.variable);
+        int update = writes.writer[variables.indexOf(counted.variable)];
+        ControlFlowGraph.Block updated = cfg.blockOf(update);
+        if (!cfg.dominates(updated, latch) || (counted.topTested && updated == header))
+            return null;
+        int written = testsIncrement ? increment : update; // Desde ahí se lee el valor nuevo
+        boolean before = cfg.blockOf(written) != latch || written < counted.test;
+        if (testsIncrement && !before)
+            return null; // Leería el temporal de la vuelta anterior
+        counted.updateBeforeTest = !counted.topTested && before;
+        return counted;
+    }
+
+    // i si operand es el temporal t de su incremento (t = i + c; i = t); null si no
+    private Operand incrementedVariable(TACBuffer code, ControlFlowGraph cfg, Operand operand,
+            TACVariables variables, LoopWrites writes) {
+        if (!isWrittenOnce(operand, variables, writes) || !operand.isTemp())
+            return null;
+        int increment = writes.writer[variables.indexOf(operand)];
+        for (Operand candidate : new Operand[] { code.arg1(increment), code.arg2(increment) }) {
+            Integer found = candidate != null ? basicIncrement(code, cfg, candidate, variables, writes) : null;
+            if (found != null && found == increment)
+                return candidate;
+        }
+        return null;
+    }
+
+    private boolean isWrittenOnce(Operand operand, TACVariables variables, LoopWrites writes) {
+        int v = variables.indexOf(operand);
+        return v >= 0 && writes.count[v] == 1;
+    }
+
+    // Número con el que i entra al bucle por todos los caminos de afuera; null si no se sabe
+    private Operand entryValue(CountedLoop counted, TACVariables variables, SSAForm ssa,
+            SparseConditionalConstants constants) {
+        ControlFlowGraph.Block header = counted.loop.header;
+        int v = variables.indexOf(counted.variable);
+        for (SSAForm.Phi phi : ssa.phis(header)) {
+            if (phi.variable != v)
+                continue;
+            Operand value = null;
+            for (int edge = 0; edge < phi.arguments.length; edge++) {
+                if (counted.loop.contains(header.predecessors.get(edge)))
+                    continue;
+                Operand constant = constants.constant(phi.arguments[edge]);
+                if (constant == null || !constant.isNumber() || (value != null && !value.equals(constant)))
+                    return null;
+                value = constant;
+            }
+            return value;
+        }
+        return null;
+    }
+
+    /**
+     * Vueltas del bucle si i empieza en initial, repitiendo las sumas del
+     * programa en double; -1 si son más de MAX_FULL_UNROLL_TRIPS.
+     */
+    private int tripCount(TACBuffer code, CountedLoop counted, double initial) {
+        Opcode relation = code.op(counted.test);
+        boolean continueWhen = code.op(counted.branch) == (counted.topTested ? Opcode.IF_FALSE : Opcode.IF_TRUE);
+        double i = initial;
+        for (int trips = 0; trips <= MAX_FULL_UNROLL_TRIPS; trips++) {
+            double tested = counted.updateBeforeTest ? i + counted.step : i;
+            Operand holds = counted.variableFirst ? compute(relation, tested, counted.bound.value)
+                    : compute(relation, counted.bound.value, tested);
+            if ((holds.value != 0) != continueWhen) {
+                int total = counted.topTested ? trips : trips + 1; // Abajo el cuerpo corre antes de comparar
+                return total <= MAX_FULL_UNROLL_TRIPS ? total : -1;
+            }
+            i += counted.step;
+        }
+        return -1;
+    }
+
+    /**
+     * Una copia del cuerpo por vuelta, sin el salto hacia atrás. Arriba cada
+     * copia conserva la salida de la cabecera y al final va un goto a la
+     * salida (la comparación que ya no se cumple); abajo se sale cayendo.
+     */
+    private boolean unrollFully(TACBuffer code, CountedLoop counted, int trips) {
+        int length = counted.end - counted.start + 1;
+        int growth = trips * (length - 2) + 1 + (counted.topTested ? 1 : 0) - length;
+        if (growth > unrollBudgetLeft)
+            return false;
+        unrollBudgetLeft -= Math.max(0, growth);
+
+        int at = counted.end;
+        code.insertAfter(at, code.instruction(counted.start)); // La etiqueta: puede haber saltos de afuera
+        for (int trip = 0; trip < trips; trip++) {
+            copyLoopBody(code, at, counted, -1);
+        }
+        if (counted.topTested) {
+            code.insertAfter(at, Opcode.GOTO, null, null, code.result(counted.branch));
+        }
+        for (int i = counted.start; i <= counted.end; i++) {
+            code.kill(i);
+        }
+        return true;
+    }
+
+    /**
+     * Antes del bucle, otro con unrollFactor copias del cuerpo (la cabecera
+     * sin su salida) que entra mientras la última copia todavía cumpla la
+     * condición. Solo sirve si la condición, al avanzar i, deja de cumplirse
+     * y no vuelve (i < n con c > 0, i > n con c < 0...).
+     */
+    private boolean unrollPartially(TACBuffer code, ControlFlowGraph cfg, CountedLoop counted) {
+        if (unrollFactor < 2 || !isMonotone(code, counted))
+            return false;
+        List<Integer> entryJumps = preheaderEntries(code, cfg, counted.loop);
+        if (entryJumps == null)
+            return false;
+        int length = counted.end - counted.start + 1;
+        int growth = unrollFactor * (length - 3) + unrollFactor + 3;
+        if (growth > unrollBudgetLeft)
+            return false;
+        unrollBudgetLeft -= growth;
+
+        Operand header = code.result(counted.start);
+        Operand unrolled = Operand.label("L" + nextLabel++);
+        for (int jump : entryJumps) {
+            code.set(jump, code.op(jump), code.arg1(jump), code.arg2(jump), unrolled);
+        }
+        int at = counted.start - 1;
+        code.insertAfter(at, Opcode.LABEL, null, null, unrolled);
+        // last = i + c + c + ...: el valor de i en la última copia
+        Operand last = counted.variable;
+        Operand ahead = Operand.temp(nextTemp++);
+        for (int copy = 1; copy < unrollFactor; copy++) {
+            code.insertAfter(at, counted.step < 0 ? Opcode.SUB : Opcode.ADD, last,
+                    Operand.number(Math.abs(counted.step)), ahead);
+            last = ahead;
+        }
+        Operand holds = Operand.temp(nextTemp++);
+        code.insertAfter(at, code.op(counted.test), counted.variableFirst ? last : counted.bound,
+                counted.variableFirst ? counted.bound : last, holds);
+        code.insertAfter(at, code.op(counted.branch), holds, null, header);
+        for (int copy = 0; copy < unrollFactor; copy++) {
+            copyLoopBody(code, at, counted, counted.branch);
+        }
+        code.insertAfter(at, Opcode.GOTO, null, null, unrolled);
+        unrolledHeaders.add(header);
+        unrolledHeaders.add(unrolled);
+        return true;
+    }
+
+    // ¿Una vez que i deja de cumplir la condición, ya no la vuelve a cumplir?
+    private boolean isMonotone(TACBuffer code, CountedLoop counted) {
+        Opcode relation = counted.variableFirst ? code.op(counted.test) : mirror(code.op(counted.test));
+        if (code.op(counted.branch) == Opcode.IF_TRUE) {
+            relation = negate(relation); // Se sigue mientras la comparación sea falsa
+        }
+        if (counted.step > 0)
+            return relation == Opcode.LT || relation == Opcode.LE;
+        return relation == Opcode.GT || relation == Opcode.GE;
+    }
+
+    private Opcode negate(Opcode op) {
+        switch (op) {
+            case LT:
+                return Opcode.GE;
+            case GE:
+                return Opcode.LT;
+            case GT:
+                return Opcode.LE;
+            case LE:
+                return Opcode.GT;
+            case EQ:
+                return Opcode.NE;
+            case NE:
+                return Opcode.EQ;
+            default:
+                return op;
+        }
+    }
+
+    // Inserta después de at las instrucciones entre la etiqueta y el salto hacia atrás, con etiquetas nuevas
+    private void copyLoopBody(TACBuffer code, int at, CountedLoop counted, int skip) {
+        Map<Operand, Operand> labels = new HashMap<>();
+        for (int i = counted.start + 1; i < counted.end; i++) {
+            if (code.op(i) == Opcode.LABEL) {
+                labels.put(code.result(i), Operand.label("L" + nextLabel++));
+            }
+        }
+        for (int i = counted.start + 1; i < counted.end; i++) {
+            if (i == skip)
+                continue;
+            Operand[] targets = code.targets(i);
+            if (targets != null) {
+                targets = targets.clone();
+                for (int k = 0; k < targets.length; k++) {
+                    targets[k] = labels.getOrDefault(targets[k], targets[k]);
+                }
+            }
+            Operand result = code.result(i);
+            code.insertAfter(at, new TACInstruction(code.op(i), code.arg1(i), code.arg2(i),
+                    result != null ? labels.getOrDefault(result, result) : null, code.caseValues(i), targets));
+        }
+    }
+
     // =========================================================================
     // Helpers
     // =========================================================================
 
-    private boolean canOptimizeUsage(TACInstruction inst, String varName) {
+    /**
+     * Copias válidas al entrar a un bloque. Si tiene un solo predecesor y ya
+     * se recorrió (está antes en el código), siguen valiendo las de su salida:
+     * una etiqueta a la que solo se llega por un camino no borra nada. Con
+     * varios predecesores (bucles, uniones) se empieza de cero.
+     */
+    private Map<Operand, Operand> entryFacts(ControlFlowGraph.Block block, List<Map<Operand, Operand>> blockExits) {
+        ControlFlowGraph.Block predecessor = visitedPredecessor(block, blockExits);
+        return predecessor != null ? new HashMap<>(blockExits.get(predecessor.id)) : new HashMap<>();
+    }
+
+    // Único predecesor del bloque si ya se recorrió; null si no
+    private ControlFlowGraph.Block visitedPredecessor(ControlFlowGraph.Block block,
+            List<Map<Operand, Operand>> blockExits) {
+        if (block.predecessors.size() == 1) {
+            ControlFlowGraph.Block predecessor = block.predecessors.get(0);
+            if (predecessor.id < blockExits.size()) {
+                return predecessor;
+            }
+        }
+        return null;
+    }
+
+    private boolean canOptimizeUsage(TACBuffer code, int i, Operand operand) {
         // ALWAYS optimize temporary variables
-        if (varName.matches("t\\d+"))
+        if (operand.isTemp())
             return true;
 
         // For user variables, DO NOT optimize if used in 'param'
         // This preserves the variable name in the generated code (e.g. print(edad))
-        if (inst.op.equals("param"))
+        if (code.op(i) == Opcode.PARAM)
             return false;
 
         // Optimize in all other cases (calculations, jumps, etc.)
         return true;
     }
 
-    private boolean isArithmeticOrRelational(String op) {
-        return op.equals("+") || op.equals("-") || op.equals("*") || op.equals("/") ||
-                op.equals("%") || op.equals("==") || op.equals("!=") || op.equals("<") ||
-                op.equals(">") || op.equals("<=") || op.equals(">=");
-    }
-
-    private boolean isNumber(String s) {
-        if (s == null)
-            return false;
-        try {
-            Double.parseDouble(s);
-            return true;
-        } catch (NumberFormatException e) {
-            return false;
-        }
+    private boolean isNumber(Operand operand, double value) {
+        return operand != null && operand.isNumber(value);
     }
 
-    private String compute(String op, double v1, double v2) {
+    static Operand compute(Opcode op, double v1, double v2) {
         switch (op) {
-            case "+":
-                return clean(v1 + v2);
-            case "-":
-                return clean(v1 - v2);
-            case "*":
-                return clean(v1 * v2);
-            case "/":
-                return clean(v1 / v2);
-            case "%":
-                return clean(v1 % v2);
-            case "==":
-                return String.valueOf(v1 == v2);
-            case "!=":
-                return String.valueOf(v1 != v2);
-            case "<":
-                return String.valueOf(v1 < v2);
-            case ">":
-                return String.valueOf(v1 > v2);
-            case "<=":
-                return String.valueOf(v1 <= v2);
-            case ">=":
-                return String.valueOf(v1 >= v2);
+            case ADD:
+                return Operand.number(v1 + v2);
+            case SUB:
+                return Operand.number(v1 - v2);
+            case MUL:
+                return Operand.number(v1 * v2);
+            case DIV:
+                return Operand.number(v1 / v2);
+            case MOD:
+                return Operand.number(v1 % v2);
+            case EQ:
+                return Operand.bool(v1 == v2);
+            case NE:
+                return Operand.bool(v1 != v2);
+            case LT:
+                return Operand.bool(v1 < v2);
+            case GT:
+                return Operand.bool(v1 > v2);
+            case LE:
+                return Operand.bool(v1 <= v2);
+            case GE:
+                return Operand.bool(v1 >= v2);
             default:
-                return "0";
+                return Operand.integer(0);
         }
     }
-
-    private String clean(double d) {
-        if (d == (long) d)
-            return String.format("%d", (long) d);
-        return String.valueOf(d);
-    }
 }
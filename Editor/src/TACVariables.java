@@ -0,0 +1,127 @@
+import java.util.*;
+
+/**
+ * Numeración de las variables y temporales de un {@link TACBuffer} para los
+ * análisis de flujo de datos con conjuntos de bits.
+ *
+ * Las funciones del usuario van en línea y trabajan con las mismas variables
+ * globales, así que un call a una de ellas puede leer y escribir cualquier
+ * variable del usuario. print, println y las funciones de Arduino no tocan
+ * variables. Un f-string lee las variables que nombra entre llaves.
+ */
+public class TACVariables {
+    private final Map<Operand, Integer> indices = new HashMap<>();
+    private final List<Operand> operands = new ArrayList<>();
+    private final BitSet globals = new BitSet(); // Variables del usuario (no temporales)
+    private final Set<String> userFunctions = new HashSet<>();
+    private final Map<Operand, int[]> formatted = new HashMap<>(); // f-string -> variables que lee
+    private final BitSet scratch = new BitSet(); // Para reads() sin crear conjuntos
+
+    public TACVariables(TACBuffer code) {
+        for (int i = 0; i < code.size(); i++) {
+            if (code.isDead(i)) {
+                continue;
+            }
+            if (code.op(i) == Opcode.LABEL && code.result(i).kind == Operand.Kind.FUNCTION) {
+                userFunctions.add(code.result(i).text.substring("func_".length()));
+            }
+            register(code.arg1(i));
+            register(code.arg2(i));
+            register(code.result(i));
+            registerFormatted(code.arg1(i));
+            registerFormatted(code.arg2(i));
+        }
+    }
+
+    // La plantilla se parsea una sola vez por f-string distinto
+    private void registerFormatted(Operand operand) {
+        if (operand == null || operand.kind != Operand.Kind.FORMATTED || formatted.containsKey(operand)) {
+            return;
+        }
+        String[] names = FormatTemplate.parse(operand.text).variables;
+        int[] reads = new int[names.length];
+        for (int k = 0; k < names.length; k++) {
+            Operand variable = Operand.variable(names[k]);
+            register(variable);
+            reads[k] = indexOf(variable);
+        }
+        formatted.put(operand, reads);
+    }
+
+    private void register(Operand operand) {
+        if (operand != null && operand.isStorage() && !indices.containsKey(operand)) {
+            indices.put(operand, operands.size());
+            if (operand.kind == Operand.Kind.VARIABLE) {
+                globals.set(operands.size());
+            }
+            operands.add(operand);
+        }
+    }
+
+    public int count() {
+        return operands.size();
+    }
+
+    // Índice de una variable o temporal; -1 si es otra cosa (constante, etiqueta...)
+    public int indexOf(Operand operand) {
+        if (operand == null) {
+            return -1;
+        }
+        Integer index = indices.get(operand);
+        return index != null ? index : -1;
+    }
+
+    public Operand operand(int index) {
+        return operands.get(index);
+    }
+
+    public BitSet globals() {
+        return globals;
+    }
+
+    // Variable que escribe la instrucción i; -1 si no escribe ninguna
+    public int definition(TACBuffer code, int i) {
+        return indexOf(code.result(i));
+    }
+
+    public boolean callsUserFunction(TACBuffer code, int i) {
+        return code.op(i) == Opcode.CALL && userFunctions.contains(code.arg1(i).text);
+    }
+
+    // Agrega a uses las variables que lee la instrucción i
+    public void addUses(TACBuffer code, int i, BitSet uses) {
+        int arg1 = indexOf(code.arg1(i));
+        if (arg1 >= 0) {
+            uses.set(arg1);
+        }
+        int arg2 = indexOf(code.arg2(i));
+        if (arg2 >= 0) {
+            uses.set(arg2);
+        }
+        addFormattedUses(code.arg1(i), uses);
+        addFormattedUses(code.arg2(i), uses);
+        if (callsUserFunction(code, i)) {
+            uses.or(globals);
+        }
+    }
+
+    // ¿La instrucción i lee el operando? (también dentro de un f-string o en un call)
+    public boolean reads(TACBuffer code, int i, Operand operand) {
+        int v = indexOf(operand);
+        if (v < 0) {
+            return false;
+        }
+        scratch.clear();
+        addUses(code, i, scratch);
+        return scratch.get(v);
+    }
+
+    private void addFormattedUses(Operand operand, BitSet uses) {
+        int[] reads = operand != null ? formatted.get(operand) : null;
+        if (reads != null) {
+            for (int v : reads) {
+                uses.set(v);
+            }
+        }
+    }
+}
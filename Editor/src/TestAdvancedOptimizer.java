@@ -33,14 +33,15 @@ public class TestAdvancedOptimizer {
         for (TACInstruction inst : code)
             System.out.println(inst);
 
-        TACOptimizer optimizer = new TACOptimizer();
+        // Sin desenrollar: el bucle tiene que quedar entero
+        TACOptimizer optimizer = new TACOptimizer(1, 0);
         List<TACInstruction> optimized = optimizer.optimize(code);
 
         System.out.println("\n--- Optimizado (Debe preservar la lógica del bucle) ---");
         boolean hasComparison = false;
         for (TACInstruction inst : optimized) {
             System.out.println(inst);
-            if (inst.op.equals("<"))
+            if (inst.op == Opcode.LT)
                 hasComparison = true;
         }
 
@@ -50,6 +51,206 @@ public class TestAdvancedOptimizer {
             System.out.println("\n❌ ERROR: La comparación desapareció. ¡El bucle se rompió!");
         }
 
+        // TEST CASE 1b: Loop Unrolling
+        // Con el optimizador por defecto el bucle de 2 vueltas se desenrolla:
+        // una copia del cuerpo por vuelta, con i ya constante en cada una
+        System.out.println("\n--- Desenrollado (bucle de 2 vueltas) ---");
+        List<TACInstruction> unrolled = new TACOptimizer().optimize(code);
+        StringBuilder printed = new StringBuilder();
+        boolean hasJump = false;
+        for (TACInstruction inst : unrolled) {
+            System.out.println(inst);
+            if (inst.op == Opcode.PRINT)
+                printed.append(inst.arg1).append(' ');
+            if (inst.op == Opcode.GOTO || inst.op.isConditionalJump())
+                hasJump = true;
+        }
+
+        if (!hasJump && printed.toString().equals("0 1 ")) {
+            System.out.println("\n✅ ÉXITO: El bucle se desenrolló en 'print 0' y 'print 1'.");
+        } else {
+            System.out.println("\n❌ ERROR: El desenrollado no dio 'print 0', 'print 1' sin saltos.");
+        }
+
+        // TEST CASE 1c: Loop Unrolling parcial
+        // n no se conoce: delante va un bucle con 4 copias del cuerpo cuya
+        // guarda compara i + 3 * 2 (lo que i valdría en la cuarta copia) y el
+        // bucle original queda de resto. Con n = 11 el desenrollado da una
+        // vuelta (i = 0..6) y el resto las dos que faltan (i = 8, 10)
+        String counted = "i = 0; while (i < n) { println(i); i = i + 2; }";
+        Map<String, Double> bound = new HashMap<>();
+        bound.put("n", 11.0);
+        List<TACInstruction> partial = checkOptimized("Desenrollado parcial (i < n, factor 4)", counted,
+                new TACOptimizer(4, TACOptimizer.DEFAULT_UNROLL_BUDGET), bound);
+        Map<Operand, Double> offsets = new HashMap<>(); // Operando -> cuánto más que i vale
+        offsets.put(Operand.variable("i"), 0.0);
+        Double guard = null;
+        int backEdges = 0;
+        for (TACInstruction inst : partial) {
+            if (guard == null && inst.op == Opcode.ASSIGN && offsets.containsKey(inst.arg1))
+                offsets.put(inst.result, offsets.get(inst.arg1));
+            if (guard == null && inst.op == Opcode.ADD && offsets.containsKey(inst.arg1) && inst.arg2.isConstant())
+                offsets.put(inst.result, offsets.get(inst.arg1) + inst.arg2.value);
+            if (guard == null && inst.op == Opcode.LT)
+                guard = offsets.get(inst.arg1);
+            if (inst.op == Opcode.GOTO)
+                backEdges++;
+        }
+        boolean sameForAnyBound = true;
+        for (int n = 0; n <= 12; n++) {
+            bound.put("n", (double) n);
+            sameForAnyBound &= run(generate(counted), bound).equals(run(partial, bound));
+        }
+
+        if (guard != null && guard == 6 && backEdges == 2 && sameForAnyBound) {
+            System.out.println("✅ ÉXITO: La guarda compara 'i + 6' y el bucle de resto da las vueltas que faltan.");
+        } else {
+            System.out.println(
+                    "❌ ERROR: El desenrollado parcial no tiene la guarda 'i + 6 < n' con un bucle de resto.");
+        }
+
+        // TEST CASE 1d: Presupuesto del desenrollado
+        // 4 copias de un cuerpo de unas 300 instrucciones no entran en las 256
+        // del presupuesto: el bucle queda igual que sin desenrollar
+        StringBuilder large = new StringBuilder("i = 0; while (i < n) {");
+        for (int k = 0; k < 100; k++)
+            large.append(" println(i + ").append(k).append(");");
+        large.append(" i = i + 1; }");
+        bound.put("n", 2.0);
+        List<TACInstruction> overBudget = checkOptimized("Desenrollado fuera de presupuesto", large.toString(),
+                new TACOptimizer(), bound);
+        List<TACInstruction> rolled = new TACOptimizer(1, 0).optimize(generate(large.toString()));
+
+        if (overBudget.toString().equals(rolled.toString())) {
+            System.out.println(
+                    "✅ ÉXITO: El bucle se dejó sin desenrollar (" + overBudget.size() + " instrucciones).");
+        } else {
+            System.out.println("❌ ERROR: El bucle se desenrolló aunque no entraba en el presupuesto.");
+        }
+
+        // TEST CASE 1e: CSE global
+        // La copia tH = tK que deja la CSE global en un sitio no redundante lee
+        // tK: ni SCCP ni la eliminación de código muerto pueden borrar tK
+        checkOptimized("CSE global (do-while con a + n repetido)",
+                "a = 1; n = 1; d = 0; do { println(a + n); d = d + 1; } while (d < 3); println(a + n);",
+                new TACOptimizer(), Collections.emptyMap());
+
+        // TEST CASE 1f: Stores leídos por un f-string
+        // f"x={x}" lee x: la eliminación de stores muertos no puede borrar x = 5
+        checkOptimized("Store leído por un f-string",
+                "x = 5; println(f\"x={x}\"); x = 6; println(x);", new TACOptimizer(), Collections.emptyMap());
+
+        // TEST CASE 1g: SCCP
+        // x > 5 es falso: el if se va con su rama, y como x = 10 nunca se
+        // ejecuta, x sigue valiendo 3 después de la unión (x + 1 es 4)
+        List<TACInstruction> folded = checkOptimized("SCCP (rama constante)",
+                "x = 3; if (x > 5) { x = 10; println(1); } else { println(2); } println(x + 1);",
+                new TACOptimizer(), Collections.emptyMap());
+        boolean branches = false;
+        boolean deadArm = false;
+        boolean foldedUse = false;
+        for (TACInstruction inst : folded) {
+            if (inst.op.isConditionalJump())
+                branches = true;
+            if (inst.op == Opcode.ASSIGN && inst.arg1.isNumber(10) || inst.op == Opcode.PARAM && inst.arg1.isNumber(1))
+                deadArm = true;
+            if (inst.op == Opcode.PARAM && inst.arg1.isNumber(4))
+                foldedUse = true;
+        }
+
+        if (!branches && !deadArm && foldedUse) {
+            System.out.println("✅ ÉXITO: El salto y la rama muerta se quitaron; 'x + 1' quedó en 'param 4'.");
+        } else {
+            System.out.println("❌ ERROR: SCCP no quitó el salto constante o la rama muerta.");
+        }
+
+        // TEST CASE 1h: Loop-Invariant Code Motion
+        // a + n no cambia dentro del bucle: se calcula una vez en el
+        // preencabezado, antes de la etiqueta del encabezado
+        Map<String, Double> inputs = new HashMap<>();
+        inputs.put("a", 2.0);
+        inputs.put("n", 3.0);
+        List<TACInstruction> hoisted = checkOptimized("LICM (a + n invariante)",
+                "i = 0; while (i < n) { x = a + n; println(x + i); i = i + 1; }", new TACOptimizer(1, 0), inputs);
+        int header = -1;
+        int beforeHeader = 0;
+        int insideLoop = 0;
+        for (int i = 0; i < hoisted.size(); i++) {
+            TACInstruction inst = hoisted.get(i);
+            if (inst.op == Opcode.LABEL && header < 0)
+                header = i;
+            if (inst.op == Opcode.ADD && inst.arg1.text.equals("a") && inst.arg2.text.equals("n")) {
+                if (header < 0)
+                    beforeHeader++;
+                else
+                    insideLoop++;
+            }
+        }
+
+        if (beforeHeader == 1 && insideLoop == 0) {
+            System.out.println("✅ ÉXITO: 'a + n' se movió al preencabezado del bucle.");
+        } else {
+            System.out.println("❌ ERROR: 'a + n' no quedó una sola vez antes del bucle.");
+        }
+
+        // n * 2 es invariante, pero f"x={x}" lee x al entrar al bucle: x = n * 2
+        // no puede ir al preencabezado, y x = 1 sigue vivo (primero imprime x=1)
+        String formattedLoop = "x = 1; n = 7; k = 0; while (k < 3) { println(f\"x={x}\"); x = n * 2; k = k + 1; }";
+        List<TACInstruction> kept = checkOptimized("LICM con f-string que lee x", formattedLoop,
+                new TACOptimizer(1, 0), Collections.emptyMap());
+        checkOptimized("Desenrollado con f-string que lee x", formattedLoop, new TACOptimizer(),
+                Collections.emptyMap());
+        boolean hoistedPastRead = false;
+        for (TACInstruction inst : kept) {
+            if (inst.op == Opcode.PARAM)
+                break;
+            if (inst.result != null && inst.result.text.equals("x") && !inst.arg1.isNumber(1))
+                hoistedPastRead = true;
+        }
+
+        if (!hoistedPastRead) {
+            System.out.println("✅ ÉXITO: 'x = n * 2' se quedó después del f-string que lee x.");
+        } else {
+            System.out.println("❌ ERROR: 'x = n * 2' se movió antes del f-string que lee x.");
+        }
+
+        // TEST CASE 1i: Strength Reduction
+        // i * 4 pasa a un temporal s al que se le suma 4 por vuelta, y la
+        // salida i < 10 se compara con s: s < 40
+        List<TACInstruction> reduced = checkOptimized("Strength Reduction (i * 4)",
+                "i = 0; while (i < 10) { println(i * 4); i = i + 1; }", new TACOptimizer(1, 0),
+                Collections.emptyMap());
+        Operand induction = null;
+        boolean multiplies = false;
+        for (TACInstruction inst : reduced) {
+            if (inst.op == Opcode.MUL)
+                multiplies = true;
+            if (inst.op == Opcode.ADD && inst.result.isTemp() && inst.result.equals(inst.arg1)
+                    && inst.arg2.isNumber(4))
+                induction = inst.result;
+        }
+        boolean exitRewritten = false;
+        for (TACInstruction inst : reduced) {
+            if (inst.op == Opcode.LT && inst.arg1.equals(induction) && inst.arg2.isNumber(40))
+                exitRewritten = true;
+        }
+
+        if (!multiplies && induction != null && exitRewritten) {
+            System.out.println("✅ ÉXITO: 'i * 4' pasó a '" + induction + " = " + induction
+                    + " + 4' y la salida a '" + induction + " < 40'.");
+        } else {
+            System.out.println("❌ ERROR: 'i * 4' no se redujo a una suma o la salida no se reescribió.");
+        }
+
+        // La salida pasa a la suma, pero f"i={i}" sigue leyendo i en el bucle: el
+        // incremento de i no se puede borrar aunque i no esté viva al salir
+        String formattedCounter = "for (i = 0; i < 100; i = i + 1) { println(f\"i={i}\"); y = i * 4; println(y); }"
+                + " i = 0; println(i);";
+        checkOptimized("Strength Reduction con f-string que lee i", formattedCounter, new TACOptimizer(1, 0),
+                Collections.emptyMap());
+        checkOptimized("Desenrollado con f-string que lee i", formattedCounter, new TACOptimizer(),
+                Collections.emptyMap());
+
         // TEST CASE 2: Cosmetics
         System.out.println("\n--- Prueba de Cosmética IR ---");
         TACInstruction t = new TACInstruction("param", "hello", null, null);
@@ -57,4 +258,197 @@ public class TestAdvancedOptimizer {
         TACInstruction t2 = new TACInstruction("=", "123", null, "x");
         System.out.println("Input: x = 123 -> Output: " + t2.toString());
     }
+
+    // ==================== AUXILIARES ====================
+
+    // TAC sin optimizar, tal como lo genera el compilador desde el código fuente
+    private static List<TACInstruction> generate(String source) {
+        Ast.Program program = new AstBuilder(new Lexer(source).tokenizeToBuffer(), new ErrorManager()).build();
+        return new TACGenerator(program).generate();
+    }
+
+    /**
+     * Genera y optimiza el programa, e informa si el TAC optimizado imprime lo
+     * mismo que el original y si cada param tN sigue teniendo una definición
+     * de tN en todos los caminos que llegan a él.
+     */
+    private static List<TACInstruction> checkOptimized(String name, String source, TACOptimizer optimizer,
+            Map<String, Double> inputs) {
+        System.out.println("\n--- " + name + " ---");
+        List<TACInstruction> code = generate(source);
+        List<TACInstruction> optimized = optimizer.optimize(code);
+        for (TACInstruction inst : optimized)
+            System.out.println(inst);
+
+        String undefined = undefinedParamTemps(optimized);
+        if (!undefined.isEmpty()) {
+            System.out.println("\n❌ ERROR: Temporales sin definición que los alcance: " + undefined);
+            return optimized;
+        }
+        String expected = run(code, inputs);
+        String actual;
+        try {
+            actual = run(optimized, inputs);
+        } catch (IllegalStateException e) {
+            System.out.println("\n❌ ERROR: El código optimizado falla: " + e.getMessage());
+            return optimized;
+        }
+        if (expected.equals(actual)) {
+            System.out.println("\n✅ ÉXITO: Imprime lo mismo que sin optimizar: " + actual.trim());
+        } else {
+            System.out.println("\n❌ ERROR: Sin optimizar imprime '" + expected.trim() + "' y optimizado '"
+                    + actual.trim() + "'.");
+        }
+        return optimized;
+    }
+
+    // param tN cuyo tN no se define en todos los caminos desde la entrada (análisis must)
+    private static String undefinedParamTemps(List<TACInstruction> instructions) {
+        TACBuffer code = TACBuffer.of(instructions);
+        ControlFlowGraph cfg = new ControlFlowGraph(code);
+        int blocks = cfg.blocks().size();
+        BitSet[] gen = new BitSet[blocks];
+        BitSet[] kill = new BitSet[blocks];
+        BitSet universe = new BitSet();
+        for (ControlFlowGraph.Block block : cfg.blocks()) {
+            gen[block.id] = new BitSet();
+            kill[block.id] = new BitSet();
+            for (int i = block.start; i < block.end; i++) {
+                if (code.result(i) != null && code.result(i).isTemp()) {
+                    gen[block.id].set(code.result(i).temp);
+                    universe.set(code.result(i).temp);
+                }
+            }
+        }
+        Dataflow defined = new Dataflow(cfg, Dataflow.Direction.FORWARD, true, gen, kill, new BitSet(), universe);
+
+        StringBuilder undefined = new StringBuilder();
+        for (ControlFlowGraph.Block block : cfg.blocks()) {
+            BitSet temps = (BitSet) defined.in(block).clone();
+            for (int i = block.start; i < block.end; i++) {
+                Operand arg = code.arg1(i);
+                if (code.op(i) == Opcode.PARAM && arg.isTemp() && !temps.get(arg.temp))
+                    undefined.append(arg).append(' ');
+                if (code.result(i) != null && code.result(i).isTemp())
+                    temps.set(code.result(i).temp);
+            }
+        }
+        return undefined.toString().trim();
+    }
+
+    /**
+     * Intérprete mínimo del TAC de estas pruebas (números, f-strings, saltos y
+     * print / println); devuelve lo que imprime. Las variables que el programa no
+     * asigna antes de leerlas salen de inputs.
+     */
+    private static String run(List<TACInstruction> code, Map<String, Double> inputs) {
+        Map<Operand, Integer> labels = new HashMap<>();
+        for (int i = 0; i < code.size(); i++) {
+            if (code.get(i).op == Opcode.LABEL)
+                labels.put(code.get(i).result, i);
+        }
+        Map<String, Double> values = new HashMap<>(inputs);
+        Deque<String> params = new ArrayDeque<>();
+        StringBuilder out = new StringBuilder();
+        int steps = 0;
+        for (int pc = 0; pc < code.size(); pc++) {
+            if (++steps > 100_000)
+                return out + "<sin terminar>";
+            TACInstruction inst = code.get(pc);
+            switch (inst.op) {
+                case LABEL:
+                    break;
+                case GOTO:
+                    pc = labels.get(inst.result);
+                    break;
+                case IF_FALSE:
+                case IF_TRUE:
+                    if ((value(values, inst.arg1) != 0) == (inst.op == Opcode.IF_TRUE))
+                        pc = labels.get(inst.result);
+                    break;
+                case PARAM:
+                    params.add(text(values, inst.arg1));
+                    break;
+                case PRINT:
+                case PRINTLN:
+                    out.append(text(values, inst.arg1)).append(' ');
+                    break;
+                case CALL:
+                    while (!params.isEmpty())
+                        out.append(params.poll()).append(' ');
+                    break;
+                case ASSIGN:
+                    values.put(inst.result.text, value(values, inst.arg1));
+                    break;
+                default:
+                    values.put(inst.result.text, evaluate(inst.op, value(values, inst.arg1),
+                            inst.arg2 != null ? value(values, inst.arg2) : 0));
+                    break;
+            }
+        }
+        return out.toString();
+    }
+
+    // Lo que se imprime: el número o el f-string con sus variables reemplazadas
+    private static String text(Map<String, Double> values, Operand operand) {
+        if (operand.kind != Operand.Kind.FORMATTED)
+            return format(value(values, operand));
+        FormatTemplate template = FormatTemplate.parse(operand.text);
+        StringBuilder text = new StringBuilder(template.literals[0]);
+        for (int k = 0; k < template.variables.length; k++) {
+            text.append(format(value(values, Operand.variable(template.variables[k]))))
+                    .append(template.literals[k + 1]);
+        }
+        return text.toString();
+    }
+
+    private static double value(Map<String, Double> values, Operand operand) {
+        if (operand.isConstant())
+            return operand.value;
+        Double value = values.get(operand.text);
+        if (value == null)
+            throw new IllegalStateException("Se lee " + operand + " sin definirlo");
+        return value;
+    }
+
+    private static double evaluate(Opcode op, double a, double b) {
+        switch (op) {
+            case ADD:
+                return a + b;
+            case SUB:
+                return a - b;
+            case MUL:
+                return a * b;
+            case DIV:
+                return a / b;
+            case MOD:
+                return a % b;
+            case EQ:
+                return a == b ? 1 : 0;
+            case NE:
+                return a != b ? 1 : 0;
+            case LT:
+                return a < b ? 1 : 0;
+            case GT:
+                return a > b ? 1 : 0;
+            case LE:
+                return a <= b ? 1 : 0;
+            case GE:
+                return a >= b ? 1 : 0;
+            case AND:
+                return a != 0 && b != 0 ? 1 : 0;
+            case OR:
+                return a != 0 || b != 0 ? 1 : 0;
+            case MINUS:
+                return -a;
+            case NOT:
+                return a == 0 ? 1 : 0;
+            default:
+                throw new IllegalStateException("Operación no soportada en la prueba: " + op);
+        }
+    }
+
+    private static String format(double value) {
+        return value == (long) value ? String.valueOf((long) value) : String.valueOf(value);
+    }
 }
@@ -24,10 +24,10 @@ public class TestArduinoParam {
 
         for (TACInstruction inst : optimized) {
             System.out.println(inst);
-            if (inst.op.equals("param") && inst.arg1.equals("edad")) {
+            if (inst.op == Opcode.PARAM && inst.arg1.text.equals("edad")) {
                 edadPreserved = true;
             }
-            if (inst.op.equals("param") && inst.arg1.equals("5")) {
+            if (inst.op == Opcode.PARAM && inst.arg1.text.equals("5")) {
                 tempReplaced = true;
             }
         }
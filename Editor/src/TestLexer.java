@@ -0,0 +1,349 @@
+import java.io.StringReader;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+
+public class TestLexer {
+    private static final String[] FRAGMENTS = {
+            "print", "println", "input", "if", "else", "while", "for", "do", "break", "return",
+            "function", "true", "false", "switch", "case", "default", "printer", "if2", "_x", "fila",
+            "contador", "f", "f\"hola {x}\"", "f\"sin cierre", "\"texto\"", "\"multi\nlinea\"", "\"abierto",
+            "'c'", "'", "12", "3.14", "7.", "0.5.1", "++", "--", "<=", ">=", "==", "!=", "&&", "||",
+            "&", "|", "+", "-", "*", "/", "%", "=", "<", ">", "!", "(", ")", "{", "}", ";", ",", ":",
+            "// comentario\n", "#", "@", "á", "ifá", "dó", "ñandú", "case\u0301",
+            "\uD835\uDC9C", "\t", " ", " ", "\n", "\r\n"
+    };
+
+    public static void main(String[] args) throws Exception {
+        System.out.println("🧪 Comparando Lexer DFA contra el motor regex original...");
+
+        Random random = new Random(42);
+        int failures = 0;
+
+        for (int run = 0; run < 200; run++) {
+            String source = generateSource(random, 400);
+            if (!compare(source)) {
+                failures++;
+                if (failures <= 3) {
+                    System.out.println("--- Fuente con diferencias ---");
+                    System.out.println(source);
+                }
+            }
+        }
+
+        // Fuente grande para medir tiempos
+        String large = generateSource(new Random(7), 30000);
+        System.out.println("\nFuente grande: " + large.length() + " caracteres");
+
+        long start = System.nanoTime();
+        Lexer dfa = new Lexer(large);
+        List<Token> dfaTokens = dfa.tokenize();
+        long dfaTime = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        Lexer regex = new Lexer(large);
+        regex.setUseRegexEngine(true);
+        List<Token> regexTokens = regex.tokenize();
+        long regexTime = System.nanoTime() - start;
+
+        if (!sameOutput(dfa, dfaTokens, regex, regexTokens)) {
+            failures++;
+        }
+
+        System.out.printf("DFA:   %,d tokens en %d ms%n", dfaTokens.size(), dfaTime / 1_000_000);
+        System.out.printf("Regex: %,d tokens en %d ms%n", regexTokens.size(), regexTime / 1_000_000);
+
+        failures += testIncremental(large);
+        failures += testStreaming(large);
+        failures += testParallel();
+        failures += testMatching();
+
+        if (failures == 0) {
+            System.out.println("\n✅ ÉXITO: Ambos motores producen los mismos tokens y errores.");
+        } else {
+            System.out.println("\n❌ ERROR: " + failures + " fuentes produjeron salidas distintas.");
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Aplica ediciones aleatorias con Lexer.relex y compara cada resultado con
+     * un escaneo completo del mismo texto.
+     */
+    private static int testIncremental(String large) {
+        System.out.println("\n🧪 Re-escaneo incremental contra escaneo completo...");
+        Random random = new Random(11);
+        int failures = 0;
+
+        for (int run = 0; run < 100 && failures == 0; run++) {
+            String source = generateSource(random, 80);
+            Lexer incremental = new Lexer(source);
+            incremental.tokenizeToBuffer();
+
+            for (int edit = 0; edit < 30; edit++) {
+                int offset = random.nextInt(source.length() + 1);
+                int removed = random.nextInt(Math.min(6, source.length() - offset) + 1);
+                String inserted = random.nextBoolean() ? FRAGMENTS[random.nextInt(FRAGMENTS.length)] : "";
+                source = source.substring(0, offset) + inserted + source.substring(offset + removed);
+
+                TokenBuffer relexed = incremental.relex(source, offset, removed, inserted.length());
+                Lexer full = new Lexer(source);
+                TokenBuffer expected = full.tokenizeToBuffer();
+
+                if (!sameBuffers(relexed, expected) || !incremental.getErrors().equals(full.getErrors())) {
+                    System.out.println("❌ Diferencia tras editar en " + offset + " (-" + removed + " +"
+                            + inserted.length() + "):");
+                    System.out.println(source);
+                    failures++;
+                    break;
+                }
+            }
+        }
+
+        // Tiempo por pulsación en un archivo grande: escribir al final de la primera línea
+        Lexer editor = new Lexer(large);
+        editor.tokenizeToBuffer();
+        String text = large;
+        long start = System.nanoTime();
+        for (int i = 0; i < 200; i++) {
+            int offset = text.indexOf('\n') < 0 ? 0 : text.indexOf('\n');
+            text = text.substring(0, offset) + "x" + text.substring(offset);
+            editor.relex(text, offset, 0, 1);
+        }
+        long relexTime = System.nanoTime() - start;
+        if (!sameBuffers(editor.getTokens(), new Lexer(text).tokenizeToBuffer())) {
+            System.out.println("❌ El archivo grande no coincide después de 200 ediciones");
+            failures++;
+        }
+        System.out.printf("Incremental: 200 ediciones en %d ms%n", relexTime / 1_000_000);
+
+        return failures;
+    }
+
+    /**
+     * Compara el escaneo bajo demanda (Reader con ventana pequeña, CharBuffer
+     * y archivo mapeado) contra Lexer.tokenize().
+     */
+    private static int testStreaming(String large) throws Exception {
+        System.out.println("\n🧪 Lexer en modo streaming contra escaneo completo...");
+        Random random = new Random(5);
+        int failures = 0;
+
+        for (int run = 0; run < 100 && failures == 0; run++) {
+            String source = generateSource(random, 200);
+            Lexer full = new Lexer(source);
+            List<Token> expected = full.tokenize();
+
+            // Ventana de 16 caracteres: obliga a descartar y agrandar la ventana
+            List<String> readerErrors = new ArrayList<>();
+            List<Token> fromReader = new ArrayList<>();
+            new TokenStream(new StringReader(source), readerErrors, 16).forEachRemaining(fromReader::add);
+
+            Lexer charBuffer = new Lexer(CharBuffer.wrap(source));
+            List<Token> fromCharBuffer = charBuffer.tokenize();
+
+            if (!sameTokens(expected, fromReader) || !full.getErrors().equals(readerErrors)
+                    || !sameTokens(expected, fromCharBuffer) || !full.getErrors().equals(charBuffer.getErrors())) {
+                System.out.println("❌ El modo streaming difiere para:");
+                System.out.println(source);
+                failures++;
+            }
+        }
+
+        Path file = Files.createTempFile("noddk", ".nd");
+        try {
+            Files.write(file, large.getBytes(StandardCharsets.UTF_8));
+            long start = System.nanoTime();
+            Lexer mapped = Lexer.mapFile(file, StandardCharsets.UTF_8);
+            int count = 0;
+            for (Token token : mapped) {
+                count++;
+            }
+            long mappedTime = System.nanoTime() - start;
+
+            Lexer again = Lexer.mapFile(file, StandardCharsets.UTF_8);
+            Lexer full = new Lexer(large);
+            if (!sameTokens(full.tokenize(), again.tokenize()) || !full.getErrors().equals(again.getErrors())) {
+                System.out.println("❌ El archivo mapeado no coincide con el escaneo completo");
+                failures++;
+            }
+            System.out.printf("Archivo mapeado: %,d tokens en %d ms%n", count, mappedTime / 1_000_000);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+
+        return failures;
+    }
+
+    /**
+     * Compara Lexer.tokenizeParallel() con el escaneo secuencial usando trozos
+     * pequeños para que muchos cortes caigan dentro de strings de varias líneas.
+     */
+    private static int testParallel() {
+        System.out.println("\n🧪 Escaneo en paralelo contra escaneo secuencial...");
+        Random random = new Random(3);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        int failures = 0;
+
+        try {
+            for (int run = 0; run < 50 && failures == 0; run++) {
+                String source = generateSource(random, 2000);
+                int chunkSize = 20 + random.nextInt(400);
+
+                Lexer sequential = new Lexer(source);
+                TokenBuffer expected = sequential.tokenizeToBuffer();
+                Lexer parallel = new Lexer(source);
+                TokenBuffer actual = parallel.tokenizeParallel(pool, chunkSize);
+
+                if (!sameBuffers(expected, actual) || !sequential.getErrors().equals(parallel.getErrors())) {
+                    System.out.println("❌ El escaneo en paralelo difiere (trozos de " + chunkSize + "):");
+                    System.out.println(source);
+                    failures++;
+                }
+            }
+
+            // Fuente de varios megabytes para medir tiempos
+            String huge = generateSource(new Random(9), 600000);
+            long start = System.nanoTime();
+            Lexer sequential = new Lexer(huge);
+            TokenBuffer expected = sequential.tokenizeToBuffer();
+            long sequentialTime = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            Lexer parallel = new Lexer(huge);
+            TokenBuffer actual = parallel.tokenizeParallel(pool, Lexer.DEFAULT_PARALLEL_CHUNK);
+            long parallelTime = System.nanoTime() - start;
+
+            if (!sameBuffers(expected, actual) || !sequential.getErrors().equals(parallel.getErrors())) {
+                System.out.println("❌ La fuente grande difiere en paralelo");
+                failures++;
+            }
+            System.out.printf("%,d caracteres: secuencial %d ms, paralelo %d ms%n", huge.length(),
+                    sequentialTime / 1_000_000, parallelTime / 1_000_000);
+        } finally {
+            pool.shutdown();
+        }
+
+        return failures;
+    }
+
+    /**
+     * Compara la tabla de parejas de llaves y paréntesis con una búsqueda
+     * directa contando niveles.
+     */
+    private static int testMatching() {
+        System.out.println("\n🧪 Tabla de parejas de llaves y paréntesis...");
+        Random random = new Random(11);
+        int failures = 0;
+
+        for (int run = 0; run < 100 && failures == 0; run++) {
+            String source = generateSource(random, 200);
+            // Quitar algunos cierres para que haya llaves y paréntesis sin pareja
+            if (run % 3 == 0) {
+                source = source.replaceFirst("\\}", " ").replaceFirst("\\)", " ");
+            }
+            TokenBuffer tokens = new Lexer(source).tokenizeToBuffer();
+
+            for (int i = 0; i < tokens.size() && failures == 0; i++) {
+                int expected = scanForPartner(tokens, i);
+                if (tokens.matching(i) != expected) {
+                    System.out.println("❌ Pareja distinta para " + tokens.describe(i) + ": tabla "
+                            + tokens.matching(i) + ", búsqueda " + expected);
+                    failures++;
+                }
+            }
+        }
+
+        return failures;
+    }
+
+    // Busca la pareja del token 'index' recorriendo los tokens (solo prueba)
+    private static int scanForPartner(TokenBuffer tokens, int index) {
+        TokenType type = tokens.type(index);
+        TokenType open = type == TokenType.LBRACE || type == TokenType.RBRACE ? TokenType.LBRACE : TokenType.LPAREN;
+        TokenType close = open == TokenType.LBRACE ? TokenType.RBRACE : TokenType.RPAREN;
+        if (type != open && type != close) {
+            return -1;
+        }
+
+        // Emparejamiento global de izquierda a derecha, como lo hace la tabla
+        Deque<Integer> stack = new ArrayDeque<>();
+        for (int i = 0; i < tokens.size(); i++) {
+            if (tokens.is(i, open)) {
+                stack.push(i);
+            } else if (tokens.is(i, close) && !stack.isEmpty()) {
+                int partner = stack.pop();
+                if (i == index)
+                    return partner;
+                if (partner == index)
+                    return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean sameTokens(List<Token> a, List<Token> b) {
+        if (a.size() != b.size())
+            return false;
+        for (int i = 0; i < a.size(); i++) {
+            if (!a.get(i).toString().equals(b.get(i).toString()))
+                return false;
+        }
+        return true;
+    }
+
+    private static boolean sameBuffers(TokenBuffer a, TokenBuffer b) {
+        if (a.size() != b.size())
+            return false;
+        for (int i = 0; i < a.size(); i++) {
+            if (!a.describe(i).equals(b.describe(i)) || a.start(i) != b.start(i) || a.end(i) != b.end(i))
+                return false;
+        }
+        return true;
+    }
+
+    private static String generateSource(Random random, int fragments) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < fragments; i++) {
+            sb.append(FRAGMENTS[random.nextInt(FRAGMENTS.length)]);
+            if (random.nextInt(3) == 0) {
+                sb.append(' ');
+            }
+        }
+        return sb.toString();
+    }
+
+    private static boolean compare(String source) {
+        Lexer dfa = new Lexer(source);
+        List<Token> dfaTokens = dfa.tokenize();
+
+        Lexer regex = new Lexer(source);
+        regex.setUseRegexEngine(true);
+        List<Token> regexTokens = regex.tokenize();
+
+        return sameOutput(dfa, dfaTokens, regex, regexTokens);
+    }
+
+    private static boolean sameOutput(Lexer dfa, List<Token> dfaTokens, Lexer regex, List<Token> regexTokens) {
+        if (dfaTokens.size() != regexTokens.size()) {
+            System.out.println("❌ Cantidad de tokens distinta: " + dfaTokens.size() + " vs " + regexTokens.size());
+            return false;
+        }
+        for (int i = 0; i < dfaTokens.size(); i++) {
+            String a = dfaTokens.get(i).toString();
+            String b = regexTokens.get(i).toString();
+            if (!a.equals(b)) {
+                System.out.println("❌ Token " + i + ": " + a + " vs " + b);
+                return false;
+            }
+        }
+        if (!dfa.getErrors().equals(regex.getErrors())) {
+            System.out.println("❌ Errores distintos: " + dfa.getErrors() + " vs " + regex.getErrors());
+            return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,133 @@
+import java.util.List;
+
+public class TestVirtualMachine {
+
+    public static void main(String[] args) {
+        System.out.println("🧪 Probando la máquina virtual con programas reales...");
+
+        int failures = 0;
+        failures += testProgram();
+        failures += testBudget();
+        failures += testRecursion();
+        failures += testSyntaxRecovery();
+        failures += testOutputWithoutTrace();
+
+        if (failures == 0) {
+            System.out.println("\n✅ ÉXITO: Todos los programas se ejecutaron como se esperaba.");
+        } else {
+            System.out.println("\n❌ ERROR: " + failures + " programas no dieron el resultado esperado.");
+            System.exit(1);
+        }
+    }
+
+    // Variables, if/else y while: la salida de println sale en la traza
+    private static int testProgram() {
+        System.out.println("\n🧪 Programa con bucle e if...");
+        VirtualMachine.Result result = execute(
+                "suma = 0; i = 1; while (i <= 4) { suma = suma + i; i = i + 1; }"
+                        + " if (suma == 10) { println(suma); } else { println(0); } println(i);",
+                ExecutionBudget.DEFAULT);
+        return expect(result, VirtualMachine.Result.Status.COMPLETED, "📤 Println: 10.0\n📤 Println: 5.0\n");
+    }
+
+    // Un bucle sin fin se detiene al agotar el combustible, con lo que ya imprimió
+    private static int testBudget() {
+        System.out.println("\n🧪 Bucle sin fin con presupuesto de 10.000 instrucciones...");
+        VirtualMachine.Result result = execute(
+                "x = 0; while (true) { x = x + 1; if (x < 3) { println(x); } }",
+                ExecutionBudget.DEFAULT.withMaxInstructions(10_000));
+        int failures = expect(result, VirtualMachine.Result.Status.FUEL_EXHAUSTED,
+                "📤 Println: 1.0\n📤 Println: 2.0\n");
+        if (!result.isBudgetExhausted() || result.instructions != 10_000 || result.line != 1) {
+            System.out.println("❌ Se esperaba la parada en la línea 1 tras 10000 instrucciones");
+            failures++;
+        }
+        return failures;
+    }
+
+    /**
+     * Funciones recursivas: cada llamada tiene su propio marco, así n sigue
+     * valiendo lo mismo después de volver de fib(n - 1). La recursión sin fin
+     * se detiene en el límite de llamadas anidadas del presupuesto.
+     */
+    private static int testRecursion() {
+        System.out.println("\n🧪 Funciones recursivas...");
+        VirtualMachine.Result result = execute(
+                "function fact(n) { if (n <= 1) { return 1; } return n * fact(n - 1); }"
+                        + " function fib(n) { if (n < 2) { return n; } return fib(n - 1) + fib(n - 2); }"
+                        + " println(fact(10)); println(fib(15));",
+                ExecutionBudget.DEFAULT);
+        int failures = expect(result, VirtualMachine.Result.Status.COMPLETED,
+                "📤 Println: 3628800.0\n📤 Println: 610.0\n");
+
+        // Lo que imprimió antes de pasarse del límite se conserva
+        VirtualMachine.Result deep = execute("println(1); function f(n) { return f(n + 1); } println(f(0));",
+                ExecutionBudget.DEFAULT.withMaxCallDepth(50));
+        failures += expect(deep, VirtualMachine.Result.Status.CALL_DEPTH_EXHAUSTED, "📤 Println: 1\n");
+        if (!deep.isBudgetExhausted() || deep.line != 1) {
+            System.out.println("❌ Se esperaba la parada por presupuesto en la línea 1");
+            failures++;
+        }
+        return failures;
+    }
+
+    // Dos errores independientes salen en una sola pasada; las sentencias correctas se ejecutan igual
+    private static int testSyntaxRecovery() {
+        System.out.println("\n🧪 Dos errores de sintaxis en un mismo archivo...");
+        ErrorManager errors = new ErrorManager();
+        VirtualMachine.Result result = execute("x = 1 +;\nprintln(4);\ny = (2;\nprintln(3);",
+                ExecutionBudget.DEFAULT, errors);
+        int failures = expect(result, VirtualMachine.Result.Status.COMPLETED, "📤 Println: 4\n📤 Println: 3\n");
+
+        List<ErrorManager.CompilationError> syntactic = errors.getSyntacticErrors();
+        for (ErrorManager.CompilationError error : syntactic) {
+            System.out.println("   " + error.getSimpleMessage());
+        }
+        if (syntactic.size() != 2 || syntactic.get(0).line != 1 || syntactic.get(1).line != 3) {
+            System.out.println("❌ Se esperaban dos errores sintácticos, en las líneas 1 y 3");
+            failures++;
+        }
+        return failures;
+    }
+
+    // Lo que imprime el programa no es traza: sale también sin traza (el nivel por defecto)
+    private static int testOutputWithoutTrace() {
+        System.out.println("\n🧪 Salida del programa sin traza...");
+        AstBuilder builder = new AstBuilder(new Lexer("x = 2; println(x + 1);").tokenizeToBuffer(),
+                new ErrorManager());
+        Bytecode bytecode = new BytecodeCompiler().compile(builder.build());
+        int failures = expect(new VirtualMachine(bytecode).run(ExecutionBudget.DEFAULT),
+                VirtualMachine.Result.Status.COMPLETED, "📤 Println: 3.0\n");
+
+        CompilationManager.CompilationResult compiled = new CompilationManager().compile("println(7);");
+        if (!compiled.syntacticOutput.startsWith("📤 Println: 7\n")) {
+            System.out.println("❌ compile() sin traza no devolvió lo que imprime el programa:\n"
+                    + compiled.syntacticOutput);
+            failures++;
+        }
+        return failures;
+    }
+
+    // ==================== AUXILIARES ====================
+
+    // Construye el AST, lo compila a bytecode y lo ejecuta con la traza de lo que se imprime
+    private static VirtualMachine.Result execute(String source, ExecutionBudget budget) {
+        return execute(source, budget, new ErrorManager());
+    }
+
+    private static VirtualMachine.Result execute(String source, ExecutionBudget budget, ErrorManager errors) {
+        AstBuilder builder = new AstBuilder(new Lexer(source).tokenizeToBuffer(), errors);
+        Bytecode bytecode = new BytecodeCompiler().compile(builder.build());
+        return new VirtualMachine(bytecode, new RingTraceSink(TraceLevel.SUMMARY)).run(budget);
+    }
+
+    private static int expect(VirtualMachine.Result result, VirtualMachine.Result.Status status, String output) {
+        System.out.print(result.output);
+        System.out.println("   " + result.describe());
+        if (result.status != status || !result.output.equals(output)) {
+            System.out.println("❌ Se esperaba " + status + " con la salida:\n" + output);
+            return 1;
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,292 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Almacén compacto de tokens en forma de arreglos paralelos (structure of
+ * arrays).
+ *
+ * En lugar de un objeto Token con su propio String por cada token, se guarda
+ * el tipo en un byte y la posición en el código fuente como enteros. El texto
+ * de cada token se extrae del código fuente solo cuando alguien lo pide. Los
+ * tokens que no existen en el código fuente (por ejemplo los que produce el
+ * Optimizer al plegar constantes) guardan su texto aparte.
+ *
+ * Para las llaves y los paréntesis se calcula, en una sola pasada y solo
+ * cuando alguien lo pide, el índice de su pareja: saltar un bloque completo o
+ * encontrar la llave que quedó sin cerrar es una consulta O(1).
+ */
+public class TokenBuffer {
+    private static final TokenType[] TYPES = TokenType.values();
+
+    private final String source;
+    private byte[] types;
+    private int[] starts;
+    private int[] ends;
+    private int[] lines;
+    private int[] columns;
+    private String[] syntheticValues; // Se crea solo si hay tokens sintéticos
+    private int[] matching; // Pareja de cada '{' '}' '(' ')'; null si cambió el buffer
+    private int size;
+
+    public TokenBuffer(String source) {
+        this(source, Math.max(16, source.length() / 4));
+    }
+
+    public TokenBuffer(String source, int initialCapacity) {
+        this.source = source;
+        int capacity = Math.max(1, initialCapacity);
+        this.types = new byte[capacity];
+        this.starts = new int[capacity];
+        this.ends = new int[capacity];
+        this.lines = new int[capacity];
+        this.columns = new int[capacity];
+    }
+
+    // ==================== CONSTRUCCIÓN ====================
+
+    /**
+     * Agrega un token cuyo texto es source[start, end).
+     */
+    public void add(TokenType type, int start, int end, int line, int column) {
+        ensureCapacity(size + 1);
+        types[size] = (byte) type.ordinal();
+        starts[size] = start;
+        ends[size] = end;
+        lines[size] = line;
+        columns[size] = column;
+        size++;
+        matching = null;
+    }
+
+    /**
+     * Agrega un token cuyo texto no aparece en el código fuente.
+     */
+    public void addSynthetic(TokenType type, String value, int line, int column) {
+        int index = size;
+        add(type, -1, -1, line, column);
+        if (syntheticValues == null) {
+            syntheticValues = new String[types.length];
+        }
+        syntheticValues[index] = value;
+    }
+
+    /**
+     * Copia el token {@code index} de otro buffer al final de este.
+     */
+    public void copyFrom(TokenBuffer other, int index) {
+        if (other.isSynthetic(index)) {
+            addSynthetic(other.type(index), other.value(index), other.lines[index], other.columns[index]);
+        } else {
+            add(other.type(index), other.starts[index], other.ends[index], other.lines[index],
+                    other.columns[index]);
+        }
+    }
+
+    /**
+     * Copia los tokens [from, to) de otro buffer al final de este.
+     */
+    public void copyRange(TokenBuffer other, int from, int to) {
+        int count = to - from;
+        if (count <= 0)
+            return;
+
+        ensureCapacity(size + count);
+        System.arraycopy(other.types, from, types, size, count);
+        System.arraycopy(other.starts, from, starts, size, count);
+        System.arraycopy(other.ends, from, ends, size, count);
+        System.arraycopy(other.lines, from, lines, size, count);
+        System.arraycopy(other.columns, from, columns, size, count);
+        if (other.syntheticValues != null) {
+            if (syntheticValues == null) {
+                syntheticValues = new String[types.length];
+            }
+            System.arraycopy(other.syntheticValues, from, syntheticValues, size, count);
+        }
+        size += count;
+        matching = null;
+    }
+
+    /**
+     * Copia los tokens [from, to) de otro buffer desplazando sus posiciones:
+     * offsetDelta en el código fuente, lineDelta en las líneas y columnDelta
+     * solo en los tokens que estaban en la línea columnLine (los que siguen en
+     * la misma línea que una edición). Lo usa el re-escaneo incremental.
+     */
+    public void copyShifted(TokenBuffer other, int from, int to, int offsetDelta, int lineDelta, int columnLine,
+            int columnDelta) {
+        int first = size;
+        copyRange(other, from, to);
+        for (int i = first; i < size; i++) {
+            if (starts[i] >= 0) {
+                starts[i] += offsetDelta;
+                ends[i] += offsetDelta;
+            }
+            if (lines[i] == columnLine) {
+                columns[i] += columnDelta;
+            }
+            lines[i] += lineDelta;
+        }
+    }
+
+    private void ensureCapacity(int required) {
+        if (required <= types.length)
+            return;
+
+        int capacity = Math.max(required, types.length * 2);
+        types = Arrays.copyOf(types, capacity);
+        starts = Arrays.copyOf(starts, capacity);
+        ends = Arrays.copyOf(ends, capacity);
+        lines = Arrays.copyOf(lines, capacity);
+        columns = Arrays.copyOf(columns, capacity);
+        if (syntheticValues != null) {
+            syntheticValues = Arrays.copyOf(syntheticValues, capacity);
+        }
+    }
+
+    // ==================== CONSULTA ====================
+
+    public int size() {
+        return size;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    /**
+     * Tipo del token {@code index}, o null si el índice está fuera del buffer.
+     */
+    public TokenType type(int index) {
+        return index >= 0 && index < size ? TYPES[types[index]] : null;
+    }
+
+    public boolean is(int index, TokenType type) {
+        return index >= 0 && index < size && types[index] == type.ordinal();
+    }
+
+    public String value(int index) {
+        if (isSynthetic(index)) {
+            return syntheticValues[index];
+        }
+        return source.substring(starts[index], ends[index]);
+    }
+
+    public int line(int index) {
+        return lines[index];
+    }
+
+    public int column(int index) {
+        return columns[index];
+    }
+
+    public int start(int index) {
+        return starts[index];
+    }
+
+    public int end(int index) {
+        return ends[index];
+    }
+
+    // ==================== PAREJAS DE LLAVES Y PARÉNTESIS ====================
+
+    /**
+     * Índice de la llave o paréntesis que cierra (o abre) el del índice dado;
+     * -1 si no tiene pareja o si el token no es '{', '}', '(' ni ')'.
+     */
+    public int matching(int index) {
+        if (index < 0 || index >= size)
+            return -1;
+        if (matching == null) {
+            buildMatching();
+        }
+        return matching[index];
+    }
+
+    /**
+     * Última llave (LBRACE) o paréntesis (LPAREN) de apertura sin cierre, o -1
+     * si todos están cerrados.
+     */
+    public int lastUnclosed(TokenType open) {
+        if (matching == null) {
+            buildMatching();
+        }
+        for (int i = size - 1; i >= 0; i--) {
+            if (types[i] == open.ordinal() && matching[i] < 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // Una pasada con una pila por tipo: las llaves y los paréntesis se emparejan
+    // por separado para que un paréntesis suelto no desarme los bloques
+    private void buildMatching() {
+        int[] table = new int[size];
+        Arrays.fill(table, -1);
+        int[] braces = new int[16];
+        int[] parens = new int[16];
+        int braceTop = 0;
+        int parenTop = 0;
+
+        final byte lbrace = (byte) TokenType.LBRACE.ordinal();
+        final byte rbrace = (byte) TokenType.RBRACE.ordinal();
+        final byte lparen = (byte) TokenType.LPAREN.ordinal();
+        final byte rparen = (byte) TokenType.RPAREN.ordinal();
+
+        for (int i = 0; i < size; i++) {
+            byte type = types[i];
+            if (type == lbrace) {
+                if (braceTop == braces.length) {
+                    braces = Arrays.copyOf(braces, braceTop * 2);
+                }
+                braces[braceTop++] = i;
+            } else if (type == rbrace) {
+                if (braceTop > 0) {
+                    int open = braces[--braceTop];
+                    table[open] = i;
+                    table[i] = open;
+                }
+            } else if (type == lparen) {
+                if (parenTop == parens.length) {
+                    parens = Arrays.copyOf(parens, parenTop * 2);
+                }
+                parens[parenTop++] = i;
+            } else if (type == rparen) {
+                if (parenTop > 0) {
+                    int open = parens[--parenTop];
+                    table[open] = i;
+                    table[i] = open;
+                }
+            }
+        }
+        matching = table;
+    }
+
+    private boolean isSynthetic(int index) {
+        return syntheticValues != null && syntheticValues[index] != null;
+    }
+
+    /**
+     * Crea un Token independiente para el índice dado (depuración y
+     * compatibilidad con código que aún trabaja con objetos Token).
+     */
+    public Token get(int index) {
+        return new Token(type(index), value(index), lines[index], columns[index]);
+    }
+
+    public List<Token> toList() {
+        List<Token> list = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            list.add(get(i));
+        }
+        return list;
+    }
+
+    /**
+     * Mismo formato que {@link Token#toString()}.
+     */
+    public String describe(int index) {
+        return String.format("Token(%s, '%s', %d:%d)", type(index), value(index), lines[index], columns[index]);
+    }
+}
@@ -0,0 +1,274 @@
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Escaneo bajo demanda (pull) con el mismo autómata del Lexer, para fuentes
+ * que no conviene cargar completas en un String.
+ *
+ * La fuente puede ser una secuencia de caracteres con acceso directo (por
+ * ejemplo un CharBuffer), un Reader o los bytes de un archivo mapeado en
+ * memoria que se decodifican poco a poco. Con Reader o bytes solo se guarda
+ * una ventana de caracteres: lo ya consumido se descarta y la ventana solo
+ * crece si un único token (o su lookahead) no cabe en ella.
+ *
+ * Produce exactamente los mismos tokens y errores que Lexer.tokenize(),
+ * incluido el token EOF final.
+ */
+public class TokenStream implements Iterator<Token> {
+    private static final int DEFAULT_WINDOW = 8192;
+
+    // Fuente con acceso directo
+    private final CharSequence text;
+
+    // Fuente secuencial: Reader o bytes + decodificador
+    private final Reader reader;
+    private final ByteBuffer bytes;
+    private final CharsetDecoder decoder;
+    private char[] window;
+    private int windowStart; // Offset absoluto de window[0]
+    private int windowEnd; // Offset absoluto del fin de los datos válidos
+    private boolean endOfInput;
+    private boolean flushed; // El decodificador ya entregó todo
+
+    private final List<String> errors;
+    private int position = 0;
+    private int line = 1;
+    private int column = 1;
+    private boolean finished = false;
+
+    public TokenStream(CharSequence text, List<String> errors) {
+        this.text = text;
+        this.reader = null;
+        this.bytes = null;
+        this.decoder = null;
+        this.errors = errors;
+    }
+
+    public TokenStream(Reader reader, List<String> errors) {
+        this(reader, errors, DEFAULT_WINDOW);
+    }
+
+    TokenStream(Reader reader, List<String> errors, int windowSize) {
+        this.text = null;
+        this.reader = reader;
+        this.bytes = null;
+        this.decoder = null;
+        this.window = new char[Math.max(2, windowSize)];
+        this.errors = errors;
+    }
+
+    public TokenStream(ByteBuffer bytes, Charset charset, List<String> errors) {
+        this.text = null;
+        this.reader = null;
+        this.bytes = bytes;
+        this.decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        this.window = new char[DEFAULT_WINDOW];
+        this.errors = errors;
+    }
+
+    // ==================== ITERADOR ====================
+
+    @Override
+    public boolean hasNext() {
+        return !finished;
+    }
+
+    @Override
+    public Token next() {
+        if (finished) {
+            throw new NoSuchElementException();
+        }
+
+        while (true) {
+            skipWhitespace();
+            if (!available(position)) {
+                finished = true;
+                return new Token(TokenType.EOF, "", line, column);
+            }
+
+            // Maximal munch con retroceso, igual que Lexer.tokenizeToBuffer()
+            int state = Lexer.DFA_START;
+            int i = position;
+            int acceptEnd = -1;
+            TokenType accepted = null;
+            while (available(i)) {
+                int next = Lexer.transition(state, charAt(i));
+                if (next == Lexer.DFA_ERROR)
+                    break;
+                state = next;
+                i++;
+                TokenType type = Lexer.acceptedType(state);
+                if (type != null) {
+                    accepted = type;
+                    acceptEnd = i;
+                }
+            }
+
+            if (acceptEnd < 0) {
+                reportUnrecognized();
+                continue;
+            }
+
+            String value = slice(position, acceptEnd);
+            if (accepted == TokenType.IDENTIFIER) {
+                accepted = classifyWord(value, acceptEnd);
+            }
+
+            Token token = new Token(accepted, value, line, column);
+            advance(acceptEnd);
+            return token;
+        }
+    }
+
+    // ==================== ESCANEO ====================
+
+    private TokenType classifyWord(String word, int end) {
+        TokenType keyword = Keywords.lookup(word);
+        if (keyword == null)
+            return TokenType.IDENTIFIER;
+        if (available(end)) {
+            char c = charAt(end);
+            int codePoint = c;
+            if (Character.isHighSurrogate(c) && available(end + 1) && Character.isLowSurrogate(charAt(end + 1))) {
+                codePoint = Character.toCodePoint(c, charAt(end + 1));
+            }
+            if (Lexer.continuesWord(codePoint))
+                return TokenType.IDENTIFIER;
+        }
+        return keyword;
+    }
+
+    private void skipWhitespace() {
+        while (available(position)) {
+            char c = charAt(position);
+            if (Character.isWhitespace(c)) {
+                if (c == '\n') {
+                    line++;
+                    column = 1;
+                } else {
+                    column++;
+                }
+                position++;
+            } else if (c == '/' && available(position + 1) && charAt(position + 1) == '/') {
+                // Saltar comentario hasta el fin de línea
+                while (available(position) && charAt(position) != '\n') {
+                    position++;
+                    column++;
+                }
+            } else {
+                break;
+            }
+        }
+    }
+
+    private void reportUnrecognized() {
+        char problematicChar = charAt(position);
+        errors.add("Carácter no reconocido: '" + problematicChar +
+                "' en línea " + line + ", columna " + column);
+
+        if (problematicChar == '\n') {
+            line++;
+            column = 1;
+        } else {
+            column++;
+        }
+        position++;
+    }
+
+    // Avanza hasta 'end' actualizando línea y columna (igual que Lexer.updatePosition)
+    private void advance(int end) {
+        int lastNewline = -1;
+        for (int i = position; i < end; i++) {
+            if (charAt(i) == '\n') {
+                line++;
+                lastNewline = i;
+            }
+        }
+        if (lastNewline >= 0) {
+            column = end - lastNewline;
+        } else {
+            column += end - position;
+        }
+        position = end;
+    }
+
+    // ==================== VENTANA ====================
+
+    private char charAt(int index) {
+        return text != null ? text.charAt(index) : window[index - windowStart];
+    }
+
+    private String slice(int start, int end) {
+        if (text != null) {
+            return text.subSequence(start, end).toString();
+        }
+        return new String(window, start - windowStart, end - start);
+    }
+
+    /**
+     * Garantiza que el carácter en el offset absoluto index esté cargado.
+     * Devuelve false si la fuente terminó antes.
+     */
+    private boolean available(int index) {
+        if (text != null) {
+            return index < text.length();
+        }
+
+        while (index >= windowEnd && !endOfInput) {
+            if (windowEnd - windowStart == window.length) {
+                makeRoom();
+            }
+            int offset = windowEnd - windowStart;
+            int read = fill(window, offset, window.length - offset);
+            if (read < 0) {
+                endOfInput = true;
+            } else {
+                windowEnd += read;
+            }
+        }
+        return index < windowEnd;
+    }
+
+    // Descarta lo ya consumido; si el token actual ocupa toda la ventana, la agranda
+    private void makeRoom() {
+        int keepFrom = position;
+        int kept = windowEnd - keepFrom;
+        if (keepFrom > windowStart) {
+            System.arraycopy(window, keepFrom - windowStart, window, 0, kept);
+            windowStart = keepFrom;
+        }
+        if (kept == window.length) {
+            char[] larger = new char[window.length * 2];
+            System.arraycopy(window, 0, larger, 0, kept);
+            window = larger;
+        }
+    }
+
+    private int fill(char[] buffer, int offset, int length) {
+        try {
+            if (reader != null) {
+                return reader.read(buffer, offset, length);
+            }
+
+            CharBuffer out = CharBuffer.wrap(buffer, offset, length);
+            if (!flushed && decoder.decode(bytes, out, true).isUnderflow()) {
+                flushed = decoder.flush(out).isUnderflow();
+            }
+            int decoded = out.position() - offset;
+            return decoded == 0 && flushed ? -1 : decoded;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
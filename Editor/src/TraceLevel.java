@@ -0,0 +1,15 @@
+/**
+ * Cuánto detalle registra la traza de ejecución de la {@link VirtualMachine}.
+ * Cada nivel incluye todo lo de los anteriores. La salida del programa
+ * (SUMMARY) no es traza: la VM la registra con cualquier nivel.
+ */
+public enum TraceLevel {
+    OFF, // Sin traza: la ejecución solo arma la salida del programa
+    SUMMARY, // Lo que muestra el programa: print, println y expresiones sueltas (se registra siempre)
+    STATEMENTS, // Una línea por sentencia: variables, condiciones, bucles, llamadas
+    FULL; // Todo: condiciones de cada iteración, casos probados, argumentos...
+
+    public boolean includes(TraceLevel detail) {
+        return detail.ordinal() <= ordinal();
+    }
+}
@@ -0,0 +1,36 @@
+/**
+ * Destino de la traza de ejecución de la {@link VirtualMachine}.
+ *
+ * La VM pide una línea con line(nivel) y escribe en el StringBuilder que
+ * recibe; si el nivel no se registra recibe null y no arma nada. Con
+ * {@link #OFF} la ejecución no reserva memoria para la traza.
+ */
+public interface TraceSink {
+    TraceSink OFF = new TraceSink() {
+        @Override
+        public TraceLevel level() {
+            return TraceLevel.OFF;
+        }
+
+        @Override
+        public StringBuilder line(TraceLevel level) {
+            return null;
+        }
+
+        @Override
+        public String contents() {
+            return "";
+        }
+    };
+
+    TraceLevel level();
+
+    /**
+     * Builder vacío para la próxima línea (sin el salto de línea final), o
+     * null si este nivel de detalle no se registra.
+     */
+    StringBuilder line(TraceLevel level);
+
+    /** Las líneas registradas, cada una terminada en salto de línea. */
+    String contents();
+}
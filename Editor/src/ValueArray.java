@@ -0,0 +1,184 @@
+import java.util.Arrays;
+
+/**
+ * Valores de la {@link VirtualMachine} en arreglos paralelos (structure of
+ * arrays), sin objetos por valor.
+ *
+ * Cada posición guarda una etiqueta de tipo y el valor en el arreglo que le
+ * corresponde: enteros y booleanos en longs, decimales en doubles, y solo los
+ * strings y las funciones como referencia. Así las variables, los marcos de
+ * llamada y la pila de operandos no crean un Integer o Double por operación.
+ */
+final class ValueArray {
+    static final byte UNDEFINED = 0; // Variable todavía no declarada
+    static final byte INT = 1;
+    static final byte DOUBLE = 2;
+    static final byte BOOLEAN = 3;
+    static final byte REF = 4; // String o Bytecode.Function
+
+    byte[] tags;
+    long[] longs;
+    double[] doubles;
+    Object[] refs;
+
+    ValueArray(int capacity) {
+        capacity = Math.max(1, capacity);
+        tags = new byte[capacity];
+        longs = new long[capacity];
+        doubles = new double[capacity];
+        refs = new Object[capacity];
+    }
+
+    int capacity() {
+        return tags.length;
+    }
+
+    void ensureCapacity(int required) {
+        if (required > tags.length) {
+            int capacity = Math.max(required, tags.length * 2);
+            tags = Arrays.copyOf(tags, capacity);
+            longs = Arrays.copyOf(longs, capacity);
+            doubles = Arrays.copyOf(doubles, capacity);
+            refs = Arrays.copyOf(refs, capacity);
+        }
+    }
+
+    // ==================== ESCRITURA ====================
+
+    void setInt(int i, long value) {
+        tags[i] = INT;
+        longs[i] = value;
+        refs[i] = null;
+    }
+
+    void setDouble(int i, double value) {
+        tags[i] = DOUBLE;
+        doubles[i] = value;
+        refs[i] = null;
+    }
+
+    void setBoolean(int i, boolean value) {
+        tags[i] = BOOLEAN;
+        longs[i] = value ? 1 : 0;
+        refs[i] = null;
+    }
+
+    void setRef(int i, Object value) {
+        tags[i] = REF;
+        refs[i] = value;
+    }
+
+    /**
+     * Guarda un valor de Java (constantes del bytecode): Integer, Double,
+     * Boolean o cualquier referencia.
+     */
+    void set(int i, Object value) {
+        if (value == null) {
+            clear(i, i + 1);
+        } else if (value instanceof Integer) {
+            setInt(i, (Integer) value);
+        } else if (value instanceof Double) {
+            setDouble(i, (Double) value);
+        } else if (value instanceof Boolean) {
+            setBoolean(i, (Boolean) value);
+        } else {
+            setRef(i, value);
+        }
+    }
+
+    // Copia el valor de src[from] a this[to]
+    void copyFrom(ValueArray src, int from, int to) {
+        tags[to] = src.tags[from];
+        longs[to] = src.longs[from];
+        doubles[to] = src.doubles[from];
+        refs[to] = src.refs[from];
+    }
+
+    void clear(int from, int to) {
+        Arrays.fill(tags, from, to, UNDEFINED);
+        Arrays.fill(refs, from, to, null);
+    }
+
+    // ==================== LECTURA ====================
+
+    boolean isDefined(int i) {
+        return tags[i] != UNDEFINED;
+    }
+
+    boolean isNumber(int i) {
+        return tags[i] == INT || tags[i] == DOUBLE;
+    }
+
+    double number(int i) {
+        return tags[i] == INT ? longs[i] : doubles[i];
+    }
+
+    /**
+     * Valor como objeto de Java (solo para mensajes y comparaciones que no
+     * están en el camino rápido). Los enteros vuelven como Integer.
+     */
+    Object box(int i) {
+        switch (tags[i]) {
+            case INT:
+                return (int) longs[i];
+            case DOUBLE:
+                return doubles[i];
+            case BOOLEAN:
+                return longs[i] != 0;
+            case REF:
+                return refs[i];
+            default:
+                return null;
+        }
+    }
+
+    // Igual que sb.append(box(i)), sin crear el objeto
+    StringBuilder appendTo(StringBuilder sb, int i) {
+        switch (tags[i]) {
+            case INT:
+                return sb.append(longs[i]);
+            case DOUBLE:
+                return sb.append(doubles[i]);
+            case BOOLEAN:
+                return sb.append(longs[i] != 0);
+            case REF:
+                return sb.append(refs[i]);
+            default:
+                return sb.append((Object) null);
+        }
+    }
+
+    // Nombre del tipo como lo mostraba la versión con objetos (Integer, Double...)
+    String typeName(int i) {
+        switch (tags[i]) {
+            case INT:
+                return "Integer";
+            case DOUBLE:
+                return "Double";
+            case BOOLEAN:
+                return "Boolean";
+            case REF:
+                return refs[i].getClass().getSimpleName();
+            default:
+                return "null";
+        }
+    }
+
+    // Igualdad estricta de tipos (switch): 2 no coincide con 2.0
+    boolean strictEquals(int i, ValueArray other, int j) {
+        if (tags[i] != other.tags[j]) {
+            return false;
+        }
+        switch (tags[i]) {
+            case INT:
+            case BOOLEAN:
+                return longs[i] == other.longs[j];
+            case DOUBLE:
+                return Double.compare(doubles[i], other.doubles[j]) == 0; // Como Double.equals, sin encajonar
+            case REF:
+                return refs[i].equals(other.refs[j]);
+            default:
+                return true;
+        }
+    }
+}
@@ -0,0 +1,792 @@
+import java.util.*;
+
+/**
+ * Máquina de pila que ejecuta el {@link Bytecode} generado por
+ * BytecodeCompiler y describe paso a paso lo que hace el programa.
+ *
+ * Las variables viven en un {@link ValueArray} indexado por slot, con el valor
+ * sin encajonar y una etiqueta de tipo; la etiqueta UNDEFINED marca una
+ * variable todavía no declarada. La pila de operandos usa la misma
+ * representación, así que la aritmética no crea objetos. Cada llamada a una función del usuario
+ * reserva su marco (parámetros y locales) al final de un único arreglo de
+ * locales y apila la dirección de retorno; RETURN lo libera y deja el valor en
+ * la pila del llamador.
+ *
+ * La traza va a un {@link TraceSink}: cada línea tiene un {@link TraceLevel}
+ * y solo se arma si el sink la registra. Sin sink (TraceSink.OFF) ejecutar no
+ * reserva memoria para la traza. Lo que muestra el programa (print, println y
+ * expresiones sueltas, el nivel SUMMARY) no es traza: se registra siempre, en
+ * el sink si lo incluye o si no en una salida propia.
+ *
+ * La ejecución está acotada por un {@link ExecutionBudget}: cada instrucción
+ * descuenta una unidad de combustible y cada CHECK_INTERVAL instrucciones se
+ * revisan el reloj y la memoria. Al agotarse un límite la VM se detiene y
+ * devuelve un {@link Result} que indica cuál fue.
+ */
+public class VirtualMachine {
+    private static final int CHECK_INTERVAL = 4096;
+
+    private final Bytecode program;
+    private final ValueArray globals;
+    private final ValueArray constants; // Las constantes del bytecode ya decodificadas
+    private final Map<String, Integer> slotIndex = new HashMap<>(); // Solo para las intrínsecas
+    private final StringBuilder formatBuffer = new StringBuilder(); // Para armar strings formateados
+    private final ValueArray stack = new ValueArray(32);
+    private int sp = 0;
+    private final TraceSink trace;
+    private final TraceLevel traceLevel;
+    private final TraceSink output; // Salida del programa: el mismo sink o uno SUMMARY propio
+
+    // Marcos de llamada: los locales de todas las llamadas activas, contiguos
+    private final ValueArray locals = new ValueArray(64);
+    private int base = 0; // Primer slot del marco actual
+    private int frameTop = 0; // Primer slot libre
+    private Bytecode.Function function; // Función en ejecución (null = programa principal)
+    private int depth = 0;
+    private int maxCallDepth;
+
+    // Un registro por llamada activa: a dónde volver y qué restaurar
+    private int[] returnPcs = new int[16];
+    private int[] savedBases = new int[16];
+    private int[] savedStack = new int[16];
+    private Bytecode.Function[] savedFunctions = new Bytecode.Function[16];
+
+    public VirtualMachine(Bytecode program) {
+        this(program, TraceSink.OFF);
+    }
+
+    public VirtualMachine(Bytecode program, TraceSink trace) {
+        this.program = program;
+        this.trace = trace;
+        this.traceLevel = trace.level();
+        this.output = traceLevel.includes(TraceLevel.SUMMARY) ? trace : new RingTraceSink(TraceLevel.SUMMARY);
+        this.globals = new ValueArray(program.slotNames.length);
+        for (int i = 0; i < program.slotNames.length; i++) {
+            slotIndex.put(program.slotNames[i], i);
+        }
+        this.constants = new ValueArray(program.constants.length);
+        for (int i = 0; i < program.constants.length; i++) {
+            constants.set(i, program.constants[i]);
+        }
+        initializeIntrinsics();
+    }
+
+    private void initializeIntrinsics() {
+        // Definir funciones intrínsecas de Arduino
+        defineIntrinsicFunction("pinMode");
+        defineIntrinsicFunction("digitalWrite");
+        defineIntrinsicFunction("digitalRead");
+        defineIntrinsicFunction("analogRead");
+        defineIntrinsicFunction("analogWrite");
+        defineIntrinsicFunction("delay");
+        defineIntrinsicFunction("print");
+        defineIntrinsicFunction("println");
+        defineIntrinsicFunction("Out"); // Compatibilidad con versión Python
+
+        // Definir constantes
+        defineIntrinsicConstant("OUTPUT", 1);
+        defineIntrinsicConstant("INPUT", 0);
+        defineIntrinsicConstant("HIGH", 1);
+        defineIntrinsicConstant("LOW", 0);
+    }
+
+    private void defineIntrinsicConstant(String name, Object value) {
+        Integer slot = slotIndex.get(name);
+        if (slot != null) {
+            globals.set(slot, value);
+        }
+    }
+
+    private void defineIntrinsicFunction(String name) {
+        Integer slot = slotIndex.get(name);
+        if (slot != null) {
+            globals.setRef(slot, new Bytecode.Function(name, Collections.emptyList()));
+        }
+    }
+
+    /** Resultado de una ejecución: completa o detenida por el presupuesto. */
+    public static final class Result {
+        public enum Status {
+            COMPLETED, FUEL_EXHAUSTED, TIME_EXHAUSTED, MEMORY_EXHAUSTED, CALL_DEPTH_EXHAUSTED
+        }
+
+        public final Status status;
+        public final String output;
+        public final long instructions; // Instrucciones ejecutadas
+        public final long elapsedMillis;
+        public final int line; // Línea donde se detuvo (0 si terminó)
+
+        Result(Status status, String output, long instructions, long elapsedMillis, int line) {
+            this.status = status;
+            this.output = output;
+            this.instructions = instructions;
+            this.elapsedMillis = elapsedMillis;
+            this.line = line;
+        }
+
+        public boolean isBudgetExhausted() {
+            return status != Status.COMPLETED;
+        }
+
+        public String describe() {
+            switch (status) {
+                case FUEL_EXHAUSTED:
+                    return "se agotó el combustible (" + instructions + " instrucciones)";
+                case TIME_EXHAUSTED:
+                    return "se superó el tiempo límite (" + elapsedMillis + " ms)";
+                case MEMORY_EXHAUSTED:
+                    return "se superó el límite de memoria";
+                case CALL_DEPTH_EXHAUSTED:
+                    return "recursión demasiado profunda: se superó el límite de llamadas anidadas";
+                default:
+                    return "ejecución completada (" + instructions + " instrucciones, " + elapsedMillis + " ms)";
+            }
+        }
+    }
+
+    public String getOutput() {
+        return output.contents();
+    }
+
+    public Result run() {
+        return run(ExecutionBudget.DEFAULT);
+    }
+
+    /**
+     * Ejecuta el programa hasta HALT o hasta agotar el presupuesto. Los errores
+     * de ejecución se lanzan como RuntimeException con la línea del código
+     * fuente.
+     */
+    public Result run(ExecutionBudget budget) {
+        final int[] code = program.code;
+        final ValueArray stack = this.stack;
+        final ValueArray globals = this.globals;
+        final ValueArray locals = this.locals;
+        int pc = 0;
+        maxCallDepth = budget.maxCallDepth > 0 ? budget.maxCallDepth : Integer.MAX_VALUE;
+
+        final long startNanos = System.nanoTime();
+        final long fuelLimit = budget.maxInstructions > 0 ? budget.maxInstructions : Long.MAX_VALUE;
+        long fuel = fuelLimit;
+        long nextCheck = Math.max(fuel - CHECK_INTERVAL, -1);
+
+        while (true) {
+            // Una sola comparación por instrucción; el resto de los límites se
+            // revisa cada CHECK_INTERVAL instrucciones
+            if (--fuel <= nextCheck) {
+                Result.Status exhausted = null;
+                if (fuel < 0) {
+                    exhausted = Result.Status.FUEL_EXHAUSTED;
+                } else if (budget.maxMillis > 0 && elapsedMillis(startNanos) >= budget.maxMillis) {
+                    exhausted = Result.Status.TIME_EXHAUSTED;
+                } else if (budget.maxMemoryBytes > 0 && memoryUsage() > budget.maxMemoryBytes) {
+                    exhausted = Result.Status.MEMORY_EXHAUSTED;
+                }
+                if (exhausted != null) {
+                    return new Result(exhausted, output.contents(), fuelLimit - fuel - 1,
+                            elapsedMillis(startNanos), program.lines[pc]);
+                }
+                nextCheck = Math.max(fuel - CHECK_INTERVAL, -1);
+            }
+
+            int op = code[pc];
+            switch (op) {
+                case Bytecode.CONST:
+                    stack.copyFrom(constants, code[pc + 1], push());
+                    break;
+
+                case Bytecode.LOAD: {
+                    int slot = code[pc + 1];
+                    if (!globals.isDefined(slot)) {
+                        throw error(pc, "Variable '" + program.slotNames[slot] + "' no declarada");
+                    }
+                    stack.copyFrom(globals, slot, push());
+                    break;
+                }
+
+                case Bytecode.STORE: {
+                    int slot = code[pc + 1];
+                    sp--;
+                    traceStore(program.slotNames[slot], !globals.isDefined(slot), code[pc + 2], sp);
+                    globals.copyFrom(stack, sp, slot);
+                    stack.refs[sp] = null;
+                    break;
+                }
+
+                case Bytecode.INCREMENT: {
+                    int slot = code[pc + 1];
+                    increment(program.slotNames[slot], globals, slot, code[pc + 2]);
+                    break;
+                }
+
+                case Bytecode.LOAD_LOCAL: {
+                    int slot = base + code[pc + 1];
+                    if (!locals.isDefined(slot)) {
+                        throw error(pc, "Variable '" + function.localNames[code[pc + 1]] + "' no declarada");
+                    }
+                    stack.copyFrom(locals, slot, push());
+                    break;
+                }
+
+                case Bytecode.STORE_LOCAL: {
+                    int slot = base + code[pc + 1];
+                    sp--;
+                    traceStore(function.localNames[code[pc + 1]], !locals.isDefined(slot), code[pc + 2], sp);
+                    locals.copyFrom(stack, sp, slot);
+                    stack.refs[sp] = null;
+                    break;
+                }
+
+                case Bytecode.INCREMENT_LOCAL:
+                    increment(function.localNames[code[pc + 1]], locals, base + code[pc + 1], code[pc + 2]);
+                    break;
+
+                case Bytecode.POP:
+                    pop(1);
+                    break;
+
+                case Bytecode.ADD:
+                case Bytecode.SUB:
+                case Bytecode.MUL:
+                case Bytecode.DIV:
+                case Bytecode.MOD: {
+                    int left = sp - 2;
+                    double leftNum = toNumber(left);
+                    double rightNum = toNumber(left + 1);
+                    stack.setDouble(left, evaluateArithmetic(leftNum, rightNum, op));
+                    sp--;
+                    break;
+                }
+
+                case Bytecode.EQ:
+                case Bytecode.NE:
+                case Bytecode.LT:
+                case Bytecode.GT:
+                case Bytecode.LE:
+                case Bytecode.GE: {
+                    int left = sp - 2;
+                    boolean result = evaluateComparison(left, left + 1, op);
+                    stack.setBoolean(left, result);
+                    pop(1);
+                    break;
+                }
+
+                case Bytecode.AND: {
+                    int left = sp - 2;
+                    boolean result = toBoolean(pc, left) & toBoolean(pc, left + 1);
+                    stack.setBoolean(left, result);
+                    sp--;
+                    break;
+                }
+
+                case Bytecode.OR: {
+                    int left = sp - 2;
+                    boolean result = toBoolean(pc, left) | toBoolean(pc, left + 1);
+                    stack.setBoolean(left, result);
+                    sp--;
+                    break;
+                }
+
+                case Bytecode.NEG:
+                    stack.setDouble(sp - 1, -toNumber(sp - 1));
+                    break;
+
+                case Bytecode.POS:
+                    stack.setDouble(sp - 1, toNumber(sp - 1));
+                    break;
+
+                case Bytecode.NOT:
+                    stack.setBoolean(sp - 1, !toBoolean(pc, sp - 1));
+                    break;
+
+                case Bytecode.FORMAT: {
+                    Bytecode.Format format = (Bytecode.Format) constants.refs[code[pc + 1]];
+                    stack.setRef(push(), format(format, program.lines[pc]));
+                    break;
+                }
+
+                case Bytecode.JUMP:
+                    pc = code[pc + 1];
+                    continue;
+
+                case Bytecode.JUMP_IF_FALSE: {
+                    boolean condition = toBoolean(pc, sp - 1);
+                    sp--;
+                    if (!condition) {
+                        pc = code[pc + 1];
+                        continue;
+                    }
+                    break;
+                }
+
+                case Bytecode.JUMP_IF_TRUE: {
+                    boolean condition = toBoolean(pc, sp - 1);
+                    sp--;
+                    if (condition) {
+                        pc = code[pc + 1];
+                        continue;
+                    }
+                    break;
+                }
+
+                case Bytecode.PRINT:
+                    print(code[pc + 1], code[pc + 2] != 0);
+                    break;
+
+                case Bytecode.CALL: {
+                    Bytecode.Function callee = resolveCall(pc, code[pc + 1], code[pc + 2]);
+                    if (callee.isIntrinsic()) {
+                        // ✅ SIMULAR ejecución de las funciones de Arduino
+                        traceFunctionDone(callee);
+                        stack.setInt(push(), 0);
+                        break;
+                    }
+                    if (depth >= maxCallDepth) {
+                        // La llamada no llega a ejecutarse: se detiene como los demás límites
+                        return new Result(Result.Status.CALL_DEPTH_EXHAUSTED, output.contents(), fuelLimit - fuel - 1,
+                                elapsedMillis(startNanos), program.lines[pc]);
+                    }
+                    pc = enterFunction(pc, callee, code[pc + 2]);
+                    continue;
+                }
+
+                case Bytecode.DEFINE:
+                    // ✅ GUARDAR información de la función
+                    globals.setRef(code[pc + 1], constants.refs[code[pc + 2]]);
+                    break;
+
+                case Bytecode.RETURN: {
+                    int mode = code[pc + 1];
+                    boolean hasValue = mode == Bytecode.RETURN_VALUE;
+                    StringBuilder line;
+                    if (mode != Bytecode.RETURN_END && (line = traceLine(TraceLevel.STATEMENTS)) != null) {
+                        line.append("↩️  Return: ");
+                        if (hasValue) {
+                            stack.appendTo(line, sp - 1);
+                        } else {
+                            line.append("null");
+                        }
+                    }
+                    if (depth == 0) {
+                        // return en el programa principal: solo se informa
+                        if (hasValue) {
+                            pop(1);
+                        }
+                        break;
+                    }
+                    traceFunctionDone(function);
+                    pc = leaveFunction(hasValue);
+                    continue;
+                }
+
+                case Bytecode.EXPRESSION: {
+                    StringBuilder line = outputLine();
+                    if (line != null) {
+                        stack.appendTo(line.append("💡 Expresión: "), sp - 1);
+                    }
+                    pop(1);
+                    break;
+                }
+
+                case Bytecode.TRACE: {
+                    StringBuilder line = traceLine(TRACE_LEVELS[code[pc + 2]]);
+                    if (line != null) {
+                        line.append(constants.refs[code[pc + 1]]);
+                    }
+                    break;
+                }
+
+                case Bytecode.TRACE_VALUE: {
+                    StringBuilder line = traceLine(TRACE_LEVELS[code[pc + 2]]);
+                    if (line != null) {
+                        stack.appendTo(line.append(constants.refs[code[pc + 1]]), sp - 1);
+                    }
+                    break;
+                }
+
+                case Bytecode.CASE: {
+                    int switchValue = sp - 2;
+                    int caseValue = sp - 1;
+
+                    // Verificar si coincide (comparación estricta de tipos)
+                    boolean matches = stack.strictEquals(switchValue, stack, caseValue);
+                    StringBuilder line = traceLine(TraceLevel.FULL);
+                    if (line != null) {
+                        stack.appendTo(line.append("   🔍 Caso: "), caseValue)
+                                .append(" -> ").append(matches ? "✅ COINCIDE" : "❌ NO coincide");
+                    }
+
+                    pop(1);
+                    stack.setBoolean(switchValue, matches);
+                    break;
+                }
+
+                case Bytecode.SWITCH: {
+                    Bytecode.SwitchTable table = (Bytecode.SwitchTable) constants.refs[code[pc + 1]];
+                    sp--;
+                    pc = stack.tags[sp] == ValueArray.INT ? table.target(stack.longs[sp]) : table.defaultTarget;
+                    continue;
+                }
+
+                case Bytecode.HALT:
+                    return new Result(Result.Status.COMPLETED, output.contents(), fuelLimit - fuel,
+                            elapsedMillis(startNanos), 0);
+
+                default:
+                    throw error(pc, "Instrucción inesperada");
+            }
+            pc += 1 + Bytecode.operandCount(op);
+        }
+    }
+
+    private static long elapsedMillis(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+
+    // Estimación en bytes: la pila, las variables y los strings (la traza la
+    // acota su propio sink)
+    private long memoryUsage() {
+        final long perValue = 1 + 8 + 8 + 8; // etiqueta, long, double, referencia
+        long bytes = (stack.capacity() + globals.capacity() + locals.capacity()) * perValue;
+        for (int i = 0; i < globals.capacity(); i++) {
+            if (globals.refs[i] instanceof String) {
+                bytes += ((String) globals.refs[i]).length() * 2L;
+            }
+        }
+        return bytes;
+    }
+
+    // ==================== PILA ====================
+
+    // Reserva una posición en el tope de la pila y devuelve su índice
+    private int push() {
+        stack.ensureCapacity(sp + 1);
+        return sp++;
+    }
+
+    private void pop(int count) {
+        sp -= count;
+        Arrays.fill(stack.refs, sp, sp + count, null);
+    }
+
+    private RuntimeException error(int pc, String message) {
+        return new RuntimeException("❌ Error en línea " + program.lines[pc] + ": " + message);
+    }
+
+    // ==================== TRAZA ====================
+
+    private static final TraceLevel[] TRACE_LEVELS = TraceLevel.values();
+
+    // Línea de traza del nivel dado, o null si no se registra
+    private StringBuilder traceLine(TraceLevel detail) {
+        return traceLevel.includes(detail) ? trace.line(detail) : null;
+    }
+
+    // Línea de la salida del programa: se arma con cualquier nivel de traza
+    private StringBuilder outputLine() {
+        return output.line(TraceLevel.SUMMARY);
+    }
+
+    private void traceFunctionDone(Bytecode.Function done) {
+        StringBuilder line = traceLine(TraceLevel.FULL);
+        if (line != null) {
+            line.append("   ✅ Función '").append(done.name).append("' ejecutada correctamente");
+        }
+    }
+
+    // ==================== INSTRUCCIONES ====================
+
+    private void traceStore(String identifier, boolean undeclared, int mode, int value) {
+        if (mode == Bytecode.STORE_SILENT) {
+            return;
+        }
+        StringBuilder line = traceLine(TraceLevel.STATEMENTS);
+        if (line == null) {
+            return;
+        }
+        if (mode == Bytecode.STORE_INCREMENT) {
+            line.append("📈 Incremento: ").append(identifier).append(" = ");
+        } else if (undeclared) {
+            line.append("📝 Declarando variable: ").append(identifier).append(" = ");
+        } else {
+            line.append("🔄 Asignando variable: ").append(identifier).append(" = ");
+        }
+        stack.appendTo(line, value);
+    }
+
+    private void increment(String identifier, ValueArray values, int slot, int delta) {
+        if (!values.isNumber(slot)) {
+            throw new RuntimeException("No se puede convertir a número: " + values.box(slot));
+        }
+        double newValue = values.number(slot) + delta;
+        values.setDouble(slot, newValue);
+        StringBuilder line = traceLine(TraceLevel.STATEMENTS);
+        if (line != null) {
+            line.append("📈 Incremento: ").append(identifier)
+                    .append(delta > 0 ? "++" : "--")
+                    .append(" = ").append(newValue);
+        }
+    }
+
+    private void print(int count, boolean newline) {
+        StringBuilder line = outputLine();
+        if (line != null) {
+            line.append(newline ? "📤 Println: " : "📤 Print: ");
+            int start = line.length();
+            for (int i = sp - count; i < sp; i++) {
+                stack.appendTo(line, i).append(" ");
+            }
+            trim(line, start);
+        }
+        pop(count);
+    }
+
+    // Igual que String.trim() sobre line[start..], sin crear el String
+    private static void trim(StringBuilder line, int start) {
+        int end = line.length();
+        while (end > start && line.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        int first = start;
+        while (first < end && line.charAt(first) <= ' ') {
+            first++;
+        }
+        line.setLength(end);
+        line.delete(start, first);
+    }
+
+    // El slot de la función se resolvió al compilar; aquí solo se valida
+    private Bytecode.Function resolveCall(int pc, int slot, int count) {
+        String functionName = program.slotNames[slot];
+
+        // ✅ VERIFICAR que la función existe
+        if (!globals.isDefined(slot)) {
+            throw error(pc, "Función '" + functionName + "' no declarada");
+        }
+        if (!(globals.refs[slot] instanceof Bytecode.Function)) {
+            throw error(pc, "'" + functionName + "' no es una función válida");
+        }
+        Bytecode.Function callee = (Bytecode.Function) globals.refs[slot];
+
+        // ✅ PROCESAR argumentos (quedan en la pila para copiarlos al marco)
+        StringBuilder line = traceLine(TraceLevel.FULL);
+        if (line != null) {
+            line.append("   Argumentos: [");
+            for (int i = sp - count; i < sp; i++) {
+                if (i > sp - count) {
+                    line.append(", ");
+                }
+                stack.appendTo(line, i);
+            }
+            line.append("]");
+        }
+
+        if (callee.isIntrinsic()) {
+            pop(count);
+        } else if (count != callee.parameters.size()) {
+            throw error(pc, "Función '" + functionName + "' espera " + callee.parameters.size()
+                    + " argumentos pero recibió " + count);
+        }
+        return callee;
+    }
+
+    // Reserva el marco de la llamada y devuelve la primera instrucción del cuerpo
+    private int enterFunction(int pc, Bytecode.Function callee, int count) {
+        if (depth == returnPcs.length) {
+            int capacity = depth * 2;
+            returnPcs = Arrays.copyOf(returnPcs, capacity);
+            savedBases = Arrays.copyOf(savedBases, capacity);
+            savedStack = Arrays.copyOf(savedStack, capacity);
+            savedFunctions = Arrays.copyOf(savedFunctions, capacity);
+        }
+
+        int newBase = frameTop;
+        int newTop = newBase + callee.frameSize();
+        locals.ensureCapacity(newTop);
+        // Los argumentos pasan de la pila a los primeros slots del marco
+        for (int i = 0; i < count; i++) {
+            locals.copyFrom(stack, sp - count + i, newBase + i);
+        }
+        locals.clear(newBase + count, newTop);
+        pop(count);
+
+        returnPcs[depth] = pc + 1 + Bytecode.operandCount(Bytecode.CALL);
+        savedBases[depth] = base;
+        savedStack[depth] = sp;
+        savedFunctions[depth] = function;
+        depth++;
+
+        base = newBase;
+        frameTop = newTop;
+        function = callee;
+        return callee.entry;
+    }
+
+    /**
+     * Libera el marco actual, deja el valor de retorno (o 0 si no hay) donde
+     * el llamador lo espera y devuelve la instrucción siguiente a la llamada.
+     */
+    private int leaveFunction(boolean hasValue) {
+        depth--;
+        locals.clear(base, frameTop);
+        frameTop = base;
+        base = savedBases[depth];
+        function = savedFunctions[depth];
+        savedFunctions[depth] = null;
+
+        // Un return dentro de un switch o bucle puede dejar valores en la pila
+        int result = savedStack[depth];
+        if (hasValue) {
+            stack.copyFrom(stack, sp - 1, result);
+        } else {
+            stack.ensureCapacity(result + 1);
+            stack.setInt(result, 0);
+        }
+        if (sp > result + 1) {
+            pop(sp - result - 1);
+        }
+        sp = result + 1;
+        return returnPcs[depth];
+    }
+
+    // ==================== EVALUACIÓN ====================
+
+    private double evaluateArithmetic(double leftNum, double rightNum, int op) {
+        switch (op) {
+            case Bytecode.ADD:
+                return leftNum + rightNum;
+            case Bytecode.SUB:
+                return leftNum - rightNum;
+            case Bytecode.MUL:
+                return leftNum * rightNum;
+            case Bytecode.DIV:
+                if (rightNum == 0)
+                    throw new RuntimeException("División por cero");
+                return leftNum / rightNum;
+            default:
+                return leftNum % rightNum;
+        }
+    }
+
+    private boolean evaluateComparison(int left, int right, int op) {
+        if (stack.isNumber(left) && stack.isNumber(right)) {
+            double leftNum = stack.number(left);
+            double rightNum = stack.number(right);
+
+            switch (op) {
+                case Bytecode.EQ:
+                    return leftNum == rightNum;
+                case Bytecode.NE:
+                    return leftNum != rightNum;
+                case Bytecode.LT:
+                    return leftNum < rightNum;
+                case Bytecode.GT:
+                    return leftNum > rightNum;
+                case Bytecode.LE:
+                    return leftNum <= rightNum;
+                default:
+                    return leftNum >= rightNum;
+            }
+        }
+        // ✅ Permitir comparación entre booleanos
+        else if (stack.tags[left] == ValueArray.BOOLEAN && stack.tags[right] == ValueArray.BOOLEAN) {
+            boolean leftBool = stack.longs[left] != 0;
+            boolean rightBool = stack.longs[right] != 0;
+
+            switch (op) {
+                case Bytecode.EQ:
+                    return leftBool == rightBool;
+                case Bytecode.NE:
+                    return leftBool != rightBool;
+                default:
+                    throw new RuntimeException("❌ Error: Operador " + operatorName(op) + " no válido para booleanos");
+            }
+        }
+        // ✅ Permitir comparación entre strings
+        else if (stack.refs[left] instanceof String && stack.refs[right] instanceof String) {
+            String leftStr = (String) stack.refs[left];
+            String rightStr = (String) stack.refs[right];
+
+            switch (op) {
+                case Bytecode.EQ:
+                    return leftStr.equals(rightStr);
+                case Bytecode.NE:
+                    return !leftStr.equals(rightStr);
+                default:
+                    throw new RuntimeException("❌ Error: Operador " + operatorName(op) + " no válido para strings");
+            }
+        }
+        // ❌ Tipos incompatibles
+        else {
+            throw new RuntimeException("❌ Error: No se pueden comparar " +
+                    stack.typeName(left) + " y " +
+                    stack.typeName(right) + " con " + operatorName(op));
+        }
+    }
+
+    // Mismo nombre que el TokenType del operador (para los mensajes de error)
+    private static String operatorName(int op) {
+        switch (op) {
+            case Bytecode.EQ:
+                return "EQUALS";
+            case Bytecode.NE:
+                return "NOT_EQUALS";
+            case Bytecode.LT:
+                return "LESS";
+            case Bytecode.GT:
+                return "GREATER";
+            case Bytecode.LE:
+                return "LESS_EQUAL";
+            default:
+                return "GREATER_EQUAL";
+        }
+    }
+
+    private double toNumber(int i) {
+        if (!stack.isNumber(i)) {
+            throw new RuntimeException("No se puede convertir a número: " + stack.box(i));
+        }
+        return stack.number(i);
+    }
+
+    private boolean toBoolean(int pc, int i) {
+        if (stack.tags[i] != ValueArray.BOOLEAN) {
+            throw error(pc, "Se esperaba un valor booleano y se obtuvo " + stack.box(i));
+        }
+        return stack.longs[i] != 0;
+    }
+
+    // Variable i del f-string: primero el marco actual, después la global
+    private boolean appendVariable(StringBuilder sb, Bytecode.Format format, int i) {
+        int local = format.localSlots[i];
+        if (function != null && local >= 0 && locals.isDefined(base + local)) {
+            locals.appendTo(sb, base + local);
+            return true;
+        }
+        int slot = format.globalSlots[i];
+        if (globals.isDefined(slot)) {
+            globals.appendTo(sb, slot);
+            return true;
+        }
+        return false;
+    }
+
+    // Arma el f-string en un buffer reutilizable; solo el resultado es un String nuevo
+    private String format(Bytecode.Format format, int line) {
+        FormatTemplate template = format.template;
+        StringBuilder result = formatBuffer;
+        result.setLength(0);
+        for (int i = 0; i < template.variables.length; i++) {
+            result.append(template.literals[i]);
+            if (!appendVariable(result, format, i)) {
+                throw new RuntimeException("❌ Error en línea " + line +
+                        ": Variable '" + template.variables[i] + "' no declarada en string formateado");
+            }
+        }
+        if (template.error != null) {
+            throw new RuntimeException("❌ Error en línea " + line + ": " + template.error);
+        }
+        result.append(template.literals[template.variables.length]);
+        return result.toString();
+    }
+}